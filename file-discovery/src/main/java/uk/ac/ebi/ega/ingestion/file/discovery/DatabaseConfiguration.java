@@ -17,6 +17,7 @@
  */
 package uk.ac.ebi.ega.ingestion.file.discovery;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
@@ -24,6 +25,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import uk.ac.ebi.ega.ingestion.file.discovery.services.StagingAreaService;
 import uk.ac.ebi.ega.ingestion.file.discovery.persistence.StagingAreaServiceImpl;
+import uk.ac.ebi.ega.ingestion.file.discovery.persistence.StagingFileBulkWriter;
 import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingAreaRepository;
 import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFileRepository;
 
@@ -32,11 +34,30 @@ import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFi
 @EnableJpaAuditing
 public class DatabaseConfiguration {
 
+    /**
+     * Specifies the minimum number of file events of a batch that are persisted with COPY and an upsert, 0 to
+     * persist every batch with a statement per file.
+     */
+    @Value("${file.discovery.persistence.bulk.threshold:1000}")
+    private int bulkThreshold;
+
+    /**
+     * Specifies the maximum number of files whose changes are copied and applied at a time by the bulk path.
+     */
+    @Value("${file.discovery.persistence.bulk.chunk.size:50000}")
+    private int bulkChunkSize;
+
     @Bean
     public StagingAreaService stagingAreaService(NamedParameterJdbcTemplate namedParameterJdbcTemplate,
                                                  StagingAreaRepository stagingAreaRepository,
                                                  StagingFileRepository stagingFileRepository) {
-        return new StagingAreaServiceImpl(namedParameterJdbcTemplate, stagingAreaRepository, stagingFileRepository);
+        if (bulkThreshold < 1) {
+            return new StagingAreaServiceImpl(namedParameterJdbcTemplate, stagingAreaRepository,
+                    stagingFileRepository);
+        }
+        return new StagingAreaServiceImpl(namedParameterJdbcTemplate, stagingAreaRepository, stagingFileRepository,
+                new StagingFileBulkWriter(namedParameterJdbcTemplate.getJdbcTemplate(), bulkChunkSize),
+                bulkThreshold);
     }
 
 }
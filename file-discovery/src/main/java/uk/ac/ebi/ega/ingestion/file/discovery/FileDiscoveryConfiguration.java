@@ -17,13 +17,13 @@
  */
 package uk.ac.ebi.ega.ingestion.file.discovery;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.expression.common.LiteralExpression;
-import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.config.EnableIntegration;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.IntegrationFlows;
@@ -33,18 +33,32 @@ import org.springframework.integration.kafka.dsl.Kafka;
 import org.springframework.integration.kafka.dsl.KafkaProducerMessageHandlerSpec;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.DefaultKafkaHeaderMapper;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.KafkaNull;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.aggregators.AdaptiveBatchReleaseStrategy;
 import uk.ac.ebi.ega.ingestion.file.discovery.message.handlers.PersistStagingFileChangesHandler;
 import uk.ac.ebi.ega.ingestion.file.discovery.message.handlers.PersistStagingFileChangesHandlerImpl;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.routers.IngestionTopicRouter;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventScanner;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventScannerConfiguration;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
 import uk.ac.ebi.ega.ingestion.file.discovery.services.FilePollingService;
 import uk.ac.ebi.ega.ingestion.file.discovery.services.FilePollingServiceImpl;
+import uk.ac.ebi.ega.ingestion.file.discovery.services.IngestionCandidateService;
 import uk.ac.ebi.ega.ingestion.file.discovery.services.StagingAreaService;
+import uk.ac.ebi.ega.ingestion.file.discovery.services.StagingAreaSnapshotService;
 import uk.ac.ebi.ega.ingestion.file.discovery.utils.StagingFileId;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Function;
 
 @Configuration
@@ -54,17 +68,122 @@ public class FileDiscoveryConfiguration {
     @Value("${spring.kafka.file.events.queue.name}")
     private String fileEventQueueName;
 
+    /**
+     * Specifies whether a tombstone follows each deleted file event, so that a compacted file events topic only keeps
+     * the files that currently exist in the staging areas.
+     */
+    @Value("${spring.kafka.file.events.tombstones:false}")
+    private boolean fileEventTombstones;
+
     @Value("${spring.kafka.staging.ingestion.queue.name}")
     private String fileIngestionQueueName;
 
+    /**
+     * Specifies the topic of the ingestion events whose encrypted file is smaller than the small files threshold, so
+     * that the encryption of small files is not queued behind the encryption of large ones.
+     */
+    @Value("${spring.kafka.staging.ingestion.small.files.queue.name:${spring.kafka.staging.ingestion.queue.name}}")
+    private String smallFileIngestionQueueName;
+
+    /**
+     * Specifies the size in bytes below which an encrypted file is sent to the small files topic.
+     */
+    @Value("${file.discovery.ingestion.small.files.threshold:67108864}")
+    private long smallFilesThreshold;
+
+    /**
+     * Specifies how the files of the staging areas are discovered.
+     * See {@link FileEventScanner.Type}.
+     */
+    @Value("${file.discovery.scanner.type:RECURSIVE}")
+    private FileEventScanner.Type scannerType;
+
+    /**
+     * Specifies the time in milliseconds between full walks of a staging area when the type of scanner is
+     * {@link FileEventScanner.Type#WATCH}.
+     */
+    @Value("${file.discovery.scanner.reconciliation.period:21600000}")
+    private long scannerReconciliationPeriod;
+
+    /**
+     * Specifies where a recursive scanner keeps the view of each staging area between scans.
+     * See {@link FileSystemSnapshot.Storage}.
+     */
+    @Value("${file.discovery.scanner.snapshot.storage:HEAP}")
+    private FileSystemSnapshot.Storage scannerSnapshotStorage;
+
+    /**
+     * Specifies the number of events that a scan running in the background can pass to the discovery flow before it
+     * waits. Scans run on the polling thread and their events are sent once they finish when 0.
+     */
+    @Value("${file.discovery.scanner.stream.capacity:0}")
+    private int scannerStreamCapacity;
+
+    /**
+     * Specifies the time in milliseconds between scans that list every directory when the type of scanner is
+     * {@link FileEventScanner.Type#SORTED}, 0 to list every directory on every scan.
+     */
+    @Value("${file.discovery.scanner.deep.scan.period:0}")
+    private long scannerDeepScanPeriod;
+
+    /**
+     * Specifies the directory where the snapshot of each staging area is saved, so that a restart only loads the files
+     * changed or deleted since the checkpoint from the database. Checkpoints are disabled when empty.
+     */
+    @Value("${file.discovery.scanner.checkpoint.directory:}")
+    private String scannerCheckpointDirectory;
+
+    /**
+     * Specifies the time in milliseconds between checkpoints of a staging area. Each checkpoint is the previous one
+     * with the files changed or deleted since, the staging area is not loaded again from the database.
+     */
+    @Value("${file.discovery.scanner.checkpoint.period:3600000}")
+    private long scannerCheckpointPeriod;
+
+    /**
+     * Specifies the number of file events of the first batch persisted in the database, and the minimum number of
+     * events the batches shrink to when events arrive slowly.
+     */
+    @Value("${file.discovery.persistence.batch.min.size:5}")
+    private int persistenceBatchMinSize;
+
+    /**
+     * Specifies the maximum number of file events the batches persisted in the database grow to when events arrive
+     * fast.
+     */
+    @Value("${file.discovery.persistence.batch.max.size:10000}")
+    private int persistenceBatchMaxSize;
+
+    /**
+     * Specifies the maximum estimated size in bytes of the file events of a batch persisted in the database.
+     */
+    @Value("${file.discovery.persistence.batch.max.bytes:16777216}")
+    private long persistenceBatchMaxBytes;
+
+    /**
+     * Specifies the time in milliseconds after which a batch is persisted in the database even if it is not full.
+     */
+    @Value("${file.discovery.persistence.batch.timeout:1000}")
+    private long persistenceBatchTimeout;
+
+    /**
+     * Specifies the time in milliseconds between loads of each whole staging area into the index of the files to
+     * ingest, which is otherwise updated with the file events persisted.
+     */
+    @Value("${file.discovery.ingestion.index.reload.period:3600000}")
+    private long ingestionIndexReloadPeriod;
+
     @Autowired
     private IntegrationFlowContext integrationFlowContext;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Autowired
     private StagingAreaService stagingAreaService;
 
     @Autowired
-    private KafkaTemplate<Integer, FileEvent> fileEventKafkaTemplate;
+    private KafkaTemplate<String, FileEvent> fileEventKafkaTemplate;
 
     @Autowired
     private KafkaTemplate<Integer, IngestionEvent> fileIngestionKafkaTemplate;
@@ -82,7 +201,23 @@ public class FileDiscoveryConfiguration {
     @Bean
     public FilePollingService filePollingService() {
         return new FilePollingServiceImpl(stagingAreaService, integrationFlowContext, fileDiscoveryExecutor(),
-                inboundDiscoveryChannel(), fileIngestionExecutor(), inboundIngestionChannel());
+                inboundDiscoveryChannel(), fileIngestionExecutor(), inboundIngestionChannel(),
+                new FileEventScannerConfiguration(scannerType, scannerReconciliationPeriod, scannerSnapshotStorage,
+                        scannerStreamCapacity, scannerDeepScanPeriod),
+                stagingAreaSnapshotService(), ingestionCandidateService());
+    }
+
+    @Bean
+    public IngestionCandidateService ingestionCandidateService() {
+        return new IngestionCandidateService(stagingAreaService, ingestionIndexReloadPeriod);
+    }
+
+    @Bean
+    public StagingAreaSnapshotService stagingAreaSnapshotService() {
+        final Path checkpointDirectory = scannerCheckpointDirectory.isEmpty() ? null :
+                Paths.get(scannerCheckpointDirectory);
+        return new StagingAreaSnapshotService(stagingAreaService, scannerSnapshotStorage, checkpointDirectory,
+                scannerCheckpointPeriod);
     }
 
     @Bean
@@ -90,13 +225,16 @@ public class FileDiscoveryConfiguration {
         return IntegrationFlows.from(inboundDiscoveryChannel())
                 .publishSubscribeChannel(s -> s.applySequence(true)
                         .subscribe(f -> f.aggregate(aggregatorSpec -> aggregatorSpec.correlationStrategy(message -> true)
-                                .releaseStrategy(releaseStrategy -> releaseStrategy.size() >= 5)
+                                .releaseStrategy(persistBatchReleaseStrategy())
                                 .sendPartialResultOnExpiry(true)
-                                .groupTimeout(10000)
+                                .groupTimeout(persistenceBatchTimeout)
                                 .expireGroupsUponCompletion(true)
                                 .expireGroupsUponTimeout(true))
                                 .handle(persistStagingFileChangesHandler()))
-                        .subscribe(f -> f.handle(discoveryMessageHandler())))
+                        .subscribe(f -> f.enrichHeaders(headers -> headers.headerFunction(KafkaHeaders.MESSAGE_KEY,
+                                (Message<FileEvent> message) -> getFileEventKey(message.getPayload())))
+                                .split(FileEvent.class, this::withTombstone)
+                                .handle(discoveryMessageHandler())))
                 .get();
     }
 
@@ -122,9 +260,9 @@ public class FileDiscoveryConfiguration {
     }
 
     @Bean
-    public KafkaProducerMessageHandlerSpec<Integer, FileEvent, ?> discoveryMessageHandler() {
+    public KafkaProducerMessageHandlerSpec<String, FileEvent, ?> discoveryMessageHandler() {
         return Kafka.outboundChannelAdapter(fileEventKafkaTemplate)
-                .messageKey(m -> m.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER))
+                .messageKey(m -> m.getHeaders().get(KafkaHeaders.MESSAGE_KEY))
                 .headerMapper(mapper())
                 .topicExpression(new LiteralExpression(fileEventQueueName));
     }
@@ -137,7 +275,31 @@ public class FileDiscoveryConfiguration {
                     return StagingFileId.calculateId(event.getLocationId(), event.getEncryptedFile().getAbsolutePath());
                 })
                 .headerMapper(mapper())
-                .topicExpression(new LiteralExpression(fileIngestionQueueName));
+                .topic(ingestionTopicRouter());
+    }
+
+    /**
+     * The encryption processors only consume the small files topic when they have small files execution slots, they
+     * stop at startup if it is a topic of its own and they have none.
+     */
+    @Bean
+    public IngestionTopicRouter ingestionTopicRouter() {
+        return new IngestionTopicRouter(fileIngestionQueueName, smallFileIngestionQueueName, smallFilesThreshold);
+    }
+
+    /**
+     * File events are keyed by the id of the staging file, all the events of a file go to the same partition in order
+     * and a compacted topic keeps the last event of each file.
+     */
+    private static String getFileEventKey(FileEvent event) {
+        return StagingFileId.calculateId(event.getLocationId(), event.getRelativePath());
+    }
+
+    private List<Object> withTombstone(FileEvent event) {
+        if (fileEventTombstones && event.getType() == FileEvent.Type.DELETED) {
+            return Arrays.asList(event, KafkaNull.INSTANCE);
+        }
+        return Collections.singletonList(event);
     }
 
     @Bean
@@ -145,9 +307,16 @@ public class FileDiscoveryConfiguration {
         return new DefaultKafkaHeaderMapper();
     }
 
+    @Bean
+    public AdaptiveBatchReleaseStrategy persistBatchReleaseStrategy() {
+        return new AdaptiveBatchReleaseStrategy(persistenceBatchMinSize, persistenceBatchMaxSize,
+                persistenceBatchMaxBytes);
+    }
+
     @Bean
     public PersistStagingFileChangesHandler persistStagingFileChangesHandler() {
-        return new PersistStagingFileChangesHandlerImpl(stagingAreaService);
+        return new PersistStagingFileChangesHandlerImpl(stagingAreaService, persistBatchReleaseStrategy(),
+                meterRegistry, ingestionCandidateService()::onFileEventsPersisted);
     }
 
 }
@@ -24,7 +24,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.IntegerSerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -45,9 +44,27 @@ public class KafkaConfiguration {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    /**
+     * Specifies the compression of the batches of file events: none, gzip, snappy, lz4 or zstd.
+     */
+    @Value("${spring.kafka.file.events.compression.type:lz4}")
+    private String fileEventCompressionType;
+
+    /**
+     * Specifies the time in milliseconds the producer waits for more file events before sending a batch.
+     */
+    @Value("${spring.kafka.file.events.linger.ms:1000}")
+    private int fileEventLingerMs;
+
+    /**
+     * Specifies the maximum size in bytes of a batch of file events sent to a partition.
+     */
+    @Value("${spring.kafka.file.events.batch.size:262144}")
+    private int fileEventBatchSize;
+
     @Bean
-    public ProducerFactory<Integer, FileEvent> fileEventProducerFactory() {
-        DefaultKafkaProducerFactory<Integer, FileEvent> factory =
+    public ProducerFactory<String, FileEvent> fileEventProducerFactory() {
+        DefaultKafkaProducerFactory<String, FileEvent> factory =
                 new DefaultKafkaProducerFactory<>(fileEventProducerConfigs());
         factory.setValueSerializer(new JsonSerializer<>(getObjectMapper()));
         return factory;
@@ -62,7 +79,7 @@ public class KafkaConfiguration {
     }
 
     @Bean
-    public KafkaTemplate<Integer, FileEvent> fileEventKafkaTemplate() {
+    public KafkaTemplate<String, FileEvent> fileEventKafkaTemplate() {
         return new KafkaTemplate<>(fileEventProducerFactory());
     }
 
@@ -85,9 +102,13 @@ public class KafkaConfiguration {
     public Map fileEventProducerConfigs() {
         Map properties = new HashMap();
         properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, IntegerSerializer.class);
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         // introduce a delay on the send to allow more messages to accumulate
-        properties.put(ProducerConfig.LINGER_MS_CONFIG, 1000);
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, fileEventLingerMs);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, fileEventBatchSize);
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, fileEventCompressionType);
+        // retries must not reorder the events of a file, the last event of a file is its current state
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
         return properties;
     }
 
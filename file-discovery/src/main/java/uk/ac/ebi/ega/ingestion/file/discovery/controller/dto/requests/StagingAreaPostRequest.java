@@ -44,6 +44,9 @@ public class StagingAreaPostRequest implements StagingArea {
     @Min(value = 1, message = "Ingestion polling period needs to be greater than 0")
     private long ingestionPollingPeriod;
 
+    @Min(value = 1, message = "Discovery parallelism needs to be greater than 0")
+    private int discoveryParallelism = 1;
+
     public String getId() {
         return id;
     }
@@ -83,6 +86,11 @@ public class StagingAreaPostRequest implements StagingArea {
         return ingestionPollingPeriod;
     }
 
+    @Override
+    public int getDiscoveryParallelism() {
+        return discoveryParallelism;
+    }
+
     @Override
     public LocalDateTime getCreateDate() {
         return null;
@@ -35,6 +35,8 @@ public class StagingAreaResource extends ResourceSupport {
 
     public long ingestionPollingPeriod;
 
+    public int discoveryParallelism;
+
     public LocalDateTime createDate;
 
     public LocalDateTime updateDate;
@@ -63,6 +65,10 @@ public class StagingAreaResource extends ResourceSupport {
         this.ingestionPollingPeriod = ingestionPollingPeriod;
     }
 
+    public void setDiscoveryParallelism(int discoveryParallelism) {
+        this.discoveryParallelism = discoveryParallelism;
+    }
+
     public void setCreateDate(LocalDateTime createDate) {
         this.createDate = createDate;
     }
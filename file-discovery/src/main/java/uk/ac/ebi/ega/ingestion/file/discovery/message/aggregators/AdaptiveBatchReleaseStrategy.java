@@ -0,0 +1,92 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.aggregators;
+
+import org.springframework.integration.aggregator.ReleaseStrategy;
+import org.springframework.integration.store.MessageGroup;
+
+/**
+ * Release strategy of the aggregator that batches the file events persisted in the database. The number of events of
+ * a batch doubles each time a batch fills up, so a scan that discovers many files is persisted in a few large
+ * transactions, and halves each time a batch is released by the group timeout, so a few changes are persisted without
+ * waiting for a large batch to fill. Batches are also bounded by an estimate of their size in bytes, based on the
+ * size of the events of the batches already flushed.
+ */
+public class AdaptiveBatchReleaseStrategy implements ReleaseStrategy {
+
+    private static final long INITIAL_EVENT_BYTES = 256;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long maxBatchBytes;
+
+    private volatile int targetBatchSize;
+
+    /**
+     * Moving average of the size in bytes of the events flushed.
+     */
+    private volatile long eventBytes;
+
+    public AdaptiveBatchReleaseStrategy(int minBatchSize, int maxBatchSize, long maxBatchBytes) {
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize || maxBatchBytes < 1) {
+            throw new IllegalArgumentException("Batch sizes must be at least 1 and the maximum batch size must not " +
+                    "be lower than the minimum batch size");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.targetBatchSize = minBatchSize;
+        this.eventBytes = INITIAL_EVENT_BYTES;
+    }
+
+    @Override
+    public boolean canRelease(MessageGroup group) {
+        final int size = group.size();
+        return size >= targetBatchSize || isFull(size);
+    }
+
+    /**
+     * Adapts the size of the next batches to a batch that has been flushed.
+     *
+     * @param batchSize  number of events of the batch
+     * @param batchBytes estimated size in bytes of the events of the batch
+     */
+    public void onFlush(int batchSize, long batchBytes) {
+        if (batchSize < 1) {
+            return;
+        }
+        eventBytes = (3 * eventBytes + Math.max(1, batchBytes / batchSize)) / 4;
+        if (batchSize >= targetBatchSize) {
+            targetBatchSize = (int) Math.min(maxBatchSize, 2L * targetBatchSize);
+        } else if (!isFull(batchSize)) {
+            // Released by the group timeout, events are not arriving fast enough to fill the batch
+            targetBatchSize = Math.max(minBatchSize, targetBatchSize / 2);
+        }
+    }
+
+    private boolean isFull(int size) {
+        return size * eventBytes >= maxBatchBytes;
+    }
+
+    public int getTargetBatchSize() {
+        return targetBatchSize;
+    }
+
+}
@@ -17,27 +17,88 @@
  */
 package uk.ac.ebi.ega.ingestion.file.discovery.message.handlers;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.aggregators.AdaptiveBatchReleaseStrategy;
 import uk.ac.ebi.ega.ingestion.file.discovery.services.StagingAreaService;
 import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class PersistStagingFileChangesHandlerImpl implements PersistStagingFileChangesHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(PersistStagingFileChangesHandlerImpl.class);
 
+    /**
+     * Estimated size in bytes of the fields of an event other than its strings.
+     */
+    private static final int EVENT_FIXED_BYTES = 32;
+
     private StagingAreaService stagingAreaService;
 
+    private AdaptiveBatchReleaseStrategy releaseStrategy;
+
+    private DistributionSummary batchSize;
+
+    private Timer flushLatency;
+
+    private Consumer<List<FileEvent>> persistedListener;
+
     public PersistStagingFileChangesHandlerImpl(StagingAreaService stagingAreaService) {
+        this(stagingAreaService, null, Metrics.globalRegistry, null);
+    }
+
+    /**
+     * @param releaseStrategy   strategy of the aggregator of the batches, adapted to each batch persisted. Can be null.
+     * @param persistedListener receives each batch once it is persisted. Can be null.
+     */
+    public PersistStagingFileChangesHandlerImpl(StagingAreaService stagingAreaService,
+                                                AdaptiveBatchReleaseStrategy releaseStrategy,
+                                                MeterRegistry meterRegistry,
+                                                Consumer<List<FileEvent>> persistedListener) {
         this.stagingAreaService = stagingAreaService;
+        this.releaseStrategy = releaseStrategy;
+        this.persistedListener = persistedListener;
+        this.batchSize = DistributionSummary.builder("file.discovery.persist.batch.size")
+                .description("Number of file events persisted in a batch")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("file.discovery.persist.flush.latency")
+                .description("Time to persist a batch of file events")
+                .register(meterRegistry);
+        if (releaseStrategy != null) {
+            meterRegistry.gauge("file.discovery.persist.batch.target", releaseStrategy,
+                    AdaptiveBatchReleaseStrategy::getTargetBatchSize);
+        }
     }
 
     @Override
     public void persistStagingFileChanges(List<FileEvent> fileEvents) {
-        logger.warn("{}", fileEvents);
+        logger.debug("Persisting {} file events", fileEvents.size());
+        final long start = System.nanoTime();
         stagingAreaService.update(fileEvents);
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(fileEvents.size());
+        if (releaseStrategy != null) {
+            releaseStrategy.onFlush(fileEvents.size(), estimateBytes(fileEvents));
+        }
+        if (persistedListener != null) {
+            persistedListener.accept(fileEvents);
+        }
+    }
+
+    private static long estimateBytes(List<FileEvent> fileEvents) {
+        long bytes = 0;
+        for (FileEvent fileEvent : fileEvents) {
+            bytes += EVENT_FIXED_BYTES + fileEvent.getLocationId().length() + fileEvent.getLocationPath().length()
+                    + fileEvent.getRelativePath().length();
+        }
+        return bytes;
     }
 
 }
@@ -0,0 +1,66 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.routers;
+
+import org.springframework.messaging.Message;
+import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
+
+import java.util.function.Function;
+
+/**
+ * Chooses the topic of each ingestion event. Events whose encrypted file is smaller than the threshold go to the
+ * small files topic, so that the encryption of small files is not queued behind the encryption of large ones. The
+ * small files topic is only consumed by encryption processors with small files execution slots.
+ */
+public class IngestionTopicRouter implements Function<Message<IngestionEvent>, String> {
+
+    private final String ingestionTopic;
+
+    private final String smallFilesTopic;
+
+    private final long smallFilesThreshold;
+
+    public IngestionTopicRouter(String ingestionTopic, String smallFilesTopic, long smallFilesThreshold) {
+        if (smallFilesThreshold < 0) {
+            throw new IllegalArgumentException("The small files threshold must not be negative");
+        }
+        this.ingestionTopic = ingestionTopic;
+        this.smallFilesTopic = smallFilesTopic;
+        this.smallFilesThreshold = smallFilesThreshold;
+    }
+
+    @Override
+    public String apply(Message<IngestionEvent> message) {
+        return getTopic(message.getPayload());
+    }
+
+    public String getTopic(IngestionEvent event) {
+        if (event.getEncryptedFile().length() < smallFilesThreshold) {
+            return smallFilesTopic;
+        }
+        return ingestionTopic;
+    }
+
+    /**
+     * @return true if some events can be sent to a topic other than the ingestion topic.
+     */
+    public boolean isRoutingSmallFiles() {
+        return smallFilesThreshold > 0 && !smallFilesTopic.equals(ingestionTopic);
+    }
+
+}
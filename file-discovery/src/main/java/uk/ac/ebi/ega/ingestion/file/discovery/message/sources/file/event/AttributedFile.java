@@ -0,0 +1,70 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * File whose type, size and modification time are answered from the attributes already read by a directory walk,
+ * so that the filters and the scanners do not stat the file again.
+ */
+class AttributedFile extends File {
+
+    private final transient BasicFileAttributes attributes;
+
+    AttributedFile(Path path, BasicFileAttributes attributes) {
+        super(path.toString());
+        this.attributes = attributes;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return attributes.isDirectory();
+    }
+
+    @Override
+    public boolean isFile() {
+        return attributes.isRegularFile();
+    }
+
+    @Override
+    public long length() {
+        return attributes.size();
+    }
+
+    @Override
+    public long lastModified() {
+        return attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * @return static view of the file, a symbolic link is resolved to its target like
+     * {@link FileStatic#FileStatic(File)}.
+     */
+    FileStatic toFileStatic() {
+        if (attributes.isSymbolicLink()) {
+            return new FileStatic(new File(getPath()));
+        }
+        return new FileStatic(getAbsolutePath(), length(), lastModified());
+    }
+
+}
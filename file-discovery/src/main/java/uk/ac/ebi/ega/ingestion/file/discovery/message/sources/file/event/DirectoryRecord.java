@@ -0,0 +1,67 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * State of a directory when a {@link SortedFileWalker} listed it. Creating, deleting or renaming an entry of a
+ * directory updates its modification time, so a directory whose modification time and size have not changed since it
+ * was listed still has the same entries. Rewriting a file in place does not update the directory.
+ */
+class DirectoryRecord {
+
+    /**
+     * Granularity of the modification times of the file systems, a change made in the same interval in which the
+     * directory was listed may not update its modification time.
+     */
+    static final long MODIFICATION_TIME_GRANULARITY_MS = 2000;
+
+    private final long lastModified;
+
+    private final long size;
+
+    private final long listedAt;
+
+    /**
+     * Names of the subdirectories that were walked, sorted by name.
+     */
+    private final List<String> subdirectories;
+
+    DirectoryRecord(long lastModified, long size, long listedAt, List<String> subdirectories) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.listedAt = listedAt;
+        this.subdirectories = subdirectories;
+    }
+
+    /**
+     * @return true if the entries of the directory are the same as when it was listed.
+     */
+    boolean isUnchanged(File directory) {
+        return directory.lastModified() == lastModified
+                && directory.length() == size
+                && lastModified < listedAt - MODIFICATION_TIME_GRANULARITY_MS;
+    }
+
+    List<String> getSubdirectories() {
+        return subdirectories;
+    }
+
+}
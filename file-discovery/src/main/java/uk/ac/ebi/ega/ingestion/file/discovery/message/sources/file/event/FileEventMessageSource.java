@@ -25,7 +25,14 @@ import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 
 import java.io.File;
 import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,6 +41,8 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
 
     private static final int DEFAULT_INTERNAL_QUEUE_CAPACITY = 5;
 
+    private static final long STREAM_OFFER_TIMEOUT_MS = 500;
+
     private final AtomicBoolean running = new AtomicBoolean();
 
     /*
@@ -45,7 +54,7 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
 
     private final ReentrantLock lock = new ReentrantLock();
 
-    private final FileEventRecursiveDirectoryScanner scanner;
+    private final FileEventScanner scanner;
 
     private volatile String locationId;
 
@@ -53,11 +62,22 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
 
     private volatile boolean autoCreateDirectory = true;
 
+    private volatile int streamCapacity;
+
+    /**
+     * Events passed by the scan running in the background, see {@link #setStreamCapacity(int)}.
+     */
+    private volatile BlockingQueue<FileEvent> streamedEvents;
+
+    private ExecutorService scanExecutor;
+
+    private Future<?> scan;
+
     public FileEventMessageSource() {
         this(new FileEventRecursiveDirectoryScanner());
     }
 
-    public FileEventMessageSource(FileEventRecursiveDirectoryScanner scanner) {
+    public FileEventMessageSource(FileEventScanner scanner) {
         this.toBeReceived = new PriorityBlockingQueue<>(DEFAULT_INTERNAL_QUEUE_CAPACITY, null);
         this.scanner = scanner;
     }
@@ -77,6 +97,19 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
             if (this.scanner instanceof Lifecycle) {
                 ((Lifecycle) this.scanner).start();
             }
+            if (this.streamCapacity > 0) {
+                startScanExecutor();
+            }
+        }
+    }
+
+    private synchronized void startScanExecutor() {
+        if (this.streamedEvents == null) {
+            this.streamedEvents = new ArrayBlockingQueue<>(this.streamCapacity);
+        }
+        if (this.scanExecutor == null || this.scanExecutor.isShutdown()) {
+            this.scanExecutor = Executors.newSingleThreadExecutor(
+                    runnable -> new Thread(runnable, "file-event-scan-" + locationId));
         }
     }
 
@@ -113,9 +146,32 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
         this.autoCreateDirectory = autoCreateDirectory;
     }
 
+    /**
+     * Specify the number of events that a scan can pass to the poller before it waits for them to be received. When
+     * greater than 0 the scans run in the background and their events are received while the staging area is still
+     * being walked, otherwise each scan runs on the polling thread and its events are received once it finishes. By
+     * default, this value is <em>0</em>.
+     *
+     * @param streamCapacity number of events passed by a background scan that can wait to be received
+     */
+    public void setStreamCapacity(int streamCapacity) {
+        Assert.isTrue(streamCapacity >= 0, "'streamCapacity' must not be negative");
+        this.streamCapacity = streamCapacity;
+    }
+
     @Override
     public void stop() {
-        running.getAndSet(false);
+        if (this.running.getAndSet(false)) {
+            if (this.scanner instanceof Lifecycle) {
+                ((Lifecycle) this.scanner).stop();
+            }
+            // A scan in progress is abandoned without waiting, its events are found again by the next scan
+            synchronized (this) {
+                if (this.scanExecutor != null) {
+                    this.scanExecutor.shutdown();
+                }
+            }
+        }
     }
 
     @Override
@@ -125,10 +181,18 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
 
     @Override
     protected AbstractIntegrationMessageBuilder<FileEvent> doReceive() {
+        if (this.streamCapacity > 0) {
+            return receiveStreamed();
+        }
+
         // rescan only if needed
         if (this.toBeReceived.isEmpty()) {
             if (lock.tryLock()) {
-                this.toBeReceived.addAll(this.scanner.listFileEvents(locationId, this.directory.toPath()));
+                try {
+                    this.toBeReceived.addAll(this.scanner.listFileEvents(locationId, this.directory.toPath()));
+                } finally {
+                    lock.unlock();
+                }
             }
         }
 
@@ -140,6 +204,74 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
         return null;
     }
 
+    private AbstractIntegrationMessageBuilder<FileEvent> receiveStreamed() {
+        startScanExecutor();
+        FileEvent fileEvent = this.toBeReceived.poll();
+        if (fileEvent == null) {
+            fileEvent = this.streamedEvents.poll();
+        }
+        if (fileEvent == null && lock.tryLock()) {
+            try {
+                if (this.scan == null || this.scan.isDone()) {
+                    checkFinishedScan();
+                    if (this.streamedEvents.isEmpty() && this.running.get()) {
+                        this.scan = this.scanExecutor.submit(() ->
+                                this.scanner.scanFileEvents(locationId, this.directory.toPath(), this::stream));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (fileEvent != null) {
+            return getMessageBuilderFactory().withPayload(fileEvent);
+        }
+        return null;
+    }
+
+    /**
+     * Throws the exception of the last scan if it failed.
+     */
+    private void checkFinishedScan() {
+        final Future<?> finishedScan = this.scan;
+        this.scan = null;
+        if (finishedScan == null) {
+            return;
+        }
+        try {
+            finishedScan.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScanStoppedException) {
+                return;
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Passes an event of the background scan to the poller, waiting while the poller is behind. Once the source is
+     * stopped the scan is abandoned, the scanner keeps the snapshot of its previous scan and the events that were not
+     * received are emitted again by the next scan.
+     */
+    private void stream(FileEvent fileEvent) {
+        try {
+            while (!this.streamedEvents.offer(fileEvent, STREAM_OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (!this.running.get()) {
+                    throw new ScanStoppedException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScanStoppedException();
+        }
+    }
+
     @Override
     public String getComponentType() {
         return "file-event:inbound-channel-adapter";
@@ -150,4 +282,15 @@ public class FileEventMessageSource extends AbstractMessageSource<FileEvent>
         Assert.notNull(this.directory, "'directory' must not be null");
     }
 
+    /**
+     * Abandons the background scan of a stopped source.
+     */
+    private static final class ScanStoppedException extends RuntimeException {
+
+        private ScanStoppedException() {
+            super(null, null, false, false);
+        }
+
+    }
+
 }
@@ -17,38 +17,70 @@
  */
 package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.integration.file.filters.AbstractFileListFilter;
 import org.springframework.integration.file.filters.IgnoreHiddenFileListFilter;
 import org.springframework.util.Assert;
 import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-public class FileEventRecursiveDirectoryScanner {
+public class FileEventRecursiveDirectoryScanner implements FileEventScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileEventRecursiveDirectoryScanner.class);
 
     private int maxDepth = Integer.MAX_VALUE;
 
+    private int parallelism = 1;
+
+    private boolean sortedWalk;
+
+    private long deepScanPeriod;
+
     private Set<FileVisitOption> fileVisitOptions = new HashSet<>();
 
     private volatile AbstractFileListFilter<File> filter;
 
-    private volatile Map<String, FileStatic> fileSystemView;
+    private FileSystemSnapshot.Storage snapshotStorage = FileSystemSnapshot.Storage.HEAP;
+
+    private volatile FileSystemSnapshot fileSystemView;
+
+    private volatile Supplier<FileSystemSnapshot> initialFileSystemView;
+
+    private volatile Consumer<FileSystemSnapshot> snapshotListener;
+
+    /**
+     * Directories listed by the last sorted walk, by absolute path.
+     */
+    private volatile Map<String, DirectoryRecord> directories = Collections.emptyMap();
+
+    private volatile long lastDeepScan;
+
+    private volatile ScanStatistics lastScanStatistics;
 
     public FileEventRecursiveDirectoryScanner() {
         this.filter = new IgnoreHiddenFileListFilter();
-        this.fileSystemView = new HashMap<>();
+        this.fileSystemView = FileSystemSnapshot.empty();
     }
 
     /**
@@ -57,6 +89,7 @@ public class FileEventRecursiveDirectoryScanner {
      *
      * @param filter the custom filter to be used
      */
+    @Override
     public void setFilter(AbstractFileListFilter<File> filter) {
         this.filter = filter;
     }
@@ -70,6 +103,61 @@ public class FileEventRecursiveDirectoryScanner {
         this.maxDepth = maxDepth;
     }
 
+    /**
+     * The number of threads that walk the directory tree, directories are split between them. A walk that follows
+     * symbolic links always runs on a single thread.
+     *
+     * @param parallelism the number of threads that walk the directory tree
+     */
+    public void setParallelism(int parallelism) {
+        Assert.isTrue(parallelism > 0, "'parallelism' must be greater than 0");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Walks the directory tree visiting the entries of each directory sorted by name, the files are compared with the
+     * snapshot of the previous scan while the tree is walked instead of being collected first. The walk runs on a
+     * single thread and does not follow symbolic links.
+     *
+     * @param sortedWalk true to walk the directory tree in sorted order
+     */
+    public void setSortedWalk(boolean sortedWalk) {
+        this.sortedWalk = sortedWalk;
+    }
+
+    /**
+     * The time in milliseconds between sorted walks that list every directory. In between, a directory whose
+     * modification time and size have not changed since the previous walk is not listed, its files are taken from the
+     * previous scan, so a file rewritten in place is only seen by the next deep scan. 0 to list every directory on
+     * every scan.
+     *
+     * @param deepScanPeriod time in milliseconds between deep scans
+     */
+    public void setDeepScanPeriod(long deepScanPeriod) {
+        Assert.isTrue(deepScanPeriod >= 0, "'deepScanPeriod' must not be negative");
+        this.deepScanPeriod = deepScanPeriod;
+    }
+
+    /**
+     * Where the view of the directory tree is kept between scans.
+     *
+     * @param snapshotStorage storage of the snapshot of the directory tree
+     */
+    public void setSnapshotStorage(FileSystemSnapshot.Storage snapshotStorage) {
+        Assert.notNull(snapshotStorage, "'snapshotStorage' must not be null");
+        this.snapshotStorage = snapshotStorage;
+    }
+
+    /**
+     * A listener that receives the snapshot of the previous scan before each scan. The events of the previous scan
+     * have all been received from the scanner by then, but they may not have been persisted yet.
+     *
+     * @param snapshotListener listener of the snapshots
+     */
+    public void setSnapshotListener(Consumer<FileSystemSnapshot> snapshotListener) {
+        this.snapshotListener = snapshotListener;
+    }
+
     /**
      * The options to configure the traversal.
      *
@@ -81,35 +169,84 @@ public class FileEventRecursiveDirectoryScanner {
         this.fileVisitOptions.addAll(Arrays.asList(fileVisitOptions));
     }
 
+    @Override
     public List<FileEvent> listFileEvents(String locationId, Path directory) throws IllegalArgumentException {
+        List<FileEvent> events = new ArrayList<>();
+        scanFileEvents(locationId, directory, events::add);
+        return events;
+    }
+
+    @Override
+    public void scanFileEvents(String locationId, Path directory, Consumer<FileEvent> consumer)
+            throws IllegalArgumentException {
+        if (initialFileSystemView != null) {
+            fileSystemView = initialFileSystemView.get();
+            initialFileSystemView = null;
+        } else if (snapshotListener != null) {
+            snapshotListener.accept(fileSystemView);
+        }
+        final long scanStart = System.currentTimeMillis();
+        final boolean deepScan = deepScanPeriod == 0 || scanStart - lastDeepScan >= deepScanPeriod;
+        final boolean followLinks = fileVisitOptions.contains(FileVisitOption.FOLLOW_LINKS);
+        final SortedFileWalker sortedWalker = sortedWalk && !followLinks ?
+                new SortedFileWalker(filter, fileSystemView, deepScan ? Collections.emptyMap() : directories) :
+                null;
         try {
-            RecursiveFileVisitor visitor = new RecursiveFileVisitor(filter);
-            Files.walkFileTree(directory, this.fileVisitOptions, this.maxDepth, visitor);
-            return update(locationId, directory, visitor.getFiles());
+            final Iterator<FileStatic> files = sortedWalker != null ? sortedWalker.walk(directory, maxDepth) :
+                    walk(directory, followLinks);
+            fileSystemView = fileSystemView.diff(files, snapshotStorage,
+                    (type, file) -> consumer.accept(new FileEvent(type, locationId, directory, file)));
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
+        } catch (UncheckedIOException e) {
+            throw new IllegalArgumentException(e.getCause());
+        }
+        if (sortedWalker != null) {
+            directories = deepScanPeriod > 0 ? sortedWalker.getDirectoryRecords() : Collections.emptyMap();
+            if (deepScan) {
+                lastDeepScan = scanStart;
+            }
+            lastScanStatistics = sortedWalker.getStatistics();
+            logger.debug("Scan of {} listed {} directories and skipped {}, read {} files and skipped {}", directory,
+                    lastScanStatistics.getDirectoriesListed(), lastScanStatistics.getDirectoriesSkipped(),
+                    lastScanStatistics.getFilesRead(), lastScanStatistics.getFilesSkipped());
         }
     }
 
-    private List<FileEvent> update(String locationId, Path directory, Map<String, FileStatic> newFileSystemView) {
-        List<FileEvent> events = new ArrayList<>();
-        newFileSystemView.forEach((absolutePath, newFile) -> {
-            FileStatic currentFile = fileSystemView.get(absolutePath);
-            if (currentFile == null) {
-                events.add(FileEvent.created(locationId, directory, newFile));
-            } else {
-                fileSystemView.remove(absolutePath);
-                if (currentFile.lastModified() < newFile.lastModified()) {
-                    events.add(FileEvent.updated(locationId, directory, newFile));
-                }
-            }
-        });
-        fileSystemView.values().stream().forEach(file -> events.add(FileEvent.deleted(locationId, directory, file)));
-        fileSystemView = newFileSystemView;
-        return events;
+    /**
+     * @return statistics of the last scan when it walked the directory tree in sorted order.
+     */
+    public Optional<ScanStatistics> getLastScanStatistics() {
+        return Optional.ofNullable(lastScanStatistics);
     }
 
+    /**
+     * @return files of the directory tree in {@link FileSystemSnapshot#PATH_ORDER}.
+     */
+    private Iterator<FileStatic> walk(Path directory, boolean followLinks) throws IOException {
+        final Map<String, FileStatic> files;
+        if (parallelism > 1 && !followLinks) {
+            files = new ParallelFileWalker(parallelism, filter).walk(directory, maxDepth);
+        } else {
+            RecursiveFileVisitor visitor = new RecursiveFileVisitor(filter);
+            Files.walkFileTree(directory, this.fileVisitOptions, this.maxDepth, visitor);
+            files = visitor.getFiles();
+        }
+        List<FileStatic> sortedFiles = new ArrayList<>(files.values());
+        sortedFiles.sort(Comparator.comparing(FileStatic::getAbsolutePath, FileSystemSnapshot.PATH_ORDER));
+        return sortedFiles.iterator();
+    }
+
+    @Override
     public void initializeDirectoryStatus(Map<String, FileStatic> fileSystemView) {
-        this.fileSystemView = fileSystemView;
+        this.fileSystemView = FileSystemSnapshot.of(fileSystemView, snapshotStorage);
+        this.initialFileSystemView = null;
+        this.directories = Collections.emptyMap();
+    }
+
+    @Override
+    public void initializeDirectoryStatus(Supplier<FileSystemSnapshot> fileSystemView) {
+        this.initialFileSystemView = fileSystemView;
+        this.directories = Collections.emptyMap();
     }
 }
@@ -0,0 +1,85 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Produces the {@link FileEvent}s of a staging area by comparing its current content with the view of the previous
+ * scan.
+ * See {@link Type} and {@link FileEventScannerConfiguration}.
+ */
+public interface FileEventScanner {
+
+    /**
+     * A recursive scanner walks the whole tree of the staging area on every scan.
+     * A watch scanner registers the directories of the staging area with a {@link java.nio.file.WatchService} and
+     * only looks at the paths reported by its notifications, the whole tree is walked once every reconciliation
+     * period.
+     * A sorted scanner walks the whole tree like a recursive scanner, visiting the entries of each directory sorted by
+     * name, and compares the files with the snapshot of the previous scan while it walks.
+     */
+    enum Type {
+        RECURSIVE, WATCH, SORTED
+    }
+
+    /**
+     * Sets a custom filter to be used by this scanner. The filter will get a
+     * chance to reject files before the scanner presents the event sequence.
+     *
+     * @param filter the custom filter to be used
+     */
+    void setFilter(AbstractFileListFilter<File> filter);
+
+    /**
+     * Sets the view of the staging area known before the first scan.
+     *
+     * @param fileSystemView files by absolute path
+     */
+    void initializeDirectoryStatus(Map<String, FileStatic> fileSystemView);
+
+    /**
+     * Sets the view of the staging area known before the first scan, the supplier is called by the first scan so
+     * that the view is not loaded before the staging area is polled.
+     *
+     * @param fileSystemView supplier of the snapshot of the staging area
+     */
+    void initializeDirectoryStatus(Supplier<FileSystemSnapshot> fileSystemView);
+
+    List<FileEvent> listFileEvents(String locationId, Path directory) throws IllegalArgumentException;
+
+    /**
+     * Scans the staging area and passes each event to the consumer, a scanner that finds the events while it walks
+     * the staging area passes them before the scan finishes.
+     */
+    default void scanFileEvents(String locationId, Path directory, Consumer<FileEvent> consumer)
+            throws IllegalArgumentException {
+        listFileEvents(locationId, directory).forEach(consumer);
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Value class which selects the {@link FileEventScanner} implementation used to discover the files of each staging
+ * area.
+ */
+public class FileEventScannerConfiguration {
+
+    private final FileEventScanner.Type scannerType;
+
+    /**
+     * Specifies the time in milliseconds between full walks of a staging area when the type of scanner is
+     * {@link FileEventScanner.Type#WATCH}.
+     */
+    private final long reconciliationPeriod;
+
+    /**
+     * Specifies where the view of the staging area is kept between scans when the type of scanner is
+     * {@link FileEventScanner.Type#RECURSIVE} or {@link FileEventScanner.Type#SORTED}.
+     */
+    private final FileSystemSnapshot.Storage snapshotStorage;
+
+    /**
+     * Specifies the number of events that a scan running in the background can pass to the poller before it waits,
+     * 0 to scan on the polling thread. See {@link FileEventMessageSource#setStreamCapacity(int)}.
+     */
+    private final int streamCapacity;
+
+    /**
+     * Specifies the time in milliseconds between scans that list every directory when the type of scanner is
+     * {@link FileEventScanner.Type#SORTED}, 0 to list every directory on every scan.
+     * See {@link FileEventRecursiveDirectoryScanner#setDeepScanPeriod(long)}.
+     */
+    private final long deepScanPeriod;
+
+    public FileEventScannerConfiguration(final FileEventScanner.Type scannerType, final long reconciliationPeriod) {
+        this(scannerType, reconciliationPeriod, FileSystemSnapshot.Storage.HEAP, 0);
+    }
+
+    public FileEventScannerConfiguration(final FileEventScanner.Type scannerType, final long reconciliationPeriod,
+                                         final FileSystemSnapshot.Storage snapshotStorage, final int streamCapacity) {
+        this(scannerType, reconciliationPeriod, snapshotStorage, streamCapacity, 0);
+    }
+
+    public FileEventScannerConfiguration(final FileEventScanner.Type scannerType, final long reconciliationPeriod,
+                                         final FileSystemSnapshot.Storage snapshotStorage, final int streamCapacity,
+                                         final long deepScanPeriod) {
+        this.scannerType = scannerType;
+        this.reconciliationPeriod = reconciliationPeriod;
+        this.snapshotStorage = snapshotStorage;
+        this.streamCapacity = streamCapacity;
+        this.deepScanPeriod = deepScanPeriod;
+    }
+
+    public FileEventScannerConfiguration() {
+        this(FileEventScanner.Type.RECURSIVE, 0);
+    }
+
+    public FileEventScanner create(final int parallelism) {
+        return create(parallelism, null);
+    }
+
+    /**
+     * @param parallelism      number of threads that walk the directory tree of a recursive scanner.
+     * @param snapshotListener receives the snapshot of the previous scan before each scan of a recursive or sorted
+     *                         scanner, can be null.
+     */
+    public FileEventScanner create(final int parallelism, final Consumer<FileSystemSnapshot> snapshotListener) {
+        switch (scannerType) {
+            case RECURSIVE:
+            case SORTED:
+                final FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+                scanner.setParallelism(parallelism);
+                scanner.setSortedWalk(scannerType == FileEventScanner.Type.SORTED);
+                scanner.setSnapshotStorage(snapshotStorage);
+                scanner.setSnapshotListener(snapshotListener);
+                if (scannerType == FileEventScanner.Type.SORTED) {
+                    scanner.setDeepScanPeriod(deepScanPeriod);
+                }
+                return scanner;
+            case WATCH:
+                return new FileEventWatchServiceScanner(reconciliationPeriod, TimeUnit.MILLISECONDS);
+            default:
+                final String message = String.format("Unsupported FileEventScanner type: %s. " +
+                        "Possible types are: %s", scannerType, Arrays.toString(FileEventScanner.Type.values()));
+                throw new IllegalArgumentException(message);
+        }
+    }
+
+    public FileEventScanner.Type getScannerType() {
+        return scannerType;
+    }
+
+    public long getReconciliationPeriod() {
+        return reconciliationPeriod;
+    }
+
+    public FileSystemSnapshot.Storage getSnapshotStorage() {
+        return snapshotStorage;
+    }
+
+    public int getStreamCapacity() {
+        return streamCapacity;
+    }
+
+    public long getDeepScanPeriod() {
+        return deepScanPeriod;
+    }
+
+}
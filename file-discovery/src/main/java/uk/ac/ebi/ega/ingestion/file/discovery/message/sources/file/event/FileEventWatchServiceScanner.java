@@ -0,0 +1,415 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import org.springframework.integration.file.filters.IgnoreHiddenFileListFilter;
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Scanner that follows the changes of a staging area through a {@link WatchService} instead of walking the whole tree
+ * on every scan. Every accepted directory is registered when it is walked, afterwards each scan only looks at the
+ * paths reported by the notifications received since the previous scan. When the notifications of a directory
+ * overflow its subtree is walked again, and the whole tree is walked to reconcile the view once every reconciliation
+ * period, which also covers the changes that the underlying file system does not notify.
+ * <p>
+ * A directory that cannot be watched, for instance because the limit of watches of the system has been reached, makes
+ * the scanner fall back to a {@link FileEventRecursiveDirectoryScanner} that walks the whole tree on every scan, for
+ * as long as this scanner is used.
+ */
+public class FileEventWatchServiceScanner implements FileEventScanner, Lifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileEventWatchServiceScanner.class);
+
+    private final long reconciliationPeriodNanos;
+
+    private volatile AbstractFileListFilter<File> filter;
+
+    /**
+     * Known files by absolute path, sorted so that the files of a subtree are a contiguous range.
+     */
+    private NavigableMap<String, FileStatic> fileSystemView;
+
+    private Supplier<FileSystemSnapshot> initialFileSystemView;
+
+    private final Map<WatchKey, Path> watchKeys;
+
+    private final Set<Path> watchedDirectories;
+
+    /**
+     * Paths whose walk failed because they changed while they were walked, they are checked again on the next scan.
+     */
+    private final Set<Path> pendingPaths;
+
+    private WatchService watchService;
+
+    private Path watchedDirectory;
+
+    private long lastReconciliation;
+
+    private volatile boolean running;
+
+    /**
+     * Scanner used instead of the watch service once a directory could not be watched.
+     */
+    private FileEventRecursiveDirectoryScanner fallbackScanner;
+
+    public FileEventWatchServiceScanner(long reconciliationPeriod, TimeUnit timeUnit) {
+        this.reconciliationPeriodNanos = timeUnit.toNanos(reconciliationPeriod);
+        this.filter = new IgnoreHiddenFileListFilter();
+        this.fileSystemView = new TreeMap<>();
+        this.watchKeys = new HashMap<>();
+        this.watchedDirectories = new HashSet<>();
+        this.pendingPaths = new LinkedHashSet<>();
+    }
+
+    @Override
+    public synchronized void setFilter(AbstractFileListFilter<File> filter) {
+        this.filter = filter;
+        if (fallbackScanner != null) {
+            fallbackScanner.setFilter(filter);
+        }
+    }
+
+    @Override
+    public synchronized void initializeDirectoryStatus(Map<String, FileStatic> fileSystemView) {
+        this.fileSystemView = new TreeMap<>(fileSystemView);
+        this.initialFileSystemView = null;
+        if (fallbackScanner != null) {
+            fallbackScanner.initializeDirectoryStatus(fileSystemView);
+        }
+    }
+
+    @Override
+    public synchronized void initializeDirectoryStatus(Supplier<FileSystemSnapshot> fileSystemView) {
+        this.initialFileSystemView = fileSystemView;
+        if (fallbackScanner != null) {
+            fallbackScanner.initializeDirectoryStatus(fileSystemView);
+        }
+    }
+
+    @Override
+    public synchronized List<FileEvent> listFileEvents(String locationId, Path directory)
+            throws IllegalArgumentException {
+        if (fallbackScanner != null) {
+            return fallbackScanner.listFileEvents(locationId, directory);
+        }
+        if (initialFileSystemView != null) {
+            fileSystemView = new TreeMap<>();
+            initialFileSystemView.get().cursor().forEachRemaining(file ->
+                    fileSystemView.put(file.getAbsolutePath(), file));
+            initialFileSystemView = null;
+        }
+        // Events found before a directory fails to be watched are already part of the view, they are kept
+        final List<FileEvent> events = new ArrayList<>();
+        try {
+            if (watchService == null || !directory.equals(watchedDirectory) || isReconciliationDue()) {
+                reconcile(locationId, directory, events);
+            } else {
+                processNotifications(locationId, directory, events);
+            }
+            return events;
+        } catch (WatchRegistrationException e) {
+            logger.warn("{} could not be watched, {} is walked on every scan from now on: {}", e.getDirectory(),
+                    directory, e.getCause().getMessage());
+            closeWatchService();
+            fallbackScanner = new FileEventRecursiveDirectoryScanner();
+            fallbackScanner.setFilter(filter);
+            fallbackScanner.initializeDirectoryStatus(fileSystemView);
+            fileSystemView = new TreeMap<>();
+            events.addAll(fallbackScanner.listFileEvents(locationId, directory));
+            return events;
+        } catch (IOException e) {
+            closeWatchService();
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private boolean isReconciliationDue() {
+        return System.nanoTime() - lastReconciliation >= reconciliationPeriodNanos;
+    }
+
+    /**
+     * Registers every directory with a new watch service and walks the whole tree.
+     */
+    private void reconcile(String locationId, Path directory, List<FileEvent> events) throws IOException {
+        logger.info("Reconciling the view of {} with a full walk", directory);
+        closeWatchService();
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new WatchRegistrationException(directory, e);
+        }
+        watchedDirectory = directory;
+        lastReconciliation = System.nanoTime();
+        pendingPaths.clear();
+        rescanSubtree(locationId, directory, directory, events);
+    }
+
+    private void processNotifications(String locationId, Path directory, List<FileEvent> events)
+            throws IOException {
+        final Set<Path> changedPaths = new TreeSet<>(pendingPaths);
+        pendingPaths.clear();
+        WatchKey key = watchService.poll();
+        while (key != null) {
+            final Path watchedPath = watchKeys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (watchedPath == null) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.warn("Notifications of {} overflowed, walking its subtree again", watchedPath);
+                    changedPaths.add(watchedPath);
+                    continue;
+                }
+                final Path path = watchedPath.resolve((Path) event.context());
+                // The content of a directory that is already watched is notified by the directory itself
+                if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY || !watchedDirectories.contains(path)) {
+                    changedPaths.add(path);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(watchKeys.remove(key));
+            }
+            key = watchService.poll();
+        }
+
+        Path lastSubtree = null;
+        // Sorted paths place the content of a directory right after it, it is covered by the walk of the directory
+        for (Path path : changedPaths) {
+            if (lastSubtree != null && path.startsWith(lastSubtree)) {
+                continue;
+            }
+            if (reconcilePath(locationId, directory, path, events)) {
+                lastSubtree = path;
+            }
+        }
+    }
+
+    /**
+     * @return true if the subtree of the path has been reconciled.
+     */
+    private boolean reconcilePath(String locationId, Path directory, Path path, List<FileEvent> events)
+            throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            removeSubtree(locationId, directory, path, events);
+            return true;
+        }
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            rescanSubtree(locationId, directory, path, events);
+            return true;
+        }
+        final File file = path.toFile();
+        if (filter.accept(file)) {
+            updateFile(locationId, directory, new FileStatic(file), events);
+        }
+        return false;
+    }
+
+    private void rescanSubtree(String locationId, Path directory, Path subtree, List<FileEvent> events)
+            throws IOException {
+        final WatchingFileVisitor visitor = new WatchingFileVisitor(filter);
+        try {
+            walk(subtree, visitor);
+        } catch (NoSuchFileException e) {
+            logger.debug("{} changed while it was walked, it will be checked on the next scan", subtree);
+            pendingPaths.add(subtree);
+            return;
+        }
+
+        final Map<String, FileStatic> files = visitor.getFiles();
+        for (String absolutePath : new ArrayList<>(getSubtreeView(subtree.toString()).keySet())) {
+            if (!files.containsKey(absolutePath)) {
+                events.add(FileEvent.deleted(locationId, directory, fileSystemView.remove(absolutePath)));
+            }
+        }
+        files.values().forEach(file -> updateFile(locationId, directory, file, events));
+    }
+
+    private static void walk(Path subtree, WatchingFileVisitor visitor) throws IOException {
+        try {
+            Files.walkFileTree(subtree, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, visitor);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void removeSubtree(String locationId, Path directory, Path subtree, List<FileEvent> events) {
+        final FileStatic file = fileSystemView.remove(subtree.toString());
+        if (file != null) {
+            events.add(FileEvent.deleted(locationId, directory, file));
+        }
+        final Map<String, FileStatic> subtreeView = getSubtreeView(subtree.toString());
+        subtreeView.values().forEach(deleted -> events.add(FileEvent.deleted(locationId, directory, deleted)));
+        subtreeView.clear();
+    }
+
+    private void updateFile(String locationId, Path directory, FileStatic file, List<FileEvent> events) {
+        final FileStatic currentFile = fileSystemView.put(file.getAbsolutePath(), file);
+        if (currentFile == null) {
+            events.add(FileEvent.created(locationId, directory, file));
+        } else if (currentFile.lastModified() < file.lastModified()) {
+            events.add(FileEvent.updated(locationId, directory, file));
+        }
+    }
+
+    /**
+     * @return view of the known files inside the directory, backed by the view of the staging area.
+     */
+    private NavigableMap<String, FileStatic> getSubtreeView(String directory) {
+        final String prefix = directory.endsWith(File.separator) ? directory : directory + File.separator;
+        return fileSystemView.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private void register(Path directory) throws WatchRegistrationException {
+        final WatchKey key;
+        try {
+            key = watch(directory, watchService);
+        } catch (IOException e) {
+            throw new WatchRegistrationException(directory, e);
+        }
+        watchKeys.put(key, directory);
+        watchedDirectories.add(directory);
+    }
+
+    /**
+     * Registers the directory with the watch service, fails once the limit of watches of the system is reached.
+     */
+    WatchKey watch(Path directory, WatchService watchService) throws IOException {
+        return directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private void closeWatchService() {
+        watchKeys.clear();
+        watchedDirectories.clear();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warn("Watch service of {} could not be closed: {}", watchedDirectory, e.getMessage());
+            }
+            watchService = null;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Releases the watch service, the next scan walks the whole tree again.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        closeWatchService();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    synchronized Set<Path> getWatchedDirectories() {
+        return Collections.unmodifiableSet(new HashSet<>(watchedDirectories));
+    }
+
+    synchronized boolean isFallenBack() {
+        return fallbackScanner != null;
+    }
+
+    /**
+     * Visitor that registers every accepted directory before its content is listed, so that no change made after the
+     * listing is missed.
+     */
+    private class WatchingFileVisitor extends RecursiveFileVisitor {
+
+        WatchingFileVisitor(AbstractFileListFilter<File> filter) {
+            super(filter);
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) {
+            final FileVisitResult result = super.preVisitDirectory(path, basicFileAttributes);
+            if (result == FileVisitResult.CONTINUE) {
+                try {
+                    register(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * A directory could not be registered with the watch service.
+     */
+    private static class WatchRegistrationException extends IOException {
+
+        private final Path directory;
+
+        WatchRegistrationException(Path directory, IOException cause) {
+            super(cause);
+            this.directory = directory;
+        }
+
+        Path getDirectory() {
+            return directory;
+        }
+
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks a directory tree on a {@link ForkJoinPool}, each directory is listed by its own task and its subdirectories
+ * are forked as new tasks, so that the latency of the metadata requests of a networked file system is spread over
+ * the threads of the pool. Files are accepted or rejected with the same filter semantics as
+ * {@link RecursiveFileVisitor}, and only the attributes read while listing each directory are used.
+ * <p>
+ * Symbolic links are not followed, the walk of a tree with cycles would never end.
+ */
+public class ParallelFileWalker {
+
+    private final int parallelism;
+
+    private final AbstractFileListFilter<File> filter;
+
+    public ParallelFileWalker(int parallelism, AbstractFileListFilter<File> filter) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.filter = filter;
+    }
+
+    /**
+     * @param maxDepth the maximum number of directory levels to visit
+     * @return accepted files by absolute path
+     * @throws IOException if a directory or a file could not be read
+     */
+    public Map<String, FileStatic> walk(Path directory, int maxDepth) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+        final Map<String, FileStatic> files = new ConcurrentHashMap<>();
+        if (!attributes.isDirectory() || maxDepth == 0) {
+            addIfAccepted(new AttributedFile(directory, attributes), files);
+            return files;
+        }
+        if (!filter.accept(new AttributedFile(directory, attributes))) {
+            return files;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(directory, 0, maxDepth, files));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        return files;
+    }
+
+    private void addIfAccepted(AttributedFile file, Map<String, FileStatic> files) {
+        if (filter.accept(file)) {
+            final FileStatic fileStatic = file.toFileStatic();
+            files.put(fileStatic.getAbsolutePath(), fileStatic);
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+
+        private final Path directory;
+
+        private final int depth;
+
+        private final int maxDepth;
+
+        private final Map<String, FileStatic> files;
+
+        DirectoryTask(Path directory, int depth, int maxDepth, Map<String, FileStatic> files) {
+            this.directory = directory;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            final List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    final BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    final AttributedFile file = new AttributedFile(entry, attributes);
+                    // Like Files.walkFileTree, directories at the maximum depth are visited as files
+                    if (!attributes.isDirectory() || depth + 1 >= maxDepth) {
+                        addIfAccepted(file, files);
+                    } else if (filter.accept(file)) {
+                        final DirectoryTask task = new DirectoryTask(entry, depth + 1, maxDepth, files);
+                        task.fork();
+                        subdirectories.add(task);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+
+    }
+
+}
@@ -58,8 +58,8 @@ public class RecursiveFileVisitor implements FileVisitor<Path> {
     public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes basicFileAttributes) {
         Objects.requireNonNull(path);
         Objects.requireNonNull(basicFileAttributes);
-        File file = path.toFile();
-        if (file.isDirectory() && !filter.accept(file)) {
+        File file = new AttributedFile(path, basicFileAttributes);
+        if (!filter.accept(file)) {
             return FileVisitResult.SKIP_SUBTREE;
         }
         return FileVisitResult.CONTINUE;
@@ -69,9 +69,9 @@ public class RecursiveFileVisitor implements FileVisitor<Path> {
     public FileVisitResult visitFile(Path path, BasicFileAttributes basicFileAttributes) {
         Objects.requireNonNull(path);
         Objects.requireNonNull(basicFileAttributes);
-        File file = path.toFile();
+        AttributedFile file = new AttributedFile(path, basicFileAttributes);
         if (filter.accept(file)) {
-            FileStatic fileStatic = new FileStatic(file);
+            FileStatic fileStatic = file.toFileStatic();
             this.files.put(fileStatic.getAbsolutePath(), fileStatic);
         }
         return FileVisitResult.CONTINUE;
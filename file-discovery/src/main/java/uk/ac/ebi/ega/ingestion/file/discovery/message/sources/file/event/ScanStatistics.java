@@ -0,0 +1,84 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+/**
+ * Number of directories and files that a scan read from the file system or took from the previous scan.
+ */
+public class ScanStatistics {
+
+    private final boolean deepScan;
+
+    private long directoriesListed;
+
+    private long directoriesSkipped;
+
+    private long filesRead;
+
+    private long filesSkipped;
+
+    public ScanStatistics(boolean deepScan) {
+        this.deepScan = deepScan;
+    }
+
+    void directoryListed() {
+        directoriesListed++;
+    }
+
+    void directorySkipped() {
+        directoriesSkipped++;
+    }
+
+    void filesRead(int count) {
+        filesRead += count;
+    }
+
+    void fileSkipped() {
+        filesSkipped++;
+    }
+
+    /**
+     * @return true if every directory was listed regardless of the previous scan.
+     */
+    public boolean isDeepScan() {
+        return deepScan;
+    }
+
+    public long getDirectoriesListed() {
+        return directoriesListed;
+    }
+
+    public long getDirectoriesSkipped() {
+        return directoriesSkipped;
+    }
+
+    /**
+     * @return number of entries whose attributes were read from the file system.
+     */
+    public long getFilesRead() {
+        return filesRead;
+    }
+
+    /**
+     * @return number of files taken from the previous scan without reading their attributes.
+     */
+    public long getFilesSkipped() {
+        return filesSkipped;
+    }
+
+}
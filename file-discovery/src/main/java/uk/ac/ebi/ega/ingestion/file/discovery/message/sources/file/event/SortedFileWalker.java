@@ -0,0 +1,282 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks a directory tree depth first visiting the entries of each directory sorted by name, so that the files are
+ * returned in {@link FileSystemSnapshot#PATH_ORDER} and can be merged with a snapshot while the tree is walked. The
+ * walk is lazy, only the entries of the directories on the path to the current file are held in memory. Files are
+ * accepted or rejected with the same filter semantics as {@link RecursiveFileVisitor}.
+ * <p>
+ * Symbolic links are not followed, the walk of a tree with cycles would never end.
+ * <p>
+ * Given the snapshot and the directories of the previous walk, a directory whose modification time and size have not
+ * changed is not listed again, its files are taken from the previous snapshot and only its subdirectories are read
+ * from the file system. The size and modification time of those files are not refreshed, a file rewritten in place is
+ * only seen by a walk that lists every directory.
+ */
+public class SortedFileWalker {
+
+    /**
+     * Lower than the first character of any entry of a directory in {@link FileSystemSnapshot#PATH_ORDER}, but
+     * greater than the separator, so a path followed by it is greater than the paths of all the files below it.
+     */
+    private static final char SUBTREE_END = '\u0000';
+
+    private final AbstractFileListFilter<File> filter;
+
+    private final FileSystemSnapshot previousSnapshot;
+
+    private final Map<String, DirectoryRecord> previousDirectories;
+
+    private final Map<String, DirectoryRecord> directoryRecords;
+
+    private final ScanStatistics statistics;
+
+    public SortedFileWalker(AbstractFileListFilter<File> filter) {
+        this(filter, FileSystemSnapshot.empty(), Collections.emptyMap());
+    }
+
+    /**
+     * @param previousSnapshot    files returned by the previous walk
+     * @param previousDirectories directories listed by the previous walk, empty to list every directory
+     */
+    SortedFileWalker(AbstractFileListFilter<File> filter, FileSystemSnapshot previousSnapshot,
+                     Map<String, DirectoryRecord> previousDirectories) {
+        this.filter = filter;
+        this.previousSnapshot = previousSnapshot;
+        this.previousDirectories = previousDirectories;
+        this.directoryRecords = new HashMap<>();
+        this.statistics = new ScanStatistics(previousDirectories.isEmpty());
+    }
+
+    /**
+     * @return directories walked, by absolute path, complete once the files of the walk have all been iterated.
+     */
+    Map<String, DirectoryRecord> getDirectoryRecords() {
+        return directoryRecords;
+    }
+
+    /**
+     * @return statistics of the walk, complete once the files of the walk have all been iterated.
+     */
+    public ScanStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param maxDepth the maximum number of directory levels to visit
+     * @return iterator over the accepted files, which throws {@link UncheckedIOException} if a directory could not be
+     * read
+     * @throws IOException if the directory could not be read
+     */
+    public Iterator<FileStatic> walk(Path directory, int maxDepth) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+        final AttributedFile root = new AttributedFile(directory, attributes);
+        if (!attributes.isDirectory() || maxDepth == 0) {
+            return filter.accept(root) ? Collections.singletonList(root.toFileStatic()).iterator() :
+                    Collections.emptyIterator();
+        }
+        if (!filter.accept(root)) {
+            return Collections.emptyIterator();
+        }
+        return new SortedIterator(root, maxDepth);
+    }
+
+    private static List<AttributedFile> list(Path directory) throws IOException {
+        final List<AttributedFile> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                entries.add(new AttributedFile(entry, Files.readAttributes(entry, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS)));
+            }
+        }
+        entries.sort(Comparator.comparing(File::getName));
+        return entries;
+    }
+
+    /**
+     * File of a directory that was not listed, taken from the previous snapshot.
+     */
+    private static class KnownFile extends File {
+
+        private final FileStatic file;
+
+        KnownFile(FileStatic file) {
+            super(file.getAbsolutePath());
+            this.file = file;
+        }
+
+    }
+
+    private class SortedIterator implements Iterator<FileStatic> {
+
+        private final int maxDepth;
+
+        /**
+         * Remaining entries of each directory on the path to the current file.
+         */
+        private final Deque<Iterator<File>> directories;
+
+        private FileStatic next;
+
+        SortedIterator(AttributedFile directory, int maxDepth) throws IOException {
+            this.maxDepth = maxDepth;
+            this.directories = new ArrayDeque<>();
+            this.directories.push(entries(directory, 1));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = findNext();
+            }
+            return next != null;
+        }
+
+        @Override
+        public FileStatic next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final FileStatic file = next;
+            next = null;
+            return file;
+        }
+
+        private FileStatic findNext() {
+            while (!directories.isEmpty()) {
+                final Iterator<File> entries = directories.peek();
+                if (!entries.hasNext()) {
+                    directories.pop();
+                    continue;
+                }
+                final File next = entries.next();
+                if (next instanceof KnownFile) {
+                    statistics.fileSkipped();
+                    return ((KnownFile) next).file;
+                }
+                final AttributedFile entry = (AttributedFile) next;
+                // Like Files.walkFileTree, directories at the maximum depth are visited as files
+                if (!entry.isDirectory() || directories.size() >= maxDepth) {
+                    if (filter.accept(entry)) {
+                        return entry.toFileStatic();
+                    }
+                } else if (filter.accept(entry)) {
+                    try {
+                        directories.push(entries(entry, directories.size() + 1));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param depth number of directories on the path to the entries, including the directory itself
+         * @return entries of the directory sorted by name
+         */
+        private Iterator<File> entries(AttributedFile directory, int depth) throws IOException {
+            final String path = directory.getAbsolutePath();
+            final DirectoryRecord record = previousDirectories.get(path);
+            if (record != null && record.isUnchanged(directory)) {
+                statistics.directorySkipped();
+                directoryRecords.put(path, record);
+                return reuse(path, record).iterator();
+            }
+            final long listedAt = System.currentTimeMillis();
+            final List<AttributedFile> entries = list(directory.toPath());
+            statistics.directoryListed();
+            statistics.filesRead(entries.size());
+            final List<String> subdirectories = new ArrayList<>();
+            if (depth < maxDepth) {
+                for (AttributedFile entry : entries) {
+                    if (entry.isDirectory() && filter.accept(entry)) {
+                        subdirectories.add(entry.getName());
+                    }
+                }
+            }
+            directoryRecords.put(path, new DirectoryRecord(directory.lastModified(), directory.length(), listedAt,
+                    subdirectories));
+            return new ArrayList<File>(entries).iterator();
+        }
+
+        /**
+         * @return files of the previous snapshot directly in the directory and its subdirectories, sorted by name
+         */
+        private List<File> reuse(String path, DirectoryRecord record) throws IOException {
+            final String prefix = path + File.separator;
+            final List<File> entries = new ArrayList<>();
+            FileSystemSnapshot.Cursor files = previousSnapshot.cursor(prefix);
+            while (files.hasNext()) {
+                final FileStatic file = files.next();
+                final String filePath = file.getAbsolutePath();
+                if (!filePath.startsWith(prefix)) {
+                    break;
+                }
+                final int separator = filePath.indexOf(File.separatorChar, prefix.length());
+                if (separator == -1) {
+                    entries.add(new KnownFile(file));
+                } else {
+                    // The files of a subdirectory are found when the subdirectory is walked
+                    files = previousSnapshot.cursor(filePath.substring(0, separator) + SUBTREE_END);
+                }
+            }
+            for (String name : record.getSubdirectories()) {
+                final Path subdirectory = Paths.get(path, name);
+                try {
+                    entries.add(new AttributedFile(subdirectory, Files.readAttributes(subdirectory,
+                            BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)));
+                } catch (NoSuchFileException e) {
+                    // Deleted after the directory was read, the directory is listed again on the next walk
+                }
+            }
+            statistics.filesRead(record.getSubdirectories().size());
+            entries.sort(Comparator.comparing(File::getName));
+            return entries;
+        }
+
+    }
+
+}
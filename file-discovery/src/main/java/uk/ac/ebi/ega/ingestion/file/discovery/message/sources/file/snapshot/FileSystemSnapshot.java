@@ -0,0 +1,490 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot;
+
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable view of the files of a staging area, sorted by path in {@link #PATH_ORDER}.
+ * <p>
+ * Paths are front coded, each entry only stores the bytes that differ from the previous path and every
+ * {@value #RESTART_INTERVAL} entries a restart point stores a complete path, which allows binary searches. Sizes and
+ * modification times are kept in a primitive buffer. The buffers are allocated on the heap or off-heap depending on
+ * the {@link Storage}, or mapped from a checkpoint by {@link SnapshotCheckpointStore}, so a snapshot of millions of
+ * files neither holds millions of objects nor repeats the common prefix of their paths.
+ * <p>
+ * A new snapshot is produced by {@link #diff(Iterator, Storage, Listener)}, a merge join of this snapshot with the
+ * files of a new scan sorted in the same order, which reports the changes while the new snapshot is built.
+ */
+public final class FileSystemSnapshot {
+
+    /**
+     * A heap snapshot is backed by arrays.
+     * An off-heap snapshot is backed by direct buffers, outside of the heap of the JVM.
+     */
+    public enum Storage {
+        HEAP, OFF_HEAP
+    }
+
+    /**
+     * Receives the changes found by {@link #diff(Iterator, Storage, Listener)}.
+     */
+    public interface Listener {
+
+        void onChange(FileEvent.Type type, FileStatic file);
+
+    }
+
+    /**
+     * Order of the paths in a snapshot. Paths are compared name by name, which is the order of a depth first walk
+     * that visits the entries of each directory sorted by name: the separator sorts before any other character.
+     */
+    public static final Comparator<String> PATH_ORDER = FileSystemSnapshot::comparePaths;
+
+    static final int RESTART_INTERVAL = 16;
+
+    private static final FileSystemSnapshot EMPTY = new Builder(Storage.HEAP).build();
+
+    private final int size;
+
+    private final ByteBuffer paths;
+
+    /**
+     * Length and modification time of each entry.
+     */
+    private final ByteBuffer attributes;
+
+    /**
+     * Position in the paths buffer of every {@value #RESTART_INTERVAL}th entry.
+     */
+    private final ByteBuffer restarts;
+
+    FileSystemSnapshot(int size, ByteBuffer paths, ByteBuffer attributes, ByteBuffer restarts) {
+        this.size = size;
+        this.paths = paths;
+        this.attributes = attributes;
+        this.restarts = restarts;
+    }
+
+    public static FileSystemSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param files files by absolute path, in any order
+     */
+    public static FileSystemSnapshot of(Map<String, FileStatic> files, Storage storage) {
+        final List<FileStatic> sortedFiles = new ArrayList<>(files.values());
+        sortedFiles.sort(Comparator.comparing(FileStatic::getAbsolutePath, PATH_ORDER));
+        final Builder builder = builder(storage);
+        sortedFiles.forEach(builder::add);
+        return builder.build();
+    }
+
+    public static Builder builder(Storage storage) {
+        return new Builder(storage);
+    }
+
+    public static int comparePaths(String path, String otherPath) {
+        final int length = Math.min(path.length(), otherPath.length());
+        for (int i = 0; i < length; i++) {
+            final char c1 = path.charAt(i);
+            final char c2 = otherPath.charAt(i);
+            if (c1 != c2) {
+                if (c1 == File.separatorChar) {
+                    return -1;
+                }
+                if (c2 == File.separatorChar) {
+                    return 1;
+                }
+                return Character.compare(c1, c2);
+            }
+        }
+        return Integer.compare(path.length(), otherPath.length());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of bytes used by the buffers of the snapshot.
+     */
+    public long getMemoryUsage() {
+        return (long) paths.capacity() + attributes.capacity() + restarts.capacity();
+    }
+
+    ByteBuffer getPaths() {
+        return paths.duplicate();
+    }
+
+    ByteBuffer getAttributes() {
+        return attributes.duplicate();
+    }
+
+    ByteBuffer getRestarts() {
+        return restarts.duplicate();
+    }
+
+    public Optional<FileStatic> find(String path) {
+        final Cursor cursor = cursor(path);
+        if (cursor.hasNext()) {
+            final FileStatic file = cursor.next();
+            if (file.getAbsolutePath().equals(path)) {
+                return Optional.of(file);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return iterator over the files of the snapshot in {@link #PATH_ORDER}.
+     */
+    public Cursor cursor() {
+        return new Cursor(0, 0);
+    }
+
+    /**
+     * @return iterator over the files of the snapshot whose path is not lower than the given path, in
+     * {@link #PATH_ORDER}.
+     */
+    public Cursor cursor(String fromPath) {
+        // Last restart point whose path is not greater than the path looked for
+        int low = 0;
+        int high = restarts.limit() / Integer.BYTES - 1;
+        int restart = 0;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final Cursor cursor = new Cursor(middle * RESTART_INTERVAL, restarts.getInt(middle * Integer.BYTES));
+            if (comparePaths(cursor.next().getAbsolutePath(), fromPath) <= 0) {
+                restart = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        final Cursor cursor = isEmpty() ? cursor() :
+                new Cursor(restart * RESTART_INTERVAL, restarts.getInt(restart * Integer.BYTES));
+        cursor.skipLowerThan(fromPath);
+        return cursor;
+    }
+
+    /**
+     * Compares this snapshot with the files of a new scan and builds the snapshot of the new scan. The files of this
+     * snapshot that are not found in the new scan are reported as deleted, the new ones as created and those whose
+     * modification time increased as updated.
+     *
+     * @param files   files of the new scan in {@link #PATH_ORDER}, without duplicates
+     * @param storage storage of the new snapshot
+     * @throws IllegalArgumentException if the files are not sorted
+     */
+    public FileSystemSnapshot diff(Iterator<FileStatic> files, Storage storage, Listener listener) {
+        final Builder builder = builder(storage);
+        final Cursor previousFiles = cursor();
+        FileStatic previous = previousFiles.hasNext() ? previousFiles.next() : null;
+        FileStatic current = files.hasNext() ? files.next() : null;
+        while (previous != null || current != null) {
+            final int comparison;
+            if (previous == null) {
+                comparison = 1;
+            } else if (current == null) {
+                comparison = -1;
+            } else {
+                comparison = comparePaths(previous.getAbsolutePath(), current.getAbsolutePath());
+            }
+
+            if (comparison < 0) {
+                listener.onChange(FileEvent.Type.DELETED, previous);
+                previous = previousFiles.hasNext() ? previousFiles.next() : null;
+                continue;
+            }
+            if (comparison > 0) {
+                listener.onChange(FileEvent.Type.CREATED, current);
+            } else {
+                if (previous.lastModified() < current.lastModified()) {
+                    listener.onChange(FileEvent.Type.UPDATED, current);
+                }
+                previous = previousFiles.hasNext() ? previousFiles.next() : null;
+            }
+            builder.add(current);
+            current = files.hasNext() ? files.next() : null;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a snapshot with the files of this snapshot and the given files, which replace the files of this snapshot
+     * with the same path.
+     *
+     * @param files   files in {@link #PATH_ORDER}, without duplicates
+     * @param storage storage of the new snapshot
+     * @throws IllegalArgumentException if the files are not sorted
+     */
+    public FileSystemSnapshot update(Iterator<FileStatic> files, Storage storage) {
+        return update(files, Collections.emptySet(), storage);
+    }
+
+    /**
+     * Builds a snapshot with the files of this snapshot that have not been deleted and the given files, which replace
+     * the files of this snapshot with the same path. A file that is both deleted and given was created again.
+     *
+     * @param files        files in {@link #PATH_ORDER}, without duplicates
+     * @param deletedPaths absolute paths of the files deleted
+     * @param storage      storage of the new snapshot
+     * @throws IllegalArgumentException if the files are not sorted
+     */
+    public FileSystemSnapshot update(Iterator<FileStatic> files, Set<String> deletedPaths, Storage storage) {
+        final Builder builder = builder(storage);
+        final Cursor previousFiles = cursor();
+        FileStatic previous = previousFiles.hasNext() ? previousFiles.next() : null;
+        FileStatic current = files.hasNext() ? files.next() : null;
+        while (previous != null || current != null) {
+            if (current == null ||
+                    (previous != null && comparePaths(previous.getAbsolutePath(), current.getAbsolutePath()) < 0)) {
+                if (!deletedPaths.contains(previous.getAbsolutePath())) {
+                    builder.add(previous);
+                }
+                previous = previousFiles.hasNext() ? previousFiles.next() : null;
+                continue;
+            }
+            if (previous != null && previous.getAbsolutePath().equals(current.getAbsolutePath())) {
+                previous = previousFiles.hasNext() ? previousFiles.next() : null;
+            }
+            builder.add(current);
+            current = files.hasNext() ? files.next() : null;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Iterator over the entries of a snapshot, each cursor decodes the front coded paths on its own.
+     */
+    public final class Cursor implements Iterator<FileStatic> {
+
+        private final ByteBuffer buffer;
+
+        private int index;
+
+        private byte[] path;
+
+        /**
+         * File already read by {@link #skipLowerThan(String)}.
+         */
+        private FileStatic pending;
+
+        private Cursor(int index, int position) {
+            this.buffer = paths.duplicate();
+            this.buffer.position(position);
+            this.index = index;
+            this.path = new byte[256];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending != null || index < size;
+        }
+
+        @Override
+        public FileStatic next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (pending != null) {
+                final FileStatic file = pending;
+                pending = null;
+                return file;
+            }
+            return read();
+        }
+
+        private void skipLowerThan(String fromPath) {
+            while (index < size) {
+                final FileStatic file = read();
+                if (comparePaths(file.getAbsolutePath(), fromPath) >= 0) {
+                    pending = file;
+                    return;
+                }
+            }
+        }
+
+        private FileStatic read() {
+            final int sharedLength = readVarInt(buffer);
+            final int suffixLength = readVarInt(buffer);
+            final int length = sharedLength + suffixLength;
+            if (length > path.length) {
+                path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+            }
+            buffer.get(path, sharedLength, suffixLength);
+            final FileStatic file = new FileStatic(new String(path, 0, length, StandardCharsets.UTF_8),
+                    attributes.getLong(index * 2 * Long.BYTES), attributes.getLong((index * 2 + 1) * Long.BYTES));
+            index++;
+            return file;
+        }
+
+    }
+
+    /**
+     * Builds a snapshot from files added in {@link #PATH_ORDER}.
+     */
+    public static final class Builder {
+
+        private final Storage storage;
+
+        private byte[] paths;
+
+        private int pathsLength;
+
+        private long[] attributes;
+
+        private int[] restarts;
+
+        private int size;
+
+        private byte[] previousPath;
+
+        private String previousAbsolutePath;
+
+        private Builder(Storage storage) {
+            this.storage = storage;
+            this.paths = new byte[1024];
+            this.attributes = new long[32];
+            this.restarts = new int[4];
+        }
+
+        public Builder add(FileStatic file) {
+            return add(file.getAbsolutePath(), file.length(), file.lastModified());
+        }
+
+        /**
+         * @throws IllegalArgumentException if the path is not greater than the previous one in {@link #PATH_ORDER}.
+         */
+        public Builder add(String absolutePath, long length, long lastModified) {
+            if (previousAbsolutePath != null && comparePaths(previousAbsolutePath, absolutePath) >= 0) {
+                throw new IllegalArgumentException("Path " + absolutePath + " is not sorted after " +
+                        previousAbsolutePath);
+            }
+            final byte[] path = absolutePath.getBytes(StandardCharsets.UTF_8);
+            int sharedLength = 0;
+            if (size % RESTART_INTERVAL == 0) {
+                final int restart = size / RESTART_INTERVAL;
+                if (restart == restarts.length) {
+                    restarts = Arrays.copyOf(restarts, restarts.length * 2);
+                }
+                restarts[restart] = pathsLength;
+            } else {
+                final int maxSharedLength = Math.min(previousPath.length, path.length);
+                while (sharedLength < maxSharedLength && previousPath[sharedLength] == path[sharedLength]) {
+                    sharedLength++;
+                }
+            }
+
+            ensurePathsCapacity(10 + path.length - sharedLength);
+            pathsLength = writeVarInt(paths, pathsLength, sharedLength);
+            pathsLength = writeVarInt(paths, pathsLength, path.length - sharedLength);
+            System.arraycopy(path, sharedLength, paths, pathsLength, path.length - sharedLength);
+            pathsLength += path.length - sharedLength;
+
+            if (size * 2 == attributes.length) {
+                attributes = Arrays.copyOf(attributes, attributes.length * 2);
+            }
+            attributes[size * 2] = length;
+            attributes[size * 2 + 1] = lastModified;
+            size++;
+            previousPath = path;
+            previousAbsolutePath = absolutePath;
+            return this;
+        }
+
+        private void ensurePathsCapacity(int bytes) {
+            if (pathsLength + bytes > paths.length) {
+                paths = Arrays.copyOf(paths, Math.max(pathsLength + bytes, paths.length * 2));
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public FileSystemSnapshot build() {
+            final int restartCount = (size + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+            final ByteBuffer pathsBuffer = allocate(pathsLength);
+            pathsBuffer.put(paths, 0, pathsLength).flip();
+            final ByteBuffer attributesBuffer = allocate(size * 2 * Long.BYTES);
+            attributesBuffer.asLongBuffer().put(attributes, 0, size * 2);
+            final ByteBuffer restartsBuffer = allocate(restartCount * Integer.BYTES);
+            restartsBuffer.asIntBuffer().put(restarts, 0, restartCount);
+            return new FileSystemSnapshot(size, pathsBuffer.asReadOnlyBuffer(), attributesBuffer.asReadOnlyBuffer(),
+                    restartsBuffer.asReadOnlyBuffer());
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            switch (storage) {
+                case HEAP:
+                    return ByteBuffer.allocate(capacity);
+                case OFF_HEAP:
+                    return ByteBuffer.allocateDirect(capacity);
+                default:
+                    final String message = String.format("Unsupported snapshot storage: %s. Possible storages " +
+                            "are: %s", storage, Arrays.toString(Storage.values()));
+                    throw new IllegalArgumentException(message);
+            }
+        }
+
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b = buffer.get();
+        while ((b & 0x80) != 0) {
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            b = buffer.get();
+        }
+        return value | (b << shift);
+    }
+
+}
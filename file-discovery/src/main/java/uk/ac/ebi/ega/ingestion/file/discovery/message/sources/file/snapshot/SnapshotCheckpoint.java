@@ -0,0 +1,53 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot;
+
+/**
+ * Snapshot of a staging area saved by {@link SnapshotCheckpointStore}, with the high-water mark of the changes of the
+ * staging area in the database that it already contains.
+ */
+public class SnapshotCheckpoint {
+
+    private final String locationPath;
+
+    private final long highWaterMark;
+
+    private final FileSystemSnapshot snapshot;
+
+    public SnapshotCheckpoint(String locationPath, long highWaterMark, FileSystemSnapshot snapshot) {
+        this.locationPath = locationPath;
+        this.highWaterMark = highWaterMark;
+        this.snapshot = snapshot;
+    }
+
+    public String getLocationPath() {
+        return locationPath;
+    }
+
+    /**
+     * @return time in epoch milliseconds of the last change in the database contained by the snapshot.
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public FileSystemSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+}
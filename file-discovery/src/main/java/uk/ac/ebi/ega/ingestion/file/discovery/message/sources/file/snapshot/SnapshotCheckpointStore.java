@@ -0,0 +1,174 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the snapshots of the staging areas in a local directory, one file per staging area.
+ * <p>
+ * A checkpoint file has a header with a format version, the location path, the high-water mark, the size of each
+ * section and a CRC32 checksum of the sections, followed by the buffers of the snapshot. Checkpoints are loaded by
+ * mapping the file in memory, the snapshot is read from the page cache instead of being copied to the heap. A
+ * checkpoint with another version, another location path or a wrong checksum is ignored.
+ */
+public class SnapshotCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCheckpointStore.class);
+
+    static final int MAGIC = 0x45474153;
+
+    static final int VERSION = 1;
+
+    private static final String EXTENSION = ".snapshot";
+
+    private final Path directory;
+
+    public SnapshotCheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Optional<SnapshotCheckpoint> load(String locationId, String locationPath) {
+        final Path file = getCheckpointFile(locationId);
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("Checkpoint {} could not be read: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+        try {
+            return read(file, buffer, locationPath);
+        } catch (RuntimeException e) {
+            logger.warn("Checkpoint {} is corrupted: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<SnapshotCheckpoint> read(Path file, ByteBuffer buffer, String locationPath) {
+        if (buffer.getInt() != MAGIC) {
+            logger.warn("Checkpoint {} is not a snapshot", file);
+            return Optional.empty();
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            logger.warn("Checkpoint {} has version {}, expected version {}", file, version, VERSION);
+            return Optional.empty();
+        }
+        final byte[] checkpointLocationPath = new byte[buffer.getInt()];
+        buffer.get(checkpointLocationPath);
+        if (!locationPath.equals(new String(checkpointLocationPath, StandardCharsets.UTF_8))) {
+            logger.warn("Checkpoint {} belongs to another location path", file);
+            return Optional.empty();
+        }
+        final long highWaterMark = buffer.getLong();
+        final int size = buffer.getInt();
+        final int pathsLength = buffer.getInt();
+        final int attributesLength = buffer.getInt();
+        final int restartsLength = buffer.getInt();
+        final long checksum = buffer.getLong();
+
+        final ByteBuffer sections = buffer.slice();
+        final CRC32 crc32 = new CRC32();
+        crc32.update(sections.duplicate());
+        if (crc32.getValue() != checksum ||
+                (long) pathsLength + attributesLength + restartsLength != sections.remaining()) {
+            logger.warn("Checkpoint {} has a wrong checksum", file);
+            return Optional.empty();
+        }
+        final FileSystemSnapshot snapshot = new FileSystemSnapshot(size,
+                slice(sections, 0, pathsLength),
+                slice(sections, pathsLength, attributesLength),
+                slice(sections, pathsLength + attributesLength, restartsLength));
+        return Optional.of(new SnapshotCheckpoint(locationPath, highWaterMark, snapshot));
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        return duplicate.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file which then replaces the previous checkpoint, a checkpoint is never
+     * left half written.
+     */
+    public void save(String locationId, SnapshotCheckpoint checkpoint) throws IOException {
+        final FileSystemSnapshot snapshot = checkpoint.getSnapshot();
+        final ByteBuffer paths = snapshot.getPaths();
+        final ByteBuffer attributes = snapshot.getAttributes();
+        final ByteBuffer restarts = snapshot.getRestarts();
+        final CRC32 crc32 = new CRC32();
+        crc32.update(paths.duplicate());
+        crc32.update(attributes.duplicate());
+        crc32.update(restarts.duplicate());
+
+        final byte[] locationPath = checkpoint.getLocationPath().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer header = ByteBuffer.allocate(44 + locationPath.length);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(locationPath.length)
+                .put(locationPath)
+                .putLong(checkpoint.getHighWaterMark())
+                .putInt(snapshot.size())
+                .putInt(paths.remaining())
+                .putInt(attributes.remaining())
+                .putInt(restarts.remaining())
+                .putLong(crc32.getValue())
+                .flip();
+
+        Files.createDirectories(directory);
+        final Path file = getCheckpointFile(locationId);
+        final Path temporaryFile = Files.createTempFile(directory, locationId, EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                for (ByteBuffer buffer : new ByteBuffer[]{header, paths, attributes, restarts}) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private Path getCheckpointFile(String locationId) {
+        return directory.resolve(locationId + EXTENSION);
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.ingestion;
+
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Index of the files of a staging area that make up an ingestion: an encrypted file {@code <name>.gpg}, the md5 of the
+ * encrypted file {@code <name>.gpg.md5} and the md5 of the plain file {@code <name>.md5}. The index is updated with
+ * the file events once they are persisted and only keeps the triples that have not been polled yet. A triple is
+ * polled once it is complete and its files are older than the cut off. A triple that changes after it was polled is
+ * completed with its other files from the database, the files missing for a batch of file events are loaded with one
+ * query without holding the lock of the index.
+ * <p>
+ * The whole staging area is loaded from the database on the first poll and once every reload period, which polls
+ * again the complete triples that are still in the staging area.
+ */
+public class IngestionCandidateIndex {
+
+    private static final String[] SUFFIXES = {".gpg", ".gpg.md5", ".md5"};
+
+    private static final int ENCRYPTED = 0;
+
+    private static final int ENCRYPTED_MD5 = 1;
+
+    private static final int PLAIN_MD5 = 2;
+
+    private final String locationId;
+
+    private final String accountId;
+
+    private final Path directory;
+
+    private final Function<String, Iterable<? extends StagingFile>> stagingAreaFiles;
+
+    private final BiFunction<String, Collection<String>, Iterable<? extends StagingFile>> stagingFiles;
+
+    private final long reloadPeriod;
+
+    /**
+     * Files of each triple by the path of the triple without suffix.
+     */
+    private final Map<String, FileStatic[]> triples;
+
+    private final Set<String> completeTriples;
+
+    private long lastLoad;
+
+    private boolean loaded;
+
+    /**
+     * @param stagingAreaFiles all the files of a staging area
+     * @param stagingFiles     the files of a staging area with any of the relative paths
+     * @param reloadPeriod     time in milliseconds between loads of the whole staging area, 0 to load it only once
+     */
+    public IngestionCandidateIndex(String locationId, String accountId, Path directory,
+                                   Function<String, Iterable<? extends StagingFile>> stagingAreaFiles,
+                                   BiFunction<String, Collection<String>, Iterable<? extends StagingFile>> stagingFiles,
+                                   long reloadPeriod) {
+        this.locationId = locationId;
+        this.accountId = accountId;
+        this.directory = directory;
+        this.stagingAreaFiles = stagingAreaFiles;
+        this.stagingFiles = stagingFiles;
+        this.reloadPeriod = reloadPeriod;
+        this.triples = new HashMap<>();
+        this.completeTriples = new HashSet<>();
+    }
+
+    /**
+     * Updates the index with a file event that has been persisted.
+     */
+    public void update(FileEvent fileEvent) {
+        update(Collections.singletonList(fileEvent));
+    }
+
+    /**
+     * Updates the index with a batch of file events that have been persisted, in order.
+     */
+    public void update(List<FileEvent> fileEvents) {
+        final Map<String, FileStatic> foundFiles = new HashMap<>();
+        final Set<String> searchedPaths = new HashSet<>();
+        while (true) {
+            final Set<String> missingPaths;
+            synchronized (this) {
+                if (!loaded) {
+                    // The first poll loads the staging area, including these changes
+                    return;
+                }
+                missingPaths = findMissingPaths(fileEvents, searchedPaths);
+                if (missingPaths.isEmpty()) {
+                    fileEvents.forEach(fileEvent -> update(fileEvent, foundFiles));
+                    return;
+                }
+            }
+            // A poll may remove more triples meanwhile, their files are searched on the next iteration
+            stagingFiles.apply(locationId, missingPaths).forEach(file ->
+                    foundFiles.put(file.getRelativePath(), file.toFileStatic()));
+            searchedPaths.addAll(missingPaths);
+        }
+    }
+
+    private void update(FileEvent fileEvent, Map<String, FileStatic> foundFiles) {
+        final String relativePath = fileEvent.getRelativePath();
+        final int member = getMember(relativePath);
+        if (member == -1) {
+            return;
+        }
+        final String name = relativePath.substring(0, relativePath.length() - SUFFIXES[member].length());
+        FileStatic[] files = triples.get(name);
+        if (fileEvent.getType() == FileEvent.Type.DELETED) {
+            if (files != null) {
+                files[member] = null;
+                completeTriples.remove(name);
+                if (files[ENCRYPTED] == null && files[ENCRYPTED_MD5] == null && files[PLAIN_MD5] == null) {
+                    triples.remove(name);
+                }
+            }
+            return;
+        }
+        if (files == null) {
+            files = findTriple(name, foundFiles);
+            triples.put(name, files);
+        }
+        files[member] = new FileStatic(relativePath, fileEvent.getSize(), fileEvent.getLastModified());
+        if (isComplete(files)) {
+            completeTriples.add(name);
+        }
+    }
+
+    /**
+     * @param cutOff time in milliseconds since the epoch, the files of a triple polled are modified before it.
+     * @return ingestion events of the complete triples whose files are older than the cut off, which are removed from
+     * the index.
+     */
+    public synchronized List<IngestionEvent> poll(long cutOff) {
+        final long now = System.currentTimeMillis();
+        if (!loaded || (reloadPeriod > 0 && now - lastLoad >= reloadPeriod)) {
+            load();
+            lastLoad = now;
+            loaded = true;
+        }
+        final List<IngestionEvent> events = new ArrayList<>();
+        final Iterator<String> iterator = completeTriples.iterator();
+        while (iterator.hasNext()) {
+            final String name = iterator.next();
+            final FileStatic[] files = triples.get(name);
+            if (files[ENCRYPTED].lastModified() < cutOff && files[ENCRYPTED_MD5].lastModified() < cutOff
+                    && files[PLAIN_MD5].lastModified() < cutOff) {
+                events.add(new IngestionEvent(accountId, locationId, directory, files[ENCRYPTED], files[PLAIN_MD5],
+                        files[ENCRYPTED_MD5]));
+                iterator.remove();
+                triples.remove(name);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @return number of triples in the index, complete or not.
+     */
+    public synchronized int size() {
+        return triples.size();
+    }
+
+    private void load() {
+        triples.clear();
+        completeTriples.clear();
+        stagingAreaFiles.apply(locationId).forEach(file -> {
+            final String relativePath = file.getRelativePath();
+            final int member = getMember(relativePath);
+            if (member == -1) {
+                return;
+            }
+            final String name = relativePath.substring(0, relativePath.length() - SUFFIXES[member].length());
+            final FileStatic[] files = triples.computeIfAbsent(name, key -> new FileStatic[SUFFIXES.length]);
+            files[member] = file.toFileStatic();
+            if (isComplete(files)) {
+                completeTriples.add(name);
+            }
+        });
+    }
+
+    /**
+     * @return paths of the files of the triples changed by the file events that are not in the index and have not been
+     * searched yet.
+     */
+    private Set<String> findMissingPaths(List<FileEvent> fileEvents, Set<String> searchedPaths) {
+        final Set<String> missingPaths = new LinkedHashSet<>();
+        for (FileEvent fileEvent : fileEvents) {
+            final String relativePath = fileEvent.getRelativePath();
+            final int member = getMember(relativePath);
+            if (member == -1 || fileEvent.getType() == FileEvent.Type.DELETED) {
+                continue;
+            }
+            final String name = relativePath.substring(0, relativePath.length() - SUFFIXES[member].length());
+            if (!triples.containsKey(name)) {
+                for (String suffix : SUFFIXES) {
+                    if (!searchedPaths.contains(name + suffix)) {
+                        missingPaths.add(name + suffix);
+                    }
+                }
+            }
+        }
+        return missingPaths;
+    }
+
+    private static FileStatic[] findTriple(String name, Map<String, FileStatic> foundFiles) {
+        final FileStatic[] files = new FileStatic[SUFFIXES.length];
+        for (int member = 0; member < SUFFIXES.length; member++) {
+            files[member] = foundFiles.get(name + SUFFIXES[member]);
+        }
+        return files;
+    }
+
+    private static boolean isComplete(FileStatic[] files) {
+        return files[ENCRYPTED] != null && files[ENCRYPTED_MD5] != null && files[PLAIN_MD5] != null;
+    }
+
+    /**
+     * @return the member of a triple of the file, or -1 if the file does not belong to a triple.
+     */
+    private static int getMember(String relativePath) {
+        for (int member = 0; member < SUFFIXES.length; member++) {
+            if (relativePath.endsWith(SUFFIXES[member])) {
+                return member;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -39,6 +39,8 @@ public class IngestionMessageSource extends AbstractMessageSource<IngestionEvent
 
     private final BiFunction<String, LocalDateTime, Iterable<? extends StagingFile>> supplier;
 
+    private final IngestionCandidateIndex candidateIndex;
+
     private final Queue<IngestionEvent> toBeReceived;
 
     private final ReentrantLock lock = new ReentrantLock();
@@ -54,6 +56,17 @@ public class IngestionMessageSource extends AbstractMessageSource<IngestionEvent
     public IngestionMessageSource(BiFunction<String, LocalDateTime, Iterable<? extends StagingFile>> supplier) {
         this.toBeReceived = new PriorityBlockingQueue<>(DEFAULT_INTERNAL_QUEUE_CAPACITY, null);
         this.supplier = supplier;
+        this.candidateIndex = null;
+    }
+
+    /**
+     * @param candidateIndex index updated with the changes of the staging area, polled instead of querying all the
+     *                       files of the staging area on each poll.
+     */
+    public IngestionMessageSource(IngestionCandidateIndex candidateIndex) {
+        this.toBeReceived = new PriorityBlockingQueue<>(DEFAULT_INTERNAL_QUEUE_CAPACITY, null);
+        this.supplier = null;
+        this.candidateIndex = candidateIndex;
     }
 
     public void setOlderThan(long olderThan) {
@@ -77,7 +90,11 @@ public class IngestionMessageSource extends AbstractMessageSource<IngestionEvent
         // rescan only if needed
         if (this.toBeReceived.isEmpty()) {
             if (lock.tryLock()) {
-                this.toBeReceived.addAll(scanForEvents());
+                try {
+                    this.toBeReceived.addAll(scanForEvents());
+                } finally {
+                    lock.unlock();
+                }
             }
         }
 
@@ -90,6 +107,9 @@ public class IngestionMessageSource extends AbstractMessageSource<IngestionEvent
     }
 
     private Collection<? extends IngestionEvent> scanForEvents() {
+        if (candidateIndex != null) {
+            return candidateIndex.poll(System.currentTimeMillis() - olderThan);
+        }
         LocalDateTime cutOff = LocalDateTime.now().minus(olderThan, ChronoUnit.MILLIS);
         ArrayList<IngestionEvent> events = new ArrayList<>();
 
@@ -37,6 +37,11 @@ public interface StagingArea {
 
     long getIngestionPollingPeriod();
 
+    /**
+     * @return number of threads that walk the directory tree of the staging area on each discovery scan.
+     */
+    int getDiscoveryParallelism();
+
     LocalDateTime getCreateDate();
 
     LocalDateTime getUpdateDate();
@@ -23,6 +23,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
@@ -34,14 +36,18 @@ import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingAr
 import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFileImpl;
 import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFileRepository;
 import uk.ac.ebi.ega.ingestion.file.discovery.services.StagingAreaService;
+import uk.ac.ebi.ega.ingestion.file.discovery.utils.StagingFileId;
 import uk.ac.ebi.ega.ingestion.file.discovery.controller.exceptions.StagingAreaNotFoundException;
 import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -51,6 +57,19 @@ import java.util.Set;
 
 public class StagingAreaServiceImpl implements StagingAreaService {
 
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_FILES = "insert into STAGING_AREA_FILES (ID, STAGING_AREA_ID, RELATIVE_PATH, " +
+            "FILE_SIZE, UPDATE_DATE) values (:id, :stagingAreaId, :relativePath, :fileSize, :updateDate)";
+
+    /**
+     * A scan that fails midway emits its created files again on the next scan, PostgreSQL updates the files that are
+     * already persisted instead of failing the whole batch.
+     */
+    private static final String ON_CONFLICT_UPDATE = " on conflict (ID) do update set " +
+            "STAGING_AREA_ID = excluded.STAGING_AREA_ID, RELATIVE_PATH = excluded.RELATIVE_PATH, " +
+            "FILE_SIZE = excluded.FILE_SIZE, UPDATE_DATE = excluded.UPDATE_DATE, CHANGE_DATE = current_timestamp";
+
     private final Logger logger = LoggerFactory.getLogger(StagingAreaServiceImpl.class);
 
     private NamedParameterJdbcTemplate jdbcTemplate;
@@ -59,11 +78,29 @@ public class StagingAreaServiceImpl implements StagingAreaService {
 
     private StagingFileRepository fileRepository;
 
+    private StagingFileBulkWriter bulkWriter;
+
+    /**
+     * Minimum number of file events of an update that are persisted by the {@link StagingFileBulkWriter}.
+     */
+    private int bulkThreshold;
+
+    private String insertFiles;
+
     public StagingAreaServiceImpl(NamedParameterJdbcTemplate jdbcTemplate, StagingAreaRepository repository,
                                   StagingFileRepository fileRepository) {
+        this(jdbcTemplate, repository, fileRepository, null, Integer.MAX_VALUE);
+    }
+
+    public StagingAreaServiceImpl(NamedParameterJdbcTemplate jdbcTemplate, StagingAreaRepository repository,
+                                  StagingFileRepository fileRepository, StagingFileBulkWriter bulkWriter,
+                                  int bulkThreshold) {
         this.jdbcTemplate = jdbcTemplate;
         this.repository = repository;
         this.fileRepository = fileRepository;
+        this.bulkWriter = bulkWriter;
+        this.bulkThreshold = bulkThreshold;
+        this.insertFiles = isPostgreSql(jdbcTemplate) ? INSERT_FILES + ON_CONFLICT_UPDATE : INSERT_FILES;
     }
 
     @Override
@@ -160,6 +197,13 @@ public class StagingAreaServiceImpl implements StagingAreaService {
             }
         });
 
+        if (bulkWriter != null && fileEvents.size() >= bulkThreshold) {
+            // Created and updated files are upserted, a file deleted and created again is upserted
+            create.putAll(update);
+            delete.removeAll(create.keySet());
+            bulkWriter.write(create.values(), delete);
+            return;
+        }
         if (!create.isEmpty()) insertAreaFiles(new ArrayList<>(create.values()));
         if (!update.isEmpty()) updateAreaFiles(new ArrayList<>(update.values()));
         if (!delete.isEmpty()) deleteAreaFiles(new ArrayList<>(delete));
@@ -175,23 +219,94 @@ public class StagingAreaServiceImpl implements StagingAreaService {
         return fileRepository.findAllByStagingAreaIdOlderThan(stagingId, cutOff);
     }
 
+    @Override
+    public Iterable<? extends StagingFile> findAllFilesOfStagingArea(String stagingId,
+                                                                     Collection<String> relativePaths) {
+        final List<String> ids = new ArrayList<>(relativePaths.size());
+        relativePaths.forEach(relativePath -> ids.add(StagingFileId.calculateId(stagingId, relativePath)));
+        // The number of parameters of a statement is bounded, files are found in chunks of ids
+        final List<StagingFileImpl> files = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i += ID_CHUNK_SIZE) {
+            fileRepository.findAllById(ids.subList(i, Math.min(i + ID_CHUNK_SIZE, ids.size()))).forEach(files::add);
+        }
+        return files;
+    }
+
+    @Override
+    public Iterable<? extends StagingFile> findAllFilesOfStagingAreaChangedSince(String stagingId,
+                                                                               LocalDateTime changeDate) {
+        return fileRepository.findAllByStagingAreaIdChangedSince(stagingId, changeDate);
+    }
+
+    @Override
+    public long countFilesOfStagingArea(String stagingId) {
+        return fileRepository.countByStagingAreaId(stagingId);
+    }
+
+    @Override
+    public Optional<LocalDateTime> findLastFileChangeOfStagingArea(String stagingId) {
+        final Timestamp lastChange = jdbcTemplate.queryForObject("select max(LAST_CHANGE) from (" +
+                        "select max(CHANGE_DATE) as LAST_CHANGE from STAGING_AREA_FILES " +
+                        "where STAGING_AREA_ID = :stagingAreaId " +
+                        "union all select max(DELETE_DATE) as LAST_CHANGE from STAGING_AREA_FILE_DELETIONS " +
+                        "where STAGING_AREA_ID = :stagingAreaId) as LAST_CHANGES;",
+                Collections.singletonMap("stagingAreaId", stagingId), Timestamp.class);
+        return Optional.ofNullable(lastChange).map(Timestamp::toLocalDateTime);
+    }
+
+    @Override
+    public List<String> findAllFileDeletionsOfStagingAreaSince(String stagingId, LocalDateTime deleteDate) {
+        final Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("stagingAreaId", stagingId);
+        paramMap.put("deleteDate", Timestamp.valueOf(deleteDate));
+        return jdbcTemplate.queryForList("select RELATIVE_PATH from STAGING_AREA_FILE_DELETIONS " +
+                "where STAGING_AREA_ID = :stagingAreaId and DELETE_DATE >= :deleteDate;", paramMap, String.class);
+    }
+
+    @Override
+    public int deleteFileDeletionsOfStagingAreaBefore(String stagingId, LocalDateTime deleteDate) {
+        final Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("stagingAreaId", stagingId);
+        paramMap.put("deleteDate", Timestamp.valueOf(deleteDate));
+        return jdbcTemplate.update("delete from STAGING_AREA_FILE_DELETIONS " +
+                "where STAGING_AREA_ID = :stagingAreaId and DELETE_DATE < :deleteDate;", paramMap);
+    }
+
     private int[] insertAreaFiles(List<StagingFileImpl> stagingAreaFiles) {
         final SqlParameterSource[] batch = SqlParameterSourceUtils.createBatch(stagingAreaFiles);
-        return jdbcTemplate.batchUpdate("insert into STAGING_AREA_FILES (ID, STAGING_AREA_ID, RELATIVE_PATH, " +
-                "FILE_SIZE, UPDATE_DATE ) values (:id, :stagingAreaId, :relativePath, :fileSize, :updateDate);", batch);
+        return jdbcTemplate.batchUpdate(insertFiles, batch);
     }
 
     private int[] updateAreaFiles(List<StagingFileImpl> stagingAreaFiles) {
         final SqlParameterSource[] batch = SqlParameterSourceUtils.createBatch(stagingAreaFiles);
         return jdbcTemplate.batchUpdate("update STAGING_AREA_FILES set STAGING_AREA_ID = :stagingAreaId, " +
-                "RELATIVE_PATH = :relativePath, FILE_SIZE = :fileSize, UPDATE_DATE = :updateDate " +
+                "RELATIVE_PATH = :relativePath, FILE_SIZE = :fileSize, UPDATE_DATE = :updateDate, " +
+                "CHANGE_DATE = current_timestamp " +
                 "where ID = :id;", batch);
     }
 
     private int deleteAreaFiles(List<String> ids) {
-        Map<String, Object> paramMap = new HashMap<>();
-        paramMap.put("ids", ids);
-        return jdbcTemplate.update("delete from STAGING_AREA_FILES where ID in(:ids);", paramMap);
+        // The number of parameters of a statement is bounded, ids are deleted in chunks
+        int deleted = 0;
+        for (int i = 0; i < ids.size(); i += ID_CHUNK_SIZE) {
+            Map<String, Object> paramMap = new HashMap<>();
+            paramMap.put("ids", ids.subList(i, Math.min(i + ID_CHUNK_SIZE, ids.size())));
+            // Deleted files are recorded so that they can be removed from the snapshot checkpoints
+            jdbcTemplate.update("insert into STAGING_AREA_FILE_DELETIONS (ID, STAGING_AREA_ID, RELATIVE_PATH) " +
+                    "select ID, STAGING_AREA_ID, RELATIVE_PATH from STAGING_AREA_FILES where ID in(:ids);", paramMap);
+            deleted += jdbcTemplate.update("delete from STAGING_AREA_FILES where ID in(:ids);", paramMap);
+        }
+        return deleted;
+    }
+
+    private static boolean isPostgreSql(NamedParameterJdbcTemplate jdbcTemplate) {
+        try {
+            final Object productName = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getJdbcTemplate().getDataSource(),
+                    "getDatabaseProductName");
+            return "PostgreSQL".equals(productName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Database of the staging areas could not be identified", e);
+        }
     }
 
 }
@@ -0,0 +1,171 @@
+/*
+ *
+ * Copyright 2018 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.persistence;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFileImpl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Persists large sets of changes of the files of the staging areas in PostgreSQL. The changes are streamed with
+ * {@code COPY} into a temporary table and applied with a single upsert and a single join based delete, instead of a
+ * statement per file and a delete whose list of ids grows with the number of files deleted. The temporary table holds
+ * a bounded number of files at a time, changes are copied and applied in chunks, all of them in a single transaction.
+ */
+public class StagingFileBulkWriter {
+
+    private static final String CREATE_CHANGES_TABLE = "create temporary table STAGING_AREA_FILE_CHANGES " +
+            "(ID varchar(255) primary key, STAGING_AREA_ID varchar(32), RELATIVE_PATH text, FILE_SIZE bigint, " +
+            "UPDATE_DATE timestamp, DELETED boolean not null) on commit drop;";
+
+    private static final String TRUNCATE_CHANGES_TABLE = "truncate STAGING_AREA_FILE_CHANGES;";
+
+    private static final String COPY_CHANGES = "copy STAGING_AREA_FILE_CHANGES (ID, STAGING_AREA_ID, " +
+            "RELATIVE_PATH, FILE_SIZE, UPDATE_DATE, DELETED) from stdin with (format csv)";
+
+    private static final String UPSERT_FILES = "insert into STAGING_AREA_FILES (ID, STAGING_AREA_ID, " +
+            "RELATIVE_PATH, FILE_SIZE, UPDATE_DATE) select ID, STAGING_AREA_ID, RELATIVE_PATH, FILE_SIZE, UPDATE_DATE " +
+            "from STAGING_AREA_FILE_CHANGES where not DELETED on conflict (ID) do update set " +
+            "STAGING_AREA_ID = excluded.STAGING_AREA_ID, RELATIVE_PATH = excluded.RELATIVE_PATH, " +
+            "FILE_SIZE = excluded.FILE_SIZE, UPDATE_DATE = excluded.UPDATE_DATE, CHANGE_DATE = current_timestamp;";
+
+    /**
+     * The deleted files are recorded in STAGING_AREA_FILE_DELETIONS, so that they can be removed from the snapshot
+     * checkpoints.
+     */
+    private static final String DELETE_FILES = "with DELETED_FILES as (delete from STAGING_AREA_FILES f " +
+            "using STAGING_AREA_FILE_CHANGES c where f.ID = c.ID and c.DELETED " +
+            "returning f.ID, f.STAGING_AREA_ID, f.RELATIVE_PATH) " +
+            "insert into STAGING_AREA_FILE_DELETIONS (ID, STAGING_AREA_ID, RELATIVE_PATH) " +
+            "select ID, STAGING_AREA_ID, RELATIVE_PATH from DELETED_FILES;";
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    /**
+     * Opens the rows of the changes table for writing in the csv format, the rows are copied when the writer is
+     * closed.
+     */
+    interface ChangesCopy {
+
+        Writer open(Connection connection) throws SQLException;
+
+    }
+
+    private static final ChangesCopy POSTGRESQL_COPY = connection -> new BufferedWriter(new OutputStreamWriter(
+            new PGCopyOutputStream(connection.unwrap(PGConnection.class), COPY_CHANGES, COPY_BUFFER_SIZE),
+            StandardCharsets.UTF_8));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int chunkSize;
+
+    private final ChangesCopy changesCopy;
+
+    public StagingFileBulkWriter(JdbcTemplate jdbcTemplate, int chunkSize) {
+        this(jdbcTemplate, chunkSize, POSTGRESQL_COPY);
+    }
+
+    StagingFileBulkWriter(JdbcTemplate jdbcTemplate, int chunkSize, ChangesCopy changesCopy) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+        this.changesCopy = changesCopy;
+    }
+
+    /**
+     * Applies all the changes or none of them.
+     *
+     * @param files      files created or updated, inserted or updated whether they are already persisted or not
+     * @param deletedIds ids of the files deleted
+     */
+    public void write(Collection<StagingFileImpl> files, Collection<String> deletedIds) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                execute(connection, CREATE_CHANGES_TABLE);
+                final Iterator<StagingFileImpl> fileIterator = files.iterator();
+                final Iterator<String> deletedIdIterator = deletedIds.iterator();
+                boolean firstChunk = true;
+                while (fileIterator.hasNext() || deletedIdIterator.hasNext()) {
+                    if (!firstChunk) {
+                        execute(connection, TRUNCATE_CHANGES_TABLE);
+                    }
+                    writeChunk(connection, fileIterator, deletedIdIterator);
+                    firstChunk = false;
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    private void writeChunk(Connection connection, Iterator<StagingFileImpl> files, Iterator<String> deletedIds)
+            throws SQLException {
+        try (Writer writer = changesCopy.open(connection)) {
+            int rows = 0;
+            for (; rows < chunkSize && files.hasNext(); rows++) {
+                final StagingFileImpl file = files.next();
+                writer.write(quote(file.getId()) + "," + quote(file.getStagingAreaId()) + "," +
+                        quote(file.getRelativePath()) + "," + file.getFileSize() + "," + file.getUpdateDate() +
+                        ",false\n");
+            }
+            for (; rows < chunkSize && deletedIds.hasNext(); rows++) {
+                writer.write(quote(deletedIds.next()) + ",,,,,true\n");
+            }
+        } catch (IOException e) {
+            throw new SQLException("Changes of the staging area files could not be copied", e);
+        }
+        execute(connection, UPSERT_FILES);
+        execute(connection, DELETE_FILES);
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * @return value quoted for the csv format of {@code COPY}, an unquoted empty value would be read as null.
+     */
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+}
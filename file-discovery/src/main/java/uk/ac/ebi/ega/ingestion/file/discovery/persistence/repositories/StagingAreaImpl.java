@@ -52,6 +52,8 @@ public class StagingAreaImpl implements StagingArea, Persistable<String> {
 
     private long ingestionPollingPeriod;
 
+    private int discoveryParallelism = 1;
+
     @Column(nullable = false, updatable = false)
     @CreatedDate
     private LocalDateTime createDate;
@@ -107,6 +109,11 @@ public class StagingAreaImpl implements StagingArea, Persistable<String> {
         return ingestionPollingPeriod;
     }
 
+    @Override
+    public int getDiscoveryParallelism() {
+        return discoveryParallelism;
+    }
+
     @Override
     public LocalDateTime getCreateDate() {
         return createDate;
@@ -154,6 +161,10 @@ public class StagingAreaImpl implements StagingArea, Persistable<String> {
         this.ingestionPollingPeriod = ingestionPollingPeriod;
     }
 
+    public void setDiscoveryParallelism(int discoveryParallelism) {
+        this.discoveryParallelism = discoveryParallelism;
+    }
+
     public void setCreateDate(LocalDateTime createDate) {
         this.createDate = createDate;
     }
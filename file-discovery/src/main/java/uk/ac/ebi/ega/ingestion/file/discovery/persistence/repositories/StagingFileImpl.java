@@ -23,6 +23,7 @@ import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
 import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
 import uk.ac.ebi.ega.ingestion.file.discovery.utils.StagingFileId;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import java.time.Instant;
@@ -43,6 +44,12 @@ public class StagingFileImpl implements StagingFile {
 
     private LocalDateTime updateDate;
 
+    /**
+     * Time of the last insert or update of the row, set by the database.
+     */
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime changeDate;
+
     protected StagingFileImpl() {
     }
 
@@ -88,6 +95,10 @@ public class StagingFileImpl implements StagingFile {
         return updateDate;
     }
 
+    public LocalDateTime getChangeDate() {
+        return changeDate;
+    }
+
     @Override
     public FileStatic toFileStatic() {
         return new FileStatic(relativePath, fileSize, updateDate.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
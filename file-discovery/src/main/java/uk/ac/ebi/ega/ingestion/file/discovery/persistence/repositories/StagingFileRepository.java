@@ -58,6 +58,22 @@ public interface StagingFileRepository extends PagingAndSortingRepository<Stagin
         return findAll(predicateWithStagingArea);
     }
 
+    default Iterable<StagingFileImpl> findAllByStagingAreaIdChangedSince(String stagingAreaId,
+                                                                         LocalDateTime changeDate) {
+        Predicate predicateWithStagingArea = Expressions.allOf(
+                Expressions.predicate(Ops.EQ, QStagingFileImpl.stagingFileImpl.stagingAreaId,
+                        Expressions.constant(stagingAreaId)),
+                Expressions.predicate(Ops.GOE, QStagingFileImpl.stagingFileImpl.changeDate,
+                        Expressions.asDateTime(changeDate))
+        );
+        return findAll(predicateWithStagingArea);
+    }
+
+    default long countByStagingAreaId(String stagingAreaId) {
+        return count(Expressions.predicate(Ops.EQ, QStagingFileImpl.stagingFileImpl.stagingAreaId,
+                Expressions.constant(stagingAreaId)));
+    }
+
     @Override
     default void customize(QuerydslBindings bindings, QStagingFileImpl stagingArea) {
         bindings.bind(stagingArea.relativePath).first((path, value) -> path.containsIgnoreCase(value));
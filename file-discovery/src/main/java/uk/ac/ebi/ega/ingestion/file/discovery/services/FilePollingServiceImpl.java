@@ -33,20 +33,18 @@ import uk.ac.ebi.ega.ingestion.file.discovery.persistence.exceptions.StagingArea
 import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.CompositeAbstractFileListFilter;
 import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.DirectoryPatternFileListFilter;
 import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventMessageSource;
-import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventRecursiveDirectoryScanner;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventScanner;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventScannerConfiguration;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
 import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.ingestion.IngestionMessageSource;
 import uk.ac.ebi.ega.ingestion.file.discovery.models.StagingArea;
 import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
-import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Paths;
-import java.time.ZoneId;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 
@@ -66,9 +64,46 @@ public class FilePollingServiceImpl implements FilePollingService {
 
     private MessageChannel inboundIngestionChannel;
 
+    private FileEventScannerConfiguration scannerConfiguration;
+
+    private StagingAreaSnapshotService snapshotService;
+
+    private IngestionCandidateService candidateService;
+
     public FilePollingServiceImpl(StagingAreaService stagingAreaService, IntegrationFlowContext integrationFlowContext,
                                   TaskExecutor fileDiscoveryExecutor, MessageChannel inboundDiscoveryChannel,
                                   TaskExecutor fileIngestionExecutor, MessageChannel inboundIngestionChannel) {
+        this(stagingAreaService, integrationFlowContext, fileDiscoveryExecutor, inboundDiscoveryChannel,
+                fileIngestionExecutor, inboundIngestionChannel, new FileEventScannerConfiguration(),
+                new StagingAreaSnapshotService(stagingAreaService, FileSystemSnapshot.Storage.HEAP));
+    }
+
+    /**
+     * @param scannerConfiguration scanner used to discover the files of each staging area.
+     * @param snapshotService      provides the view of each staging area known before its first scan.
+     */
+    public FilePollingServiceImpl(StagingAreaService stagingAreaService, IntegrationFlowContext integrationFlowContext,
+                                  TaskExecutor fileDiscoveryExecutor, MessageChannel inboundDiscoveryChannel,
+                                  TaskExecutor fileIngestionExecutor, MessageChannel inboundIngestionChannel,
+                                  FileEventScannerConfiguration scannerConfiguration,
+                                  StagingAreaSnapshotService snapshotService) {
+        this(stagingAreaService, integrationFlowContext, fileDiscoveryExecutor, inboundDiscoveryChannel,
+                fileIngestionExecutor, inboundIngestionChannel, scannerConfiguration, snapshotService, null);
+    }
+
+    /**
+     * @param candidateService provides the index polled by the ingestion of each staging area, null to query all the
+     *                         files of the staging area on each poll.
+     */
+    public FilePollingServiceImpl(StagingAreaService stagingAreaService, IntegrationFlowContext integrationFlowContext,
+                                  TaskExecutor fileDiscoveryExecutor, MessageChannel inboundDiscoveryChannel,
+                                  TaskExecutor fileIngestionExecutor, MessageChannel inboundIngestionChannel,
+                                  FileEventScannerConfiguration scannerConfiguration,
+                                  StagingAreaSnapshotService snapshotService,
+                                  IngestionCandidateService candidateService) {
+        this.scannerConfiguration = scannerConfiguration;
+        this.candidateService = candidateService;
+        this.snapshotService = snapshotService;
         this.stagingAreaService = stagingAreaService;
         this.integrationFlowContext = integrationFlowContext;
         this.fileDiscoveryExecutor = fileDiscoveryExecutor;
@@ -106,7 +141,8 @@ public class FilePollingServiceImpl implements FilePollingService {
     }
 
     private MessageSource<IngestionEvent> buildFileIngestionMessageSource(StagingArea stagingArea) {
-        IngestionMessageSource ingestionMessageSource =
+        IngestionMessageSource ingestionMessageSource = candidateService != null ?
+                new IngestionMessageSource(candidateService.register(stagingArea)) :
                 new IngestionMessageSource(stagingAreaService::findAllFilesOfStagingAreaOlderThan);
         ingestionMessageSource.setLocationId(stagingArea.getId());
         ingestionMessageSource.setAccountId(stagingArea.getAccount());
@@ -207,6 +243,9 @@ public class FilePollingServiceImpl implements FilePollingService {
             flow.destroy();
             logger.info("File ingestion for staging area {} destroyed", stagingArea.getId());
         });
+        if (candidateService != null) {
+            candidateService.deregister(stagingArea);
+        }
     }
 
     private Optional<IntegrationFlowContext.IntegrationFlowRegistration> getDiscoveryFlow(StagingArea stagingArea) {
@@ -218,25 +257,17 @@ public class FilePollingServiceImpl implements FilePollingService {
     }
 
     private MessageSource<FileEvent> buildFileEventMessageSource(StagingArea stagingArea) {
-        FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+        FileEventScanner scanner = scannerConfiguration.create(stagingArea.getDiscoveryParallelism(),
+                snapshot -> snapshotService.checkpoint(stagingArea));
         scanner.setFilter(new CompositeAbstractFileListFilter(new IgnoreHiddenFileListFilter(),
                 new DirectoryPatternFileListFilter(stagingArea.getIgnorePathRegex())));
-        scanner.initializeDirectoryStatus(getFilesOfStagingArea(stagingArea));
+        scanner.initializeDirectoryStatus(() -> snapshotService.loadSnapshot(stagingArea));
         FileEventMessageSource source = new FileEventMessageSource(scanner);
         source.setAutoCreateDirectory(false);
+        source.setStreamCapacity(scannerConfiguration.getStreamCapacity());
         source.setLocationId(stagingArea.getId());
         source.setDirectory(new File(stagingArea.getPath()));
         return source;
     }
 
-    private Map<String, FileStatic> getFilesOfStagingArea(StagingArea stagingArea) {
-        Map<String, FileStatic> files = new HashMap<>();
-        stagingAreaService.findAllFilesByStagingId(stagingArea.getId()).forEach(o -> {
-            final String absolutePath = Paths.get(stagingArea.getPath(), o.getRelativePath()).toString();
-            files.put(absolutePath, new FileStatic(absolutePath, o.getFileSize(),
-                    o.getUpdateDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
-        });
-        return files;
-    }
-
 }
@@ -0,0 +1,83 @@
+/*
+ *
+ * Copyright 2018 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.services;
+
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.ingestion.IngestionCandidateIndex;
+import uk.ac.ebi.ega.ingestion.file.discovery.models.StagingArea;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link IngestionCandidateIndex} of each staging area whose ingestion is registered, and updates them with
+ * the file events once they are persisted.
+ */
+public class IngestionCandidateService {
+
+    private final StagingAreaService stagingAreaService;
+
+    private final long reloadPeriod;
+
+    private final Map<String, IngestionCandidateIndex> indexes;
+
+    /**
+     * @param reloadPeriod time in milliseconds between loads of each whole staging area from the database.
+     */
+    public IngestionCandidateService(StagingAreaService stagingAreaService, long reloadPeriod) {
+        this.stagingAreaService = stagingAreaService;
+        this.reloadPeriod = reloadPeriod;
+        this.indexes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return a new index of the staging area, which replaces its previous index.
+     */
+    public IngestionCandidateIndex register(StagingArea stagingArea) {
+        final IngestionCandidateIndex index = new IngestionCandidateIndex(stagingArea.getId(),
+                stagingArea.getAccount(), Paths.get(stagingArea.getPath()), stagingAreaService::findAllFilesByStagingId,
+                stagingAreaService::findAllFilesOfStagingArea, reloadPeriod);
+        indexes.put(stagingArea.getId(), index);
+        return index;
+    }
+
+    public void deregister(StagingArea stagingArea) {
+        indexes.remove(stagingArea.getId());
+    }
+
+    /**
+     * Each index is updated once with the file events of its staging area, in order.
+     */
+    public void onFileEventsPersisted(List<FileEvent> fileEvents) {
+        final Map<String, List<FileEvent>> fileEventsByLocation = new LinkedHashMap<>();
+        for (FileEvent fileEvent : fileEvents) {
+            fileEventsByLocation.computeIfAbsent(fileEvent.getLocationId(), key -> new ArrayList<>()).add(fileEvent);
+        }
+        fileEventsByLocation.forEach((locationId, locationFileEvents) -> {
+            final IngestionCandidateIndex index = indexes.get(locationId);
+            if (index != null) {
+                index.update(locationFileEvents);
+            }
+        });
+    }
+
+}
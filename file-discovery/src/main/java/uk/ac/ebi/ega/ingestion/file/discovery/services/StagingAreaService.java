@@ -30,6 +30,7 @@ import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
 
 import java.io.FileNotFoundException;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -49,6 +50,35 @@ public interface StagingAreaService {
 
     Iterable<? extends StagingFile> findAllFilesOfStagingAreaOlderThan(String stagingId, LocalDateTime cutOffDate);
 
+    /**
+     * @return files of the staging area with any of the relative paths, the paths without a file are left out.
+     */
+    Iterable<? extends StagingFile> findAllFilesOfStagingArea(String stagingId, Collection<String> relativePaths);
+
+    /**
+     * @return files whose row was inserted or updated at or after the change date.
+     */
+    Iterable<? extends StagingFile> findAllFilesOfStagingAreaChangedSince(String stagingId, LocalDateTime changeDate);
+
+    long countFilesOfStagingArea(String stagingId);
+
+    /**
+     * @return time of the last insert, update or delete of a file of the staging area.
+     */
+    Optional<LocalDateTime> findLastFileChangeOfStagingArea(String stagingId);
+
+    /**
+     * @return relative paths of the files deleted at or after the delete date, a file may have been created again.
+     */
+    List<String> findAllFileDeletionsOfStagingAreaSince(String stagingId, LocalDateTime deleteDate);
+
+    /**
+     * Forgets the files deleted before the delete date, once no checkpoint needs them.
+     *
+     * @return number of deletions forgotten.
+     */
+    int deleteFileDeletionsOfStagingAreaBefore(String stagingId, LocalDateTime deleteDate);
+
     Page<? extends StagingFile> findAllFilesByStagingId(String stagingId, Predicate predicate,
                                                         Pageable pageable);
 
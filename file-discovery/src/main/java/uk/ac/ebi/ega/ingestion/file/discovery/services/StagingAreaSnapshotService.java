@@ -0,0 +1,225 @@
+/*
+ *
+ * Copyright 2018 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.SnapshotCheckpoint;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.SnapshotCheckpointStore;
+import uk.ac.ebi.ega.ingestion.file.discovery.models.StagingArea;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the view of each staging area known before its first scan.
+ * <p>
+ * Without checkpoints the view is loaded from the files of the staging area in the database. With checkpoints, the
+ * view of each staging area is saved locally with the high-water mark of the database changes it contains. On restart
+ * the checkpoint is mapped and only the files changed or deleted in the database since its high-water mark are
+ * applied, and once every checkpoint period the previous checkpoint is brought up to date the same way and saved
+ * again. The files of a staging area are only loaded in full when it has no checkpoint, or when its checkpoint does
+ * not have the number of files of the database after the changes are applied.
+ */
+public class StagingAreaSnapshotService {
+
+    private final static Logger logger = LoggerFactory.getLogger(StagingAreaSnapshotService.class);
+
+    /**
+     * Changes are reconciled from a few minutes before the high-water mark, the change date of a row is set when its
+     * transaction starts and can be older than a high-water mark read before the transaction committed.
+     */
+    private static final long HIGH_WATER_MARK_MARGIN_MINUTES = 5;
+
+    private static final long DEFAULT_CHECKPOINT_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    private final StagingAreaService stagingAreaService;
+
+    private final FileSystemSnapshot.Storage snapshotStorage;
+
+    private final SnapshotCheckpointStore checkpointStore;
+
+    private final long checkpointPeriodNanos;
+
+    private final Map<String, Long> lastCheckpoints;
+
+    public StagingAreaSnapshotService(StagingAreaService stagingAreaService,
+                                      FileSystemSnapshot.Storage snapshotStorage) {
+        this(stagingAreaService, snapshotStorage, null, DEFAULT_CHECKPOINT_PERIOD);
+    }
+
+    /**
+     * @param checkpointDirectory directory of the checkpoints, null to disable them.
+     * @param checkpointPeriod    time in milliseconds between checkpoints of a staging area, the deleted files
+     *                            recorded in the database are forgotten with the same period without checkpoints.
+     */
+    public StagingAreaSnapshotService(StagingAreaService stagingAreaService,
+                                      FileSystemSnapshot.Storage snapshotStorage, Path checkpointDirectory,
+                                      long checkpointPeriod) {
+        this.stagingAreaService = stagingAreaService;
+        this.snapshotStorage = snapshotStorage;
+        this.checkpointStore = checkpointDirectory != null ? new SnapshotCheckpointStore(checkpointDirectory) : null;
+        this.checkpointPeriodNanos = TimeUnit.MILLISECONDS.toNanos(checkpointPeriod);
+        this.lastCheckpoints = new ConcurrentHashMap<>();
+    }
+
+    public FileSystemSnapshot loadSnapshot(StagingArea stagingArea) {
+        lastCheckpoints.put(stagingArea.getId(), System.nanoTime());
+        if (checkpointStore == null) {
+            return FileSystemSnapshot.of(getFilesOfStagingArea(stagingArea), snapshotStorage);
+        }
+        final long highWaterMark = findHighWaterMark(stagingArea);
+        final Optional<SnapshotCheckpoint> checkpoint = checkpointStore.load(stagingArea.getId(), stagingArea.getPath());
+        if (checkpoint.isPresent()) {
+            final Optional<FileSystemSnapshot> snapshot = reconcile(stagingArea, checkpoint.get());
+            if (snapshot.isPresent()) {
+                logger.info("Staging area {} loaded from its checkpoint with {} files", stagingArea.getId(),
+                        snapshot.get().size());
+                return snapshot.get();
+            }
+        }
+        final FileSystemSnapshot snapshot = FileSystemSnapshot.of(getFilesOfStagingArea(stagingArea),
+                snapshotStorage);
+        // Following checkpoints are built from this one, the staging area is not loaded in full again
+        save(stagingArea, new SnapshotCheckpoint(stagingArea.getPath(), highWaterMark, snapshot));
+        return snapshot;
+    }
+
+    /**
+     * Applies the files changed and deleted in the database since the high-water mark of the checkpoint.
+     *
+     * @return the snapshot of the staging area in the database, empty if the checkpoint does not have the number of
+     * files of the database once the changes are applied.
+     */
+    private Optional<FileSystemSnapshot> reconcile(StagingArea stagingArea, SnapshotCheckpoint checkpoint) {
+        final LocalDateTime changeDate = new Timestamp(checkpoint.getHighWaterMark()).toLocalDateTime()
+                .minusMinutes(HIGH_WATER_MARK_MARGIN_MINUTES);
+        final Set<String> deletedPaths = new HashSet<>();
+        stagingAreaService.findAllFileDeletionsOfStagingAreaSince(stagingArea.getId(), changeDate)
+                .forEach(relativePath -> deletedPaths.add(toAbsolutePath(stagingArea, relativePath)));
+        final List<FileStatic> changedFiles = new ArrayList<>();
+        stagingAreaService.findAllFilesOfStagingAreaChangedSince(stagingArea.getId(), changeDate)
+                .forEach(file -> changedFiles.add(toFileStatic(stagingArea, file)));
+        changedFiles.sort(Comparator.comparing(FileStatic::getAbsolutePath, FileSystemSnapshot.PATH_ORDER));
+
+        FileSystemSnapshot snapshot = checkpoint.getSnapshot();
+        if (!changedFiles.isEmpty() || !deletedPaths.isEmpty()) {
+            snapshot = snapshot.update(changedFiles.iterator(), deletedPaths, snapshotStorage);
+        }
+        final long files = stagingAreaService.countFilesOfStagingArea(stagingArea.getId());
+        if (snapshot.size() != files) {
+            logger.warn("Checkpoint of staging area {} has {} files but the database has {} files",
+                    stagingArea.getId(), snapshot.size(), files);
+            return Optional.empty();
+        }
+        logger.info("Checkpoint of staging area {} reconciled, {} files changed and {} deleted since the checkpoint",
+                stagingArea.getId(), changedFiles.size(), deletedPaths.size());
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Brings the checkpoint of the staging area up to date with the database if it is older than the checkpoint
+     * period. The checkpoint is built from the database and not from the view of the scanner, whose last events may
+     * not have been persisted yet. The high-water mark is read before the changes so that a change committed in
+     * between is reconciled again on restart. A checkpoint that can not be reconciled is kept as it is and tried again
+     * after another checkpoint period, the staging area is only loaded in full on restart.
+     */
+    public void checkpoint(StagingArea stagingArea) {
+        final long now = System.nanoTime();
+        final Long lastCheckpoint = lastCheckpoints.get(stagingArea.getId());
+        if (lastCheckpoint != null && now - lastCheckpoint < checkpointPeriodNanos) {
+            return;
+        }
+        lastCheckpoints.put(stagingArea.getId(), now);
+        final long highWaterMark = findHighWaterMark(stagingArea);
+        if (checkpointStore == null) {
+            // No checkpoint needs the deleted files
+            forgetDeletions(stagingArea, highWaterMark);
+            return;
+        }
+        final Optional<SnapshotCheckpoint> previousCheckpoint = checkpointStore.load(stagingArea.getId(),
+                stagingArea.getPath());
+        if (!previousCheckpoint.isPresent()) {
+            logger.warn("Staging area {} has no checkpoint to bring up to date", stagingArea.getId());
+            return;
+        }
+        reconcile(stagingArea, previousCheckpoint.get()).ifPresent(snapshot ->
+                save(stagingArea, new SnapshotCheckpoint(stagingArea.getPath(), highWaterMark, snapshot)));
+    }
+
+    private void save(StagingArea stagingArea, SnapshotCheckpoint checkpoint) {
+        try {
+            checkpointStore.save(stagingArea.getId(), checkpoint);
+            logger.info("Checkpoint of staging area {} saved with {} files", stagingArea.getId(),
+                    checkpoint.getSnapshot().size());
+        } catch (IOException e) {
+            logger.error("Checkpoint of staging area {} could not be saved", stagingArea.getId(), e);
+            return;
+        }
+        // Only the deletions since the high-water mark of the last checkpoint are applied
+        forgetDeletions(stagingArea, checkpoint.getHighWaterMark());
+    }
+
+    private void forgetDeletions(StagingArea stagingArea, long highWaterMark) {
+        final LocalDateTime deleteDate = new Timestamp(highWaterMark).toLocalDateTime()
+                .minusMinutes(HIGH_WATER_MARK_MARGIN_MINUTES);
+        stagingAreaService.deleteFileDeletionsOfStagingAreaBefore(stagingArea.getId(), deleteDate);
+    }
+
+    private long findHighWaterMark(StagingArea stagingArea) {
+        return stagingAreaService.findLastFileChangeOfStagingArea(stagingArea.getId())
+                .map(lastChange -> Timestamp.valueOf(lastChange).getTime())
+                .orElse(0L);
+    }
+
+    private Map<String, FileStatic> getFilesOfStagingArea(StagingArea stagingArea) {
+        Map<String, FileStatic> files = new HashMap<>();
+        stagingAreaService.findAllFilesByStagingId(stagingArea.getId()).forEach(o -> {
+            final FileStatic file = toFileStatic(stagingArea, o);
+            files.put(file.getAbsolutePath(), file);
+        });
+        return files;
+    }
+
+    private static FileStatic toFileStatic(StagingArea stagingArea, StagingFile file) {
+        return new FileStatic(toAbsolutePath(stagingArea, file.getRelativePath()), file.getFileSize(),
+                file.getUpdateDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private static String toAbsolutePath(StagingArea stagingArea, String relativePath) {
+        return Paths.get(stagingArea.getPath(), relativePath).toString();
+    }
+
+}
@@ -17,13 +17,17 @@
  */
 package uk.ac.ebi.ega.ingestion.file.discovery.utils;
 
-import javax.xml.bind.DatatypeConverter;
+import uk.ac.ebi.ega.ingestion.commons.digest.MessageDigests;
 
 public class StagingFileId {
 
+    /**
+     * Called for every file of every scan, the digest is taken from the pool of the thread. It is used by a single
+     * call that does not run any other code, so no nested caller can get hold of the same instance.
+     */
     public static String calculateId(String stagingAreaId, String relativePath) {
         return stagingAreaId + "-" +
-                DatatypeConverter.printHexBinary(Hash.getMd5().digest(relativePath.getBytes())).toLowerCase();
+                MessageDigests.toHex(MessageDigests.get(MessageDigests.MD5).digest(relativePath.getBytes()));
     }
 
 }
@@ -0,0 +1,3 @@
+-- Adds the number of threads that walk each staging area. Run once on databases created before
+-- DISCOVERY_PARALLELISM, the existing staging areas keep being walked by a single thread.
+alter table STAGING_AREAS add column DISCOVERY_PARALLELISM integer not null default 1;
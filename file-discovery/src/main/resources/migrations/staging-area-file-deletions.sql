@@ -0,0 +1,13 @@
+-- Adds the record of the files deleted from STAGING_AREA_FILES, used to remove them from the snapshot checkpoints.
+-- Run once on databases created before STAGING_AREA_FILE_DELETIONS. Files deleted before the migration are not
+-- recorded, the checkpoints saved before it are discarded on restart when their number of files does not match.
+begin transaction;
+create table STAGING_AREA_FILE_DELETIONS
+(
+    ID              varchar(255) not null,
+    STAGING_AREA_ID varchar(32)  not null,
+    RELATIVE_PATH   text         not null,
+    DELETE_DATE     timestamp    not null default current_timestamp
+);
+create index STAGING_AREA_FILE_DELETIONS_DELETE_DATE on STAGING_AREA_FILE_DELETIONS (STAGING_AREA_ID, DELETE_DATE);
+commit;
@@ -0,0 +1,10 @@
+-- Adds the time each file row was last written, used to reconcile the snapshot checkpoints with the persisted files.
+-- Run once on databases created before CHANGE_DATE. The time the existing rows were written is unknown, they are
+-- backfilled with the time of the migration so that the first reconciliation replays them rather than skip them.
+begin transaction;
+alter table STAGING_AREA_FILES add column CHANGE_DATE timestamp;
+update STAGING_AREA_FILES set CHANGE_DATE = current_timestamp;
+alter table STAGING_AREA_FILES alter column CHANGE_DATE set default current_timestamp;
+alter table STAGING_AREA_FILES alter column CHANGE_DATE set not null;
+create index STAGING_AREA_FILES_CHANGE_DATE on STAGING_AREA_FILES (STAGING_AREA_ID, CHANGE_DATE);
+commit;
@@ -1,3 +1,4 @@
+drop table if exists STAGING_AREA_FILE_DELETIONS;
 drop table if exists STAGING_AREA_FILES;
 drop table if exists STAGING_AREAS;
 
@@ -11,6 +12,7 @@ create table STAGING_AREAS
     ACCOUNT                  varchar(255) not null,
     DISCOVERY_POLLING_PERIOD integer      not null,
     INGESTION_POLLING_PERIOD integer      not null,
+    DISCOVERY_PARALLELISM    integer      not null default 1,
     CREATE_DATE              timestamp    not null,
     UPDATE_DATE              timestamp    not null
 );
@@ -22,5 +24,18 @@ create table STAGING_AREA_FILES
     RELATIVE_PATH   text        not null,
     FILE_SIZE       bigint      not null,
     UPDATE_DATE     timestamp   not null,
+    CHANGE_DATE     timestamp   not null default current_timestamp,
     CONSTRAINT FK_STAGING_AREA_FILE_TO_AREA_ID FOREIGN KEY (STAGING_AREA_ID) REFERENCES STAGING_AREAS (ID)
-);
\ No newline at end of file
+);
+
+create index STAGING_AREA_FILES_CHANGE_DATE on STAGING_AREA_FILES (STAGING_AREA_ID, CHANGE_DATE);
+
+create table STAGING_AREA_FILE_DELETIONS
+(
+    ID              varchar(255) not null,
+    STAGING_AREA_ID varchar(32)  not null,
+    RELATIVE_PATH   text         not null,
+    DELETE_DATE     timestamp    not null default current_timestamp
+);
+
+create index STAGING_AREA_FILE_DELETIONS_DELETE_DATE on STAGING_AREA_FILE_DELETIONS (STAGING_AREA_ID, DELETE_DATE);
\ No newline at end of file
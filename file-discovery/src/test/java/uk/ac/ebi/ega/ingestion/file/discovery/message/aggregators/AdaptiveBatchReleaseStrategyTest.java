@@ -0,0 +1,76 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.aggregators;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.integration.store.SimpleMessageGroup;
+import org.springframework.messaging.support.GenericMessage;
+
+public class AdaptiveBatchReleaseStrategyTest {
+
+    @Test
+    public void batchGrowsWhileFullUpToMaxSize() {
+        final AdaptiveBatchReleaseStrategy releaseStrategy = new AdaptiveBatchReleaseStrategy(5, 12, 1000000);
+
+        Assert.assertFalse(releaseStrategy.canRelease(createGroup(4)));
+        Assert.assertTrue(releaseStrategy.canRelease(createGroup(5)));
+        releaseStrategy.onFlush(5, 500);
+        Assert.assertEquals(10, releaseStrategy.getTargetBatchSize());
+        Assert.assertFalse(releaseStrategy.canRelease(createGroup(5)));
+        releaseStrategy.onFlush(10, 1000);
+        Assert.assertEquals(12, releaseStrategy.getTargetBatchSize());
+        releaseStrategy.onFlush(12, 1200);
+        Assert.assertEquals(12, releaseStrategy.getTargetBatchSize());
+    }
+
+    @Test
+    public void batchShrinksWhenReleasedByTimeout() {
+        final AdaptiveBatchReleaseStrategy releaseStrategy = new AdaptiveBatchReleaseStrategy(5, 100, 1000000);
+        releaseStrategy.onFlush(5, 500);
+        releaseStrategy.onFlush(10, 1000);
+        Assert.assertEquals(20, releaseStrategy.getTargetBatchSize());
+
+        releaseStrategy.onFlush(3, 300);
+        Assert.assertEquals(10, releaseStrategy.getTargetBatchSize());
+        releaseStrategy.onFlush(1, 100);
+        releaseStrategy.onFlush(1, 100);
+        Assert.assertEquals(5, releaseStrategy.getTargetBatchSize());
+    }
+
+    @Test
+    public void batchReleasedWhenMaxBytesReached() {
+        final AdaptiveBatchReleaseStrategy releaseStrategy = new AdaptiveBatchReleaseStrategy(5, 100, 1000);
+        releaseStrategy.onFlush(5, 5000);
+        releaseStrategy.onFlush(10, 10000);
+        Assert.assertEquals(20, releaseStrategy.getTargetBatchSize());
+
+        Assert.assertTrue(releaseStrategy.canRelease(createGroup(2)));
+        releaseStrategy.onFlush(2, 2000);
+        Assert.assertEquals(20, releaseStrategy.getTargetBatchSize());
+    }
+
+    private static SimpleMessageGroup createGroup(int size) {
+        final SimpleMessageGroup group = new SimpleMessageGroup("group");
+        for (int i = 0; i < size; i++) {
+            group.add(new GenericMessage<>(i));
+        }
+        return group;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.routers;
+
+import org.junit.Test;
+import org.springframework.messaging.support.GenericMessage;
+import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IngestionTopicRouterTest {
+
+    @Test
+    public void filesSmallerThanTheThresholdAreSentToTheSmallFilesTopic() {
+        final IngestionTopicRouter router = new IngestionTopicRouter("ingestion", "small-files", 100);
+
+        assertEquals("small-files", router.getTopic(event(0)));
+        assertEquals("small-files", router.getTopic(event(99)));
+        assertEquals("ingestion", router.getTopic(event(100)));
+        assertEquals("ingestion", router.getTopic(event(Long.MAX_VALUE)));
+        assertTrue(router.isRoutingSmallFiles());
+    }
+
+    @Test
+    public void messagesAreRoutedByTheirPayload() {
+        final IngestionTopicRouter router = new IngestionTopicRouter("ingestion", "small-files", 100);
+
+        assertEquals("small-files", router.apply(new GenericMessage<>(event(10))));
+        assertEquals("ingestion", router.apply(new GenericMessage<>(event(1000))));
+    }
+
+    @Test
+    public void zeroThresholdSendsEveryFileToTheIngestionTopic() {
+        final IngestionTopicRouter router = new IngestionTopicRouter("ingestion", "small-files", 0);
+
+        assertEquals("ingestion", router.getTopic(event(0)));
+        assertFalse(router.isRoutingSmallFiles());
+    }
+
+    @Test
+    public void sameTopicDoesNotRouteSmallFiles() {
+        final IngestionTopicRouter router = new IngestionTopicRouter("ingestion", "ingestion", 100);
+
+        assertEquals("ingestion", router.getTopic(event(10)));
+        assertFalse(router.isRoutingSmallFiles());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThresholdIsRejected() {
+        new IngestionTopicRouter("ingestion", "small-files", -1);
+    }
+
+    private static IngestionEvent event(long encryptedFileSize) {
+        return new IngestionEvent("account", "location", Paths.get("/staging"),
+                new FileStatic("/staging/file.gpg", encryptedFileSize, 0),
+                new FileStatic("/staging/file.md5", 32, 0),
+                new FileStatic("/staging/file.gpg.md5", 32, 0));
+    }
+
+}
@@ -24,10 +24,13 @@ import org.junit.rules.TemporaryFolder;
 import org.springframework.integration.file.filters.IgnoreHiddenFileListFilter;
 import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
 import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -58,6 +61,32 @@ public class FileEventRecursiveScannerTest {
         Assert.assertEquals(0, fileEvents.size());
     }
 
+    @Test
+    public void snapshotSuppliedOnFirstScanThenListened() throws IOException {
+        final File test1Txt = temporaryFolder.newFile("test1.txt");
+        final List<FileSystemSnapshot> supplied = new ArrayList<>();
+        final List<FileSystemSnapshot> listened = new ArrayList<>();
+
+        FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+        scanner.setSnapshotListener(listened::add);
+        scanner.initializeDirectoryStatus(() -> {
+            final FileSystemSnapshot snapshot = FileSystemSnapshot.of(createState(test1Txt),
+                    FileSystemSnapshot.Storage.HEAP);
+            supplied.add(snapshot);
+            return snapshot;
+        });
+        Assert.assertTrue(supplied.isEmpty());
+
+        Assert.assertEquals(0, scanner.listFileEvents("location-test", temporaryFolder.getRoot().toPath()).size());
+        Assert.assertEquals(1, supplied.size());
+        Assert.assertTrue(listened.isEmpty());
+
+        temporaryFolder.newFile("test2.txt");
+        Assert.assertEquals(1, scanner.listFileEvents("location-test", temporaryFolder.getRoot().toPath()).size());
+        Assert.assertEquals(1, listened.size());
+        Assert.assertEquals(1, listened.get(0).size());
+    }
+
     private HashMap<String, FileStatic> createState(File... files) {
         HashMap<String, FileStatic> state = new HashMap<>();
         for (File file : files) {
@@ -166,5 +195,152 @@ public class FileEventRecursiveScannerTest {
         Assert.assertEquals(0, fileEvents.size());
     }
 
+    @Test
+    public void parallelScanFindsSameFilesAsSequentialScan() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            temporaryFolder.newFolder("dir" + i, "sub");
+            temporaryFolder.newFile("dir" + i + "/test.txt");
+            temporaryFolder.newFile("dir" + i + "/sub/test.txt");
+        }
+        temporaryFolder.newFolder(".hidden");
+        temporaryFolder.newFile(".hidden/test1.txt");
+        temporaryFolder.newFile("ega_metadata");
+
+        FileEventRecursiveDirectoryScanner sequentialScanner = new FileEventRecursiveDirectoryScanner();
+        sequentialScanner.setFilter(new CompositeAbstractFileListFilter(
+                new IgnoreHiddenFileListFilter(), new DirectoryPatternFileListFilter("sub")));
+        FileEventRecursiveDirectoryScanner parallelScanner = new FileEventRecursiveDirectoryScanner();
+        parallelScanner.setFilter(new CompositeAbstractFileListFilter(
+                new IgnoreHiddenFileListFilter(), new DirectoryPatternFileListFilter("sub")));
+        parallelScanner.setParallelism(4);
+
+        final List<FileEvent> expected = sequentialScanner.listFileEvents("location-test",
+                temporaryFolder.getRoot().toPath());
+        final List<FileEvent> actual = parallelScanner.listFileEvents("location-test",
+                temporaryFolder.getRoot().toPath());
+
+        Assert.assertEquals(6, actual.size());
+        Collections.sort(expected);
+        Collections.sort(actual);
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getRelativePath(), actual.get(i).getRelativePath());
+            Assert.assertEquals(expected.get(i).getSize(), actual.get(i).getSize());
+            Assert.assertEquals(expected.get(i).getLastModified(), actual.get(i).getLastModified());
+        }
+    }
+
+    @Test
+    public void sortedScanFindsSameFilesAsSequentialScan() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            temporaryFolder.newFolder("dir" + i, "sub");
+            temporaryFolder.newFile("dir" + i + "/test.txt");
+            temporaryFolder.newFile("dir" + i + "/sub/test.txt");
+        }
+        temporaryFolder.newFolder(".hidden");
+        temporaryFolder.newFile(".hidden/test1.txt");
+        temporaryFolder.newFile("dir0.txt");
+
+        FileEventRecursiveDirectoryScanner sequentialScanner = new FileEventRecursiveDirectoryScanner();
+        sequentialScanner.setFilter(new CompositeAbstractFileListFilter(
+                new IgnoreHiddenFileListFilter(), new DirectoryPatternFileListFilter("sub")));
+        FileEventRecursiveDirectoryScanner sortedScanner = new FileEventRecursiveDirectoryScanner();
+        sortedScanner.setFilter(new CompositeAbstractFileListFilter(
+                new IgnoreHiddenFileListFilter(), new DirectoryPatternFileListFilter("sub")));
+        sortedScanner.setSortedWalk(true);
+
+        final List<FileEvent> expected = sequentialScanner.listFileEvents("location-test",
+                temporaryFolder.getRoot().toPath());
+        final List<FileEvent> actual = sortedScanner.listFileEvents("location-test",
+                temporaryFolder.getRoot().toPath());
+
+        Assert.assertEquals(6, actual.size());
+        Assert.assertEquals("dir0/test.txt", actual.get(0).getRelativePath());
+        Assert.assertEquals("dir0.txt", actual.get(1).getRelativePath());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getRelativePath(), actual.get(i).getRelativePath());
+            Assert.assertEquals(expected.get(i).getSize(), actual.get(i).getSize());
+            Assert.assertEquals(expected.get(i).getLastModified(), actual.get(i).getLastModified());
+        }
+    }
+
+    @Test
+    public void sortedScanStreamsEventsWhileWalking() throws IOException {
+        temporaryFolder.newFolder("a");
+        temporaryFolder.newFolder("b");
+        final File deleted = temporaryFolder.newFile("a/deleted.txt");
+        temporaryFolder.newFile("b/test.txt");
+
+        FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+        scanner.setSortedWalk(true);
+        Assert.assertEquals(2, scanner.listFileEvents("location-test", temporaryFolder.getRoot().toPath()).size());
+
+        deleted.delete();
+        temporaryFolder.newFile("a/created.txt");
+        final List<String> events = new ArrayList<>();
+        scanner.scanFileEvents("location-test", temporaryFolder.getRoot().toPath(),
+                fileEvent -> events.add(fileEvent.getType() + " " + fileEvent.getRelativePath()));
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(FileEvent.Type.CREATED + " a/created.txt", events.get(0));
+        Assert.assertEquals(FileEvent.Type.DELETED + " a/deleted.txt", events.get(1));
+    }
+
+    @Test
+    public void sortedScanSkipsUnchangedDirectories() throws IOException {
+        temporaryFolder.newFolder("a");
+        temporaryFolder.newFolder("b", "c");
+        final File rewritten = temporaryFolder.newFile("a/rewritten.txt");
+        temporaryFolder.newFile("test.txt");
+        final long past = System.currentTimeMillis() - 60000;
+        for (String directory : new String[]{"", "a", "b", "b/c"}) {
+            new File(temporaryFolder.getRoot(), directory).setLastModified(past);
+        }
+
+        FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+        scanner.setSortedWalk(true);
+        scanner.setDeepScanPeriod(Long.MAX_VALUE);
+        Assert.assertEquals(2, scanner.listFileEvents("location-test", temporaryFolder.getRoot().toPath()).size());
+        Assert.assertTrue(scanner.getLastScanStatistics().get().isDeepScan());
+        Assert.assertEquals(4, scanner.getLastScanStatistics().get().getDirectoriesListed());
+
+        try (FileOutputStream stream = new FileOutputStream(rewritten)) {
+            stream.write("kiwi".getBytes());
+        }
+        temporaryFolder.newFile("b/c/created.txt");
+        final List<FileEvent> fileEvents = scanner.listFileEvents("location-test",
+                temporaryFolder.getRoot().toPath());
+
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.CREATED, fileEvents.get(0).getType());
+        Assert.assertEquals("b/c/created.txt", fileEvents.get(0).getRelativePath());
+        final ScanStatistics statistics = scanner.getLastScanStatistics().get();
+        Assert.assertFalse(statistics.isDeepScan());
+        Assert.assertEquals(1, statistics.getDirectoriesListed());
+        Assert.assertEquals(3, statistics.getDirectoriesSkipped());
+        Assert.assertEquals(2, statistics.getFilesSkipped());
+
+        scanner.setDeepScanPeriod(0);
+        final List<FileEvent> deepScanEvents = scanner.listFileEvents("location-test",
+                temporaryFolder.getRoot().toPath());
+
+        Assert.assertEquals(1, deepScanEvents.size());
+        Assert.assertEquals(FileEvent.Type.UPDATED, deepScanEvents.get(0).getType());
+        Assert.assertEquals("a/rewritten.txt", deepScanEvents.get(0).getRelativePath());
+    }
+
+    @Test
+    public void parallelScanThenDeleted() throws IOException {
+        temporaryFolder.newFolder("test");
+        final File test1Txt = temporaryFolder.newFile("test/test1.txt");
+
+        FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+        scanner.setParallelism(2);
+        Assert.assertEquals(1, scanner.listFileEvents("location-test", temporaryFolder.getRoot().toPath()).size());
+
+        test1Txt.delete();
+        final List<FileEvent> deleteEvent = scanner.listFileEvents("location-test", temporaryFolder.getRoot().toPath());
+        Assert.assertEquals(1, deleteEvent.size());
+        Assert.assertEquals(FileEvent.Type.DELETED, deleteEvent.get(0).getType());
+    }
 
 }
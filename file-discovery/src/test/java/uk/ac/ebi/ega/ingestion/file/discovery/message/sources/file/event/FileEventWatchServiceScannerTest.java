@@ -0,0 +1,253 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class FileEventWatchServiceScannerTest {
+
+    private static final String LOCATION_ID = "location-test";
+
+    private static final long NOTIFICATION_TIMEOUT_MS = 15000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileEventWatchServiceScanner scanner;
+
+    @Before
+    public void init() {
+        scanner = new FileEventWatchServiceScanner(1, TimeUnit.DAYS);
+        scanner.start();
+    }
+
+    @After
+    public void close() {
+        scanner.stop();
+    }
+
+    @Test
+    public void filesCreatedBeforeFirstScan() throws IOException {
+        temporaryFolder.newFile("test1.txt");
+
+        final List<FileEvent> fileEvents = scanner.listFileEvents(LOCATION_ID, getRoot());
+
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.CREATED, fileEvents.get(0).getType());
+    }
+
+    @Test
+    public void fileCreatedAfterFirstScan() throws IOException, InterruptedException {
+        Assert.assertEquals(0, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        temporaryFolder.newFile("test1.txt");
+
+        final List<FileEvent> fileEvents = waitForEvents();
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.CREATED, fileEvents.get(0).getType());
+        Assert.assertEquals("test1.txt", fileEvents.get(0).getRelativePath());
+    }
+
+    @Test
+    public void filesCreatedThenModified() throws IOException, InterruptedException {
+        final File test1Txt = temporaryFolder.newFile("test1.txt");
+        Assert.assertEquals(1, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        //We need to wait so that it is not modified in the same ms.
+        Thread.sleep(1000);
+        try (FileOutputStream stream = new FileOutputStream(test1Txt)) {
+            stream.write("kiwi".getBytes());
+        }
+
+        final List<FileEvent> fileEvents = waitForEvents();
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.UPDATED, fileEvents.get(0).getType());
+        Assert.assertEquals(4, fileEvents.get(0).getSize());
+    }
+
+    @Test
+    public void filesCreatedThenDeleted() throws IOException, InterruptedException {
+        final File test1Txt = temporaryFolder.newFile("test1.txt");
+        Assert.assertEquals(1, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        Assert.assertTrue(test1Txt.delete());
+
+        final List<FileEvent> fileEvents = waitForEvents();
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.DELETED, fileEvents.get(0).getType());
+    }
+
+    @Test
+    public void fileCreatedInNewSubDirectory() throws IOException, InterruptedException {
+        Assert.assertEquals(0, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        final File directory = temporaryFolder.newFolder("test");
+        temporaryFolder.newFile("test/test1.txt");
+
+        final List<FileEvent> fileEvents = waitForEvents();
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.CREATED, fileEvents.get(0).getType());
+        Assert.assertTrue(scanner.getWatchedDirectories().contains(directory.toPath()));
+
+        // Files created afterwards are notified by the new directory
+        temporaryFolder.newFile("test/test2.txt");
+        final List<FileEvent> newFileEvents = waitForEvents();
+        Assert.assertEquals(1, newFileEvents.size());
+        Assert.assertEquals("test/test2.txt", newFileEvents.get(0).getRelativePath());
+    }
+
+    @Test
+    public void subDirectoryDeleted() throws IOException, InterruptedException {
+        temporaryFolder.newFolder("test");
+        final File test1Txt = temporaryFolder.newFile("test/test1.txt");
+        final File test2Txt = temporaryFolder.newFile("test/test2.txt");
+        Assert.assertEquals(2, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        Assert.assertTrue(test1Txt.delete());
+        Assert.assertTrue(test2Txt.delete());
+        Assert.assertTrue(test1Txt.getParentFile().delete());
+
+        int deleted = 0;
+        final long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT_MS;
+        while (deleted < 2 && System.currentTimeMillis() < deadline) {
+            for (FileEvent fileEvent : waitForEvents()) {
+                Assert.assertEquals(FileEvent.Type.DELETED, fileEvent.getType());
+                deleted++;
+            }
+        }
+        Assert.assertEquals(2, deleted);
+    }
+
+    @Test
+    public void ignoreHiddenFiles() throws IOException, InterruptedException {
+        Assert.assertEquals(0, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        temporaryFolder.newFile(".test1.txt");
+        temporaryFolder.newFile("test2.txt");
+
+        final List<FileEvent> fileEvents = waitForEvents();
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals("test2.txt", fileEvents.get(0).getRelativePath());
+    }
+
+    @Test
+    public void reconciliationFindsChangesWithoutNotifications() throws IOException {
+        scanner = new FileEventWatchServiceScanner(0, TimeUnit.MILLISECONDS);
+        temporaryFolder.newFile("test1.txt");
+        Assert.assertEquals(1, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+
+        temporaryFolder.newFile("test2.txt");
+
+        // Every scan is a full walk when the reconciliation period is 0
+        final List<FileEvent> fileEvents = scanner.listFileEvents(LOCATION_ID, getRoot());
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals("test2.txt", fileEvents.get(0).getRelativePath());
+    }
+
+    @Test
+    public void directoryThatCannotBeWatchedFallsBackToRecursiveWalks() throws IOException {
+        scanner = new FailingWatchScanner("deep");
+        temporaryFolder.newFile("test1.txt");
+        temporaryFolder.newFolder("deep");
+        temporaryFolder.newFile("deep/test2.txt");
+
+        final List<FileEvent> fileEvents = scanner.listFileEvents(LOCATION_ID, getRoot());
+        Assert.assertEquals(2, fileEvents.size());
+        Assert.assertTrue(scanner.isFallenBack());
+        Assert.assertTrue(scanner.getWatchedDirectories().isEmpty());
+
+        // Without notifications the next scan finds the new file by walking the tree
+        temporaryFolder.newFile("test3.txt");
+        final List<FileEvent> newFileEvents = scanner.listFileEvents(LOCATION_ID, getRoot());
+        Assert.assertEquals(1, newFileEvents.size());
+        Assert.assertEquals("test3.txt", newFileEvents.get(0).getRelativePath());
+    }
+
+    @Test
+    public void newDirectoryThatCannotBeWatchedFallsBackToRecursiveWalks() throws IOException, InterruptedException {
+        scanner = new FailingWatchScanner("late");
+        temporaryFolder.newFile("test1.txt");
+        Assert.assertEquals(1, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+        Assert.assertFalse(scanner.isFallenBack());
+
+        temporaryFolder.newFolder("late");
+        temporaryFolder.newFile("late/test2.txt");
+
+        final List<FileEvent> fileEvents = waitForEvents();
+        Assert.assertEquals(1, fileEvents.size());
+        Assert.assertEquals(FileEvent.Type.CREATED, fileEvents.get(0).getType());
+        Assert.assertEquals("late/test2.txt", fileEvents.get(0).getRelativePath());
+        Assert.assertTrue(scanner.isFallenBack());
+        Assert.assertEquals(0, scanner.listFileEvents(LOCATION_ID, getRoot()).size());
+    }
+
+    private Path getRoot() {
+        return temporaryFolder.getRoot().toPath();
+    }
+
+    /**
+     * Notifications are delivered asynchronously, scans until one of them returns events.
+     */
+    private List<FileEvent> waitForEvents() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + NOTIFICATION_TIMEOUT_MS;
+        List<FileEvent> fileEvents = scanner.listFileEvents(LOCATION_ID, getRoot());
+        while (fileEvents.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            fileEvents = scanner.listFileEvents(LOCATION_ID, getRoot());
+        }
+        return fileEvents;
+    }
+
+    /**
+     * Fails to watch the directories with the given name, as when the limit of watches of the system is reached.
+     */
+    private static class FailingWatchScanner extends FileEventWatchServiceScanner {
+
+        private final String failingDirectoryName;
+
+        FailingWatchScanner(String failingDirectoryName) {
+            super(1, TimeUnit.DAYS);
+            this.failingDirectoryName = failingDirectoryName;
+        }
+
+        @Override
+        WatchKey watch(Path directory, WatchService watchService) throws IOException {
+            if (directory.getFileName().toString().equals(failingDirectoryName)) {
+                throw new IOException("User limit of inotify watches reached");
+            }
+            return super.watch(directory, watchService);
+        }
+
+    }
+
+}
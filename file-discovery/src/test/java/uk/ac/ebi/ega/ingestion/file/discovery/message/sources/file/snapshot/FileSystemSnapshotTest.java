@@ -0,0 +1,188 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class FileSystemSnapshotTest {
+
+    @Test
+    public void pathsSortedByName() {
+        Assert.assertTrue(FileSystemSnapshot.comparePaths("/a/b/c", "/a/b.txt") < 0);
+        Assert.assertTrue(FileSystemSnapshot.comparePaths("/a/b", "/a/b.txt") < 0);
+        Assert.assertTrue(FileSystemSnapshot.comparePaths("/a/c", "/a/b/c") > 0);
+        Assert.assertEquals(0, FileSystemSnapshot.comparePaths("/a/b", "/a/b"));
+    }
+
+    @Test
+    public void iterateInPathOrder() {
+        for (FileSystemSnapshot.Storage storage : FileSystemSnapshot.Storage.values()) {
+            final Map<String, FileStatic> files = createFiles(100);
+            final FileSystemSnapshot snapshot = FileSystemSnapshot.of(files, storage);
+
+            Assert.assertEquals(100, snapshot.size());
+            final List<String> paths = new ArrayList<>();
+            snapshot.cursor().forEachRemaining(file -> {
+                Assert.assertEquals(files.get(file.getAbsolutePath()).length(), file.length());
+                Assert.assertEquals(files.get(file.getAbsolutePath()).lastModified(), file.lastModified());
+                paths.add(file.getAbsolutePath());
+            });
+            final List<String> expectedPaths = new ArrayList<>(files.keySet());
+            expectedPaths.sort(FileSystemSnapshot.PATH_ORDER);
+            Assert.assertEquals(expectedPaths, paths);
+        }
+    }
+
+    @Test
+    public void findFiles() {
+        final Map<String, FileStatic> files = createFiles(100);
+        final FileSystemSnapshot snapshot = FileSystemSnapshot.of(files, FileSystemSnapshot.Storage.OFF_HEAP);
+
+        files.forEach((path, file) -> Assert.assertEquals(file.length(),
+                snapshot.find(path).map(FileStatic::length).orElse(-1L).longValue()));
+        Assert.assertFalse(snapshot.find("/").isPresent());
+        Assert.assertFalse(snapshot.find("/staging/dir-3/file-99.txt").isPresent());
+        Assert.assertFalse(FileSystemSnapshot.empty().find("/staging").isPresent());
+    }
+
+    @Test
+    public void cursorFromPath() {
+        final Map<String, FileStatic> files = createFiles(100);
+        final FileSystemSnapshot snapshot = FileSystemSnapshot.of(files, FileSystemSnapshot.Storage.HEAP);
+
+        final FileSystemSnapshot.Cursor cursor = snapshot.cursor("/staging/dir-3/");
+        final List<String> paths = new ArrayList<>();
+        while (cursor.hasNext()) {
+            final String path = cursor.next().getAbsolutePath();
+            if (!path.startsWith("/staging/dir-3/")) {
+                break;
+            }
+            paths.add(path);
+        }
+        Assert.assertEquals(files.keySet().stream().filter(path -> path.startsWith("/staging/dir-3/")).count(),
+                paths.size());
+        Assert.assertEquals("/staging/dir-4/file-11.txt", snapshot.cursor("/staging/dir-3\u0000").next()
+                .getAbsolutePath());
+        Assert.assertFalse(snapshot.cursor("/staging/dir-7").hasNext());
+        Assert.assertFalse(FileSystemSnapshot.empty().cursor("/staging").hasNext());
+    }
+
+    @Test
+    public void pathsAreCompressed() {
+        final FileSystemSnapshot snapshot = FileSystemSnapshot.of(createFiles(1000), FileSystemSnapshot.Storage.HEAP);
+
+        long pathBytes = 0;
+        for (FileSystemSnapshot.Cursor cursor = snapshot.cursor(); cursor.hasNext(); ) {
+            pathBytes += cursor.next().getAbsolutePath().length();
+        }
+        Assert.assertTrue(snapshot.getMemoryUsage() < pathBytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsortedPathsRejected() {
+        FileSystemSnapshot.builder(FileSystemSnapshot.Storage.HEAP)
+                .add("/staging/b", 1, 1)
+                .add("/staging/a", 1, 1);
+    }
+
+    @Test
+    public void diff() {
+        final FileSystemSnapshot previous = FileSystemSnapshot.builder(FileSystemSnapshot.Storage.HEAP)
+                .add("/staging/deleted.txt", 1, 1)
+                .add("/staging/dir/updated.txt", 1, 1)
+                .add("/staging/unchanged.txt", 1, 1)
+                .build();
+        final List<FileStatic> current = Arrays.asList(
+                new FileStatic("/staging/created.txt", 2, 2),
+                new FileStatic("/staging/dir/updated.txt", 2, 2),
+                new FileStatic("/staging/unchanged.txt", 1, 1));
+
+        final List<String> changes = new ArrayList<>();
+        final FileSystemSnapshot snapshot = previous.diff(current.iterator(), FileSystemSnapshot.Storage.OFF_HEAP,
+                (type, file) -> changes.add(type + " " + file.getAbsolutePath()));
+
+        Assert.assertEquals(Arrays.asList(
+                FileEvent.Type.CREATED + " /staging/created.txt",
+                FileEvent.Type.DELETED + " /staging/deleted.txt",
+                FileEvent.Type.UPDATED + " /staging/dir/updated.txt"), changes);
+        Assert.assertEquals(3, snapshot.size());
+        Assert.assertEquals(2, snapshot.find("/staging/dir/updated.txt").get().lastModified());
+        Assert.assertFalse(snapshot.find("/staging/deleted.txt").isPresent());
+    }
+
+    @Test
+    public void update() {
+        final FileSystemSnapshot previous = FileSystemSnapshot.builder(FileSystemSnapshot.Storage.HEAP)
+                .add("/staging/a.txt", 1, 1)
+                .add("/staging/c.txt", 1, 1)
+                .build();
+        final List<FileStatic> changes = Arrays.asList(
+                new FileStatic("/staging/b.txt", 2, 2),
+                new FileStatic("/staging/c.txt", 2, 2));
+
+        final FileSystemSnapshot snapshot = previous.update(changes.iterator(), FileSystemSnapshot.Storage.HEAP);
+
+        Assert.assertEquals(3, snapshot.size());
+        Assert.assertEquals(1, snapshot.find("/staging/a.txt").get().lastModified());
+        Assert.assertEquals(2, snapshot.find("/staging/b.txt").get().lastModified());
+        Assert.assertEquals(2, snapshot.find("/staging/c.txt").get().lastModified());
+    }
+
+    @Test
+    public void updateWithDeletedPaths() {
+        final FileSystemSnapshot previous = FileSystemSnapshot.builder(FileSystemSnapshot.Storage.HEAP)
+                .add("/staging/a.txt", 1, 1)
+                .add("/staging/b.txt", 1, 1)
+                .add("/staging/c.txt", 1, 1)
+                .build();
+        final List<FileStatic> changes = Collections.singletonList(new FileStatic("/staging/c.txt", 2, 2));
+        final Set<String> deletedPaths = new HashSet<>(Arrays.asList("/staging/a.txt", "/staging/c.txt",
+                "/staging/unknown.txt"));
+
+        final FileSystemSnapshot snapshot = previous.update(changes.iterator(), deletedPaths,
+                FileSystemSnapshot.Storage.HEAP);
+
+        // c.txt was deleted and created again
+        Assert.assertEquals(2, snapshot.size());
+        Assert.assertFalse(snapshot.find("/staging/a.txt").isPresent());
+        Assert.assertEquals(1, snapshot.find("/staging/b.txt").get().lastModified());
+        Assert.assertEquals(2, snapshot.find("/staging/c.txt").get().lastModified());
+    }
+
+    private static Map<String, FileStatic> createFiles(int count) {
+        final Map<String, FileStatic> files = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String path = "/staging/dir-" + (i % 7) + "/file-" + i + ".txt";
+            files.put(path, new FileStatic(path, i, 1000L + i));
+        }
+        return files;
+    }
+
+}
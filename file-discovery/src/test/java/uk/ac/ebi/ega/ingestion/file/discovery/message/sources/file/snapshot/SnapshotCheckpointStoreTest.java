@@ -0,0 +1,117 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class SnapshotCheckpointStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void saveThenLoad() throws IOException {
+        final SnapshotCheckpointStore store = new SnapshotCheckpointStore(temporaryFolder.getRoot().toPath());
+        final FileSystemSnapshot snapshot = createSnapshot(100);
+        store.save("area", new SnapshotCheckpoint("/staging", 1234L, snapshot));
+
+        final Optional<SnapshotCheckpoint> checkpoint = store.load("area", "/staging");
+
+        Assert.assertTrue(checkpoint.isPresent());
+        Assert.assertEquals(1234L, checkpoint.get().getHighWaterMark());
+        Assert.assertEquals(toList(snapshot), toList(checkpoint.get().getSnapshot()));
+        Assert.assertTrue(checkpoint.get().getSnapshot().find("/staging/file-42.txt").isPresent());
+    }
+
+    @Test
+    public void missingCheckpoint() {
+        final SnapshotCheckpointStore store = new SnapshotCheckpointStore(temporaryFolder.getRoot().toPath());
+
+        Assert.assertFalse(store.load("area", "/staging").isPresent());
+    }
+
+    @Test
+    public void checkpointOfAnotherLocationPathIgnored() throws IOException {
+        final SnapshotCheckpointStore store = new SnapshotCheckpointStore(temporaryFolder.getRoot().toPath());
+        store.save("area", new SnapshotCheckpoint("/staging", 1234L, createSnapshot(10)));
+
+        Assert.assertFalse(store.load("area", "/other").isPresent());
+    }
+
+    @Test
+    public void corruptedCheckpointIgnored() throws IOException {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        final SnapshotCheckpointStore store = new SnapshotCheckpointStore(directory);
+        store.save("area", new SnapshotCheckpoint("/staging", 1234L, createSnapshot(10)));
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("area.snapshot").toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            final int lastByte = file.read();
+            file.seek(file.length() - 1);
+            file.write(lastByte ^ 0xFF);
+        }
+
+        Assert.assertFalse(store.load("area", "/staging").isPresent());
+    }
+
+    @Test
+    public void otherVersionIgnored() throws IOException {
+        final Path directory = temporaryFolder.getRoot().toPath();
+        final SnapshotCheckpointStore store = new SnapshotCheckpointStore(directory);
+        store.save("area", new SnapshotCheckpoint("/staging", 1234L, createSnapshot(10)));
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("area.snapshot").toFile(), "rw")) {
+            file.seek(Integer.BYTES);
+            file.writeInt(SnapshotCheckpointStore.VERSION + 1);
+        }
+
+        Assert.assertFalse(store.load("area", "/staging").isPresent());
+    }
+
+    private static FileSystemSnapshot createSnapshot(int files) {
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            paths.add("/staging/file-" + i + ".txt");
+        }
+        paths.sort(FileSystemSnapshot.PATH_ORDER);
+        final FileSystemSnapshot.Builder builder = FileSystemSnapshot.builder(FileSystemSnapshot.Storage.HEAP);
+        for (int i = 0; i < paths.size(); i++) {
+            builder.add(paths.get(i), i, 1000L + i);
+        }
+        return builder.build();
+    }
+
+    private static List<String> toList(FileSystemSnapshot snapshot) {
+        final List<String> files = new ArrayList<>();
+        snapshot.cursor().forEachRemaining((FileStatic file) ->
+                files.add(file.getAbsolutePath() + " " + file.length() + " " + file.lastModified()));
+        return files;
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.message.sources.ingestion;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IngestionCandidateIndexTest {
+
+    private static final String LOCATION_ID = "location";
+
+    private static final Path DIRECTORY = Paths.get("/staging/location");
+
+    private static final long OLD = 1000;
+
+    private static final long CUT_OFF = 2000;
+
+    private static final long RECENT = 3000;
+
+    private Map<String, StagingFile> database;
+
+    private int databaseSearches;
+
+    private IngestionCandidateIndex index;
+
+    @Before
+    public void setUp() {
+        database = new HashMap<>();
+        databaseSearches = 0;
+        index = new IngestionCandidateIndex(LOCATION_ID, "account", DIRECTORY,
+                locationId -> database.values(),
+                (locationId, relativePaths) -> {
+                    databaseSearches++;
+                    return relativePaths.stream().map(database::get).filter(Objects::nonNull)
+                            .collect(Collectors.toList());
+                },
+                0);
+    }
+
+    @Test
+    public void completeTripleIsPolledOnce() {
+        persist("a/test.gpg", OLD);
+        persist("a/test.gpg.md5", OLD);
+        persist("a/test.md5", OLD);
+
+        final List<IngestionEvent> events = index.poll(CUT_OFF);
+
+        assertEquals(1, events.size());
+        assertEquals("a/test.gpg", events.get(0).getEncryptedFile().getAbsolutePath());
+        assertEquals("a/test.gpg.md5", events.get(0).getEncryptedMd5File().getAbsolutePath());
+        assertEquals("a/test.md5", events.get(0).getPlainMd5File().getAbsolutePath());
+        assertTrue(index.poll(CUT_OFF).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void incompleteOrRecentTriplesAreNotPolled() {
+        persist("incomplete.gpg", OLD);
+        persist("incomplete.md5", OLD);
+        persist("recent.gpg", OLD);
+        persist("recent.gpg.md5", RECENT);
+        persist("recent.md5", OLD);
+        persist("other.txt", OLD);
+
+        assertTrue(index.poll(CUT_OFF).isEmpty());
+        assertEquals(2, index.size());
+        assertEquals(1, index.poll(RECENT + 1).size());
+    }
+
+    @Test
+    public void tripleCompletedByFileEventsIsPolled() {
+        persist("test.gpg", OLD);
+        assertTrue(index.poll(CUT_OFF).isEmpty());
+
+        index.update(persist("test.gpg.md5", OLD));
+        assertTrue(index.poll(CUT_OFF).isEmpty());
+        index.update(persist("test.md5", OLD));
+
+        assertEquals(1, index.poll(CUT_OFF).size());
+    }
+
+    @Test
+    public void deletedFileRemovesTripleFromPoll() {
+        persist("test.gpg", OLD);
+        persist("test.gpg.md5", OLD);
+        index.poll(CUT_OFF);
+        index.update(persist("test.md5", OLD));
+
+        database.remove("test.gpg");
+        index.update(new FileEvent(FileEvent.Type.DELETED, LOCATION_ID, DIRECTORY.toString(), "test.gpg", 0, OLD));
+
+        assertTrue(index.poll(CUT_OFF).isEmpty());
+    }
+
+    @Test
+    public void changedFileOfPolledTripleIsCompletedFromDatabase() {
+        persist("test.gpg", OLD);
+        persist("test.gpg.md5", OLD);
+        persist("test.md5", OLD);
+        assertEquals(1, index.poll(CUT_OFF).size());
+
+        index.update(persist("test.gpg", OLD + 1));
+
+        final List<IngestionEvent> events = index.poll(CUT_OFF);
+        assertEquals(1, events.size());
+        assertEquals(OLD + 1, events.get(0).getEncryptedFile().lastModified());
+    }
+
+    @Test
+    public void changedFilesOfPolledTriplesAreSearchedOnceForTheBatch() {
+        final List<FileEvent> fileEvents = new ArrayList<>();
+        for (String name : Arrays.asList("first", "second")) {
+            persist(name + ".gpg", OLD);
+            persist(name + ".gpg.md5", OLD);
+            persist(name + ".md5", OLD);
+        }
+        assertEquals(2, index.poll(CUT_OFF).size());
+
+        fileEvents.add(persist("first.gpg", OLD + 1));
+        fileEvents.add(persist("second.md5", OLD + 1));
+        fileEvents.add(persist("second.gpg", OLD + 1));
+        index.update(fileEvents);
+
+        assertEquals(1, databaseSearches);
+        assertEquals(2, index.poll(CUT_OFF).size());
+    }
+
+    private FileEvent persist(String relativePath, long lastModified) {
+        database.put(relativePath, new TestStagingFile(relativePath, lastModified));
+        return new FileEvent(FileEvent.Type.CREATED, LOCATION_ID, DIRECTORY.toString(), relativePath, 1,
+                lastModified);
+    }
+
+    private static class TestStagingFile implements StagingFile {
+
+        private final String relativePath;
+
+        private final long lastModified;
+
+        TestStagingFile(String relativePath, long lastModified) {
+            this.relativePath = relativePath;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String getId() {
+            return relativePath;
+        }
+
+        @Override
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        @Override
+        public String getStagingAreaId() {
+            return LOCATION_ID;
+        }
+
+        @Override
+        public Long getFileSize() {
+            return 1L;
+        }
+
+        @Override
+        public LocalDateTime getUpdateDate() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneId.systemDefault());
+        }
+
+        @Override
+        public FileStatic toFileStatic() {
+            return new FileStatic(relativePath, 1, lastModified);
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.persistence;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFileImpl;
+
+import javax.sql.DataSource;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StagingFileBulkWriterTest {
+
+    private static final LocalDateTime UPDATE_DATE = LocalDateTime.of(2019, 5, 1, 10, 30);
+
+    private Connection connection;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private List<String> executed;
+
+    private List<StringWriter> copies;
+
+    @Before
+    public void setUp() throws SQLException {
+        executed = new ArrayList<>();
+        copies = new ArrayList<>();
+        connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.createStatement()).thenAnswer(invocation -> {
+            final Statement statement = mock(Statement.class);
+            when(statement.execute(anyString())).thenAnswer(execute -> {
+                final String sql = execute.getArgument(0);
+                executed.add(sql.substring(0, sql.indexOf(' ')));
+                return false;
+            });
+            return statement;
+        });
+        final DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    private StagingFileBulkWriter writer(int chunkSize) {
+        return new StagingFileBulkWriter(jdbcTemplate, chunkSize, copyConnection -> {
+            final StringWriter copy = new StringWriter();
+            copies.add(copy);
+            executed.add("copy");
+            return copy;
+        });
+    }
+
+    @Test
+    public void changesAreCopiedAndAppliedInChunksOfOneTransaction() throws SQLException {
+        writer(2).write(Arrays.asList(file("a.txt"), file("b.txt"), file("c.txt")), Arrays.asList("d", "e"));
+
+        assertEquals(Arrays.asList("create",
+                "copy", "insert", "with", "truncate",
+                "copy", "insert", "with", "truncate",
+                "copy", "insert", "with"), executed);
+        assertEquals(3, copies.size());
+        assertEquals(row("a.txt") + row("b.txt"), copies.get(0).toString());
+        assertEquals(row("c.txt") + "\"d\",,,,,true\n", copies.get(1).toString());
+        assertEquals("\"e\",,,,,true\n", copies.get(2).toString());
+        verify(connection).setAutoCommit(false);
+        verify(connection).commit();
+        verify(connection, never()).rollback();
+        verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    public void valuesAreQuotedForTheCsvFormat() {
+        writer(10).write(Collections.singletonList(file("dir, \"x\".txt")), Collections.emptyList());
+
+        assertEquals("\"id-dir, \"\"x\"\".txt\",\"area\",\"dir, \"\"x\"\".txt\",42,2019-05-01T10:30,false\n",
+                copies.get(0).toString());
+    }
+
+    @Test
+    public void chunksAreAppliedWithAnUpsertAndAJoinBasedDeleteThatRecordsTheDeletions() throws SQLException {
+        final List<String> statements = new ArrayList<>();
+        when(connection.createStatement()).thenAnswer(invocation -> {
+            final Statement statement = mock(Statement.class);
+            when(statement.execute(anyString())).thenAnswer(execute -> statements.add(execute.getArgument(0)));
+            return statement;
+        });
+
+        writer(10).write(Collections.singletonList(file("a.txt")), Collections.singletonList("d"));
+
+        assertEquals(3, statements.size());
+        assertEquals("insert into STAGING_AREA_FILES (ID, STAGING_AREA_ID, RELATIVE_PATH, FILE_SIZE, UPDATE_DATE) " +
+                "select ID, STAGING_AREA_ID, RELATIVE_PATH, FILE_SIZE, UPDATE_DATE from STAGING_AREA_FILE_CHANGES " +
+                "where not DELETED on conflict (ID) do update set STAGING_AREA_ID = excluded.STAGING_AREA_ID, " +
+                "RELATIVE_PATH = excluded.RELATIVE_PATH, FILE_SIZE = excluded.FILE_SIZE, " +
+                "UPDATE_DATE = excluded.UPDATE_DATE, CHANGE_DATE = current_timestamp;", statements.get(1));
+        assertEquals("with DELETED_FILES as (delete from STAGING_AREA_FILES f using STAGING_AREA_FILE_CHANGES c " +
+                "where f.ID = c.ID and c.DELETED returning f.ID, f.STAGING_AREA_ID, f.RELATIVE_PATH) " +
+                "insert into STAGING_AREA_FILE_DELETIONS (ID, STAGING_AREA_ID, RELATIVE_PATH) " +
+                "select ID, STAGING_AREA_ID, RELATIVE_PATH from DELETED_FILES;", statements.get(2));
+    }
+
+    @Test
+    public void failedChunkRollsBackEveryChunk() throws SQLException {
+        when(connection.createStatement()).thenAnswer(invocation -> {
+            final Statement statement = mock(Statement.class);
+            when(statement.execute(anyString())).thenAnswer(execute -> {
+                final String sql = execute.getArgument(0);
+                executed.add(sql);
+                if (sql.startsWith("insert") && executed.stream().filter(s -> s.startsWith("insert")).count() == 2) {
+                    throw new SQLException("Upsert failed");
+                }
+                return false;
+            });
+            return statement;
+        });
+
+        try {
+            writer(1).write(Arrays.asList(file("a.txt"), file("b.txt"), file("c.txt")), Collections.emptyList());
+            fail("The write should have failed");
+        } catch (DataAccessException e) {
+            assertEquals(2, copies.size());
+        }
+        verify(connection, never()).commit();
+        verify(connection).rollback();
+        verify(connection).setAutoCommit(true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeMustBePositive() {
+        writer(0);
+    }
+
+    private static StagingFileImpl file(String relativePath) {
+        return new StagingFileImpl("id-" + relativePath, "area", relativePath, 42, UPDATE_DATE);
+    }
+
+    private static String row(String relativePath) {
+        return "\"id-" + relativePath + "\",\"area\",\"" + relativePath + "\",42,2019-05-01T10:30,false\n";
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.discovery.services;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.FileSystemSnapshot;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.SnapshotCheckpoint;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.snapshot.SnapshotCheckpointStore;
+import uk.ac.ebi.ega.ingestion.file.discovery.models.StagingArea;
+import uk.ac.ebi.ega.ingestion.file.discovery.persistence.repositories.StagingFileImpl;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StagingAreaSnapshotServiceTest {
+
+    private static final LocalDateTime FIRST_CHANGE = LocalDateTime.of(2019, 5, 1, 10, 0);
+
+    private static final LocalDateTime SECOND_CHANGE = LocalDateTime.of(2019, 5, 1, 11, 0);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StagingAreaService stagingAreaService;
+
+    private StagingArea stagingArea;
+
+    private Path checkpointDirectory;
+
+    @Before
+    public void setUp() {
+        checkpointDirectory = temporaryFolder.getRoot().toPath();
+        stagingAreaService = mock(StagingAreaService.class);
+        stagingArea = mock(StagingArea.class);
+        when(stagingArea.getId()).thenReturn("area");
+        when(stagingArea.getPath()).thenReturn("/staging");
+        when(stagingAreaService.findLastFileChangeOfStagingArea("area")).thenReturn(Optional.of(FIRST_CHANGE));
+        doReturn(Arrays.asList(file("a.txt", 1), file("b.txt", 1))).when(stagingAreaService)
+                .findAllFilesByStagingId("area");
+    }
+
+    @Test
+    public void stagingAreaWithoutCheckpointIsLoadedOnceAndCheckpointed() {
+        final FileSystemSnapshot snapshot = service().loadSnapshot(stagingArea);
+
+        assertEquals(2, snapshot.size());
+        final SnapshotCheckpoint checkpoint = loadCheckpoint();
+        assertEquals(2, checkpoint.getSnapshot().size());
+        assertEquals(Timestamp.valueOf(FIRST_CHANGE).getTime(), checkpoint.getHighWaterMark());
+    }
+
+    @Test
+    public void restartAppliesTheChangesAndDeletionsSinceTheCheckpoint() {
+        service().loadSnapshot(stagingArea);
+        changeFiles();
+
+        final FileSystemSnapshot snapshot = service().loadSnapshot(stagingArea);
+
+        assertSnapshotWithChanges(snapshot);
+        verify(stagingAreaService, times(1)).findAllFilesByStagingId("area");
+    }
+
+    @Test
+    public void checkpointIsBuiltFromThePreviousCheckpoint() {
+        final StagingAreaSnapshotService service = service();
+        service.loadSnapshot(stagingArea);
+        changeFiles();
+
+        service.checkpoint(stagingArea);
+
+        final SnapshotCheckpoint checkpoint = loadCheckpoint();
+        assertSnapshotWithChanges(checkpoint.getSnapshot());
+        assertEquals(Timestamp.valueOf(SECOND_CHANGE).getTime(), checkpoint.getHighWaterMark());
+        verify(stagingAreaService, times(1)).findAllFilesByStagingId("area");
+        verify(stagingAreaService).deleteFileDeletionsOfStagingAreaBefore("area", SECOND_CHANGE.minusMinutes(5));
+    }
+
+    @Test
+    public void checkpointThatDoesNotMatchTheDatabaseIsKept() {
+        final StagingAreaSnapshotService service = service();
+        service.loadSnapshot(stagingArea);
+        changeFiles();
+        when(stagingAreaService.countFilesOfStagingArea("area")).thenReturn(3L);
+
+        service.checkpoint(stagingArea);
+
+        assertEquals(2, loadCheckpoint().getSnapshot().size());
+        assertTrue(loadCheckpoint().getSnapshot().find("/staging/a.txt").isPresent());
+        verify(stagingAreaService, times(1)).findAllFilesByStagingId("area");
+    }
+
+    @Test
+    public void deletionsAreForgottenWithoutCheckpoints() {
+        final StagingAreaSnapshotService service = new StagingAreaSnapshotService(stagingAreaService,
+                FileSystemSnapshot.Storage.HEAP, null, 0);
+        service.loadSnapshot(stagingArea);
+
+        service.checkpoint(stagingArea);
+
+        verify(stagingAreaService).deleteFileDeletionsOfStagingAreaBefore("area", FIRST_CHANGE.minusMinutes(5));
+        verify(stagingAreaService, times(1)).findAllFilesByStagingId(anyString());
+        assertFalse(new SnapshotCheckpointStore(checkpointDirectory).load("area", "/staging").isPresent());
+    }
+
+    private StagingAreaSnapshotService service() {
+        return new StagingAreaSnapshotService(stagingAreaService, FileSystemSnapshot.Storage.HEAP,
+                checkpointDirectory, 0);
+    }
+
+    /**
+     * a.txt is deleted, b.txt is deleted and created again and c.txt is created.
+     */
+    private void changeFiles() {
+        when(stagingAreaService.findLastFileChangeOfStagingArea("area")).thenReturn(Optional.of(SECOND_CHANGE));
+        when(stagingAreaService.findAllFileDeletionsOfStagingAreaSince(anyString(), any(LocalDateTime.class)))
+                .thenReturn(Arrays.asList("a.txt", "b.txt"));
+        doReturn(Arrays.asList(file("b.txt", 2), file("c.txt", 2))).when(stagingAreaService)
+                .findAllFilesOfStagingAreaChangedSince(anyString(), any(LocalDateTime.class));
+        when(stagingAreaService.countFilesOfStagingArea("area")).thenReturn(2L);
+    }
+
+    private static void assertSnapshotWithChanges(FileSystemSnapshot snapshot) {
+        assertEquals(2, snapshot.size());
+        assertFalse(snapshot.find("/staging/a.txt").isPresent());
+        assertEquals(2, snapshot.find("/staging/b.txt").get().length());
+        assertEquals(2, snapshot.find("/staging/c.txt").get().length());
+    }
+
+    private SnapshotCheckpoint loadCheckpoint() {
+        return new SnapshotCheckpointStore(checkpointDirectory).load("area", "/staging").get();
+    }
+
+    private static StagingFileImpl file(String relativePath, long size) {
+        return new StagingFileImpl("id-" + relativePath, "area", relativePath, size, FIRST_CHANGE);
+    }
+
+}
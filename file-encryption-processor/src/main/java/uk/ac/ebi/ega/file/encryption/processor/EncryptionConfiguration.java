@@ -24,12 +24,18 @@ import org.springframework.kafka.core.KafkaTemplate;
 import uk.ac.ebi.ega.file.encryption.processor.jobs.EncryptJob;
 import uk.ac.ebi.ega.ingestion.commons.messages.ArchiveEvent;
 import uk.ac.ebi.ega.file.encryption.processor.models.IngestionProcess;
+import uk.ac.ebi.ega.file.encryption.processor.persistence.repository.EncryptCheckpointRepository;
 import uk.ac.ebi.ega.file.encryption.processor.persistence.repository.EncryptParametersRepository;
+import uk.ac.ebi.ega.file.encryption.processor.persistence.services.EncryptCheckpointService;
 import uk.ac.ebi.ega.file.encryption.processor.persistence.services.EncryptJobParameterService;
 import uk.ac.ebi.ega.file.encryption.processor.persistence.services.EncryptPersistenceService;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.PipelineConfiguration;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.PipelineConfiguration.PipelineType;
 import uk.ac.ebi.ega.file.encryption.processor.services.EncryptService;
+import uk.ac.ebi.ega.file.encryption.processor.services.ICheckpointService;
 import uk.ac.ebi.ega.file.encryption.processor.services.IPasswordGeneratorService;
 import uk.ac.ebi.ega.file.encryption.processor.services.PasswordGeneratorService;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
 import uk.ac.ebi.ega.jobs.core.Job;
 import uk.ac.ebi.ega.jobs.core.persistence.repository.JobExecutionRepository;
 import uk.ac.ebi.ega.jobs.core.persistence.repository.JobRunRepository;
@@ -72,6 +78,69 @@ public class EncryptionConfiguration {
     @Value("${file.re.encryption.job.execution.retry.max.delay:30}")
     private long jobExecutionRetryMaxDelay;
 
+    /**
+     * Specifies how many encryption jobs this instance runs at the same time.
+     * The kafka listener container uses the same value as its concurrency.
+     */
+    @Value("${file.encryption.execution.slots:1}")
+    private int executionSlots;
+
+    /**
+     * Specifies how many small files this instance encrypts at the same time, on top of the execution slots.
+     * The kafka listener container of the small files lane uses the same value as its concurrency.
+     */
+    @Value("${file.encryption.small.files.execution.slots:0}")
+    private int smallFilesExecutionSlots;
+
+    /**
+     * Specifies how the decryption and encryption stages of each file are executed.
+     * See {@link PipelineType}.
+     */
+    @Value("${file.encryption.pipeline.type:DEFAULT}")
+    private PipelineType pipelineType;
+
+    /**
+     * Specifies the size in bytes of the buffers exchanged between stages when the type of pipeline is
+     * {@link PipelineType#PIPELINED}.
+     */
+    @Value("${file.encryption.pipeline.buffer.size:4194304}")
+    private int pipelineBufferSize;
+
+    /**
+     * Specifies the number of buffers exchanged between stages when the type of pipeline is
+     * {@link PipelineType#PIPELINED}.
+     */
+    @Value("${file.encryption.pipeline.buffer.count:4}")
+    private int pipelineBufferCount;
+
+    /**
+     * Specifies the number of bytes encrypted between checkpoints when the type of pipeline is
+     * {@link PipelineType#RESUMABLE}.
+     */
+    @Value("${file.encryption.pipeline.checkpoint.interval:10737418240}")
+    private long pipelineCheckpointInterval;
+
+    /**
+     * Specifies how the files are read and written by the pipelines.
+     * See {@link FileStreamFactory.Type}.
+     */
+    @Value("${file.encryption.io.type:DEFAULT}")
+    private FileStreamFactory.Type ioType;
+
+    /**
+     * Specifies the size in bytes of each read or write request when the io type is
+     * {@link FileStreamFactory.Type#CHANNEL}.
+     */
+    @Value("${file.encryption.io.block.size:4194304}")
+    private int ioBlockSize;
+
+    /**
+     * Specifies the alignment in bytes of the write requests when the io type is
+     * {@link FileStreamFactory.Type#CHANNEL}, 0 disables the alignment.
+     */
+    @Value("${file.encryption.io.alignment:0}")
+    private int ioAlignment;
+
     @Bean
     public EncryptJobParameterService reEncryptJobParameterService(EncryptParametersRepository repository) {
         return new EncryptJobParameterService(repository);
@@ -88,7 +157,8 @@ public class EncryptionConfiguration {
     @Bean
     public Job<IngestionProcess> encryptJob(@Value("${file.encryption.keyring.private}") String privateKeyRing,
                                             @Value("${file.encryption.keyring.private.key}") String privateKeyRingPassword,
-                                            IPasswordGeneratorService passwordGeneratorService) throws IOException {
+                                            IPasswordGeneratorService passwordGeneratorService,
+                                            PipelineConfiguration pipelineConfiguration) throws IOException {
         final File privateKeyRingFile = new File(privateKeyRing);
         if (!privateKeyRingFile.exists()) {
             throw new FileNotFoundException("Private key ring file could not be found");
@@ -99,7 +169,19 @@ public class EncryptionConfiguration {
         }
 
         return new EncryptJob(privateKeyRingFile, privateKeyRingPasswordFile,
-                passwordGeneratorService);
+                passwordGeneratorService, pipelineConfiguration);
+    }
+
+    @Bean
+    public ICheckpointService checkpointService(EncryptCheckpointRepository repository) {
+        return new EncryptCheckpointService(repository);
+    }
+
+    @Bean
+    public PipelineConfiguration pipelineConfiguration(ICheckpointService checkpointService) {
+        return new PipelineConfiguration(pipelineType, pipelineBufferSize, pipelineBufferCount,
+                FileStreamFactory.create(ioType, ioBlockSize, ioAlignment), checkpointService,
+                pipelineCheckpointInterval);
     }
 
     @Bean
@@ -131,6 +213,6 @@ public class EncryptionConfiguration {
         }
 
         return new EncryptService(stagingRoot.toPath(), executorPersistenceService, job,
-                kafkaTemplate, completedTopic, delayConfiguration);
+                kafkaTemplate, completedTopic, delayConfiguration, executionSlots + smallFilesExecutionSlots);
     }
 }
@@ -27,12 +27,22 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
 import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.stereotype.Component;
+import uk.ac.ebi.ega.file.encryption.processor.listeners.IngestionEventListener;
 import uk.ac.ebi.ega.file.encryption.processor.models.IngestionProcess;
 import uk.ac.ebi.ega.file.encryption.processor.services.IEncryptService;
 import uk.ac.ebi.ega.jobs.core.JobExecution;
 import uk.ac.ebi.ega.jobs.core.Result;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 @Component
 public class FileEncryptionStartup implements ApplicationListener<ApplicationReadyEvent> {
@@ -42,6 +52,15 @@ public class FileEncryptionStartup implements ApplicationListener<ApplicationRea
     @Value("${spring.kafka.client-id}")
     private String instanceId;
 
+    @Value("${spring.kafka.staging.ingestion.queue.name}")
+    private String ingestionQueueName;
+
+    @Value("${spring.kafka.staging.ingestion.small.files.queue.name:${spring.kafka.staging.ingestion.queue.name}}")
+    private String smallFilesIngestionQueueName;
+
+    @Value("${file.encryption.small.files.execution.slots:0}")
+    private int smallFilesExecutionSlots;
+
     @Autowired
     private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
 
@@ -54,25 +73,95 @@ public class FileEncryptionStartup implements ApplicationListener<ApplicationRea
     @Override
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
         logger.info("File encryption instance-id {} started", instanceId);
+        final Optional<String> smallFilesLaneError = checkSmallFilesLane(ingestionQueueName,
+                smallFilesIngestionQueueName, smallFilesExecutionSlots);
+        if (smallFilesLaneError.isPresent()) {
+            logger.error(smallFilesLaneError.get());
+            SpringApplication.exit(applicationContext, () -> 1);
+            return;
+        }
         logger.info("Recovering last known status");
 
-        restartLastAssignedJob();
+        restartLastAssignedJobs();
 
         logger.info("File encryption instance-id {} starting kafka listener", instanceId);
         kafkaListenerEndpointRegistry.getListenerContainer(instanceId).start();
         logger.info("File encryption instance-id {} starting kafka started", instanceId);
+
+        if (smallFilesExecutionSlots > 0) {
+            startSmallFilesListener();
+        }
     }
 
-    private void restartLastAssignedJob() {
-        final Optional<JobExecution<IngestionProcess>> job = encryptService.getUnfinishedJob();
-        if (job.isPresent()) {
-            final Result result = encryptService.encrypt(job.get());
-            if (result.getStatus() == Result.Status.ABORTED) {
+    /**
+     * File discovery sends the ingestion events of small files to the small files topic whenever it is not the
+     * ingestion topic, they would never be encrypted if the small files lane had no slots. With slots, both lanes
+     * would consume every event of the ingestion topic in different consumer groups if the topics were the same.
+     *
+     * @return the reason why the small files lane can not work with the configuration, empty if it can.
+     */
+    static Optional<String> checkSmallFilesLane(String ingestionQueueName, String smallFilesQueueName,
+                                                int smallFilesExecutionSlots) {
+        final boolean ownTopic = !smallFilesQueueName.equals(ingestionQueueName);
+        if (smallFilesExecutionSlots > 0 && !ownTopic) {
+            return Optional.of("The small files lane needs its own topic, it is the same as the ingestion topic "
+                    + ingestionQueueName);
+        }
+        if (smallFilesExecutionSlots <= 0 && ownTopic) {
+            return Optional.of("Small files are sent to the topic " + smallFilesQueueName + " but there are no " +
+                    "small files execution slots to consume it, set file.encryption.small.files.execution.slots");
+        }
+        return Optional.empty();
+    }
+
+    private void startSmallFilesListener() {
+        logger.info("File encryption instance-id {} starting small files kafka listener on {} slots", instanceId,
+                smallFilesExecutionSlots);
+        final String listenerId = instanceId + IngestionEventListener.SMALL_FILES_LISTENER_SUFFIX;
+        kafkaListenerEndpointRegistry.getListenerContainer(listenerId).start();
+    }
+
+    private void restartLastAssignedJobs() {
+        final List<JobExecution<IngestionProcess>> jobs = encryptService.getUnfinishedJobs();
+        if (jobs.isEmpty()) {
+            logger.info("No process pending execution was found");
+            return;
+        }
+
+        // Executions that share a slot belong to the same work unit and are recovered one after the other, smallest
+        // first as they were assigned
+        final Map<Integer, List<JobExecution<IngestionProcess>>> workUnits = jobs.stream()
+                .collect(Collectors.groupingBy(JobExecution::getSlotId, LinkedHashMap::new, Collectors.toList()));
+        logger.info("Recovering {} processes pending execution in {} slots", jobs.size(), workUnits.size());
+        final ExecutorService executorService = Executors.newFixedThreadPool(workUnits.size());
+        final List<CompletableFuture<List<Result>>> results = new ArrayList<>();
+        try {
+            for (List<JobExecution<IngestionProcess>> workUnit : workUnits.values()) {
+                results.add(CompletableFuture.supplyAsync(() -> encryptWorkUnit(workUnit), executorService));
+            }
+            final List<Result> finishedResults = results.stream()
+                    .map(CompletableFuture::join)
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+            if (finishedResults.stream().anyMatch(result -> result.getStatus() == Result.Status.ABORTED)) {
                 logger.error("Process was aborted due to critical error. Unexpected application termination");
                 SpringApplication.exit(applicationContext, () -> 1);
             }
-        } else {
-            logger.info("No process pending execution was found");
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private List<Result> encryptWorkUnit(List<JobExecution<IngestionProcess>> workUnit) {
+        workUnit.sort(Comparator.comparingLong(job -> job.getJobParameters().getEncryptedFile().getSize()));
+        final List<Result> results = new ArrayList<>();
+        for (JobExecution<IngestionProcess> job : workUnit) {
+            final Result result = encryptService.encrypt(job);
+            results.add(result);
+            if (result.getStatus() == Result.Status.ABORTED) {
+                break;
+            }
         }
+        return results;
     }
 }
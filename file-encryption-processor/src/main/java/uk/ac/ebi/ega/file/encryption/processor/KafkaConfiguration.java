@@ -39,6 +39,7 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.converter.BatchMessagingMessageConverter;
 import org.springframework.kafka.support.converter.StringJsonMessageConverter;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import uk.ac.ebi.ega.ingestion.commons.messages.ArchiveEvent;
@@ -54,17 +55,56 @@ public class KafkaConfiguration {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${file.encryption.execution.slots:1}")
+    private int executionSlots;
+
+    /**
+     * Specifies the maximum number of events received by each poll. The events of a poll are assigned as a single
+     * work unit and acknowledged together.
+     */
+    @Value("${file.encryption.kafka.batch.size:1}")
+    private int batchSize;
+
+    /**
+     * Specifies how many small files this instance encrypts at the same time, 0 disables the small files lane.
+     */
+    @Value("${file.encryption.small.files.execution.slots:0}")
+    private int smallFilesExecutionSlots;
+
+    /**
+     * Specifies the maximum number of events received by each poll of the small files lane.
+     */
+    @Value("${file.encryption.small.files.kafka.batch.size:1}")
+    private int smallFilesBatchSize;
 
     @Bean
     public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, IngestionEvent>>
     kafkaListenerContainerFactory() {
+        return createListenerContainerFactory(consumerFactory(), executionSlots);
+    }
+
+    @Bean
+    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, IngestionEvent>>
+    smallFilesKafkaListenerContainerFactory() {
+        final Map<String, Object> properties = new HashMap<>(consumerConfigs());
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, smallFilesBatchSize);
+        // The container of a disabled lane is never started, it still needs a valid concurrency to be created
+        return createListenerContainerFactory(new DefaultKafkaConsumerFactory<>(properties),
+                Math.max(1, smallFilesExecutionSlots));
+    }
+
+    private KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, IngestionEvent>>
+    createListenerContainerFactory(ConsumerFactory<String, IngestionEvent> consumerFactory, int concurrency) {
         ConcurrentKafkaListenerContainerFactory<String, IngestionEvent> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
-        factory.setConsumerFactory(consumerFactory());
-        factory.setConcurrency(1);
+        factory.setConsumerFactory(consumerFactory);
+        // One consumer per execution slot, each consumer polls and processes a single batch of records at a time
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
         factory.getContainerProperties().setPollTimeout(600000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
-        factory.setMessageConverter(new StringJsonMessageConverter(getObjectMapper()));
+        factory.setMessageConverter(new BatchMessagingMessageConverter(
+                new StringJsonMessageConverter(getObjectMapper())));
         return factory;
     }
 
@@ -92,7 +132,7 @@ public class KafkaConfiguration {
         // TODO either use a common package to handle this with versioning, user string + spring or Avro?
 //        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, new JsonDeserializer<IngestionEvent>().getClass());
 //        properties.put(JsonDeserializer.TRUSTED_PACKAGES, "uk.ac.ebi.ega.ingestion.file.discovery.message");
-        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
         properties.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, Integer.MAX_VALUE);
         properties.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 3000);
         properties.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 10000);
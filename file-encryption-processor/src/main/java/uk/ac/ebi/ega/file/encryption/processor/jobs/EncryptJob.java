@@ -19,12 +19,13 @@ package uk.ac.ebi.ega.file.encryption.processor.jobs;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
 import uk.ac.ebi.ega.file.encryption.processor.exceptions.SkipIngestionException;
 import uk.ac.ebi.ega.file.encryption.processor.jobs.exceptions.Md5Mismatch;
 import uk.ac.ebi.ega.ingestion.commons.messages.ArchiveEvent;
 import uk.ac.ebi.ega.file.encryption.processor.models.IngestionProcess;
-import uk.ac.ebi.ega.file.encryption.processor.pipelines.DefaultIngestionPipeline;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionPipelineResult;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.PipelineConfiguration;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
 import uk.ac.ebi.ega.file.encryption.processor.services.IPasswordGeneratorService;
@@ -43,11 +44,18 @@ public class EncryptJob implements Job<IngestionProcess> {
     private File secretRing;
     private File secretRingPassphrase;
     private IPasswordGeneratorService encryptPasswordService;
+    private PipelineConfiguration pipelineConfiguration;
 
     public EncryptJob(File secretRing, File secretRingPassphrase, IPasswordGeneratorService encryptPasswordService) {
+        this(secretRing, secretRingPassphrase, encryptPasswordService, new PipelineConfiguration());
+    }
+
+    public EncryptJob(File secretRing, File secretRingPassphrase, IPasswordGeneratorService encryptPasswordService,
+                      PipelineConfiguration pipelineConfiguration) {
         this.secretRing = secretRing;
         this.secretRingPassphrase = secretRingPassphrase;
         this.encryptPasswordService = encryptPasswordService;
+        this.pipelineConfiguration = pipelineConfiguration;
     }
 
     @Override
@@ -60,10 +68,10 @@ public class EncryptJob implements Job<IngestionProcess> {
             event.moveFilesToStaging();
 
             File keyFile = new File(event.getOutputFile().getAbsolutePath() + ".key");
-            char[] key = generateKeyAndStore(keyFile);
+            char[] key = getKey(keyFile, event.getOutputFile());
 
             final IngestionPipelineResult result =
-                    new DefaultIngestionPipeline(event.getEncryptedFile().getStagingFile(),
+                    pipelineConfiguration.create(event.getEncryptedFile().getStagingFile(),
                             secretRing, secretRingPassphrase, event.getOutputFile(), key).process();
 
             assertChecksum(event, result);
@@ -100,6 +108,7 @@ public class EncryptJob implements Job<IngestionProcess> {
                 result.getEncryptedFile().getFile().getAbsolutePath(),
                 result.getBytesTransferred(),
                 result.getMd5(),
+                result.getSha256(),
                 result.getEncryptedFile().getFileSize(),
                 result.getEncryptedFile().getMd5(),
                 keyFile.getAbsolutePath(),
@@ -108,6 +117,17 @@ public class EncryptJob implements Job<IngestionProcess> {
         );
     }
 
+    /**
+     * An interrupted process that will be resumed has to keep encrypting with the key it started with.
+     */
+    private char[] getKey(File keyFile, File outputFile) throws IOException {
+        if (keyFile.exists() && pipelineConfiguration.hasCheckpoint(outputFile)) {
+            logger.info("Reusing key of interrupted process for file {}", outputFile);
+            return FileUtils.readPasswordFile(keyFile.toPath());
+        }
+        return generateKeyAndStore(keyFile);
+    }
+
     private char[] generateKeyAndStore(File keyFile) throws IOException {
         final char[] key = encryptPasswordService.generate();
         try (FileWriter fw = new FileWriter(keyFile)) {
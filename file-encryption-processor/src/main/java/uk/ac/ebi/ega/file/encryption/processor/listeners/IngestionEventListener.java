@@ -35,11 +35,18 @@ import uk.ac.ebi.ega.jobs.core.JobExecution;
 import uk.ac.ebi.ega.jobs.core.Result;
 import uk.ac.ebi.ega.jobs.core.exceptions.JobNotRegistered;
 
-import java.util.Optional;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class IngestionEventListener {
 
+    public static final String SMALL_FILES_LISTENER_SUFFIX = "-small-files";
+
     private final Logger logger = LoggerFactory.getLogger(IngestionEventListener.class);
 
     @Autowired
@@ -48,31 +55,68 @@ public class IngestionEventListener {
     @Autowired
     private IEncryptService encryptService;
 
+    /**
+     * Receives the events of one poll, at most file.encryption.kafka.batch.size. The events are assigned as a single
+     * work unit in one transaction, the offsets of the whole batch are committed once the assignment is persisted
+     * and then the files are encrypted one after the other on the slot of the work unit, smallest first so that a
+     * large file does not hold back the small files of the same batch.
+     */
     @KafkaListener(id = "${spring.kafka.client-id}", topics = "${spring.kafka.staging.ingestion.queue.name}",
             groupId = "file-ingestion", clientIdPrefix = "executor", autoStartup = "false")
-    public void listen(@Header(KafkaHeaders.RECEIVED_MESSAGE_KEY) String key, IngestionEvent data,
+    public void listen(@Header(KafkaHeaders.RECEIVED_MESSAGE_KEY) List<String> keys, List<IngestionEvent> data,
                        Acknowledgment acknowledgment) {
-        logger.info("Process - key: {} data {}", key, data);
+        process(keys, data, acknowledgment);
+    }
+
+    /**
+     * Receives the events of the small files lane, which has its own consumers and execution slots so that small
+     * files are not queued behind large ones.
+     */
+    @KafkaListener(id = "${spring.kafka.client-id}" + SMALL_FILES_LISTENER_SUFFIX,
+            topics = "${spring.kafka.staging.ingestion.small.files.queue.name:" +
+                    "${spring.kafka.staging.ingestion.queue.name}}",
+            groupId = "file-ingestion-small-files", clientIdPrefix = "small-files-executor", autoStartup = "false",
+            containerFactory = "smallFilesKafkaListenerContainerFactory")
+    public void listenSmallFiles(@Header(KafkaHeaders.RECEIVED_MESSAGE_KEY) List<String> keys,
+                                 List<IngestionEvent> data, Acknowledgment acknowledgment) {
+        process(keys, data, acknowledgment);
+    }
 
-        Optional<JobExecution<IngestionProcess>> optionalJob = Optional.empty();
+    private void process(List<String> keys, List<IngestionEvent> data, Acknowledgment acknowledgment) {
+        logger.info("Process - batch of {} events", data.size());
+
+        // A key repeated in the same batch is processed once, with its latest event
+        final Map<String, IngestionEvent> events = new LinkedHashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            logger.info("Process - key: {} data {}", keys.get(i), data.get(i));
+            events.remove(keys.get(i));
+            events.put(keys.get(i), data.get(i));
+        }
+
+        List<JobExecution<IngestionProcess>> jobs = Collections.emptyList();
 
         try {
-            optionalJob = encryptService.createJob(key, data);
+            jobs = encryptService.createJobs(events);
             acknowledgment.acknowledge();
         } catch (JobNotRegistered exception) {
             exitApplication("Critical error: Job is not registered: " + exception.getMessage());
         } catch (KafkaException e) {
-            encryptService.cancelJobExecution(optionalJob, e);
-            optionalJob = Optional.empty();
+            encryptService.cancelJobExecutions(jobs, e);
+            jobs = Collections.emptyList();
         }
 
-        if (optionalJob.isPresent()) {
-            final Result result = encryptService.encrypt(optionalJob.get());
+        final Set<String> assignedKeys = new HashSet<>();
+        jobs.forEach(job -> assignedKeys.add(job.getJobId()));
+        events.keySet().stream()
+                .filter(key -> !assignedKeys.contains(key))
+                .forEach(key -> logger.info("key: {} is being processed, skip event", key));
+
+        for (JobExecution<IngestionProcess> job : jobs) {
+            final Result result = encryptService.encrypt(job);
             if (result.getStatus() == Result.Status.ABORTED) {
                 exitApplication("Process was aborted due to critical error. Unexpected application termination");
+                return;
             }
-        } else {
-            logger.info("key: {} is being processed, skip event", key);
         }
     }
 
@@ -0,0 +1,88 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.persistence.entity;
+
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionCheckpoint;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.File;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "ENCRYPT_CHECKPOINT")
+public class EncryptCheckpointEntity {
+
+    @Id
+    private String resultPath;
+
+    private long gpgSize;
+
+    private long gpgLastModified;
+
+    private long bytesTransferred;
+
+    @Column(nullable = false)
+    private String outputMd5State;
+
+    private LocalDateTime updateDate;
+
+    public EncryptCheckpointEntity() {
+    }
+
+    public EncryptCheckpointEntity(IngestionCheckpoint checkpoint) {
+        this.resultPath = checkpoint.getOutput().getAbsolutePath();
+        this.gpgSize = checkpoint.getOriginSize();
+        this.gpgLastModified = checkpoint.getOriginLastModified();
+        this.bytesTransferred = checkpoint.getBytesTransferred();
+        this.outputMd5State = checkpoint.getOutputMd5State();
+        this.updateDate = LocalDateTime.now();
+    }
+
+    public String getResultPath() {
+        return resultPath;
+    }
+
+    public long getGpgSize() {
+        return gpgSize;
+    }
+
+    public long getGpgLastModified() {
+        return gpgLastModified;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public String getOutputMd5State() {
+        return outputMd5State;
+    }
+
+    public LocalDateTime getUpdateDate() {
+        return updateDate;
+    }
+
+    public IngestionCheckpoint toCheckpoint() {
+        return new IngestionCheckpoint(new File(resultPath), gpgSize, gpgLastModified, bytesTransferred,
+                outputMd5State);
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.persistence.services;
+
+import uk.ac.ebi.ega.file.encryption.processor.persistence.entity.EncryptCheckpointEntity;
+import uk.ac.ebi.ega.file.encryption.processor.persistence.repository.EncryptCheckpointRepository;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionCheckpoint;
+import uk.ac.ebi.ega.file.encryption.processor.services.ICheckpointService;
+
+import java.io.File;
+import java.util.Optional;
+
+public class EncryptCheckpointService implements ICheckpointService {
+
+    private EncryptCheckpointRepository repository;
+
+    public EncryptCheckpointService(EncryptCheckpointRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Optional<IngestionCheckpoint> findCheckpoint(File output) {
+        return repository.findById(output.getAbsolutePath()).map(EncryptCheckpointEntity::toCheckpoint);
+    }
+
+    @Override
+    public void saveCheckpoint(IngestionCheckpoint checkpoint) {
+        repository.save(new EncryptCheckpointEntity(checkpoint));
+    }
+
+    @Override
+    public void deleteCheckpoint(File output) {
+        repository.findById(output.getAbsolutePath()).ifPresent(repository::delete);
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Output stream that hands the data over to a task of the given executor, which writes it into the target stream.
+ * The producer only blocks when all the buffers of its {@link ByteBufferPool} are waiting to be written, which applies
+ * back-pressure without tying the speed of the producer to every write of the target.
+ *
+ * If the target fails the remaining data is discarded so the producer is never blocked, the failure is reported by
+ * {@link #checkError()}. Closing this stream closes the target once all the data has been written.
+ */
+public class AsyncPipeOutputStream extends OutputStream {
+
+    private static final long BUFFER_POLL_TIMEOUT_MS = 500;
+
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final ByteBufferPool bufferPool;
+
+    private final BlockingQueue<ByteBuffer> filledBuffers;
+
+    private final PipeStageMetrics metrics;
+
+    private final Future<Long> writeTask;
+
+    private volatile IOException writeError;
+
+    private ByteBuffer current;
+
+    private boolean closed;
+
+    public AsyncPipeOutputStream(OutputStream target, ExecutorService executorService, int bufferSize,
+                                 int bufferCount, PipeStageMetrics metrics) {
+        this.bufferPool = new ByteBufferPool(bufferCount, bufferSize);
+        // Every buffer of the pool plus the end of stream marker fit in the queue, adding to it never blocks
+        this.filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        this.metrics = metrics;
+        this.writeTask = executorService.submit(() -> writeBuffers(target));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            if (current == null) {
+                current = acquireBuffer();
+            }
+            final int chunk = Math.min(current.remaining(), end - position);
+            current.put(bytes, position, chunk);
+            position += chunk;
+            if (!current.hasRemaining()) {
+                enqueueCurrent();
+            }
+        }
+    }
+
+    /**
+     * Hands the data written so far over to the write task without waiting for it to be written.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        enqueueCurrent();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enqueueCurrent();
+        filledBuffers.add(END_OF_STREAM);
+        metrics.markInputClosed();
+    }
+
+    /**
+     * Waits until all the data has been written and the target has been closed.
+     *
+     * @return false if the time expired before the write task finished.
+     */
+    public boolean awaitCompletion(long time, TimeUnit timeUnit) throws InterruptedException {
+        try {
+            writeTask.get(time, timeUnit);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            writeError = new IOException(e.getCause());
+        }
+        return true;
+    }
+
+    /**
+     * @throws IOException if the data could not be written into the target.
+     */
+    public void checkError() throws IOException {
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    public void cancel() {
+        writeTask.cancel(true);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void enqueueCurrent() {
+        if (current != null && current.position() > 0) {
+            current.flip();
+            filledBuffers.add(current);
+            current = null;
+        }
+    }
+
+    private ByteBuffer acquireBuffer() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            ByteBuffer buffer = bufferPool.acquire(BUFFER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            while (buffer == null) {
+                if (writeTask.isDone()) {
+                    throw new IOException("Write task finished before the end of the stream");
+                }
+                buffer = bufferPool.acquire(BUFFER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            metrics.addInputWait(System.nanoTime() - start);
+        }
+    }
+
+    private long writeBuffers(OutputStream target) throws InterruptedException {
+        long totalBytes = 0;
+        try {
+            ByteBuffer buffer = filledBuffers.take();
+            while (buffer != END_OF_STREAM) {
+                if (writeError == null) {
+                    try {
+                        target.write(buffer.array(), 0, buffer.limit());
+                        metrics.addBytesIn(buffer.limit());
+                        totalBytes += buffer.limit();
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+                bufferPool.release(buffer);
+                buffer = filledBuffers.take();
+            }
+            return totalBytes;
+        } finally {
+            try {
+                target.close();
+            } catch (IOException e) {
+                if (writeError == null) {
+                    writeError = e;
+                }
+            }
+        }
+    }
+
+}
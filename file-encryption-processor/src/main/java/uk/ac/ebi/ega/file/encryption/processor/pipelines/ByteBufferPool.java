@@ -0,0 +1,66 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of reusable buffers. All buffers are allocated when the pool is created, a stage that needs a buffer
+ * waits until another stage releases one, which bounds the memory used by a pipeline and applies back-pressure
+ * between its stages.
+ */
+public class ByteBufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    private final int bufferSize;
+
+    public ByteBufferPool(int bufferCount, int bufferSize) {
+        if (bufferCount < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer count and buffer size must be at least 1");
+        }
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            buffers.add(ByteBuffer.allocate(bufferSize));
+        }
+    }
+
+    /**
+     * @return a cleared buffer or null if none was released before the timeout expired.
+     */
+    public ByteBuffer acquire(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        final ByteBuffer buffer = buffers.poll(timeout, timeUnit);
+        if (buffer != null) {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+}
@@ -22,76 +22,162 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * External process used as an asynchronous stage of a pipeline. Each process owns a small dedicated executor that
+ * feeds its standard input from a bounded set of buffers and drains its standard output and, when it is not
+ * redirected to a file, its standard error concurrently, so the producer only waits for the process when all the
+ * buffers are full.
+ */
 public class CmdLineProcessPiped {
 
     private static final int BUFFER_SIZE = 8192;
 
-    private Process process;
+    public static final int DEFAULT_INPUT_BUFFER_SIZE = 65536;
+
+    public static final int DEFAULT_INPUT_BUFFER_COUNT = 16;
+
+    // Standard input, standard output and standard error
+    private static final int PROCESS_STAGES = 3;
+
+    private static final AtomicInteger processCount = new AtomicInteger();
+
+    private final Process process;
+
+    private final ExecutorService executorService;
+
+    private final AsyncPipeOutputStream pipeToProcess;
+
+    private final PipeStageMetrics metrics;
 
-    private Future<?> pipeBufferTask;
+    private Future<Long> pipeBufferTask;
 
-    private ExecutorService executorService;
+    private Future<Long> errorDrainTask;
 
     private File errorRedirect;
 
     public CmdLineProcessPiped(File errorRedirect, String... command) throws IOException {
-        this.executorService = ForkJoinPool.commonPool();
+        this(errorRedirect, DEFAULT_INPUT_BUFFER_SIZE, DEFAULT_INPUT_BUFFER_COUNT, command);
+    }
+
+    public CmdLineProcessPiped(File errorRedirect, int inputBufferSize, int inputBufferCount, String... command)
+            throws IOException {
+        this.metrics = new PipeStageMetrics();
         ProcessBuilder pb = new ProcessBuilder(command);
         if (errorRedirect != null) {
             pb.redirectError(errorRedirect);
             this.errorRedirect = errorRedirect;
         }
         process = pb.start();
+        final String threadPrefix = command[0] + "-" + processCount.incrementAndGet() + "-";
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(PROCESS_STAGES, runnable -> {
+            final Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pipeToProcess = new AsyncPipeOutputStream(process.getOutputStream(), executorService, inputBufferSize,
+                inputBufferCount, metrics);
+        if (errorRedirect == null) {
+            // An undrained error pipe blocks the process once it is full
+            errorDrainTask = executorService.submit(() -> copy(process.getErrorStream(), null));
+        }
     }
 
     public synchronized void pipeOutputTo(OutputStream output) {
-        if (pipeBufferTask != null && process.isAlive())
+        if (pipeBufferTask == null) {
             pipeBufferTask = executorService.submit(() -> {
-                final InputStream inputStream = process.getInputStream();
-                byte[] buffer = new byte[BUFFER_SIZE];
                 try {
-                    int bytesRead = inputStream.read(buffer);
-                    while (bytesRead != -1) {
-                        output.write(buffer, 0, bytesRead);
-                        bytesRead = inputStream.read(buffer);
-                    }
+                    final long bytesCopied = copy(process.getInputStream(), output);
                     output.flush();
+                    return bytesCopied;
                 } catch (IOException e) {
-                    terminateProcess();
+                    process.destroyForcibly();
+                    throw e;
                 }
             });
+        }
     }
 
+    /**
+     * @return stream that feeds the standard input of the process asynchronously, closing it closes the standard
+     * input of the process once all the data has been written.
+     */
     public OutputStream getPipeToProcess() {
-        return process.getOutputStream();
+        return pipeToProcess;
     }
 
     public void terminateProcess() {
+        pipeToProcess.cancel();
         if (pipeBufferTask != null) {
             pipeBufferTask.cancel(true);
         }
+        if (errorDrainTask != null) {
+            errorDrainTask.cancel(true);
+        }
         process.destroyForcibly();
+        executorService.shutdownNow();
+        metrics.markEnd();
     }
 
+    /**
+     * Closes the standard input of the process and waits until the process has finished and its output has been
+     * completely drained.
+     *
+     * @return false if the time expired before the process finished.
+     */
     public boolean waitFor(long time, TimeUnit timeUnit) {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(time);
         try {
-            return process.waitFor(time, timeUnit);
+            pipeToProcess.close();
+            if (!process.waitFor(remainingNanos(deadline), TimeUnit.NANOSECONDS)
+                    || !pipeToProcess.awaitCompletion(remainingNanos(deadline), TimeUnit.NANOSECONDS)
+                    || !awaitTask(pipeBufferTask, deadline)
+                    || !awaitTask(errorDrainTask, deadline)) {
+                return false;
+            }
+            metrics.markEnd();
+            executorService.shutdown();
+            return true;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return false;
         }
     }
 
+    /**
+     * @throws IOException if the standard input could not be fed or the standard output could not be drained.
+     */
+    public void checkPipes() throws IOException {
+        pipeToProcess.checkError();
+        if (pipeBufferTask != null && pipeBufferTask.isDone() && !pipeBufferTask.isCancelled()) {
+            try {
+                pipeBufferTask.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
     public int exitValue() {
         return process.exitValue();
     }
 
+    public PipeStageMetrics getMetrics() {
+        return metrics;
+    }
+
     public File getErrorRedirect() {
         return errorRedirect;
     }
@@ -103,4 +189,40 @@ public class CmdLineProcessPiped {
         return Files.readAllLines(errorRedirect.toPath()).stream().collect(Collectors.joining("\n"));
     }
 
+    private static boolean awaitTask(Future<?> task, long deadline) throws InterruptedException {
+        if (task == null) {
+            return true;
+        }
+        try {
+            task.get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // Reported by checkPipes
+        }
+        return true;
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * Copies the input into the output until the end of the input, the data is discarded if the output is null.
+     */
+    private long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long totalBytes = 0;
+        int bytesRead = input.read(buffer);
+        while (bytesRead != -1) {
+            if (output != null) {
+                output.write(buffer, 0, bytesRead);
+                metrics.addBytesOut(bytesRead);
+            }
+            totalBytes += bytesRead;
+            bytesRead = input.read(buffer);
+        }
+        return totalBytes;
+    }
+
 }
@@ -28,24 +28,37 @@ import uk.ac.ebi.ega.encryption.core.stream.PipelineStream;
 import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.ingestion.commons.digest.MessageDigests;
+import uk.ac.ebi.ega.ingestion.commons.digest.MultiDigestOutputStream;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class DefaultIngestionPipeline implements IngestionPipeline {
 
+    private static final long STAGE_STOP_TIMEOUT_SECONDS = 60;
+
     private final List<File> outputFiles;
     private File secretRing;
     private File secretRingKey;
     protected File origin;
     protected File output;
     protected char[] password;
+    protected final FileStreamFactory streamFactory;
 
     public DefaultIngestionPipeline(File origin, File secretRing, File secretRingKey, File output, char[] password) throws IOException {
+        this(origin, secretRing, secretRingKey, output, password, FileStreamFactory.createDefault());
+    }
+
+    public DefaultIngestionPipeline(File origin, File secretRing, File secretRingKey, File output, char[] password,
+                                    FileStreamFactory streamFactory) throws IOException {
+        this.streamFactory = streamFactory;
         this.outputFiles = new ArrayList<>();
         this.origin = origin;
         this.secretRing = secretRing;
@@ -58,43 +71,73 @@ public class DefaultIngestionPipeline implements IngestionPipeline {
     public final IngestionPipelineResult process() throws SystemErrorException, UserErrorException {
         try {
             return doProcess();
-        } catch (SystemErrorException | UserErrorException e) {
-            deleteOutputFiles();
+        } catch (SystemErrorException e) {
+            onSystemError();
+            throw e;
+        } catch (UserErrorException e) {
+            onUserError();
             throw e;
         } catch (IOException | WrongPassword e) {
             //If it is an io error or the pgp keyring password is wrong
-            deleteOutputFiles();
+            onSystemError();
             throw new SystemErrorException(e);
         } catch (AlgorithmInitializationException e) {
-            deleteOutputFiles();
+            onUserError();
             throw new UserErrorException(e);
         }
     }
 
+    /**
+     * Called when the process fails because of the system, the file will be processed again later.
+     */
+    protected void onSystemError() throws SystemErrorException {
+        deleteOutputFiles();
+    }
+
+    /**
+     * Called when the process fails because of the file supplied by the user.
+     */
+    protected void onUserError() throws SystemErrorException {
+        deleteOutputFiles();
+    }
+
     protected IngestionPipelineResult doProcess() throws SystemErrorException, UserErrorException, IOException,
             AlgorithmInitializationException {
         try (
                 final DecryptInputStream decryptInputStream = getDecryptionInputStream();
                 final EncryptOutputStream encryptOutputStream = getEncryptionOutputStream(output);
+                final MultiDigestOutputStream plainDigestOutputStream = getPlainDigestOutputStream();
                 final PipelineStream stream = StreamPipelineBuilder
                         .source(decryptInputStream)
                         .to(encryptOutputStream)
+                        .to(plainDigestOutputStream)
                         .build()
         ) {
             long bytesTransferred = stream.execute();
+            plainDigestOutputStream.close();
             return new IngestionPipelineResult(
                     new IngestionPipelineFile(origin, decryptInputStream.getMd5(), decryptInputStream.available()),
                     decryptInputStream.getUnencryptedMd5(),
                     bytesTransferred,
                     password,
-                    new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length())
+                    new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length()),
+                    null,
+                    plainDigestOutputStream.getDigest(MessageDigests.SHA_256)
             );
         }
     }
 
+    /**
+     * @return stream that computes, on a helper thread, the digests of the decrypted data that the decryption stream
+     * does not provide.
+     */
+    protected final MultiDigestOutputStream getPlainDigestOutputStream() {
+        return new MultiDigestOutputStream(MessageDigests.SHA_256);
+    }
+
     protected final DecryptInputStream getDecryptionInputStream() throws AlgorithmInitializationException, IOException {
         return new DecryptInputStream(
-                new FileInputStream(origin),
+                streamFactory.openInputStream(origin.toPath()),
                 new PgpKeyring(new FileInputStream(secretRing)),
                 FileUtils.readPasswordFile(secretRingKey.toPath()));
     }
@@ -102,13 +145,31 @@ public class DefaultIngestionPipeline implements IngestionPipeline {
     protected final EncryptOutputStream getEncryptionOutputStream(File file) throws SystemErrorException {
         createFile(file);
         try {
-            return new EncryptOutputStream(new FileOutputStream(file), new AesCtr256Ega(), password);
+            return new EncryptOutputStream(streamFactory.openOutputStream(file.toPath()), new AesCtr256Ega(), password);
         } catch (Exception e) {
             throw new SystemErrorException(e);
         }
     }
 
-    private void deleteOutputFiles() throws SystemErrorException {
+    /**
+     * Interrupts the task of a stage of the pipeline and waits for its thread to stop, the streams used by the stage
+     * can only be closed afterwards.
+     *
+     * @throws SystemErrorException if the stage did not stop in time.
+     */
+    protected final void stopStage(ExecutorService stage) throws SystemErrorException {
+        stage.shutdownNow();
+        try {
+            if (!stage.awaitTermination(STAGE_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SystemErrorException("Pipeline stage did not stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemErrorException(e);
+        }
+    }
+
+    protected final void deleteOutputFiles() throws SystemErrorException {
         for (File file : outputFiles) {
             if (file.exists() && !file.delete()) {
                 throw new SystemErrorException("File could not be deleted");
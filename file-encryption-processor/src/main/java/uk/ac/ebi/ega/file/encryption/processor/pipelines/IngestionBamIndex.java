@@ -0,0 +1,142 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
+import uk.ac.ebi.ega.encryption.core.EncryptOutputStream;
+import uk.ac.ebi.ega.encryption.core.StreamPipelineBuilder;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+import uk.ac.ebi.ega.encryption.core.stream.PipelineStream;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.bam.BamFormatException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.bam.BamIndexBuilder;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.ingestion.commons.digest.MessageDigests;
+import uk.ac.ebi.ega.ingestion.commons.digest.MultiDigestOutputStream;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion pipeline that also generates the index of a bam file without an external process. The decrypted data is
+ * handed over to a {@link BamIndexBuilder} running on a dedicated thread, so the index is built while the file is
+ * being encrypted, and the index is encrypted once the whole file has been read.
+ */
+public class IngestionBamIndex extends DefaultIngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionBamIndex.class);
+
+    private static final int INDEX_BUFFER_SIZE = 65536;
+
+    private static final int INDEX_BUFFER_COUNT = 16;
+
+    private static final long INDEX_END_TIMEOUT_MINUTES = 10;
+
+    private final File index;
+
+    private final BamIndexBuilder.IndexFormat indexFormat;
+
+    public IngestionBamIndex(File origin, File secretRing, File passphrase, File output, File index, char[] password)
+            throws IOException {
+        this(origin, secretRing, passphrase, output, index, password, BamIndexBuilder.IndexFormat.BAI,
+                FileStreamFactory.createDefault());
+    }
+
+    public IngestionBamIndex(File origin, File secretRing, File passphrase, File output, File index, char[] password,
+                             BamIndexBuilder.IndexFormat indexFormat, FileStreamFactory streamFactory)
+            throws IOException {
+        super(origin, secretRing, passphrase, output, password, streamFactory);
+        this.index = index;
+        this.indexFormat = indexFormat;
+    }
+
+    @Override
+    protected IngestionPipelineResult doProcess() throws SystemErrorException, UserErrorException, IOException {
+        final BamIndexBuilder indexBuilder = new BamIndexBuilder(indexFormat);
+        final PipeStageMetrics metrics = new PipeStageMetrics();
+        final ExecutorService indexStage = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "index-stage-" + output.getName()));
+        try (
+                final DecryptInputStream decryptInputStream = getDecryptionInputStream();
+                final EncryptOutputStream encryptOutputStream = getEncryptionOutputStream(output);
+                final EncryptOutputStream encryptIndexOutputStream = getEncryptionOutputStream(index);
+                final MultiDigestOutputStream plainDigestOutputStream = getPlainDigestOutputStream();
+                final AsyncPipeOutputStream pipeToIndex = new AsyncPipeOutputStream(indexBuilder, indexStage,
+                        INDEX_BUFFER_SIZE, INDEX_BUFFER_COUNT, metrics);
+                final PipelineStream stream = StreamPipelineBuilder
+                        .source(decryptInputStream)
+                        .to(encryptOutputStream)
+                        .to(plainDigestOutputStream)
+                        .to(pipeToIndex)
+                        .build()
+        ) {
+            try {
+                long bytesProcessed = stream.execute();
+                stream.close();
+                plainDigestOutputStream.close();
+                waitForIndex(pipeToIndex);
+                metrics.markEnd();
+                indexBuilder.writeIndex(encryptIndexOutputStream);
+                encryptIndexOutputStream.flush();
+                logger.info("Index {} generated {}", index, metrics);
+                return new IngestionPipelineResult(
+                        new IngestionPipelineFile(origin, decryptInputStream.getMd5(), decryptInputStream.available()),
+                        decryptInputStream.getUnencryptedMd5(),
+                        bytesProcessed,
+                        password,
+                        new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length()),
+                        new IngestionPipelineFile(index, encryptIndexOutputStream.getMd5(), index.length()),
+                        plainDigestOutputStream.getDigest(MessageDigests.SHA_256)
+                );
+            } finally {
+                // Stops the index stage if the pipeline failed, before the streams are closed
+                stopStage(indexStage);
+            }
+        } catch (AlgorithmInitializationException e) {
+            throw new UserErrorException(e);
+        } finally {
+            // Stops the index stage if the streams could not be opened
+            indexStage.shutdownNow();
+        }
+    }
+
+    private void waitForIndex(AsyncPipeOutputStream pipeToIndex) throws SystemErrorException, UserErrorException,
+            IOException {
+        pipeToIndex.close();
+        try {
+            if (!pipeToIndex.awaitCompletion(INDEX_END_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new SystemErrorException("Index generation did not finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemErrorException(e);
+        }
+        try {
+            pipeToIndex.checkError();
+        } catch (BamFormatException e) {
+            throw new UserErrorException("Index could not be generated, reason '" + e.getMessage() + "'");
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import java.io.File;
+
+/**
+ * Progress of the encryption of a file, persisted periodically so an interrupted process can be resumed.
+ */
+public class IngestionCheckpoint {
+
+    private final File output;
+
+    /**
+     * Size of the origin file when the checkpoint was taken, a checkpoint of a modified file is not valid.
+     */
+    private final long originSize;
+
+    /**
+     * Last modification time of the origin file when the checkpoint was taken.
+     */
+    private final long originLastModified;
+
+    /**
+     * Number of bytes of decrypted data that had been encrypted into the output file. Also determines the position of
+     * the AES-CTR counter.
+     */
+    private final long bytesTransferred;
+
+    /**
+     * Serialised state of the md5 of the output file, see
+     * {@link uk.ac.ebi.ega.file.encryption.processor.utils.ResumableMd5#getState()}.
+     */
+    private final String outputMd5State;
+
+    public IngestionCheckpoint(File output, long originSize, long originLastModified, long bytesTransferred,
+                               String outputMd5State) {
+        this.output = output;
+        this.originSize = originSize;
+        this.originLastModified = originLastModified;
+        this.bytesTransferred = bytesTransferred;
+        this.outputMd5State = outputMd5State;
+    }
+
+    public File getOutput() {
+        return output;
+    }
+
+    public long getOriginSize() {
+        return originSize;
+    }
+
+    public long getOriginLastModified() {
+        return originLastModified;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public long getOutputLength() {
+        return ResumableEncryptOutputStream.IV_LENGTH + bytesTransferred;
+    }
+
+    public String getOutputMd5State() {
+        return outputMd5State;
+    }
+
+    public boolean isValidFor(File origin) {
+        return origin.length() == originSize && origin.lastModified() == originLastModified
+                && output.length() >= getOutputLength();
+    }
+
+}
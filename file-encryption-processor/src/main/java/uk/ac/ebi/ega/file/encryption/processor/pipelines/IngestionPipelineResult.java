@@ -31,6 +31,8 @@ public class IngestionPipelineResult {
 
     private IngestionPipelineFile encryptedIndexFile;
 
+    private String sha256;
+
     public IngestionPipelineResult(IngestionPipelineFile originalFile, String md5, long bytesTransferred, char[] key,
                                    IngestionPipelineFile encryptedFile) {
         this(originalFile, md5, bytesTransferred, key, encryptedFile, null);
@@ -38,12 +40,19 @@ public class IngestionPipelineResult {
 
     public IngestionPipelineResult(IngestionPipelineFile originalFile, String md5, long bytesTransferred, char[] key,
                                    IngestionPipelineFile encryptedFile, IngestionPipelineFile encryptedIndexFile) {
+        this(originalFile, md5, bytesTransferred, key, encryptedFile, encryptedIndexFile, null);
+    }
+
+    public IngestionPipelineResult(IngestionPipelineFile originalFile, String md5, long bytesTransferred, char[] key,
+                                   IngestionPipelineFile encryptedFile, IngestionPipelineFile encryptedIndexFile,
+                                   String sha256) {
         this.originalFile = originalFile;
         this.md5 = md5;
         this.bytesTransferred = bytesTransferred;
         this.key = key;
         this.encryptedFile = encryptedFile;
         this.encryptedIndexFile = encryptedIndexFile;
+        this.sha256 = sha256;
     }
 
     public IngestionPipelineFile getOriginalFile() {
@@ -69,4 +78,11 @@ public class IngestionPipelineResult {
     public IngestionPipelineFile getEncryptedIndexFile() {
         return encryptedIndexFile;
     }
+
+    /**
+     * @return sha256 of the decrypted file, or null if the pipeline did not compute it.
+     */
+    public String getSha256() {
+        return sha256;
+    }
 }
@@ -17,6 +17,8 @@
  */
 package uk.ac.ebi.ega.file.encryption.processor.pipelines;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
 import uk.ac.ebi.ega.encryption.core.EncryptOutputStream;
 import uk.ac.ebi.ega.encryption.core.StreamPipelineBuilder;
@@ -24,20 +26,36 @@ import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializati
 import uk.ac.ebi.ega.encryption.core.stream.PipelineStream;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
 import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.ingestion.commons.digest.MessageDigests;
+import uk.ac.ebi.ega.ingestion.commons.digest.MultiDigestOutputStream;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Ingestion pipeline that also generates the index of a bam file. The decrypted data is fed to samtools through an
+ * asynchronous {@link CmdLineProcessPiped} stage, so the index is generated while the file is being encrypted.
+ */
 public class IngestionSamToolsIndex extends DefaultIngestionPipeline {
 
+    private static final Logger logger = LoggerFactory.getLogger(IngestionSamToolsIndex.class);
+
+    private static final long PROCESS_END_TIMEOUT_MINUTES = 10;
+
     private File index;
 
     private File indexError;
 
     public IngestionSamToolsIndex(File origin, File secretRing, File passphrase, File output,
                                   File index, char[] password) throws IOException {
-        super(origin, secretRing, passphrase, output, password);
+        this(origin, secretRing, passphrase, output, index, password, FileStreamFactory.createDefault());
+    }
+
+    public IngestionSamToolsIndex(File origin, File secretRing, File passphrase, File output,
+                                  File index, char[] password, FileStreamFactory streamFactory) throws IOException {
+        super(origin, secretRing, passphrase, output, password, streamFactory);
         this.index = index;
         this.indexError = new File(index.getAbsolutePath() + ".error");
     }
@@ -46,40 +64,55 @@ public class IngestionSamToolsIndex extends DefaultIngestionPipeline {
     protected IngestionPipelineResult doProcess() throws SystemErrorException, UserErrorException, IOException {
         createFile(indexError);
         CmdLineProcessPiped process = new SamIndexProcessPiped(indexError);
+        boolean processEnded = false;
         try (
                 final DecryptInputStream decryptInputStream = getDecryptionInputStream();
                 final EncryptOutputStream encryptOutputStream = getEncryptionOutputStream(output);
                 final EncryptOutputStream encryptIndexOutputStream = getEncryptionOutputStream(index);
+                final MultiDigestOutputStream plainDigestOutputStream = getPlainDigestOutputStream();
                 final PipelineStream stream = StreamPipelineBuilder
                         .source(decryptInputStream)
                         .to(encryptOutputStream)
+                        .to(plainDigestOutputStream)
                         .to(process.getPipeToProcess())
                         .build();
         ) {
-            process.pipeOutputTo(encryptIndexOutputStream);
-            long bytesProcessed = stream.execute();
-            stream.close();
-            waitForSuccessfulProcessEnd(process);
-            indexError.delete();
-            return new IngestionPipelineResult(
-                    new IngestionPipelineFile(origin, decryptInputStream.getMd5(), decryptInputStream.available()),
-                    decryptInputStream.getUnencryptedMd5(),
-                    bytesProcessed,
-                    password,
-                    new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length()),
-                    new IngestionPipelineFile(index, encryptIndexOutputStream.getMd5(), index.length())
-            );
-        } catch (SystemErrorException e) {
-            process.terminateProcess();
-            throw e;
+            try {
+                process.pipeOutputTo(encryptIndexOutputStream);
+                long bytesProcessed = stream.execute();
+                stream.close();
+                waitForSuccessfulProcessEnd(process);
+                processEnded = true;
+                plainDigestOutputStream.close();
+                logger.info("Index {} generated {}", index, process.getMetrics());
+                indexError.delete();
+                return new IngestionPipelineResult(
+                        new IngestionPipelineFile(origin, decryptInputStream.getMd5(), decryptInputStream.available()),
+                        decryptInputStream.getUnencryptedMd5(),
+                        bytesProcessed,
+                        password,
+                        new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length()),
+                        new IngestionPipelineFile(index, encryptIndexOutputStream.getMd5(), index.length()),
+                        plainDigestOutputStream.getDigest(MessageDigests.SHA_256)
+                );
+            } finally {
+                // Stops the process stages before the index output stream is closed
+                if (!processEnded) {
+                    process.terminateProcess();
+                }
+            }
         } catch (AlgorithmInitializationException e) {
             throw new UserErrorException(e);
         }
     }
 
+    /**
+     * The process consumes its input while the file is being encrypted, once the input is closed it only has to
+     * write the index, the timeout bounds that last step.
+     */
     private void waitForSuccessfulProcessEnd(CmdLineProcessPiped process) throws SystemErrorException,
-            UserErrorException {
-        if (!process.waitFor(10, TimeUnit.MINUTES)) {
+            UserErrorException, IOException {
+        if (!process.waitFor(PROCESS_END_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
             throw new SystemErrorException("Samtool process did not finish");
         }
         if (process.exitValue() != 0) {
@@ -91,5 +124,6 @@ public class IngestionSamToolsIndex extends DefaultIngestionPipeline {
                 throw new SystemErrorException(e);
             }
         }
+        process.checkPipes();
     }
 }
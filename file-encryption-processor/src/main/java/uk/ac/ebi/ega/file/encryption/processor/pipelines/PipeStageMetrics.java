@@ -0,0 +1,105 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing and volume counters of an asynchronous pipeline stage such as a {@link CmdLineProcessPiped}, updated
+ * concurrently by the threads that feed and drain the stage.
+ */
+public class PipeStageMetrics {
+
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong bytesIn = new AtomicLong();
+
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    private final AtomicLong inputWaitNanos = new AtomicLong();
+
+    private volatile long inputClosedNanos = -1;
+
+    private volatile long endNanos = -1;
+
+    void addBytesIn(long bytes) {
+        bytesIn.addAndGet(bytes);
+    }
+
+    void addBytesOut(long bytes) {
+        bytesOut.addAndGet(bytes);
+    }
+
+    void addInputWait(long nanos) {
+        inputWaitNanos.addAndGet(nanos);
+    }
+
+    void markInputClosed() {
+        inputClosedNanos = System.nanoTime();
+    }
+
+    void markEnd() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * @return milliseconds the producer waited for the stage to consume its input.
+     */
+    public long getInputWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(inputWaitNanos.get());
+    }
+
+    /**
+     * @return milliseconds the stage kept running after its input was closed, -1 if not known yet.
+     */
+    public long getTailMillis() {
+        if (inputClosedNanos < 0 || endNanos < 0) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - inputClosedNanos);
+    }
+
+    /**
+     * @return milliseconds since the stage was started until it finished or until now if it is still running.
+     */
+    public long getElapsedMillis() {
+        final long end = endNanos < 0 ? System.nanoTime() : endNanos;
+        return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "PipeStageMetrics{" +
+                "bytesIn=" + getBytesIn() +
+                ", bytesOut=" + getBytesOut() +
+                ", inputWaitMillis=" + getInputWaitMillis() +
+                ", tailMillis=" + getTailMillis() +
+                ", elapsedMillis=" + getElapsedMillis() +
+                '}';
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import uk.ac.ebi.ega.file.encryption.processor.services.ICheckpointService;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Value class which selects the {@link IngestionPipeline} implementation used to process each file.
+ */
+public class PipelineConfiguration {
+
+    /**
+     * Specifies how the stages of a pipeline are executed.
+     *
+     * A default pipeline decrypts and encrypts on the calling thread.
+     * A pipelined pipeline decrypts on the calling thread and encrypts on a dedicated thread, both stages exchange
+     * data through a bounded pool of buffers.
+     * A resumable pipeline saves its progress periodically and continues from the last checkpoint when a file is
+     * processed again.
+     */
+    public enum PipelineType {
+        DEFAULT, PIPELINED, RESUMABLE
+    }
+
+    private final PipelineType pipelineType;
+
+    /**
+     * Specifies the size in bytes of each buffer when the type of pipeline is {@link PipelineType#PIPELINED}.
+     */
+    private final int bufferSize;
+
+    /**
+     * Specifies the number of buffers when the type of pipeline is {@link PipelineType#PIPELINED}.
+     */
+    private final int bufferCount;
+
+    /**
+     * Specifies how the pipelines read the origin file and write the output files.
+     * See {@link FileStreamFactory.Type}
+     */
+    private final FileStreamFactory streamFactory;
+
+    /**
+     * Specifies where checkpoints are stored when the type of pipeline is {@link PipelineType#RESUMABLE}.
+     */
+    private final ICheckpointService checkpointService;
+
+    /**
+     * Specifies the number of bytes processed between checkpoints when the type of pipeline is
+     * {@link PipelineType#RESUMABLE}.
+     */
+    private final long checkpointInterval;
+
+    public PipelineConfiguration(final PipelineType pipelineType, final int bufferSize, final int bufferCount) {
+        this(pipelineType, bufferSize, bufferCount, FileStreamFactory.createDefault());
+    }
+
+    public PipelineConfiguration(final PipelineType pipelineType, final int bufferSize, final int bufferCount,
+                                 final FileStreamFactory streamFactory) {
+        this(pipelineType, bufferSize, bufferCount, streamFactory, null, 0);
+    }
+
+    public PipelineConfiguration(final PipelineType pipelineType, final int bufferSize, final int bufferCount,
+                                 final FileStreamFactory streamFactory, final ICheckpointService checkpointService,
+                                 final long checkpointInterval) {
+        if (pipelineType == PipelineType.RESUMABLE && (checkpointService == null || checkpointInterval < 1)) {
+            throw new IllegalArgumentException("Resumable pipelines need a checkpoint service and an interval of " +
+                    "at least 1 byte");
+        }
+        this.pipelineType = pipelineType;
+        this.bufferSize = bufferSize;
+        this.bufferCount = bufferCount;
+        this.streamFactory = streamFactory;
+        this.checkpointService = checkpointService;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public PipelineConfiguration() {
+        this(PipelineType.DEFAULT, 0, 0);
+    }
+
+    public IngestionPipeline create(File origin, File secretRing, File secretRingKey, File output, char[] password)
+            throws IOException {
+        switch (pipelineType) {
+            case DEFAULT:
+                return new DefaultIngestionPipeline(origin, secretRing, secretRingKey, output, password,
+                        streamFactory);
+            case PIPELINED:
+                return new PipelinedIngestionPipeline(origin, secretRing, secretRingKey, output, password,
+                        bufferSize, bufferCount, streamFactory);
+            case RESUMABLE:
+                return new ResumableIngestionPipeline(origin, secretRing, secretRingKey, output, password,
+                        checkpointService, checkpointInterval, streamFactory);
+            default:
+                final String message = String.format("Unsupported pipeline type: %s. Possible types are: %s",
+                        pipelineType, Arrays.toString(PipelineType.values()));
+                throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * @return true if the processing of the output file was interrupted and can be resumed from a checkpoint.
+     */
+    public boolean hasCheckpoint(File output) {
+        return pipelineType == PipelineType.RESUMABLE && checkpointService.findCheckpoint(output).isPresent();
+    }
+
+    public PipelineType getPipelineType() {
+        return pipelineType;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    public FileStreamFactory getStreamFactory() {
+        return streamFactory;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+}
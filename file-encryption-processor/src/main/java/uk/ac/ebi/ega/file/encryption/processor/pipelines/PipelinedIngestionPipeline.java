@@ -0,0 +1,201 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
+import uk.ac.ebi.ega.encryption.core.EncryptOutputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.ingestion.commons.digest.MessageDigests;
+import uk.ac.ebi.ega.ingestion.commons.digest.MultiDigestOutputStream;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion pipeline that runs the decryption and the encryption of the file on different threads. The calling
+ * thread reads and decrypts the origin file into buffers taken from a bounded {@link ByteBufferPool}, while a
+ * dedicated thread encrypts those buffers into the output file and returns them to the pool. The time to process a
+ * file is bounded by the slowest of both stages instead of their sum.
+ */
+public class PipelinedIngestionPipeline extends DefaultIngestionPipeline {
+
+    private static final long BUFFER_POLL_TIMEOUT_MS = 500;
+
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final int bufferSize;
+
+    private final int bufferCount;
+
+    public PipelinedIngestionPipeline(File origin, File secretRing, File secretRingKey, File output, char[] password,
+                                      int bufferSize, int bufferCount) throws IOException {
+        this(origin, secretRing, secretRingKey, output, password, bufferSize, bufferCount,
+                FileStreamFactory.createDefault());
+    }
+
+    public PipelinedIngestionPipeline(File origin, File secretRing, File secretRingKey, File output, char[] password,
+                                      int bufferSize, int bufferCount, FileStreamFactory streamFactory)
+            throws IOException {
+        super(origin, secretRing, secretRingKey, output, password, streamFactory);
+        this.bufferSize = bufferSize;
+        this.bufferCount = bufferCount;
+    }
+
+    @Override
+    protected IngestionPipelineResult doProcess() throws SystemErrorException, UserErrorException, IOException,
+            AlgorithmInitializationException {
+        final ByteBufferPool bufferPool = new ByteBufferPool(bufferCount, bufferSize);
+        // Every buffer of the pool plus the end of stream marker fit in the queue, adding to it never blocks
+        final BlockingQueue<ByteBuffer> filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        try (
+                final DecryptInputStream decryptInputStream = getDecryptionInputStream();
+                final EncryptOutputStream encryptOutputStream = getEncryptionOutputStream(output);
+                final MultiDigestOutputStream plainDigestOutputStream = getPlainDigestOutputStream()
+        ) {
+            final ExecutorService encryptStage = Executors.newSingleThreadExecutor(
+                    runnable -> new Thread(runnable, "encrypt-stage-" + output.getName()));
+            try {
+                final Future<Long> encryptTask = encryptStage.submit(
+                        () -> writeBuffers(filledBuffers, bufferPool, encryptOutputStream));
+                final long bytesRead = readBuffers(decryptInputStream, plainDigestOutputStream, bufferPool,
+                        filledBuffers, encryptTask);
+                final long bytesTransferred = getStageResult(encryptTask);
+                if (bytesRead != bytesTransferred) {
+                    throw new SystemErrorException("Decrypted " + bytesRead + " bytes but encrypted " +
+                            bytesTransferred + " bytes");
+                }
+                plainDigestOutputStream.close();
+                return new IngestionPipelineResult(
+                        new IngestionPipelineFile(origin, decryptInputStream.getMd5(), decryptInputStream.available()),
+                        decryptInputStream.getUnencryptedMd5(),
+                        bytesTransferred,
+                        password,
+                        new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length()),
+                        null,
+                        plainDigestOutputStream.getDigest(MessageDigests.SHA_256)
+                );
+            } finally {
+                // Stops the encryption stage if the decryption stage failed, before the output stream is closed
+                stopStage(encryptStage);
+            }
+        }
+    }
+
+    private long readBuffers(InputStream input, OutputStream digestOutput, ByteBufferPool bufferPool,
+                             BlockingQueue<ByteBuffer> filledBuffers, Future<Long> encryptTask)
+            throws IOException, SystemErrorException {
+        long totalBytes = 0;
+        ByteBuffer buffer = acquireBuffer(bufferPool, encryptTask);
+        int bytesRead = fill(input, buffer);
+        while (bytesRead != -1) {
+            digestOutput.write(buffer.array(), 0, bytesRead);
+            buffer.flip();
+            filledBuffers.add(buffer);
+            totalBytes += bytesRead;
+            buffer = acquireBuffer(bufferPool, encryptTask);
+            bytesRead = fill(input, buffer);
+        }
+        bufferPool.release(buffer);
+        filledBuffers.add(END_OF_STREAM);
+        return totalBytes;
+    }
+
+    private ByteBuffer acquireBuffer(ByteBufferPool bufferPool, Future<Long> encryptTask)
+            throws IOException, SystemErrorException {
+        try {
+            ByteBuffer buffer = bufferPool.acquire(BUFFER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            while (buffer == null) {
+                if (encryptTask.isDone()) {
+                    // The encryption stage can only finish before the end of stream marker if it failed
+                    getStageResult(encryptTask);
+                    throw new SystemErrorException("Encryption stage finished before the end of the file");
+                }
+                buffer = bufferPool.acquire(BUFFER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemErrorException(e);
+        }
+    }
+
+    /**
+     * Reads from the input until the buffer is full or the input has ended.
+     *
+     * @return number of bytes read, or -1 if the input had already ended.
+     */
+    private static int fill(InputStream input, ByteBuffer buffer) throws IOException {
+        final byte[] array = buffer.array();
+        int position = 0;
+        while (position < array.length) {
+            final int bytesRead = input.read(array, position, array.length - position);
+            if (bytesRead == -1) {
+                break;
+            }
+            position += bytesRead;
+        }
+        buffer.position(position);
+        return position == 0 ? -1 : position;
+    }
+
+    private static long writeBuffers(BlockingQueue<ByteBuffer> filledBuffers, ByteBufferPool bufferPool,
+                                     OutputStream output) throws IOException, InterruptedException {
+        long totalBytes = 0;
+        ByteBuffer buffer = filledBuffers.take();
+        while (buffer != END_OF_STREAM) {
+            output.write(buffer.array(), 0, buffer.limit());
+            totalBytes += buffer.limit();
+            bufferPool.release(buffer);
+            buffer = filledBuffers.take();
+        }
+        output.flush();
+        return totalBytes;
+    }
+
+    private static long getStageResult(Future<Long> stage) throws IOException, SystemErrorException {
+        try {
+            return stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemErrorException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Exception) {
+                throw new SystemErrorException((Exception) cause);
+            }
+            throw new SystemErrorException(e);
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import uk.ac.ebi.ega.encryption.core.EncryptOutputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.AesCtr256Ega;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.utils.ResumableMd5;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Output stream that writes files in the same format as {@link uk.ac.ebi.ega.encryption.core.EncryptOutputStream}
+ * with {@link uk.ac.ebi.ega.encryption.core.encryption.AesCtr256Ega}: a random IV followed by the data encrypted with
+ * AES-256 in CTR mode. The counter of a CTR cipher can be set for any offset of the data, which allows to resume the
+ * encryption of a file that was interrupted, see {@link #resume(Path, char[], int, long, String)}.
+ */
+public class ResumableEncryptOutputStream extends OutputStream {
+
+    public static final int IV_LENGTH = 16;
+
+    private static final int AES_BLOCK_SIZE = 16;
+
+    /*
+     * AesCtr256Ega does not expose how it derives the key from the password, the salt, iterations and key length are
+     * repeated here and checked against it by checkCompatibility() before the first file is written.
+     */
+    private static final byte[] SALT = {-12, 34, 1, 0, -98, -33, 78, 21};
+
+    private static final int KEY_ITERATIONS = 1024;
+
+    private static final int KEY_LENGTH = 256;
+
+    private static final BigInteger COUNTER_MODULUS = BigInteger.ONE.shiftLeft(IV_LENGTH * 8);
+
+    private static volatile boolean compatibilityChecked;
+
+    private final FileChannel channel;
+
+    private final Cipher cipher;
+
+    private final ResumableMd5 md5;
+
+    private final byte[] buffer;
+
+    private int bufferPosition;
+
+    private long bytesTransferred;
+
+    private ResumableEncryptOutputStream(FileChannel channel, Cipher cipher, ResumableMd5 md5, int bufferSize,
+                                         long bytesTransferred) {
+        this.channel = channel;
+        this.cipher = cipher;
+        this.md5 = md5;
+        this.buffer = new byte[bufferSize];
+        this.bufferPosition = 0;
+        this.bytesTransferred = bytesTransferred;
+    }
+
+    /**
+     * Creates or truncates the file and writes a new random IV.
+     */
+    public static ResumableEncryptOutputStream create(Path path, char[] password, int bufferSize)
+            throws IOException, SystemErrorException {
+        checkCompatibility();
+        final byte[] iv = new byte[IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final ResumableMd5 md5 = new ResumableMd5();
+            md5.update(iv);
+            final ResumableEncryptOutputStream stream = new ResumableEncryptOutputStream(channel,
+                    initCipher(password, iv, 0), md5, bufferSize, 0);
+            stream.writeToChannel(iv, IV_LENGTH);
+            return stream;
+        } catch (IOException | SystemErrorException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file written by a previous stream and continues the encryption after {@code bytesTransferred} bytes of
+     * data. Anything written after that point is discarded.
+     *
+     * @param md5State state of the md5 of the file when {@code bytesTransferred} bytes had been written, see
+     *                 {@link #getMd5State()}.
+     */
+    public static ResumableEncryptOutputStream resume(Path path, char[] password, int bufferSize,
+                                                      long bytesTransferred, String md5State)
+            throws IOException, SystemErrorException {
+        checkCompatibility();
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long length = IV_LENGTH + bytesTransferred;
+            if (channel.size() < length) {
+                throw new SystemErrorException("File " + path + " is shorter than the " + length +
+                        " bytes to resume from");
+            }
+            final ResumableMd5 md5 = ResumableMd5.fromState(md5State);
+            if (md5.getLength() != length) {
+                throw new SystemErrorException("Md5 state of " + md5.getLength() + " bytes does not match the " +
+                        length + " bytes to resume from");
+            }
+            final byte[] iv = readIv(channel);
+            channel.truncate(length);
+            channel.position(length);
+            return new ResumableEncryptOutputStream(channel, initCipher(password, iv, bytesTransferred), md5,
+                    bufferSize, bytesTransferred);
+        } catch (IOException | SystemErrorException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static byte[] readIv(FileChannel channel) throws IOException {
+        final ByteBuffer iv = ByteBuffer.allocate(IV_LENGTH);
+        while (iv.hasRemaining()) {
+            if (channel.read(iv, iv.position()) == -1) {
+                throw new IOException("Unexpected end of file while reading the IV");
+            }
+        }
+        return iv.array();
+    }
+
+    /**
+     * Checks that the data encrypted by {@link AesCtr256Ega} is encrypted the same way by this stream, from the start
+     * and from an offset that is not aligned to a block, so that files written or resumed here can be decrypted with
+     * the library.
+     */
+    static void checkCompatibility() throws SystemErrorException {
+        if (compatibilityChecked) {
+            return;
+        }
+        final char[] password = "compatibility-check".toCharArray();
+        final byte[] data = new byte[3 * AES_BLOCK_SIZE + 5];
+        new SecureRandom().nextBytes(data);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (EncryptOutputStream stream = new EncryptOutputStream(expected, new AesCtr256Ega(), password)) {
+            stream.write(data);
+        } catch (Exception e) {
+            throw new SystemErrorException(e);
+        }
+        final byte[] encrypted = expected.toByteArray();
+        final byte[] iv = Arrays.copyOf(encrypted, IV_LENGTH);
+        final int offset = AES_BLOCK_SIZE + 7;
+        if (!Arrays.equals(Arrays.copyOfRange(encrypted, IV_LENGTH, encrypted.length),
+                initCipher(password, iv, 0).update(data)) ||
+                !Arrays.equals(Arrays.copyOfRange(encrypted, IV_LENGTH + offset, encrypted.length),
+                        initCipher(password, iv, offset).update(data, offset, data.length - offset))) {
+            throw new SystemErrorException("Encryption does not match " + AesCtr256Ega.class.getSimpleName());
+        }
+        compatibilityChecked = true;
+    }
+
+    /**
+     * Initialises a cipher positioned at the given offset of the data. The counter starts at the IV and is
+     * incremented once per block, the remainder of a partial block is consumed from the key stream.
+     */
+    private static Cipher initCipher(char[] password, byte[] iv, long offset) throws SystemErrorException {
+        try {
+            final SecretKeyFactory keyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+            final SecretKey key = keyFactory.generateSecret(new PBEKeySpec(password, SALT, KEY_ITERATIONS,
+                    KEY_LENGTH));
+            final Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getEncoded(), "AES"),
+                    new IvParameterSpec(getCounter(iv, offset / AES_BLOCK_SIZE)));
+            final int blockOffset = (int) (offset % AES_BLOCK_SIZE);
+            if (blockOffset > 0) {
+                cipher.update(new byte[blockOffset]);
+            }
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new SystemErrorException(e);
+        }
+    }
+
+    private static byte[] getCounter(byte[] iv, long block) {
+        final byte[] counter = new BigInteger(1, iv).add(BigInteger.valueOf(block)).mod(COUNTER_MODULUS)
+                .toByteArray();
+        // Remove the sign byte or pad with leading zeros
+        final byte[] result = new byte[IV_LENGTH];
+        final int length = Math.min(counter.length, IV_LENGTH);
+        System.arraycopy(counter, counter.length - length, result, IV_LENGTH - length, length);
+        return result;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            while (length > 0) {
+                final int bytesToEncrypt = Math.min(length, buffer.length - bufferPosition);
+                final int bytesEncrypted = cipher.update(bytes, offset, bytesToEncrypt, buffer, bufferPosition);
+                md5.update(buffer, bufferPosition, bytesEncrypted);
+                bufferPosition += bytesEncrypted;
+                bytesTransferred += bytesToEncrypt;
+                offset += bytesToEncrypt;
+                length -= bytesToEncrypt;
+                if (bufferPosition == buffer.length) {
+                    flushBuffer();
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        writeToChannel(buffer, bufferPosition);
+        bufferPosition = 0;
+    }
+
+    private void writeToChannel(byte[] bytes, int length) throws IOException {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, 0, length);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+    }
+
+    /**
+     * Writes the buffered data and forces it to the storage device, every byte counted by
+     * {@link #getBytesTransferred()} is in the file once this method returns.
+     */
+    public void sync() throws IOException {
+        flushBuffer();
+        channel.force(false);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    /**
+     * @return number of bytes of data encrypted, the file has {@link #IV_LENGTH} more bytes.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public String getMd5State() {
+        return md5.getState();
+    }
+
+    public String getMd5() {
+        return md5.digestAsHex();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                flushBuffer();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+}
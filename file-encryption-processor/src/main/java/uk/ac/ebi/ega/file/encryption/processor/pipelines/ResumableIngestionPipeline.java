@@ -0,0 +1,159 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.services.ICheckpointService;
+import uk.ac.ebi.ega.ingestion.commons.digest.MessageDigests;
+import uk.ac.ebi.ega.ingestion.commons.digest.MultiDigestOutputStream;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Ingestion pipeline that saves its progress every {@code checkpointInterval} bytes. When a file that has a valid
+ * checkpoint is processed again, the output file is truncated to the checkpointed length and the encryption continues
+ * from there with the AES-CTR counter and the md5 state of the checkpoint.
+ *
+ * The gpg file can not be decrypted from an arbitrary offset, it is decrypted again from the beginning so its md5 and
+ * the md5 of the decrypted data are calculated over the whole file, but the data before the checkpoint is neither
+ * encrypted nor written again.
+ */
+public class ResumableIngestionPipeline extends DefaultIngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableIngestionPipeline.class);
+
+    private final ICheckpointService checkpointService;
+
+    private final long checkpointInterval;
+
+    public ResumableIngestionPipeline(File origin, File secretRing, File secretRingKey, File output, char[] password,
+                                      ICheckpointService checkpointService, long checkpointInterval,
+                                      FileStreamFactory streamFactory) throws IOException {
+        super(origin, secretRing, secretRingKey, output, password, streamFactory);
+        this.checkpointService = checkpointService;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    @Override
+    protected IngestionPipelineResult doProcess() throws SystemErrorException, UserErrorException, IOException,
+            AlgorithmInitializationException {
+        final Optional<IngestionCheckpoint> checkpoint = getValidCheckpoint();
+        createFile(output);
+        try (
+                final DecryptInputStream decryptInputStream = getDecryptionInputStream();
+                final ResumableEncryptOutputStream encryptOutputStream = openOutputStream(checkpoint);
+                final MultiDigestOutputStream plainDigestOutputStream = getPlainDigestOutputStream()
+        ) {
+            final byte[] buffer = new byte[streamFactory.getBlockSize()];
+            skip(decryptInputStream, plainDigestOutputStream, encryptOutputStream.getBytesTransferred(), buffer);
+            long nextCheckpoint = encryptOutputStream.getBytesTransferred() + checkpointInterval;
+            int bytesRead = decryptInputStream.read(buffer);
+            while (bytesRead != -1) {
+                encryptOutputStream.write(buffer, 0, bytesRead);
+                plainDigestOutputStream.write(buffer, 0, bytesRead);
+                if (encryptOutputStream.getBytesTransferred() >= nextCheckpoint) {
+                    saveCheckpoint(encryptOutputStream);
+                    nextCheckpoint = encryptOutputStream.getBytesTransferred() + checkpointInterval;
+                }
+                bytesRead = decryptInputStream.read(buffer);
+            }
+            encryptOutputStream.close();
+            plainDigestOutputStream.close();
+            checkpointService.deleteCheckpoint(output);
+            return new IngestionPipelineResult(
+                    new IngestionPipelineFile(origin, decryptInputStream.getMd5(), decryptInputStream.available()),
+                    decryptInputStream.getUnencryptedMd5(),
+                    encryptOutputStream.getBytesTransferred(),
+                    password,
+                    new IngestionPipelineFile(output, encryptOutputStream.getMd5(), output.length()),
+                    null,
+                    plainDigestOutputStream.getDigest(MessageDigests.SHA_256)
+            );
+        }
+    }
+
+    private Optional<IngestionCheckpoint> getValidCheckpoint() {
+        final Optional<IngestionCheckpoint> checkpoint = checkpointService.findCheckpoint(output);
+        if (checkpoint.isPresent() && !checkpoint.get().isValidFor(origin)) {
+            logger.info("Checkpoint of {} is no longer valid, process starts from the beginning", output);
+            checkpointService.deleteCheckpoint(output);
+            return Optional.empty();
+        }
+        return checkpoint;
+    }
+
+    private ResumableEncryptOutputStream openOutputStream(Optional<IngestionCheckpoint> checkpoint)
+            throws IOException, SystemErrorException {
+        final int bufferSize = streamFactory.getBlockSize();
+        if (checkpoint.isPresent()) {
+            logger.info("Resuming {} after {} bytes", output, checkpoint.get().getBytesTransferred());
+            return ResumableEncryptOutputStream.resume(output.toPath(), password, bufferSize,
+                    checkpoint.get().getBytesTransferred(), checkpoint.get().getOutputMd5State());
+        }
+        return ResumableEncryptOutputStream.create(output.toPath(), password, bufferSize);
+    }
+
+    /**
+     * Decrypts the data that was already encrypted before the checkpoint, which is only used to compute its digests.
+     */
+    private void skip(InputStream inputStream, OutputStream digestOutput, long bytesToSkip, byte[] buffer)
+            throws IOException, SystemErrorException {
+        long remaining = bytesToSkip;
+        while (remaining > 0) {
+            final int bytesRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (bytesRead == -1) {
+                checkpointService.deleteCheckpoint(output);
+                throw new SystemErrorException("File " + origin + " ended before the checkpoint of " +
+                        bytesToSkip + " bytes");
+            }
+            digestOutput.write(buffer, 0, bytesRead);
+            remaining -= bytesRead;
+        }
+    }
+
+    private void saveCheckpoint(ResumableEncryptOutputStream encryptOutputStream) throws IOException {
+        encryptOutputStream.sync();
+        checkpointService.saveCheckpoint(new IngestionCheckpoint(output, origin.length(), origin.lastModified(),
+                encryptOutputStream.getBytesTransferred(), encryptOutputStream.getMd5State()));
+    }
+
+    /**
+     * Keeps the output file and its checkpoint so the process can be resumed.
+     */
+    @Override
+    protected void onSystemError() {
+        logger.info("Output {} is kept to resume the process", output);
+    }
+
+    @Override
+    protected void onUserError() throws SystemErrorException {
+        checkpointService.deleteCheckpoint(output);
+        super.onUserError();
+    }
+
+}
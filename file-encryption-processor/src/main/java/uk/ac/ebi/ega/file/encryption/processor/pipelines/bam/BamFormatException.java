@@ -0,0 +1,35 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the data written into a {@link BamIndexBuilder} is not a valid coordinate sorted bam file.
+ */
+public class BamFormatException extends IOException {
+
+    public BamFormatException(String message) {
+        super(message);
+    }
+
+    public BamFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,564 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Output stream that builds the index of the coordinate sorted bam file written into it without storing the file.
+ * The bgzf blocks are inflated as they arrive and the virtual offsets of every record are added to the index, which
+ * can be written once the stream has been closed.
+ *
+ * The index follows the same rules as samtools index, a BAI index uses 16Kb windows and 5 levels of bins and can not
+ * index references longer than 2^29 bases, a CSI index uses as many levels as the longest reference needs.
+ */
+public class BamIndexBuilder extends OutputStream {
+
+    public enum IndexFormat {
+        BAI, CSI
+    }
+
+    private static final int MIN_SHIFT = 14;
+
+    private static final int BAI_LEVELS = 5;
+
+    private static final int GZIP_HEADER_LENGTH = 12;
+
+    private static final int BGZF_FOOTER_LENGTH = 8;
+
+    private static final int MAX_BLOCK_LENGTH = 0x10000;
+
+    private static final byte[] BAM_MAGIC = {'B', 'A', 'M', 1};
+
+    private static final byte[] BAI_MAGIC = {'B', 'A', 'I', 1};
+
+    private static final byte[] CSI_MAGIC = {'C', 'S', 'I', 1};
+
+    private static final int MIN_RECORD_LENGTH = 32;
+
+    private static final int UNMAPPED_FLAG = 0x4;
+
+    // Cigar operations that consume the reference: M, D, N, = and X
+    private static final int REFERENCE_OPERATIONS = 1 | 1 << 2 | 1 << 3 | 1 << 7 | 1 << 8;
+
+    private static final int NO_REFERENCE = Integer.MIN_VALUE;
+
+    private final IndexFormat format;
+
+    private final byte[] block = new byte[MAX_BLOCK_LENGTH];
+
+    private final byte[] inflated = new byte[MAX_BLOCK_LENGTH];
+
+    private final Inflater inflater = new Inflater(true);
+
+    private int blockLength;
+
+    private int headerLength = GZIP_HEADER_LENGTH;
+
+    /**
+     * Total size of the block being received, 0 until its header has been received.
+     */
+    private int blockSize;
+
+    /**
+     * Position in the compressed file of the block being received.
+     */
+    private long blockAddress;
+
+    /**
+     * Uncompressed data that has not been parsed yet, between dataStart and dataEnd.
+     */
+    private byte[] data = new byte[2 * MAX_BLOCK_LENGTH];
+
+    private int dataStart;
+
+    private int dataEnd;
+
+    /**
+     * Position in the uncompressed file of data[0].
+     */
+    private long dataPosition;
+
+    /**
+     * Uncompressed position, compressed address and uncompressed length of the blocks that hold unparsed data.
+     */
+    private final ArrayDeque<long[]> blocks = new ArrayDeque<>();
+
+    private ReferenceIndex[] references;
+
+    private int levels;
+
+    private int currentReference = NO_REFERENCE;
+
+    private int lastPosition;
+
+    private int binRun = -1;
+
+    private long binRunBegin;
+
+    private long binRunEnd;
+
+    private long unplacedRecords;
+
+    private boolean closed;
+
+    public BamIndexBuilder(IndexFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            final int target = blockSize > 0 ? blockSize : headerLength;
+            final int chunk = Math.min(target - blockLength, end - position);
+            System.arraycopy(bytes, position, block, blockLength, chunk);
+            blockLength += chunk;
+            position += chunk;
+            if (blockLength == target) {
+                onBlockDataReceived();
+            }
+        }
+    }
+
+    /**
+     * Completes the index, fails if the data did not end at the end of a bam record.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inflater.end();
+        if (blockLength > 0) {
+            throw new BamFormatException("The file ended in the middle of a bgzf block");
+        }
+        if (references == null) {
+            throw new BamFormatException("The file ended before the end of the bam header");
+        }
+        if (dataEnd > dataStart) {
+            throw new BamFormatException("The file ended in the middle of a bam record");
+        }
+        finishReference();
+        for (ReferenceIndex reference : references) {
+            if (reference != null) {
+                reference.finish();
+            }
+        }
+    }
+
+    /**
+     * Writes the index into the output, the output is not closed.
+     */
+    public void writeIndex(OutputStream output) throws IOException {
+        if (!closed) {
+            throw new IllegalStateException("The index is only available once the bam file has been written");
+        }
+        final BufferedOutputStream bufferedOutput = new BufferedOutputStream(output, MAX_BLOCK_LENGTH);
+        switch (format) {
+            case BAI:
+                writeBai(bufferedOutput);
+                break;
+            case CSI:
+                final BgzfOutputStream bgzfOutput = new BgzfOutputStream(bufferedOutput);
+                writeCsi(bgzfOutput);
+                bgzfOutput.finish();
+                break;
+            default:
+                final String message = String.format("Unsupported index format: %s. Possible formats are: %s",
+                        format, Arrays.toString(IndexFormat.values()));
+                throw new IllegalArgumentException(message);
+        }
+        bufferedOutput.flush();
+    }
+
+    public IndexFormat getFormat() {
+        return format;
+    }
+
+    private void onBlockDataReceived() throws IOException {
+        if (blockSize > 0) {
+            inflateBlock();
+            blockAddress += blockSize;
+            blockLength = 0;
+            blockSize = 0;
+            headerLength = GZIP_HEADER_LENGTH;
+            parse();
+        } else if (headerLength == GZIP_HEADER_LENGTH) {
+            if (block[0] != 31 || (block[1] & 0xff) != 139 || block[2] != 8 || (block[3] & 4) == 0) {
+                throw new BamFormatException("The file is not bgzf compressed at offset " + blockAddress);
+            }
+            final int extraLength = readUnsignedShort(block, 10);
+            if (extraLength == 0) {
+                throw new BamFormatException("Missing bgzf block size at offset " + blockAddress);
+            }
+            headerLength += extraLength;
+        } else {
+            blockSize = readBlockSize();
+            if (blockSize < headerLength + BGZF_FOOTER_LENGTH) {
+                throw new BamFormatException("Invalid bgzf block size at offset " + blockAddress);
+            }
+        }
+    }
+
+    private int readBlockSize() throws BamFormatException {
+        int position = GZIP_HEADER_LENGTH;
+        while (position + 4 <= headerLength) {
+            final int fieldLength = readUnsignedShort(block, position + 2);
+            if (block[position] == 'B' && block[position + 1] == 'C' && fieldLength == 2
+                    && position + 6 <= headerLength) {
+                return readUnsignedShort(block, position + 4) + 1;
+            }
+            position += 4 + fieldLength;
+        }
+        throw new BamFormatException("Missing bgzf block size at offset " + blockAddress);
+    }
+
+    private void inflateBlock() throws BamFormatException {
+        final int expectedLength = readInt(block, blockSize - 4);
+        if (expectedLength < 0 || expectedLength > MAX_BLOCK_LENGTH) {
+            throw new BamFormatException("Invalid bgzf block length at offset " + blockAddress);
+        }
+        inflater.reset();
+        inflater.setInput(block, headerLength, blockSize - headerLength - BGZF_FOOTER_LENGTH);
+        int length = 0;
+        try {
+            while (length < expectedLength && !inflater.finished()) {
+                final int inflatedBytes = inflater.inflate(inflated, length, expectedLength - length);
+                if (inflatedBytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflatedBytes;
+            }
+        } catch (DataFormatException e) {
+            throw new BamFormatException("Corrupted bgzf block at offset " + blockAddress, e);
+        }
+        if (length != expectedLength) {
+            throw new BamFormatException("Corrupted bgzf block at offset " + blockAddress);
+        }
+        appendData(length);
+    }
+
+    private void appendData(int length) {
+        if (length == 0) {
+            return;
+        }
+        if (dataEnd + length > data.length) {
+            System.arraycopy(data, dataStart, data, 0, dataEnd - dataStart);
+            dataPosition += dataStart;
+            dataEnd -= dataStart;
+            dataStart = 0;
+            if (dataEnd + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, dataEnd + length));
+            }
+        }
+        blocks.add(new long[]{dataPosition + dataEnd, blockAddress, length});
+        System.arraycopy(inflated, 0, data, dataEnd, length);
+        dataEnd += length;
+    }
+
+    private void parse() throws BamFormatException {
+        while (true) {
+            if (references == null) {
+                if (!parseHeader()) {
+                    break;
+                }
+                continue;
+            }
+            final int available = dataEnd - dataStart;
+            if (available < 4) {
+                break;
+            }
+            final int recordLength = readInt(data, dataStart);
+            if (recordLength < MIN_RECORD_LENGTH) {
+                throw new BamFormatException("Invalid bam record length " + recordLength);
+            }
+            if (available - 4 < recordLength) {
+                break;
+            }
+            final long begin = dataPosition + dataStart;
+            indexRecord(dataStart + 4, recordLength, virtualOffset(begin), virtualOffset(begin + 4 + recordLength));
+            dataStart += 4 + recordLength;
+        }
+        final long parsedPosition = dataPosition + dataStart;
+        while (!blocks.isEmpty() && blocks.peekFirst()[0] + blocks.peekFirst()[2] <= parsedPosition) {
+            blocks.pollFirst();
+        }
+    }
+
+    /**
+     * @return true if the header was complete and has been parsed.
+     */
+    private boolean parseHeader() throws BamFormatException {
+        if (dataEnd - dataStart < 8) {
+            return false;
+        }
+        for (int i = 0; i < BAM_MAGIC.length; i++) {
+            if (data[dataStart + i] != BAM_MAGIC[i]) {
+                throw new BamFormatException("The file is not a bam file");
+            }
+        }
+        final int textLength = readInt(data, dataStart + 4);
+        if (textLength < 0) {
+            throw new BamFormatException("Invalid bam header length");
+        }
+        long position = dataStart + 8L + textLength;
+        if (position + 4 > dataEnd) {
+            return false;
+        }
+        final int referenceCount = readInt(data, (int) position);
+        if (referenceCount < 0) {
+            throw new BamFormatException("Invalid number of references");
+        }
+        position += 4;
+        final long[] referenceLengths = new long[referenceCount];
+        for (int i = 0; i < referenceCount; i++) {
+            if (position + 4 > dataEnd) {
+                return false;
+            }
+            final int nameLength = readInt(data, (int) position);
+            if (nameLength < 1) {
+                throw new BamFormatException("Invalid reference name length");
+            }
+            if (position + 8 + nameLength > dataEnd) {
+                return false;
+            }
+            referenceLengths[i] = readInt(data, (int) position + 4 + nameLength) & 0xffffffffL;
+            position += 8 + nameLength;
+        }
+        dataStart = (int) position;
+        initialiseIndex(referenceLengths);
+        return true;
+    }
+
+    private void initialiseIndex(long[] referenceLengths) throws BamFormatException {
+        long maxLength = 0;
+        for (long length : referenceLengths) {
+            maxLength = Math.max(maxLength, length);
+        }
+        // Same margin as samtools, records may extend a bit beyond the end of the reference
+        final int neededLevels = Binning.levelsFor(maxLength + 256, MIN_SHIFT);
+        if (format == IndexFormat.BAI) {
+            if (neededLevels > BAI_LEVELS) {
+                throw new BamFormatException("A reference of " + maxLength + " bases is too long for a BAI index");
+            }
+            levels = BAI_LEVELS;
+        } else {
+            // References shorter than a window only have bin 0, as in samtools
+            levels = neededLevels;
+        }
+        references = new ReferenceIndex[referenceLengths.length];
+    }
+
+    private void indexRecord(int position, int recordLength, long beginOffset, long endOffset)
+            throws BamFormatException {
+        final int reference = readInt(data, position);
+        final int alignmentStart = readInt(data, position + 4);
+        final int nameLength = data[position + 8] & 0xff;
+        final int cigarLength = readUnsignedShort(data, position + 12);
+        final int flag = readUnsignedShort(data, position + 14);
+        if (MIN_RECORD_LENGTH + nameLength + 4L * cigarLength > recordLength) {
+            throw new BamFormatException("Invalid bam record at virtual offset " + beginOffset);
+        }
+        if (reference < -1 || reference >= references.length) {
+            throw new BamFormatException("Invalid reference " + reference + " at virtual offset " + beginOffset);
+        }
+        final boolean mapped = (flag & UNMAPPED_FLAG) == 0;
+        int referenceLength = 0;
+        if (mapped) {
+            final int cigarStart = position + MIN_RECORD_LENGTH + nameLength;
+            for (int i = 0; i < cigarLength; i++) {
+                final int operation = readInt(data, cigarStart + 4 * i);
+                if ((REFERENCE_OPERATIONS & 1 << (operation & 0xf)) != 0) {
+                    referenceLength += operation >>> 4;
+                }
+            }
+        }
+        push(reference, alignmentStart, alignmentStart + Math.max(referenceLength, 1), beginOffset, endOffset,
+                mapped);
+    }
+
+    private void push(int reference, int begin, int end, long beginOffset, long endOffset, boolean mapped)
+            throws BamFormatException {
+        if (reference != currentReference) {
+            if (reference >= 0 && (unplacedRecords > 0 || references[reference] != null)) {
+                throw new BamFormatException("The bam file is not sorted by coordinate");
+            }
+            finishReference();
+            currentReference = reference;
+            if (reference >= 0) {
+                references[reference] = new ReferenceIndex(MIN_SHIFT, levels, beginOffset);
+            }
+        } else if (reference >= 0 && begin < lastPosition) {
+            throw new BamFormatException("The bam file is not sorted by coordinate");
+        }
+        lastPosition = begin;
+        if (reference < 0) {
+            unplacedRecords++;
+            return;
+        }
+        final int indexBegin = Math.max(begin, 0);
+        final int indexEnd = Math.max(end, indexBegin + 1);
+        final ReferenceIndex index = references[reference];
+        if (mapped) {
+            index.addToLinearIndex(indexBegin, indexEnd, beginOffset);
+        }
+        final int bin = Binning.regionToBin(indexBegin, indexEnd, MIN_SHIFT, levels);
+        if (bin != binRun) {
+            if (binRun >= 0) {
+                index.addChunk(binRun, binRunBegin, binRunEnd);
+            }
+            binRun = bin;
+            binRunBegin = beginOffset;
+        }
+        binRunEnd = endOffset;
+        index.countRecord(mapped);
+    }
+
+    private void finishReference() {
+        if (currentReference >= 0 && binRun >= 0) {
+            references[currentReference].addChunk(binRun, binRunBegin, binRunEnd);
+        }
+        binRun = -1;
+    }
+
+    /**
+     * @return virtual offset of an uncompressed position, the end of the received data is the start of the next
+     * block.
+     */
+    private long virtualOffset(long position) {
+        for (long[] uncompressedBlock : blocks) {
+            if (position >= uncompressedBlock[0] && position < uncompressedBlock[0] + uncompressedBlock[2]) {
+                return uncompressedBlock[1] << 16 | (position - uncompressedBlock[0]);
+            }
+        }
+        return blockAddress << 16;
+    }
+
+    private void writeBai(OutputStream output) throws IOException {
+        output.write(BAI_MAGIC);
+        writeInt(output, references.length);
+        final int metaBin = Binning.binCount(levels) + 1;
+        for (ReferenceIndex reference : references) {
+            if (reference == null) {
+                writeInt(output, 0);
+                writeInt(output, 0);
+                continue;
+            }
+            writeInt(output, reference.getBins().size() + 1);
+            for (Map.Entry<Integer, List<Chunk>> bin : reference.getBins().entrySet()) {
+                writeInt(output, bin.getKey());
+                writeChunks(output, bin.getValue());
+            }
+            writeMetaBin(output, metaBin, reference);
+            writeInt(output, reference.getLinearIndexLength());
+            for (int i = 0; i < reference.getLinearIndexLength(); i++) {
+                writeLong(output, reference.getLinearIndex(i));
+            }
+        }
+        writeLong(output, unplacedRecords);
+    }
+
+    private void writeCsi(OutputStream output) throws IOException {
+        output.write(CSI_MAGIC);
+        writeInt(output, MIN_SHIFT);
+        writeInt(output, levels);
+        // No auxiliary data
+        writeInt(output, 0);
+        writeInt(output, references.length);
+        final int metaBin = Binning.binCount(levels) + 1;
+        for (ReferenceIndex reference : references) {
+            if (reference == null) {
+                writeInt(output, 0);
+                continue;
+            }
+            writeInt(output, reference.getBins().size() + 1);
+            for (Map.Entry<Integer, List<Chunk>> bin : reference.getBins().entrySet()) {
+                writeInt(output, bin.getKey());
+                writeLong(output, reference.getLinearOffset(bin.getKey()));
+                writeChunks(output, bin.getValue());
+            }
+            writeInt(output, metaBin);
+            writeLong(output, 0);
+            writeMetaBin(output, -1, reference);
+        }
+        writeLong(output, unplacedRecords);
+    }
+
+    /**
+     * Writes the pseudo bin with the offsets and the number of mapped and unmapped records of the reference, the bin
+     * number is not written if it is negative.
+     */
+    private static void writeMetaBin(OutputStream output, int metaBin, ReferenceIndex reference) throws IOException {
+        if (metaBin >= 0) {
+            writeInt(output, metaBin);
+        }
+        writeInt(output, 2);
+        writeLong(output, reference.getFirstOffset());
+        writeLong(output, reference.getLastOffset());
+        writeLong(output, reference.getMappedRecords());
+        writeLong(output, reference.getUnmappedRecords());
+    }
+
+    private static void writeChunks(OutputStream output, List<Chunk> chunks) throws IOException {
+        writeInt(output, chunks.size());
+        for (Chunk chunk : chunks) {
+            writeLong(output, chunk.getBegin());
+            writeLong(output, chunk.getEnd());
+        }
+    }
+
+    private static void writeInt(OutputStream output, int value) throws IOException {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
+
+    private static void writeLong(OutputStream output, long value) throws IOException {
+        writeInt(output, (int) value);
+        writeInt(output, (int) (value >>> 32));
+    }
+
+    private static int readUnsignedShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return readUnsignedShort(buffer, offset) | readUnsignedShort(buffer, offset + 2) << 16;
+    }
+
+}
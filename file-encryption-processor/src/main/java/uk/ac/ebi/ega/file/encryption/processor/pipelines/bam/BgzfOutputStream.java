@@ -0,0 +1,121 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the data as a sequence of bgzf blocks followed by the empty end of file block.
+ */
+class BgzfOutputStream extends OutputStream {
+
+    // Leaves room for the header and the footer if the data can not be compressed
+    private static final int MAX_INPUT_LENGTH = 0xff00;
+
+    private static final int MAX_BLOCK_LENGTH = 0x10000;
+
+    private static final byte[] HEADER = {31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 'B', 'C', 2, 0};
+
+    private static final byte[] EOF_BLOCK = {31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 'B', 'C', 2, 0,
+            27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream output;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    private final CRC32 crc32 = new CRC32();
+
+    private final byte[] input = new byte[MAX_INPUT_LENGTH];
+
+    private final byte[] block = new byte[MAX_BLOCK_LENGTH];
+
+    private int inputLength;
+
+    BgzfOutputStream(OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (inputLength == input.length) {
+            writeBlock();
+        }
+        input[inputLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            if (inputLength == input.length) {
+                writeBlock();
+            }
+            final int chunk = Math.min(input.length - inputLength, end - position);
+            System.arraycopy(bytes, position, input, inputLength, chunk);
+            inputLength += chunk;
+            position += chunk;
+        }
+    }
+
+    /**
+     * Writes the pending data and the end of file block, the underlying stream is not closed.
+     */
+    public void finish() throws IOException {
+        if (inputLength > 0) {
+            writeBlock();
+        }
+        output.write(EOF_BLOCK);
+        output.flush();
+        deflater.end();
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(input, 0, inputLength);
+        deflater.finish();
+        final int dataOffset = HEADER.length + 2;
+        final int compressedLength = deflater.deflate(block, dataOffset, block.length - dataOffset - 8);
+        if (!deflater.finished()) {
+            throw new IOException("Compressed block exceeds the maximum bgzf block size");
+        }
+        crc32.reset();
+        crc32.update(input, 0, inputLength);
+        final int blockLength = dataOffset + compressedLength + 8;
+        System.arraycopy(HEADER, 0, block, 0, HEADER.length);
+        putShort(block, HEADER.length, blockLength - 1);
+        putInt(block, dataOffset + compressedLength, (int) crc32.getValue());
+        putInt(block, dataOffset + compressedLength + 4, inputLength);
+        output.write(block, 0, blockLength);
+        inputLength = 0;
+    }
+
+    private static void putShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        putShort(buffer, offset, value);
+        putShort(buffer, offset + 2, value >>> 16);
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+/**
+ * Hierarchical binning scheme of the SAM specification. Level 0 is a single bin that covers the whole reference, each
+ * bin of a level is split in 8 bins in the next one, the bins of the last level cover {@code 1 << minShift} bases.
+ */
+final class Binning {
+
+    private Binning() {
+    }
+
+    /**
+     * @return total number of bins of an index with the given number of levels.
+     */
+    static int binCount(int levels) {
+        return firstBin(levels + 1);
+    }
+
+    /**
+     * @return number of the first bin of a level.
+     */
+    static int firstBin(int level) {
+        return ((1 << (3 * level)) - 1) / 7;
+    }
+
+    static int parentBin(int bin) {
+        return (bin - 1) >> 3;
+    }
+
+    static int level(int bin) {
+        int level = 0;
+        for (int parent = bin; parent != 0; parent = parentBin(parent)) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return first window of the last level covered by the bin.
+     */
+    static int firstWindow(int bin, int levels) {
+        final int level = level(bin);
+        return (bin - firstBin(level)) << (3 * (levels - level));
+    }
+
+    /**
+     * @return smallest bin that contains the 0-based half open interval [begin, end).
+     */
+    static int regionToBin(int begin, int end, int minShift, int levels) {
+        final int last = end - 1;
+        int shift = minShift;
+        for (int level = levels; level > 0; level--) {
+            if (begin >> shift == last >> shift) {
+                return firstBin(level) + (begin >> shift);
+            }
+            shift += 3;
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of levels needed to index a reference of the given length.
+     */
+    static int levelsFor(long length, int minShift) {
+        int levels = 0;
+        for (long size = 1L << minShift; length > size; size <<= 3) {
+            levels++;
+        }
+        return levels;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+/**
+ * Range of virtual file offsets of a bgzf file, the upper 48 bits of a virtual offset are the position of a
+ * compressed block in the file and the lower 16 bits the position inside the uncompressed block.
+ */
+class Chunk implements Comparable<Chunk> {
+
+    private final long begin;
+
+    private long end;
+
+    Chunk(long begin, long end) {
+        this.begin = begin;
+        this.end = end;
+    }
+
+    long getBegin() {
+        return begin;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    void setEnd(long end) {
+        this.end = end;
+    }
+
+    @Override
+    public int compareTo(Chunk other) {
+        return Long.compareUnsigned(begin, other.begin);
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binning and linear index of the records of one reference sequence, following the hierarchical binning scheme of
+ * the SAM specification with windows of {@code 1 << minShift} bases and {@code levels} levels.
+ */
+class ReferenceIndex {
+
+    // Chunks closer than one compressed block are read together, there is no benefit in indexing them separately
+    private static final long MIN_CHUNK_DISTANCE = 0x10000;
+
+    private static final long UNSET = -1;
+
+    private final int minShift;
+
+    private final int levels;
+
+    private final TreeMap<Integer, List<Chunk>> bins = new TreeMap<>();
+
+    private long[] linearIndex = new long[0];
+
+    private int linearIndexLength;
+
+    private long firstOffset;
+
+    private long lastOffset;
+
+    private long mappedRecords;
+
+    private long unmappedRecords;
+
+    ReferenceIndex(int minShift, int levels, long firstOffset) {
+        this.minShift = minShift;
+        this.levels = levels;
+        this.firstOffset = firstOffset;
+        this.lastOffset = firstOffset;
+    }
+
+    void addChunk(int bin, long begin, long end) {
+        bins.computeIfAbsent(bin, key -> new ArrayList<>()).add(new Chunk(begin, end));
+        lastOffset = end;
+    }
+
+    /**
+     * Sets the offset of every window overlapped by [begin, end) that does not have one yet.
+     */
+    void addToLinearIndex(int begin, int end, long offset) {
+        final int first = begin >> minShift;
+        final int last = (end - 1) >> minShift;
+        if (linearIndex.length < last + 1) {
+            final int previousLength = linearIndex.length;
+            linearIndex = Arrays.copyOf(linearIndex, Math.max(last + 1, previousLength * 2));
+            Arrays.fill(linearIndex, previousLength, linearIndex.length, UNSET);
+        }
+        for (int i = first; i <= last; i++) {
+            if (linearIndex[i] == UNSET) {
+                linearIndex[i] = offset;
+            }
+        }
+        linearIndexLength = Math.max(linearIndexLength, last + 1);
+    }
+
+    void countRecord(boolean mapped) {
+        if (mapped) {
+            mappedRecords++;
+        } else {
+            unmappedRecords++;
+        }
+    }
+
+    /**
+     * Fills the windows without records with the offset of the next window on their left and merges the chunks
+     * that are too small to be worth indexing on their own into their parent bin.
+     */
+    void finish() {
+        long previous = firstOffset;
+        for (int i = 0; i < linearIndexLength; i++) {
+            if (linearIndex[i] == UNSET) {
+                linearIndex[i] = previous;
+            }
+            previous = linearIndex[i];
+        }
+        mergeSmallBins();
+        for (List<Chunk> chunks : bins.values()) {
+            mergeAdjacentChunks(chunks);
+        }
+    }
+
+    private void mergeSmallBins() {
+        for (int level = levels; level > 0; level--) {
+            final int first = Binning.firstBin(level);
+            final int last = Binning.firstBin(level + 1);
+            final Iterator<Map.Entry<Integer, List<Chunk>>> iterator =
+                    bins.subMap(first, true, last, false).entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Integer, List<Chunk>> bin = iterator.next();
+                final List<Chunk> chunks = bin.getValue();
+                Collections.sort(chunks);
+                final long span = (chunks.get(chunks.size() - 1).getEnd() >>> 16) - (chunks.get(0).getBegin() >>> 16);
+                final List<Chunk> parent = bins.get(Binning.parentBin(bin.getKey()));
+                if (span < MIN_CHUNK_DISTANCE && parent != null) {
+                    parent.addAll(chunks);
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the chunks that overlap or that start in the block where the previous one ends.
+     */
+    private static void mergeAdjacentChunks(List<Chunk> chunks) {
+        Collections.sort(chunks);
+        int merged = 0;
+        for (int i = 1; i < chunks.size(); i++) {
+            final Chunk current = chunks.get(merged);
+            final Chunk next = chunks.get(i);
+            if ((current.getEnd() >>> 16) >= (next.getBegin() >>> 16)) {
+                if (Long.compareUnsigned(current.getEnd(), next.getEnd()) < 0) {
+                    current.setEnd(next.getEnd());
+                }
+            } else {
+                chunks.set(++merged, next);
+            }
+        }
+        chunks.subList(merged + 1, chunks.size()).clear();
+    }
+
+    TreeMap<Integer, List<Chunk>> getBins() {
+        return bins;
+    }
+
+    int getLinearIndexLength() {
+        return linearIndexLength;
+    }
+
+    long getLinearIndex(int window) {
+        return linearIndex[window];
+    }
+
+    /**
+     * @return offset of the first record that may overlap the bottom level window of the bin, or 0 if the bin has
+     * no window in the linear index.
+     */
+    long getLinearOffset(int bin) {
+        final int window = Binning.firstWindow(bin, levels);
+        return window < linearIndexLength ? linearIndex[window] : 0;
+    }
+
+    long getFirstOffset() {
+        return firstOffset;
+    }
+
+    long getLastOffset() {
+        return lastOffset;
+    }
+
+    long getMappedRecords() {
+        return mappedRecords;
+    }
+
+    long getUnmappedRecords() {
+        return unmappedRecords;
+    }
+
+}
@@ -33,6 +33,9 @@ import uk.ac.ebi.ega.jobs.core.utils.DelayConfiguration;
 
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class EncryptService extends JobExecutor implements IEncryptService {
@@ -52,8 +55,9 @@ public class EncryptService extends JobExecutor implements IEncryptService {
                           final Job<IngestionProcess> job,
                           final KafkaTemplate<String, ArchiveEvent> kafkaTemplate,
                           final String completeJobTopic,
-                          final DelayConfiguration delayConfiguration) {
-        super(persistenceService, delayConfiguration);
+                          final DelayConfiguration delayConfiguration,
+                          final int executionSlots) {
+        super(persistenceService, delayConfiguration, executionSlots);
         this.stagingRoot = stagingRoot;
         this.kafkaTemplate = kafkaTemplate;
         this.completeJobTopic = completeJobTopic;
@@ -66,6 +70,14 @@ public class EncryptService extends JobExecutor implements IEncryptService {
         return assignExecution(jobId, ENCRYPT_JOB, new IngestionProcess(jobId, data, stagingRoot));
     }
 
+    @Override
+    public List<JobExecution<IngestionProcess>> createJobs(Map<String, IngestionEvent> events)
+            throws JobNotRegistered {
+        final Map<String, IngestionProcess> processes = new LinkedHashMap<>();
+        events.forEach((jobId, data) -> processes.put(jobId, new IngestionProcess(jobId, data, stagingRoot)));
+        return assignExecutions(ENCRYPT_JOB, processes, process -> process.getEncryptedFile().getSize());
+    }
+
     @Override
     public Result encrypt(JobExecution<IngestionProcess> jobExecution) {
         Result result;
@@ -87,8 +99,8 @@ public class EncryptService extends JobExecutor implements IEncryptService {
     }
 
     @Override
-    public Optional<JobExecution<IngestionProcess>> getUnfinishedJob() {
-        return getAssignedExecution(ENCRYPT_JOB, IngestionProcess.class);
+    public List<JobExecution<IngestionProcess>> getUnfinishedJobs() {
+        return getAssignedExecutions(ENCRYPT_JOB, IngestionProcess.class);
     }
 
     private void reportToFileManager(String jobId, Result<ArchiveEvent> result) {
@@ -101,4 +113,9 @@ public class EncryptService extends JobExecutor implements IEncryptService {
             cancelJobExecution(jobExecution.getJobId(), e);
         });
     }
+
+    @Override
+    public void cancelJobExecutions(List<JobExecution<IngestionProcess>> jobExecutions, Exception e) {
+        jobExecutions.forEach(jobExecution -> cancelJobExecution(jobExecution.getJobId(), e));
+    }
 }
@@ -23,16 +23,29 @@ import uk.ac.ebi.ega.jobs.core.JobExecution;
 import uk.ac.ebi.ega.jobs.core.Result;
 import uk.ac.ebi.ega.jobs.core.exceptions.JobNotRegistered;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface IEncryptService {
 
     Optional<JobExecution<IngestionProcess>> createJob(String key, IngestionEvent data) throws JobNotRegistered;
 
+    /**
+     * Assigns the events of a batch as a single work unit that occupies one execution slot. The events are split by
+     * the size of their encrypted file before they are assigned, smaller files are processed first.
+     *
+     * @param events ingestion events by key.
+     * @return executions assigned, empty if no slot is free, keys that are already being processed are skipped.
+     */
+    List<JobExecution<IngestionProcess>> createJobs(Map<String, IngestionEvent> events) throws JobNotRegistered;
+
     Result encrypt(JobExecution<IngestionProcess> jobExecution);
 
-    Optional<JobExecution<IngestionProcess>> getUnfinishedJob();
+    List<JobExecution<IngestionProcess>> getUnfinishedJobs();
 
     void cancelJobExecution(Optional<JobExecution<IngestionProcess>> jobExecution, Exception e);
 
+    void cancelJobExecutions(List<JobExecution<IngestionProcess>> jobExecutions, Exception e);
+
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * MD5 digest whose intermediate state can be exported and restored, so a digest interrupted half way through a file
+ * can be continued by another process. {@link java.security.MessageDigest} does not expose its state.
+ */
+public class ResumableMd5 {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private static final int STATE_SIZE = 4 * Integer.BYTES + Long.BYTES;
+
+    private static final int[] SHIFTS = {
+            7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22,
+            5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20,
+            4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23,
+            6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21
+    };
+
+    private static final int[] CONSTANTS = new int[64];
+
+    static {
+        for (int i = 0; i < CONSTANTS.length; i++) {
+            CONSTANTS[i] = (int) (long) ((1L << 32) * Math.abs(Math.sin(i + 1)));
+        }
+    }
+
+    private final int[] state;
+
+    private final byte[] block;
+
+    private final int[] words;
+
+    private long length;
+
+    public ResumableMd5() {
+        this(new int[]{0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476}, new byte[0], 0);
+    }
+
+    private ResumableMd5(int[] state, byte[] pending, long length) {
+        this.state = state;
+        this.block = new byte[BLOCK_SIZE];
+        this.words = new int[16];
+        this.length = length;
+        System.arraycopy(pending, 0, block, 0, pending.length);
+    }
+
+    public void update(byte[] bytes, int offset, int length) {
+        int blockPosition = (int) (this.length % BLOCK_SIZE);
+        this.length += length;
+        while (length > 0) {
+            final int bytesToCopy = Math.min(length, BLOCK_SIZE - blockPosition);
+            System.arraycopy(bytes, offset, block, blockPosition, bytesToCopy);
+            offset += bytesToCopy;
+            length -= bytesToCopy;
+            blockPosition += bytesToCopy;
+            if (blockPosition == BLOCK_SIZE) {
+                processBlock(state, block);
+                blockPosition = 0;
+            }
+        }
+    }
+
+    public void update(byte[] bytes) {
+        update(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return digest of the data received so far, the digest can still be updated afterwards.
+     */
+    public byte[] digest() {
+        final ResumableMd5 copy = new ResumableMd5(state.clone(), getPendingBytes(), length);
+        final long bitLength = length * 8;
+        final int pendingLength = (int) (length % BLOCK_SIZE);
+        final int paddingLength = (pendingLength < 56 ? 56 : 120) - pendingLength;
+        final byte[] padding = new byte[paddingLength + Long.BYTES];
+        padding[0] = (byte) 0x80;
+        for (int i = 0; i < Long.BYTES; i++) {
+            padding[paddingLength + i] = (byte) (bitLength >>> (8 * i));
+        }
+        copy.update(padding);
+        final byte[] digest = new byte[16];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) (copy.state[i / 4] >>> (8 * (i % 4)));
+        }
+        return digest;
+    }
+
+    public String digestAsHex() {
+        final StringBuilder builder = new StringBuilder();
+        for (byte b : digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return state of the digest encoded as a base64 string, see {@link #fromState(String)}.
+     */
+    public String getState() {
+        final byte[] pending = getPendingBytes();
+        final ByteBuffer buffer = ByteBuffer.allocate(STATE_SIZE + pending.length);
+        for (int value : state) {
+            buffer.putInt(value);
+        }
+        buffer.putLong(length);
+        buffer.put(pending);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    public static ResumableMd5 fromState(String encodedState) {
+        final byte[] decoded = Base64.getDecoder().decode(encodedState);
+        if (decoded.length < STATE_SIZE || decoded.length >= STATE_SIZE + BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid md5 state of " + decoded.length + " bytes");
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(decoded);
+        final int[] state = new int[4];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = buffer.getInt();
+        }
+        final long length = buffer.getLong();
+        final byte[] pending = new byte[buffer.remaining()];
+        buffer.get(pending);
+        if (pending.length != length % BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid md5 state, pending bytes do not match the length");
+        }
+        return new ResumableMd5(state, pending, length);
+    }
+
+    private byte[] getPendingBytes() {
+        return Arrays.copyOf(block, (int) (length % BLOCK_SIZE));
+    }
+
+    private void processBlock(int[] state, byte[] block) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (block[i * 4] & 0xff)
+                    | (block[i * 4 + 1] & 0xff) << 8
+                    | (block[i * 4 + 2] & 0xff) << 16
+                    | (block[i * 4 + 3] & 0xff) << 24;
+        }
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        for (int i = 0; i < 64; i++) {
+            final int f;
+            final int g;
+            if (i < 16) {
+                f = (b & c) | (~b & d);
+                g = i;
+            } else if (i < 32) {
+                f = (d & b) | (~d & c);
+                g = (5 * i + 1) % 16;
+            } else if (i < 48) {
+                f = b ^ c ^ d;
+                g = (3 * i + 5) % 16;
+            } else {
+                f = c ^ (b | ~d);
+                g = (7 * i) % 16;
+            }
+            final int temp = d;
+            d = c;
+            c = b;
+            b = b + Integer.rotateLeft(a + f + CONSTANTS[i] + words[g], SHIFTS[i]);
+            a = temp;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+    }
+
+}
@@ -0,0 +1,14 @@
+-- Adds the checkpoints of the encryptions in progress, used to resume an encryption from its last checkpoint instead
+-- of from the start of the file. Run once on databases created before ENCRYPT_CHECKPOINT, the encryptions running
+-- during the migration start again from the start of the file.
+begin transaction;
+create table ENCRYPT_CHECKPOINT
+(
+    RESULT_PATH       text primary key,
+    GPG_SIZE          bigint    not null,
+    GPG_LAST_MODIFIED bigint    not null,
+    BYTES_TRANSFERRED bigint    not null,
+    OUTPUT_MD5_STATE  text      not null,
+    UPDATE_DATE       timestamp not null
+);
+commit;
@@ -0,0 +1,8 @@
+-- Adds the slot occupied by each execution of JOB_EXECUTION so that an instance can run several executions at once.
+-- Run once on databases created before SLOT_ID. The executions already assigned keep running in slot 0. The unique
+-- constraint on INSTANCE_ID is dropped without a replacement because the executions of a work unit share a slot.
+begin transaction;
+alter table JOB_EXECUTION drop constraint if exists JOB_EXECUTION_INSTANCE_ID_KEY;
+alter table JOB_EXECUTION add column SLOT_ID integer not null default 0;
+create index JOB_EXECUTION_INSTANCE_SLOT on JOB_EXECUTION (INSTANCE_ID, SLOT_ID);
+commit;
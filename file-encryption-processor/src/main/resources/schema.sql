@@ -1,15 +1,19 @@
 drop table if exists JOB_EXECUTION;
 drop table if exists JOB_RUN;
 drop table if exists ENCRYPT_PARAMETERS;
+drop table if exists ENCRYPT_CHECKPOINT;
 
 create table JOB_EXECUTION
 (
     JOB_ID      varchar(255) primary key,
-    JOB_NAME    varchar(255)        not null,
-    INSTANCE_ID varchar(255) unique not null,
-    START_TIME  timestamp           not null
+    JOB_NAME    varchar(255) not null,
+    INSTANCE_ID varchar(255) not null,
+    SLOT_ID     integer      not null default 0,
+    START_TIME  timestamp    not null
 );
 
+create index JOB_EXECUTION_INSTANCE_SLOT on JOB_EXECUTION (INSTANCE_ID, SLOT_ID);
+
 create table JOB_RUN
 (
     ID          bigserial primary key,
@@ -39,4 +43,14 @@ create table ENCRYPT_PARAMETERS
     GPG_MD5_LAST_MODIFIED bigint       not null,
     RESULT_PATH           text         not null,
     CREATE_DATE           timestamp    not null
+);
+
+create table ENCRYPT_CHECKPOINT
+(
+    RESULT_PATH       text primary key,
+    GPG_SIZE          bigint    not null,
+    GPG_LAST_MODIFIED bigint    not null,
+    BYTES_TRANSFERRED bigint    not null,
+    OUTPUT_MD5_STATE  text      not null,
+    UPDATE_DATE       timestamp not null
 );
\ No newline at end of file
@@ -0,0 +1,46 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileEncryptionStartupTest {
+
+    @Test
+    public void smallFilesLaneIsDisabledWithoutSlotsOrTopic() {
+        Assert.assertFalse(FileEncryptionStartup.checkSmallFilesLane("ingestion", "ingestion", 0).isPresent());
+    }
+
+    @Test
+    public void smallFilesLaneWithSlotsAndTopic() {
+        Assert.assertFalse(FileEncryptionStartup.checkSmallFilesLane("ingestion", "small-files", 2).isPresent());
+    }
+
+    @Test
+    public void smallFilesTopicWithoutSlotsIsRejected() {
+        // File discovery would send small files to a topic that nobody consumes
+        Assert.assertTrue(FileEncryptionStartup.checkSmallFilesLane("ingestion", "small-files", 0).isPresent());
+    }
+
+    @Test
+    public void smallFilesSlotsWithoutTopicAreRejected() {
+        Assert.assertTrue(FileEncryptionStartup.checkSmallFilesLane("ingestion", "ingestion", 2).isPresent());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CmdLineProcessPipedTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testOutputOfProcessIsPiped() throws IOException {
+        final byte[] data = new byte[1024 * 1024];
+        new Random(0).nextBytes(data);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final CmdLineProcessPiped process = new CmdLineProcessPiped(null, 1024, 4, "cat");
+        process.pipeOutputTo(output);
+        final OutputStream pipeToProcess = process.getPipeToProcess();
+        for (int i = 0; i < data.length; i += 1000) {
+            pipeToProcess.write(data, i, Math.min(1000, data.length - i));
+        }
+
+        assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+        assertEquals(0, process.exitValue());
+        assertArrayEquals(data, output.toByteArray());
+        assertEquals(data.length, process.getMetrics().getBytesIn());
+        assertEquals(data.length, process.getMetrics().getBytesOut());
+    }
+
+    @Test
+    public void testFailedProcessDoesNotBlockProducer() throws IOException {
+        final File errorRedirect = temporaryFolder.newFile("error.log");
+
+        final CmdLineProcessPiped process = new CmdLineProcessPiped(errorRedirect, 1024, 2, "sh", "-c",
+                "echo failed >&2; exit 3");
+        process.pipeOutputTo(new ByteArrayOutputStream());
+        final byte[] data = new byte[1024];
+        for (int i = 0; i < 1024; i++) {
+            process.getPipeToProcess().write(data);
+        }
+
+        assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+        assertEquals(3, process.exitValue());
+        assertEquals("failed", process.getErrorRedirectLog());
+    }
+
+}
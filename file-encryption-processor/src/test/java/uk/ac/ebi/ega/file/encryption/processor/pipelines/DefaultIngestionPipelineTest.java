@@ -37,6 +37,9 @@ import static org.junit.Assert.assertTrue;
 
 public class DefaultIngestionPipelineTest {
 
+    private static final String TEST_FILE_SHA256 =
+            "50de7e970e889e10fdcbd75febd385b04e654140d5631b14f63712d57ae2f6ce";
+
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
@@ -53,6 +56,7 @@ public class DefaultIngestionPipelineTest {
         assertNull(process.getEncryptedIndexFile());
         assertTrue(process.getEncryptedFile().getFile().exists());
         assertEquals(getExpectedMd5(), process.getMd5());
+        assertEquals(TEST_FILE_SHA256, process.getSha256());
         assertTrue(temporaryFolder.getRoot().toPath().resolve("test_file.txt.cip").toFile().exists());
         assertTrue(temporaryFolder.getRoot().toPath().resolve("test_file.txt.gpg").toFile().exists());
     }
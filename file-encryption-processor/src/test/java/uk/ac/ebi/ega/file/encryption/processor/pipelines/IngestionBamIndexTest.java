@@ -0,0 +1,113 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.AesCtr256Ega;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.bam.BamIndexes;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class IngestionBamIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIndexOfBam() throws URISyntaxException, IOException, UserErrorException, SystemErrorException,
+            AlgorithmInitializationException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test.bam.gpg");
+        File outputFile = new File(temporaryFolder.getRoot().getAbsolutePath() + "/test.bam.cip");
+        File indexFile = new File(temporaryFolder.getRoot().getAbsolutePath() + "/test.bai.cip");
+
+        final IngestionPipelineResult process = new IngestionBamIndex(fileInStaging,
+                getPrivateKeyRing(), getPrivateKeyRingPassword(), outputFile,
+                indexFile, getEncryptKey()).process();
+
+        assertNotNull(process.getEncryptedIndexFile());
+        assertTrue(process.getEncryptedIndexFile().getFile().exists());
+        assertEquals(indexFile.length(), process.getEncryptedIndexFile().getFileSize());
+        assertArrayEquals(BamIndexes.normalise(readResource("/keyPairTest/test.bam.bai")),
+                BamIndexes.normalise(decrypt(indexFile)));
+    }
+
+    @Test(expected = UserErrorException.class)
+    public void testBadBam() throws URISyntaxException, IOException, UserErrorException, SystemErrorException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/bad_bam.bam.gpg");
+        File outputFile = new File(temporaryFolder.getRoot().getAbsolutePath() + "/test.bam.cip");
+        File indexFile = new File(temporaryFolder.getRoot().getAbsolutePath() + "/test.bai.cip");
+
+        new IngestionBamIndex(fileInStaging, getPrivateKeyRing(), getPrivateKeyRingPassword(), outputFile,
+                indexFile, getEncryptKey()).process();
+    }
+
+    private byte[] readResource(String path) throws URISyntaxException, IOException {
+        return Files.readAllBytes(new File(this.getClass().getResource(path).toURI()).toPath());
+    }
+
+    private byte[] decrypt(File file) throws IOException, URISyntaxException, AlgorithmInitializationException {
+        try (DecryptInputStream decryptInputStream = new DecryptInputStream(new FileInputStream(file),
+                new AesCtr256Ega(), getEncryptKey())) {
+            final ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read = decryptInputStream.read(buffer);
+            while (read != -1) {
+                decrypted.write(buffer, 0, read);
+                read = decryptInputStream.read(buffer);
+            }
+            return decrypted.toByteArray();
+        }
+    }
+
+    private File copyToTemporaryFolder(String path) throws URISyntaxException, IOException {
+        File originFile = new File(this.getClass().getResource(path).toURI());
+        return Files.copy(originFile.toPath(),
+                temporaryFolder.getRoot().toPath().resolve(originFile.getName())).toFile();
+    }
+
+    private File getPrivateKeyRing() throws URISyntaxException {
+        return new File(this.getClass().getResource("/keyPairTest/secring.gpg").toURI());
+    }
+
+    private File getPrivateKeyRingPassword() throws URISyntaxException {
+        return new File(this.getClass().getResource("/keyPairTest/password.txt").toURI());
+    }
+
+    private char[] getEncryptKey() throws URISyntaxException, IOException {
+        return FileUtils.readPasswordFile(new File(
+                this.getClass().getResource("/keyPairTest/encrypt_key.txt").toURI()).toPath());
+    }
+
+}
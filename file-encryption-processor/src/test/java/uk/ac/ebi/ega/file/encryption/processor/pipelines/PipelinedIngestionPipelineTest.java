@@ -0,0 +1,136 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.AesCtr256Ega;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedIngestionPipelineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPipelinedSameResultAsDefault() throws URISyntaxException, IOException, UserErrorException,
+            SystemErrorException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test.bam.gpg");
+        File defaultOutput = temporaryFolder.newFile("default.bam.cip");
+        File pipelinedOutput = temporaryFolder.newFile("pipelined.bam.cip");
+
+        final IngestionPipelineResult expected = new DefaultIngestionPipeline(fileInStaging,
+                getPrivateKeyRing(), getPrivateKeyRingPassword(), defaultOutput, getEncryptKey()).process();
+        final IngestionPipelineResult actual = new PipelinedIngestionPipeline(fileInStaging,
+                getPrivateKeyRing(), getPrivateKeyRingPassword(), pipelinedOutput, getEncryptKey(),
+                1024, 3).process();
+
+        assertNull(actual.getEncryptedIndexFile());
+        assertEquals(expected.getOriginalFile().getMd5(), actual.getOriginalFile().getMd5());
+        assertEquals(expected.getOriginalFile().getFileSize(), actual.getOriginalFile().getFileSize());
+        assertEquals(expected.getMd5(), actual.getMd5());
+        assertEquals(expected.getSha256(), actual.getSha256());
+        assertEquals(expected.getBytesTransferred(), actual.getBytesTransferred());
+        assertEquals(expected.getEncryptedFile().getFileSize(), actual.getEncryptedFile().getFileSize());
+        assertEquals(pipelinedOutput.length(), actual.getEncryptedFile().getFileSize());
+    }
+
+    @Test
+    public void testPipelinedOutputDecryptsToOriginal() throws URISyntaxException, IOException, UserErrorException,
+            SystemErrorException, AlgorithmInitializationException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test_file.txt.gpg");
+        File outputFileInStaging = new File(fileInStaging.getAbsolutePath().replaceFirst("gpg", "cip"));
+
+        final IngestionPipelineResult process = new PipelinedIngestionPipeline(fileInStaging,
+                getPrivateKeyRing(), getPrivateKeyRingPassword(), outputFileInStaging, getEncryptKey(),
+                7, 2).process();
+
+        assertTrue(process.getEncryptedFile().getFile().exists());
+        assertEquals(getExpectedMd5(), process.getMd5());
+        try (DecryptInputStream decryptInputStream = new DecryptInputStream(
+                new FileInputStream(outputFileInStaging), new AesCtr256Ega(), getEncryptKey())) {
+            byte[] buffer = new byte[8192];
+            long bytesRead = 0;
+            int read = decryptInputStream.read(buffer);
+            while (read != -1) {
+                bytesRead += read;
+                read = decryptInputStream.read(buffer);
+            }
+            assertEquals(process.getBytesTransferred(), bytesRead);
+            assertEquals(process.getMd5(), decryptInputStream.getUnencryptedMd5());
+            assertEquals(process.getEncryptedFile().getMd5(), decryptInputStream.getMd5());
+        }
+    }
+
+    @Test(expected = UserErrorException.class)
+    public void testWrongPgpFile() throws URISyntaxException, IOException, UserErrorException, SystemErrorException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test_file.txt.original");
+        File outputFileInStaging = temporaryFolder.newFile("doesNotMatter");
+        new PipelinedIngestionPipeline(fileInStaging,
+                getPrivateKeyRing(), getPrivateKeyRingPassword(), outputFileInStaging,
+                getEncryptKey(), 1024, 2).process();
+    }
+
+    @Test(expected = SystemErrorException.class)
+    public void testMissingFile() throws URISyntaxException, IOException, UserErrorException, SystemErrorException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test_file.txt.gpg");
+        new PipelinedIngestionPipeline(fileInStaging,
+                getPrivateKeyRing(), getPrivateKeyRingPassword(), new File("/nope"),
+                getEncryptKey(), 1024, 2).process();
+    }
+
+    private String getExpectedMd5() throws IOException, URISyntaxException {
+        return new String(FileUtils.readPasswordFile(
+                new File(this.getClass().getResource("/keyPairTest/test_file.txt.md5").toURI()).toPath()));
+    }
+
+    private File copyToTemporaryFolder(String path) throws URISyntaxException, IOException {
+        File originFile = new File(this.getClass().getResource(path).toURI());
+        return Files.copy(originFile.toPath(),
+                temporaryFolder.getRoot().toPath().resolve(originFile.getName())).toFile();
+    }
+
+    private File getPrivateKeyRing() throws URISyntaxException {
+        return new File(this.getClass().getResource("/keyPairTest/secring.gpg").toURI());
+    }
+
+    private File getPrivateKeyRingPassword() throws URISyntaxException {
+        return new File(this.getClass().getResource("/keyPairTest/password.txt").toURI());
+    }
+
+    private char[] getEncryptKey() throws URISyntaxException, IOException {
+        return FileUtils.readPasswordFile(new File(
+                this.getClass().getResource("/keyPairTest/encrypt_key.txt").toURI()).toPath());
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.ega.encryption.core.DecryptInputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.AesCtr256Ega;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.services.ICheckpointService;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResumableIngestionPipelineTest {
+
+    private static final long CHECKPOINT_INTERVAL = 500;
+
+    private static final FileStreamFactory STREAM_FACTORY = FileStreamFactory.create(FileStreamFactory.Type.CHANNEL,
+            100, 0);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testKeyDerivationMatchesAesCtr256Ega() throws SystemErrorException {
+        ResumableEncryptOutputStream.checkCompatibility();
+    }
+
+    @Test
+    public void testOutputDecryptsToOriginal() throws URISyntaxException, IOException, UserErrorException,
+            SystemErrorException, AlgorithmInitializationException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test_file.txt.gpg");
+        File output = temporaryFolder.getRoot().toPath().resolve("test_file.txt.cip").toFile();
+        final InMemoryCheckpointService checkpointService = new InMemoryCheckpointService();
+
+        final IngestionPipelineResult result = createPipeline(fileInStaging, output, checkpointService).process();
+
+        assertEquals(getExpectedMd5(), result.getMd5());
+        assertEquals(output.length(), result.getEncryptedFile().getFileSize());
+        assertFalse(checkpointService.findCheckpoint(output).isPresent());
+        assertDecryptsToOriginal(result);
+    }
+
+    @Test
+    public void testResumeAfterInterruption() throws URISyntaxException, IOException, UserErrorException,
+            SystemErrorException, AlgorithmInitializationException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test_file.txt.gpg");
+        File output = temporaryFolder.getRoot().toPath().resolve("test_file.txt.cip").toFile();
+        final InMemoryCheckpointService checkpointService = new InMemoryCheckpointService();
+        checkpointService.failOnCheckpoint = 2;
+
+        try {
+            createPipeline(fileInStaging, output, checkpointService).process();
+            fail("Process should have been interrupted");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        final Optional<IngestionCheckpoint> checkpoint = checkpointService.findCheckpoint(output);
+        assertTrue(checkpoint.isPresent());
+        assertTrue(output.length() > checkpoint.get().getOutputLength());
+
+        checkpointService.failOnCheckpoint = 0;
+        final IngestionPipelineResult result = createPipeline(fileInStaging, output, checkpointService).process();
+
+        assertEquals(getExpectedMd5(), result.getMd5());
+        assertEquals(new DefaultIngestionPipeline(fileInStaging, getPrivateKeyRing(), getPrivateKeyRingPassword(),
+                temporaryFolder.newFile("default.cip"), getEncryptKey()).process().getSha256(), result.getSha256());
+        assertEquals(output.length(), result.getEncryptedFile().getFileSize());
+        assertFalse(checkpointService.findCheckpoint(output).isPresent());
+        assertDecryptsToOriginal(result);
+    }
+
+    @Test
+    public void testModifiedOriginDiscardsCheckpoint() throws URISyntaxException, IOException, UserErrorException,
+            SystemErrorException, AlgorithmInitializationException {
+        File fileInStaging = copyToTemporaryFolder("/keyPairTest/test_file.txt.gpg");
+        File output = temporaryFolder.getRoot().toPath().resolve("test_file.txt.cip").toFile();
+        final InMemoryCheckpointService checkpointService = new InMemoryCheckpointService();
+        checkpointService.saveCheckpoint(new IngestionCheckpoint(output, fileInStaging.length(),
+                fileInStaging.lastModified() - 1000, 100, "invalid"));
+
+        final IngestionPipelineResult result = createPipeline(fileInStaging, output, checkpointService).process();
+
+        assertEquals(getExpectedMd5(), result.getMd5());
+        assertDecryptsToOriginal(result);
+    }
+
+    private void assertDecryptsToOriginal(IngestionPipelineResult result) throws IOException, URISyntaxException,
+            AlgorithmInitializationException {
+        try (DecryptInputStream decryptInputStream = new DecryptInputStream(
+                new FileInputStream(result.getEncryptedFile().getFile()), new AesCtr256Ega(), getEncryptKey())) {
+            final ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read = decryptInputStream.read(buffer);
+            while (read != -1) {
+                decrypted.write(buffer, 0, read);
+                read = decryptInputStream.read(buffer);
+            }
+            assertArrayEquals(Files.readAllBytes(new File(this.getClass()
+                    .getResource("/keyPairTest/test_file.txt.original").toURI()).toPath()), decrypted.toByteArray());
+            assertEquals(result.getBytesTransferred(), decrypted.size());
+            assertEquals(result.getEncryptedFile().getMd5(), decryptInputStream.getMd5());
+        }
+    }
+
+    private ResumableIngestionPipeline createPipeline(File fileInStaging, File output,
+                                                      ICheckpointService checkpointService)
+            throws URISyntaxException, IOException {
+        return new ResumableIngestionPipeline(fileInStaging, getPrivateKeyRing(), getPrivateKeyRingPassword(),
+                output, getEncryptKey(), checkpointService, CHECKPOINT_INTERVAL, STREAM_FACTORY);
+    }
+
+    private String getExpectedMd5() throws IOException, URISyntaxException {
+        return new String(FileUtils.readPasswordFile(
+                new File(this.getClass().getResource("/keyPairTest/test_file.txt.md5").toURI()).toPath()));
+    }
+
+    private File copyToTemporaryFolder(String path) throws URISyntaxException, IOException {
+        File originFile = new File(this.getClass().getResource(path).toURI());
+        return Files.copy(originFile.toPath(),
+                temporaryFolder.getRoot().toPath().resolve(originFile.getName())).toFile();
+    }
+
+    private File getPrivateKeyRing() throws URISyntaxException {
+        return new File(this.getClass().getResource("/keyPairTest/secring.gpg").toURI());
+    }
+
+    private File getPrivateKeyRingPassword() throws URISyntaxException {
+        return new File(this.getClass().getResource("/keyPairTest/password.txt").toURI());
+    }
+
+    private char[] getEncryptKey() throws URISyntaxException, IOException {
+        return FileUtils.readPasswordFile(new File(
+                this.getClass().getResource("/keyPairTest/encrypt_key.txt").toURI()).toPath());
+    }
+
+    private static class InMemoryCheckpointService implements ICheckpointService {
+
+        private final Map<File, IngestionCheckpoint> checkpoints = new HashMap<>();
+
+        private int failOnCheckpoint;
+
+        private int savedCheckpoints;
+
+        @Override
+        public Optional<IngestionCheckpoint> findCheckpoint(File output) {
+            return Optional.ofNullable(checkpoints.get(output));
+        }
+
+        @Override
+        public void saveCheckpoint(IngestionCheckpoint checkpoint) {
+            savedCheckpoints++;
+            if (savedCheckpoints == failOnCheckpoint) {
+                throw new IllegalStateException("Process interrupted");
+            }
+            checkpoints.put(checkpoint.getOutput(), checkpoint);
+        }
+
+        @Override
+        public void deleteCheckpoint(File output) {
+            checkpoints.remove(output);
+        }
+
+    }
+
+}
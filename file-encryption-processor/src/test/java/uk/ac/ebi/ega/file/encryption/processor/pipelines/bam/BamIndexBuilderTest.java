@@ -0,0 +1,114 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BamIndexBuilderTest {
+
+    @Test
+    public void testIndexDoesNotDependOnWriteSize() throws IOException, URISyntaxException {
+        final byte[] bam = readResource("/keyPairTest/test.bam");
+
+        final byte[] index = buildIndex(bam, 1, BamIndexBuilder.IndexFormat.BAI);
+
+        assertArrayEquals(new byte[]{'B', 'A', 'I', 1}, Arrays.copyOf(index, 4));
+        assertArrayEquals(index, buildIndex(bam, 777, BamIndexBuilder.IndexFormat.BAI));
+        assertArrayEquals(index, buildIndex(bam, bam.length, BamIndexBuilder.IndexFormat.BAI));
+    }
+
+    @Test
+    public void testCsiIndexIsCompressed() throws IOException, URISyntaxException {
+        final byte[] index = buildIndex(readResource("/keyPairTest/test.bam"), 4096,
+                BamIndexBuilder.IndexFormat.CSI);
+
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(index))) {
+            final byte[] magic = new byte[4];
+            assertEquals(4, inputStream.read(magic));
+            assertArrayEquals(new byte[]{'C', 'S', 'I', 1}, magic);
+        }
+    }
+
+    // The reference indexes follow the rules of samtools index, they can be regenerated with samtools index [-c]
+    @Test
+    public void testBaiIndexMatchesReferenceIndex() throws IOException, URISyntaxException {
+        assertIndexMatches("/keyPairTest/test.bam", "/keyPairTest/test.bam.bai", BamIndexBuilder.IndexFormat.BAI);
+        assertIndexMatches("/bamIndexTest/index_test.bam", "/bamIndexTest/index_test.bam.bai",
+                BamIndexBuilder.IndexFormat.BAI);
+        assertIndexMatches("/bamIndexTest/short_references.bam", "/bamIndexTest/short_references.bam.bai",
+                BamIndexBuilder.IndexFormat.BAI);
+    }
+
+    @Test
+    public void testCsiIndexMatchesReferenceIndex() throws IOException, URISyntaxException {
+        assertIndexMatches("/keyPairTest/test.bam", "/keyPairTest/test.bam.csi", BamIndexBuilder.IndexFormat.CSI);
+        assertIndexMatches("/bamIndexTest/index_test.bam", "/bamIndexTest/index_test.bam.csi",
+                BamIndexBuilder.IndexFormat.CSI);
+        // References shorter than a window are indexed with bin 0 only
+        assertIndexMatches("/bamIndexTest/short_references.bam", "/bamIndexTest/short_references.bam.csi",
+                BamIndexBuilder.IndexFormat.CSI);
+    }
+
+    @Test(expected = BamFormatException.class)
+    public void testTruncatedBam() throws IOException, URISyntaxException {
+        final byte[] bam = readResource("/keyPairTest/test.bam");
+        buildIndex(Arrays.copyOf(bam, bam.length / 2), 4096, BamIndexBuilder.IndexFormat.BAI);
+    }
+
+    @Test(expected = BamFormatException.class)
+    public void testNotBam() throws IOException, URISyntaxException {
+        buildIndex(readResource("/keyPairTest/test_file.txt.original"), 4096, BamIndexBuilder.IndexFormat.BAI);
+    }
+
+    private void assertIndexMatches(String bamPath, String indexPath, BamIndexBuilder.IndexFormat format)
+            throws IOException, URISyntaxException {
+        final byte[] bam = readResource(bamPath);
+        assertArrayEquals(indexPath, BamIndexes.normalise(readResource(indexPath)),
+                BamIndexes.normalise(buildIndex(bam, 4096, format)));
+    }
+
+    private static byte[] buildIndex(byte[] bam, int writeSize, BamIndexBuilder.IndexFormat format)
+            throws IOException {
+        final BamIndexBuilder indexBuilder = new BamIndexBuilder(format);
+        for (int i = 0; i < bam.length; i += writeSize) {
+            indexBuilder.write(bam, i, Math.min(writeSize, bam.length - i));
+        }
+        indexBuilder.close();
+        final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        indexBuilder.writeIndex(index);
+        return index.toByteArray();
+    }
+
+    private byte[] readResource(String path) throws URISyntaxException, IOException {
+        return Files.readAllBytes(new File(this.getClass().getResource(path).toURI()).toPath());
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.pipelines.bam;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Brings bai and csi indexes to a form that can be compared byte by byte. Csi indexes are decompressed and the bins of
+ * every reference are sorted by number, samtools writes them in the order of its hash table.
+ */
+public final class BamIndexes {
+
+    private static final byte[] CSI_MAGIC = {'C', 'S', 'I', 1};
+
+    private BamIndexes() {
+    }
+
+    public static byte[] normalise(byte[] index) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(decompress(index)).order(ByteOrder.LITTLE_ENDIAN);
+        final boolean csi = Arrays.equals(CSI_MAGIC, Arrays.copyOf(buffer.array(), CSI_MAGIC.length));
+        buffer.position(CSI_MAGIC.length);
+        if (csi) {
+            // Minimum shift, number of levels and auxiliary data
+            buffer.getInt();
+            buffer.getInt();
+            final int auxiliaryLength = buffer.getInt();
+            buffer.position(buffer.position() + auxiliaryLength);
+        }
+        final int references = buffer.getInt();
+        final ByteArrayOutputStream normalised = new ByteArrayOutputStream();
+        normalised.write(buffer.array(), 0, buffer.position());
+        for (int i = 0; i < references; i++) {
+            final int binsStart = buffer.position();
+            final int binCount = buffer.getInt();
+            final TreeMap<Integer, byte[]> bins = new TreeMap<>();
+            for (int j = 0; j < binCount; j++) {
+                final int binStart = buffer.position();
+                final int bin = buffer.getInt();
+                if (csi) {
+                    // Linear offset of the bin
+                    buffer.getLong();
+                }
+                final int chunks = buffer.getInt();
+                buffer.position(buffer.position() + 16 * chunks);
+                bins.put(bin, Arrays.copyOfRange(buffer.array(), binStart, buffer.position()));
+            }
+            normalised.write(buffer.array(), binsStart, 4);
+            for (Map.Entry<Integer, byte[]> bin : bins.entrySet()) {
+                normalised.write(bin.getValue());
+            }
+            if (!csi) {
+                final int linearIndexStart = buffer.position();
+                final int windows = buffer.getInt();
+                buffer.position(buffer.position() + 8 * windows);
+                normalised.write(buffer.array(), linearIndexStart, buffer.position() - linearIndexStart);
+            }
+        }
+        // Number of unplaced records
+        normalised.write(buffer.array(), buffer.position(), buffer.remaining());
+        return normalised.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] index) throws IOException {
+        if (index.length < 2 || index[0] != 31 || (index[1] & 0xff) != 139) {
+            return index;
+        }
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(index))) {
+            final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read = inputStream.read(buffer);
+            while (read != -1) {
+                decompressed.write(buffer, 0, read);
+                read = inputStream.read(buffer);
+            }
+            return decompressed.toByteArray();
+        }
+    }
+
+}
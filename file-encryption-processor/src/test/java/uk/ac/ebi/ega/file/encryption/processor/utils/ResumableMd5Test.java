@@ -0,0 +1,94 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.file.encryption.processor.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+public class ResumableMd5Test {
+
+    @Test
+    public void digestMatchesMessageDigest() throws NoSuchAlgorithmException {
+        // Lengths around the padding boundaries of a 64 bytes block
+        for (int length : new int[]{0, 1, 55, 56, 63, 64, 65, 119, 120, 128, 100000}) {
+            final byte[] data = createData(length);
+            final ResumableMd5 md5 = new ResumableMd5();
+            md5.update(data);
+
+            Assert.assertArrayEquals(md5(data, length), md5.digest());
+        }
+    }
+
+    @Test
+    public void digestAfterSaveAndRestoreMatchesMessageDigest() throws NoSuchAlgorithmException {
+        final byte[] data = createData(10000);
+        // Split points inside and at the edges of a block, the pending bytes of the block are part of the state
+        for (int split : new int[]{0, 1, 63, 64, 65, 4097, 9999, 10000}) {
+            final ResumableMd5 md5 = new ResumableMd5();
+            md5.update(data, 0, split);
+
+            final ResumableMd5 restored = ResumableMd5.fromState(md5.getState());
+            Assert.assertEquals(split, restored.getLength());
+            restored.update(data, split, data.length - split);
+
+            Assert.assertArrayEquals(md5(data, data.length), restored.digest());
+        }
+    }
+
+    @Test
+    public void digestCanBeUpdatedAfterwards() throws NoSuchAlgorithmException {
+        final byte[] data = createData(200);
+        final ResumableMd5 md5 = new ResumableMd5();
+        md5.update(data, 0, 70);
+        Assert.assertArrayEquals(md5(data, 70), md5.digest());
+
+        md5.update(data, 70, 130);
+        Assert.assertArrayEquals(md5(data, 200), md5.digest());
+    }
+
+    @Test
+    public void digestAsHex() {
+        Assert.assertEquals("d41d8cd98f00b204e9800998ecf8427e", new ResumableMd5().digestAsHex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stateWithPendingBytesThatDoNotMatchTheLengthIsRejected() {
+        final ResumableMd5 md5 = new ResumableMd5();
+        md5.update(createData(10));
+        final String state = md5.getState();
+
+        ResumableMd5.fromState(state.substring(0, state.length() - 4));
+    }
+
+    private static byte[] md5(byte[] data, int length) throws NoSuchAlgorithmException {
+        final MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        messageDigest.update(data, 0, length);
+        return messageDigest.digest();
+    }
+
+    private static byte[] createData(int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+}
@@ -33,7 +33,11 @@ import uk.ac.ebi.ega.fire.ingestion.service.ProFilerDatabaseService;
 import uk.ac.ebi.ega.ingestion.file.manager.kafka.message.DownloadBoxFileProcess;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.DownloadBoxFileJobRepository;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.DownloadBoxJobRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileHierarchyBatchWriter;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileHierarchyRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderIdCache;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsWriter;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.HistoricDownloadBoxFileJobRepository;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.HistoricDownloadBoxJobRepository;
 import uk.ac.ebi.ega.ingestion.file.manager.services.DatasetService;
@@ -48,6 +52,7 @@ import uk.ac.ebi.ega.ingestion.file.manager.services.MailingService;
 import uk.ac.ebi.ega.ingestion.file.manager.services.key.RandomKeyGenerator;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Path;
@@ -116,11 +121,35 @@ public class FileManagerConfiguration {
         return file.toPath();
     }
 
+    @Bean
+    public FolderIdCache folderIdCache(@Value("${file.manager.hierarchy.folder.cache.size:10000}") int folderCacheSize) {
+        return new FolderIdCache(folderCacheSize);
+    }
+
+    @Bean
+    public FolderStatisticsWriter folderStatisticsWriter(@Qualifier("fileManager_datasource") DataSource dataSource,
+                                                         @Value("${file.manager.archive.batch.chunk.size:1000}") int chunkSize) {
+        return new FolderStatisticsWriter(new NamedParameterJdbcTemplate(dataSource), chunkSize);
+    }
+
+    @Bean
+    public FileHierarchyBatchWriter fileHierarchyBatchWriter(@Qualifier("fileManager_datasource") DataSource dataSource,
+                                                             FolderIdCache folderIdCache,
+                                                             @Value("${file.manager.archive.batch.chunk.size:1000}") int chunkSize,
+                                                             FolderStatisticsWriter folderStatisticsWriter) {
+        return new FileHierarchyBatchWriter(new NamedParameterJdbcTemplate(dataSource), folderIdCache, chunkSize,
+                folderStatisticsWriter);
+    }
+
     @Bean
     public IFileManagerService fileManagerService(IFireService fireIngestion,
                                                   @Value("${file.manager.fire.relative.path}") String fireBoxRelativePath,
-                                                  FileHierarchyRepository fileHierarchyRepository, EntityManager entityManager) {
-        return new FileManagerService(fireIngestion, Paths.get(fireBoxRelativePath), fileHierarchyRepository, entityManager);
+                                                  FileHierarchyRepository fileHierarchyRepository, EntityManager entityManager,
+                                                  FolderIdCache folderIdCache, FileHierarchyBatchWriter fileHierarchyBatchWriter,
+                                                  FolderStatisticsWriter folderStatisticsWriter,
+                                                  FolderStatisticsRepository folderStatisticsRepository) {
+        return new FileManagerService(fireIngestion, Paths.get(fireBoxRelativePath), fileHierarchyRepository, entityManager,
+                folderIdCache, fileHierarchyBatchWriter, folderStatisticsWriter, folderStatisticsRepository);
     }
 
     @Bean
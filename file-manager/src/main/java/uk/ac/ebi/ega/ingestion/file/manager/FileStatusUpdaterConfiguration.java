@@ -18,13 +18,16 @@
 package uk.ac.ebi.ega.ingestion.file.manager;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
 import uk.ac.ebi.ega.fire.ingestion.service.IFireService;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileDetailsRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsWriter;
 import uk.ac.ebi.ega.ingestion.file.manager.services.FileStatusUpdaterService;
 import uk.ac.ebi.ega.ingestion.file.manager.services.IFileStatusUpdaterService;
 
@@ -39,8 +42,12 @@ public class FileStatusUpdaterConfiguration {
     public IFileStatusUpdaterService fileStatusUpdaterService(final FileDetailsRepository fileDetailsRepository,
                                                               final IFireService fireService,
                                                               @Value("${file.status.updater.batch.size}")
-                                                              final int batchSize) {
-        return new FileStatusUpdaterService(fileDetailsRepository, fireService, batchSize);
+                                                              final int batchSize,
+                                                              final FolderStatisticsWriter folderStatisticsWriter,
+                                                              @Qualifier("fileManager_transactionManager")
+                                                              final PlatformTransactionManager transactionManager) {
+        return new FileStatusUpdaterService(fileDetailsRepository, fireService, batchSize, folderStatisticsWriter,
+                transactionManager);
     }
 
     @Scheduled(fixedDelayString = "${file.status.updater.fixed.delay.seconds}000")
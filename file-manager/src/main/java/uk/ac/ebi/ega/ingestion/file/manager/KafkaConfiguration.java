@@ -39,6 +39,7 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.converter.BatchMessagingMessageConverter;
 import org.springframework.kafka.support.converter.StringJsonMessageConverter;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import uk.ac.ebi.ega.ingestion.commons.messages.ArchiveEvent;
@@ -53,9 +54,25 @@ import java.util.Map;
 @Configuration
 public class KafkaConfiguration {
 
+    private static final int DEFAULT_MAX_POLL_INTERVAL_MS = 300000;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    /**
+     * Specifies the maximum number of archive events received by each poll. The files of a poll are archived
+     * together and acknowledged together.
+     */
+    @Value("${file.manager.archive.batch.size:1}")
+    private int archiveBatchSize;
+
+    /**
+     * Specifies the longest time that archiving a single file, in FIRE and in the file hierarchy, is expected to
+     * take. A consumer that takes longer to archive a poll is considered stuck and leaves the group.
+     */
+    @Value("${file.manager.archive.file.timeout.ms:60000}")
+    private long archiveFileTimeoutMs;
+
     @Bean
     public Map producerConfigs() {
         Map properties = new HashMap();
@@ -124,7 +141,9 @@ public class KafkaConfiguration {
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConcurrency(1);
         factory.setConsumerFactory(archiveEventConsumerFactory());
-        factory.setMessageConverter(new StringJsonMessageConverter(getObjectMapper()));
+        factory.setBatchListener(true);
+        factory.setMessageConverter(new BatchMessagingMessageConverter(
+                new StringJsonMessageConverter(getObjectMapper())));
         factory.getContainerProperties().setPollTimeout(600000);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         return factory;
@@ -145,9 +164,21 @@ public class KafkaConfiguration {
         properties.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 10000);
         properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"); //TODO Change to latest
         properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, archiveBatchSize);
+        properties.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, archiveMaxPollIntervalMs());
         return properties;
     }
 
+    /**
+     * A poll is archived before the next one. In the worst case the batch fails and its files are archived again one
+     * at a time, a batch of a single file is only archived once. Never below the default of the consumer.
+     */
+    private int archiveMaxPollIntervalMs() {
+        final long attempts = archiveBatchSize > 1 ? 2 : 1;
+        final long interval = attempts * archiveBatchSize * archiveFileTimeoutMs;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(DEFAULT_MAX_POLL_INTERVAL_MS, interval));
+    }
+
     @Bean
     public FileArchiveListener fileArchiveListener(@Autowired IFileManagerService fileManagerService) {
         return new FileArchiveListener(fileManagerService);
@@ -20,14 +20,65 @@ package uk.ac.ebi.ega.ingestion.file.manager.controller;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.HandlerMapping;
+import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.InvalidCursorException;
 
 import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
 public class ControllerUtils {
+
+    private static final String CURSOR_SEPARATOR = ":";
+
     public static String extractVariablePath(final HttpServletRequest request) {
         final String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
         final String bestMatchPattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
         final String variablePath = new AntPathMatcher().extractPathWithinPattern(bestMatchPattern, path);
         return !StringUtils.isEmpty(variablePath) ? "/" + variablePath : "";
     }
+
+    /**
+     * @return opaque cursor that points after the given path key and id. The id breaks the ties between files whose
+     * path keys are equal.
+     */
+    public static String encodeCursor(final String pathKey, final long id) {
+        final String cursor = id + CURSOR_SEPARATOR + pathKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return path key and id the cursor points after.
+     * @throws InvalidCursorException if the cursor was not created by {@link #encodeCursor(String, long)}.
+     */
+    public static Cursor decodeCursor(final String cursor) throws InvalidCursorException {
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = decoded.indexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException("Cursor is not valid '" + cursor + "'");
+            }
+            return new Cursor(decoded.substring(separator + 1), Long.parseLong(decoded.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Cursor is not valid '" + cursor + "'", e);
+        }
+    }
+
+    public static class Cursor {
+
+        private final String pathKey;
+        private final long id;
+
+        public Cursor(final String pathKey, final long id) {
+            this.pathKey = pathKey;
+            this.id = id;
+        }
+
+        public String getPathKey() {
+            return pathKey;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
 }
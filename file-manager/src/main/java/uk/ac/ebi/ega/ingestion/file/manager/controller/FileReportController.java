@@ -17,11 +17,13 @@
  */
 package uk.ac.ebi.ega.ingestion.file.manager.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import uk.ac.ebi.ega.ingestion.file.manager.dto.resources.assemblers.FileHierarchyResourceAssembler;
 import uk.ac.ebi.ega.ingestion.file.manager.models.FileHierarchyModel;
 import uk.ac.ebi.ega.ingestion.file.manager.services.IFileManagerService;
 
@@ -31,6 +33,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 import static uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.extractVariablePath;
@@ -40,9 +43,11 @@ import static uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.ex
 public class FileReportController {
 
     private final IFileManagerService fileManagerService;
+    private final ObjectMapper objectMapper;
 
-    public FileReportController(final IFileManagerService fileManagerService) {
+    public FileReportController(final IFileManagerService fileManagerService, final ObjectMapper objectMapper) {
         this.fileManagerService = fileManagerService;
+        this.objectMapper = objectMapper;
     }
 
     @RequestMapping(value = "/tsv/{accountId}/{locationId}/**", method = RequestMethod.GET)
@@ -67,6 +72,30 @@ public class FileReportController {
         }
     }
 
+    /**
+     * Streams all the files of the staging area as newline delimited JSON, one file per line, while they are read
+     * from the database.
+     */
+    @RequestMapping(value = "/ndjson/all/{accountId}/{locationId}", method = RequestMethod.GET)
+    @Transactional(value = "fileManager_transactionManager", readOnly = true)
+    public void generateNDJSONForAllFilesUsingStream(@PathVariable String accountId,
+                                                     @PathVariable String locationId, HttpServletResponse response) throws IOException {
+        try (final Stream<FileHierarchyModel> fileHierarchyModelStream = fileManagerService.findAllFilesInRootPathRecursive(accountId, locationId)) {
+            response.setContentType("application/x-ndjson");
+            response.setCharacterEncoding("UTF-8");
+
+            final FileHierarchyResourceAssembler fileHierarchyResourceAssembler = new FileHierarchyResourceAssembler();
+            try (final PrintWriter out = response.getWriter()) {
+                final Iterator<FileHierarchyModel> iterator = fileHierarchyModelStream.iterator();
+                while (iterator.hasNext()) {
+                    out.write(objectMapper.writeValueAsString(fileHierarchyResourceAssembler.toResource(iterator.next())));
+                    out.write("\n");
+                }
+                out.flush();
+            }
+        }
+    }
+
     private void writeResponse(final Stream<FileHierarchyModel> fileHierarchyModelStream,
                                final HttpServletResponse response) throws IOException {
         response.setContentType("application/tsv");
@@ -19,6 +19,7 @@ package uk.ac.ebi.ega.ingestion.file.manager.controller;
 
 import com.querydsl.core.types.Predicate;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.querydsl.binding.QuerydslPredicate;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.Link;
@@ -29,7 +30,12 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.Cursor;
+import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.InvalidCursorException;
+import uk.ac.ebi.ega.ingestion.file.manager.dto.FileCursorPageDTO;
 import uk.ac.ebi.ega.ingestion.file.manager.dto.FileTreeDTO;
 import uk.ac.ebi.ega.ingestion.file.manager.dto.FileTreeWrapper;
 import uk.ac.ebi.ega.ingestion.file.manager.dto.resources.assemblers.FileHierarchyResourceAssembler;
@@ -43,8 +49,11 @@ import java.io.FileNotFoundException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+import static uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.decodeCursor;
+import static uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.encodeCursor;
 import static uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.extractVariablePath;
 
 @RequestMapping(value = "/file/tree")
@@ -52,6 +61,7 @@ import static uk.ac.ebi.ega.ingestion.file.manager.controller.ControllerUtils.ex
 public class FileTreeController {
 
     private static final String REL = "self";
+    private static final int MAX_PAGE_SIZE = 10000;
     private final IFileManagerService fileManagerService;
 
     public FileTreeController(final IFileManagerService fileManagerService) {
@@ -96,4 +106,33 @@ public class FileTreeController {
                                                    FileHierarchyResourceAssembler fileHierarchyResourceAssembler) throws FileNotFoundException {
         return assembler.toResource(fileManagerService.findAllFilesInRootPathRecursive(accountId, locationId, predicate, pageable), fileHierarchyResourceAssembler);
     }
+
+    /**
+     * Lists all the files of the staging area ordered by path, a page at a time. Unlike
+     * {@link #getAllFiles(String, String, Predicate, Pageable, PagedResourcesAssembler, FileHierarchyResourceAssembler)}
+     * each page starts after the cursor returned with the previous one, so that deep pages are as fast as the first.
+     */
+    @GetMapping(value = "/cursor/{accountId}/{locationId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public FileCursorPageDTO getAllFilesAfterCursor(@PathVariable String accountId,
+                                                    @PathVariable String locationId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "1000") int size,
+                                                    FileHierarchyResourceAssembler fileHierarchyResourceAssembler) throws InvalidCursorException {
+        final Cursor after = cursor == null ? null : decodeCursor(cursor);
+        final Slice<FileHierarchyModel> files = fileManagerService.findAllFilesInRootPathRecursiveAfter(accountId, locationId,
+                after == null ? null : after.getPathKey(), after == null ? null : after.getId(),
+                Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+
+        final List<FileTreeDTO> fileTreeDTOs = files.getContent().stream().map(fileHierarchyResourceAssembler::toResource).
+                collect(Collectors.toList());
+        if (!files.hasNext()) {
+            return new FileCursorPageDTO(fileTreeDTOs, null);
+        }
+        final FileHierarchyModel last = files.getContent().get(files.getNumberOfElements() - 1);
+        final String nextCursor = encodeCursor(FileHierarchy.toPathKey(last.getOriginalPath()), last.getId());
+        final FileCursorPageDTO page = new FileCursorPageDTO(fileTreeDTOs, nextCursor);
+        page.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("cursor", nextCursor)
+                .toUriString(), Link.REL_NEXT));
+        return page;
+    }
 }
@@ -23,6 +23,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.InvalidCursorException;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -48,6 +49,15 @@ public class RestControllerAdvice extends RepositoryRestExceptionHandler {
 
     }
 
+    /**
+     * @return Response with 400 http status code & error message.
+     */
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Cursor is not valid")
+    @ExceptionHandler(InvalidCursorException.class)
+    public void invalidCursorExceptionHandler() {
+
+    }
+
     /**
      * @return Response with 500 http status code & error message.
      */
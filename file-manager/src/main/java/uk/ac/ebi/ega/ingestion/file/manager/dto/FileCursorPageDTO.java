@@ -0,0 +1,48 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.hateoas.ResourceSupport;
+
+import java.util.List;
+
+/**
+ * Page of a listing paginated with cursors. The cursor of the next page points after the last element of this
+ * page, it is null for the last page.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FileCursorPageDTO extends ResourceSupport {
+
+    private final List<FileTreeDTO> files;
+    private final String nextCursor;
+
+    public FileCursorPageDTO(final List<FileTreeDTO> files, final String nextCursor) {
+        super();
+        this.files = files;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<FileTreeDTO> getFiles() {
+        return files;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
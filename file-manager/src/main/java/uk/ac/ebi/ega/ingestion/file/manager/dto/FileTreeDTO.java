@@ -22,9 +22,11 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.hateoas.ResourceSupport;
 import uk.ac.ebi.ega.ingestion.file.manager.models.FileHierarchyModel;
+import uk.ac.ebi.ega.ingestion.file.manager.models.FolderStatisticsModel;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @JsonInclude(Include.NON_NULL)
 public class FileTreeDTO extends ResourceSupport {
@@ -38,6 +40,8 @@ public class FileTreeDTO extends ResourceSupport {
     private FileStatus status;
     private String message;
     private LocalDateTime modifiedDate;
+    private Long fileCount;
+    private Map<FileStatus, Long> statusCounts;
 
     private FileTreeDTO() {
         super();
@@ -57,11 +61,18 @@ public class FileTreeDTO extends ResourceSupport {
         this.status = status;
     }
 
-    private FileTreeDTO(final String accountId, final String locationId, final String name) {
+    private FileTreeDTO(final String accountId, final String locationId, final String name,
+                        final FolderStatisticsModel folderStatistics) {
         super();
         this.accountId = accountId;
         this.locationId = locationId;
         this.name = name;
+        if (folderStatistics != null) {
+            this.fileCount = folderStatistics.getFileCount();
+            this.plainTextFileSize = folderStatistics.getPlainSize();
+            this.encryptedFileSize = folderStatistics.getEncryptedSize();
+            this.statusCounts = folderStatistics.getStatusCounts();
+        }
     }
 
     public String getAccountId() {
@@ -105,6 +116,20 @@ public class FileTreeDTO extends ResourceSupport {
         return encryptedFileSize;
     }
 
+    /**
+     * @return number of files inside the folder, recursively. Sizes of a folder are the totals of these files.
+     */
+    public Long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return number of files inside the folder by status, recursively.
+     */
+    public Map<FileStatus, Long> getStatusCounts() {
+        return statusCounts;
+    }
+
     public static FileTreeDTO file(final FileHierarchyModel fileHierarchyModel) {
         return new FileTreeDTO(
                 fileHierarchyModel.getAccountId(),
@@ -121,6 +146,7 @@ public class FileTreeDTO extends ResourceSupport {
         return new FileTreeDTO(
                 fileHierarchyModel.getAccountId(),
                 fileHierarchyModel.getStagingAreaId(),
-                fileHierarchyModel.getName());
+                fileHierarchyModel.getName(),
+                fileHierarchyModel.getFolderStatistics());
     }
 }
@@ -26,6 +26,8 @@ import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.FileHierarchyE
 import uk.ac.ebi.ega.ingestion.file.manager.services.IFileManagerService;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 public class FileArchiveListener {
 
@@ -37,15 +39,42 @@ public class FileArchiveListener {
         this.encryptJobService = encryptJobService;
     }
 
+    /**
+     * Receives the events of one poll, at most file.manager.archive.batch.size. A single event is archived in its own
+     * transaction, as before batches. The files of a larger batch are archived together, a file that can not be
+     * archived does not prevent the archive of the others: if the batch fails as a whole its files are archived
+     * again one at a time. The offsets of the batch are committed once all its files have been processed.
+     */
     @KafkaListener(id = "file-manager-archive-listener", topics = "${spring.kafka.file.archive.queue.name}",
             groupId = "${spring.kafka.consumer.group-id}", containerFactory = "archiveEventListenerContainerFactory")
-    public void listenArchiveEventQueue(ArchiveEvent archiveEvent, Acknowledgment acknowledgment) {
+    public void listenArchiveEventQueue(List<ArchiveEvent> archiveEvents, Acknowledgment acknowledgment) {
+        if (archiveEvents.size() == 1) {
+            archive(archiveEvents.get(0));
+        } else {
+            archiveBatch(archiveEvents);
+        }
+        acknowledgment.acknowledge();
+    }
+
+    private void archiveBatch(List<ArchiveEvent> archiveEvents) {
+        logger.info("Archive - batch of {} events", archiveEvents.size());
+        try {
+            final Map<ArchiveEvent, Exception> failures = encryptJobService.archive(archiveEvents);
+            // TODO send a message to dead letter queue
+            failures.forEach((archiveEvent, e) -> logger.error(e.getMessage(), e));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Batch of {} archive events could not be archived, archiving them one by one",
+                    archiveEvents.size(), e);
+            archiveEvents.forEach(this::archive);
+        }
+    }
+
+    private void archive(ArchiveEvent archiveEvent) {
         try {
             encryptJobService.archive(archiveEvent);
         } catch (FileHierarchyException | IOException e) {
             // TODO send a message to dead letter queue
             logger.error(e.getMessage(), e);
         }
-        acknowledgment.acknowledge();
     }
 }
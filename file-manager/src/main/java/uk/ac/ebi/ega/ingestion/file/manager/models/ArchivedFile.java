@@ -33,6 +33,8 @@ public class ArchivedFile {
 
     private final String plainMd5;
 
+    private final String plainSha256;
+
     private final long encryptedSize;
 
     private final String encryptedMd5;
@@ -41,6 +43,16 @@ public class ArchivedFile {
 
     public ArchivedFile(String accountId, String stagingAreaId, long fireId, String dosPath, String path,
                         long plainSize, String plainMd5, long encryptedSize, String encryptedMd5, char[] key) {
+        this(accountId, stagingAreaId, fireId, dosPath, path, plainSize, plainMd5, null, encryptedSize, encryptedMd5,
+                key);
+    }
+
+    /**
+     * @param plainSha256 sha256 of the plain file, null if it was not computed.
+     */
+    public ArchivedFile(String accountId, String stagingAreaId, long fireId, String dosPath, String path,
+                        long plainSize, String plainMd5, String plainSha256, long encryptedSize, String encryptedMd5,
+                        char[] key) {
         this.accountId = accountId;
         this.stagingAreaId = stagingAreaId;
         this.fireId = fireId;
@@ -48,6 +60,7 @@ public class ArchivedFile {
         this.path = path;
         this.plainSize = plainSize;
         this.plainMd5 = plainMd5;
+        this.plainSha256 = plainSha256;
         this.encryptedSize = encryptedSize;
         this.encryptedMd5 = encryptedMd5;
         this.key = key;
@@ -81,6 +94,10 @@ public class ArchivedFile {
         return plainMd5;
     }
 
+    public String getPlainSha256() {
+        return plainSha256;
+    }
+
     public long getEncryptedSize() {
         return encryptedSize;
     }
@@ -32,6 +32,7 @@ public class FileHierarchyModel {
     private String accountId;
     private String stagingAreaId;
     private FileDetailsModel fileDetails;
+    private FolderStatisticsModel folderStatistics;
     private LocalDateTime createdDate;
     private LocalDateTime updatedDate;
 
@@ -39,7 +40,8 @@ public class FileHierarchyModel {
 
     private FileHierarchyModel(final Long id, final String accountId, final String stagingAreaId, final String name,
                                final String originalPath, final FileStructureType fileType, final LocalDateTime createdDate,
-                               final LocalDateTime updatedDate, final FileDetailsModel fileDetails) {
+                               final LocalDateTime updatedDate, final FileDetailsModel fileDetails,
+                               final FolderStatisticsModel folderStatistics) {
         this.id = Objects.requireNonNull(id);
         this.accountId = Objects.requireNonNull(accountId);
         this.stagingAreaId = Objects.requireNonNull(stagingAreaId);
@@ -49,6 +51,7 @@ public class FileHierarchyModel {
         this.createdDate = Objects.requireNonNull(createdDate);
         this.updatedDate = Objects.requireNonNull(updatedDate);
         this.fileDetails = fileDetails;
+        this.folderStatistics = folderStatistics;
     }
 
     public Long getId() {
@@ -79,6 +82,13 @@ public class FileHierarchyModel {
         return fileDetails;
     }
 
+    /**
+     * @return aggregates of the files inside the folder, null for files or if they were not requested.
+     */
+    public FolderStatisticsModel getFolderStatistics() {
+        return folderStatistics;
+    }
+
     public LocalDateTime getCreatedDate() {
         return createdDate;
     }
@@ -90,13 +100,21 @@ public class FileHierarchyModel {
     public static FileHierarchyModel folder(final Long id, final String accountId, final String stagingAreaId, final String name,
                                             final String originalPath, final FileStructureType fileType, final LocalDateTime createdDate,
                                             final LocalDateTime updatedDate) {
-        return new FileHierarchyModel(id, accountId, stagingAreaId, name, originalPath, fileType, createdDate, updatedDate, null);
+        return folder(id, accountId, stagingAreaId, name, originalPath, fileType, createdDate, updatedDate, null);
+    }
+
+    public static FileHierarchyModel folder(final Long id, final String accountId, final String stagingAreaId, final String name,
+                                            final String originalPath, final FileStructureType fileType, final LocalDateTime createdDate,
+                                            final LocalDateTime updatedDate, final FolderStatisticsModel folderStatistics) {
+        return new FileHierarchyModel(id, accountId, stagingAreaId, name, originalPath, fileType, createdDate, updatedDate, null,
+                folderStatistics);
     }
 
     public static FileHierarchyModel file(final Long id, final String accountId, final String stagingAreaId, final String name,
                                           final String originalPath, final FileStructureType fileType, final LocalDateTime createdDate,
                                           final LocalDateTime updatedDate, final FileDetailsModel fileDetails) {
-        return new FileHierarchyModel(id, accountId, stagingAreaId, name, originalPath, fileType, createdDate, updatedDate, Objects.requireNonNull(fileDetails));
+        return new FileHierarchyModel(id, accountId, stagingAreaId, name, originalPath, fileType, createdDate, updatedDate, Objects.requireNonNull(fileDetails),
+                null);
     }
 
     /**
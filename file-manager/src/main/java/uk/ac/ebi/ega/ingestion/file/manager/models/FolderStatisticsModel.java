@@ -0,0 +1,56 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.models;
+
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+public class FolderStatisticsModel {
+
+    private long fileCount;
+    private long plainSize;
+    private long encryptedSize;
+    private Map<FileStatus, Long> statusCounts;
+
+    public FolderStatisticsModel(final long fileCount, final long plainSize, final long encryptedSize,
+                                 final Map<FileStatus, Long> statusCounts) {
+        this.fileCount = fileCount;
+        this.plainSize = plainSize;
+        this.encryptedSize = encryptedSize;
+        this.statusCounts = Collections.unmodifiableMap(Objects.requireNonNull(statusCounts));
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getPlainSize() {
+        return plainSize;
+    }
+
+    public long getEncryptedSize() {
+        return encryptedSize;
+    }
+
+    public Map<FileStatus, Long> getStatusCounts() {
+        return statusCounts;
+    }
+}
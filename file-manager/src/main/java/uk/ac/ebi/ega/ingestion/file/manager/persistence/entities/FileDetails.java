@@ -48,6 +48,9 @@ public class FileDetails {
     @Column(nullable = false)
     private String plainMd5;
 
+    @Column
+    private String plainSha256;
+
     @Column(nullable = false)
     private Long encryptedSize;
 
@@ -76,9 +79,19 @@ public class FileDetails {
     public FileDetails(final String dosPath, final Long plainSize, final String plainMd5,
                        final Long encryptedSize, final String encryptedMd5,
                        final String key, final FileStatus status, final Long fireId) {
+        this(dosPath, plainSize, plainMd5, null, encryptedSize, encryptedMd5, key, status, fireId);
+    }
+
+    /**
+     * @param plainSha256 sha256 of the plain file, null if it was not computed.
+     */
+    public FileDetails(final String dosPath, final Long plainSize, final String plainMd5, final String plainSha256,
+                       final Long encryptedSize, final String encryptedMd5,
+                       final String key, final FileStatus status, final Long fireId) {
         this.dosPath = dosPath;
         this.plainSize = plainSize;
         this.plainMd5 = plainMd5;
+        this.plainSha256 = plainSha256;
         this.encryptedSize = encryptedSize;
         this.encryptedMd5 = encryptedMd5;
         this.key = key;
@@ -102,6 +115,10 @@ public class FileDetails {
         return plainMd5;
     }
 
+    public String getPlainSha256() {
+        return plainSha256;
+    }
+
     public Long getEncryptedSize() {
         return encryptedSize;
     }
@@ -22,6 +22,7 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import uk.ac.ebi.ega.ingestion.file.manager.models.FileDetailsModel;
 import uk.ac.ebi.ega.ingestion.file.manager.models.FileHierarchyModel;
+import uk.ac.ebi.ega.ingestion.file.manager.models.FolderStatisticsModel;
 import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
 
 import javax.persistence.CascadeType;
@@ -42,8 +43,12 @@ import javax.persistence.OrderBy;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 
-@Table(indexes = {@Index(name = "FILEPATH_INDEX", columnList = "originalPath")})
+@Table(indexes = {
+        @Index(name = "FILEPATH_INDEX", columnList = "originalPath"),
+        @Index(name = "PATH_KEY_INDEX", columnList = "pathKey"),
+        @Index(name = "PARENT_ID_INDEX", columnList = "parent_id")})
 @Entity
 @EntityListeners(AuditingEntityListener.class)
 public class FileHierarchy {
@@ -66,6 +71,14 @@ public class FileHierarchy {
     @Column(nullable = false, length = 4096, unique = true)
     private String originalPath;
 
+    /**
+     * Materialised path of the file or folder, its original path in lower case. Case insensitive lookups are equality
+     * checks on it and the files and folders inside a folder are the ones whose key starts with the key of the
+     * folder followed by a slash, both are range scans of its index.
+     */
+    @Column(nullable = false, length = 4096)
+    private String pathKey;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private FileStructureType fileType;
@@ -97,6 +110,7 @@ public class FileHierarchy {
         this.name = name;
         this.parentPath = parentPath;
         this.originalPath = originalPath;
+        this.pathKey = toPathKey(originalPath);
         this.fileType = fileType;
         this.fileDetails = fileDetails;
     }
@@ -121,6 +135,10 @@ public class FileHierarchy {
         return originalPath;
     }
 
+    public String getPathKey() {
+        return pathKey;
+    }
+
     public FileStructureType getFileType() {
         return fileType;
     }
@@ -145,6 +163,13 @@ public class FileHierarchy {
         return fileDetails;
     }
 
+    /**
+     * @return the key of {@link #getPathKey()} for a path.
+     */
+    public static String toPathKey(String path) {
+        return path.toLowerCase(Locale.ROOT);
+    }
+
     public static FileHierarchy folder(String accountId, String stagingAreaId, String name, String path,
                                        FileHierarchy parent) {
         return new FileHierarchy(accountId, stagingAreaId, name, path, parent, FileStructureType.FOLDER, null);
@@ -169,6 +194,10 @@ public class FileHierarchy {
     }
 
     public FileHierarchyModel toFolder() {
+        return toFolder(null);
+    }
+
+    public FileHierarchyModel toFolder(final FolderStatisticsModel folderStatistics) {
         return FileHierarchyModel.folder(
                 getId(),
                 getAccountId(),
@@ -177,7 +206,8 @@ public class FileHierarchy {
                 getOriginalPath(),
                 getFileType(),
                 getCreatedDate(),
-                getUpdatedDate()
+                getUpdatedDate(),
+                folderStatistics
         );
     }
 
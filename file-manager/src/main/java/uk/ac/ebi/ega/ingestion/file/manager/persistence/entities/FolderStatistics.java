@@ -0,0 +1,97 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.entities;
+
+import uk.ac.ebi.ega.ingestion.file.manager.models.FolderStatisticsModel;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Aggregates of all the files inside a folder of the file hierarchy, recursively. They are maintained incrementally
+ * by {@link uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsWriter} when files are
+ * archived and when their status changes, there is one column per {@link FileStatus} named after it.
+ */
+@Entity
+public class FolderStatistics {
+
+    @Id
+    private Long folderId;
+
+    @Column(nullable = false)
+    private long fileCount;
+
+    @Column(nullable = false)
+    private long plainSize;
+
+    @Column(nullable = false)
+    private long encryptedSize;
+
+    @Column(nullable = false)
+    private long archiveInProgressCount;
+
+    @Column(nullable = false)
+    private long archivedSuccessfullyCount;
+
+    @Column(nullable = false)
+    private long errorCount;
+
+    protected FolderStatistics() {
+    }
+
+    public Long getFolderId() {
+        return folderId;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getPlainSize() {
+        return plainSize;
+    }
+
+    public long getEncryptedSize() {
+        return encryptedSize;
+    }
+
+    public Map<FileStatus, Long> getStatusCounts() {
+        final Map<FileStatus, Long> statusCounts = new EnumMap<>(FileStatus.class);
+        statusCounts.put(FileStatus.ARCHIVE_IN_PROGRESS, archiveInProgressCount);
+        statusCounts.put(FileStatus.ARCHIVED_SUCCESSFULLY, archivedSuccessfullyCount);
+        statusCounts.put(FileStatus.ERROR, errorCount);
+        return statusCounts;
+    }
+
+    public FolderStatisticsModel toModel() {
+        return new FolderStatisticsModel(fileCount, plainSize, encryptedSize, getStatusCounts());
+    }
+
+    @Override
+    public String toString() {
+        return "FolderStatistics{" +
+                "folderId=" + folderId +
+                ", fileCount=" + fileCount +
+                ", plainSize=" + plainSize +
+                ", encryptedSize=" + encryptedSize +
+                '}';
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.ega.ingestion.file.manager.models.ArchivedFile;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the archived files of a batch to the file hierarchy with JDBC batch inserts in one transaction. The folders
+ * of all the files are found in one query per staging area, the missing ones are inserted one level at a time and
+ * each folder is inserted once for the whole batch. Files that already exist in the hierarchy are left as they are,
+ * like {@link FileHierarchyRepository#saveNewFile(String, String, String,
+ * uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails)} does.
+ */
+public class FileHierarchyBatchWriter {
+
+    private static final String SELECT_PATHS = "select ID, PATH_KEY from FILE_HIERARCHY " +
+            "where lower(ACCOUNT_ID) = lower(:accountId) and lower(STAGING_AREA_ID) = lower(:stagingAreaId) " +
+            "and PATH_KEY in (:pathKeys)";
+
+    private static final String INSERT_FOLDER = "insert into FILE_HIERARCHY (ACCOUNT_ID, STAGING_AREA_ID, NAME, " +
+            "ORIGINAL_PATH, PATH_KEY, FILE_TYPE, PARENT_ID, CREATED_DATE, UPDATED_DATE) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_FILE_DETAILS = "insert into FILE_DETAILS (DOS_PATH, PLAIN_SIZE, PLAIN_MD5, " +
+            "PLAIN_SHA256, ENCRYPTED_SIZE, ENCRYPTED_MD5, KEY, STATUS, FIRE_ID, CREATED_DATE, UPDATED_DATE) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_FILE = "insert into FILE_HIERARCHY (ACCOUNT_ID, STAGING_AREA_ID, NAME, " +
+            "ORIGINAL_PATH, PATH_KEY, FILE_TYPE, PARENT_ID, FILE_DETAILS_ID, CREATED_DATE, UPDATED_DATE) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final FolderIdCache folderIdCache;
+
+    private final int chunkSize;
+
+    private final FolderStatisticsWriter folderStatisticsWriter;
+
+    /**
+     * @param chunkSize maximum number of rows of each JDBC batch and of paths of each query.
+     */
+    public FileHierarchyBatchWriter(NamedParameterJdbcTemplate jdbcTemplate, FolderIdCache folderIdCache,
+                                    int chunkSize) {
+        this(jdbcTemplate, folderIdCache, chunkSize, null);
+    }
+
+    /**
+     * @param folderStatisticsWriter adds the inserted files to the statistics of their folders in the same
+     *                               transaction, null if folder statistics are not maintained.
+     */
+    public FileHierarchyBatchWriter(NamedParameterJdbcTemplate jdbcTemplate, FolderIdCache folderIdCache,
+                                    int chunkSize, FolderStatisticsWriter folderStatisticsWriter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.folderIdCache = folderIdCache;
+        this.chunkSize = chunkSize;
+        this.folderStatisticsWriter = folderStatisticsWriter;
+    }
+
+    /**
+     * @param files archived files, their path must have been normalized with {@link #normalize(String)}.
+     */
+    @Transactional(transactionManager = "fileManager_transactionManager", rollbackFor = Exception.class)
+    public void write(List<ArchivedFile> files) {
+        final Map<String, List<ArchivedFile>> filesByStagingArea = new LinkedHashMap<>();
+        for (ArchivedFile file : files) {
+            final String scope = file.getAccountId().toLowerCase(Locale.ROOT) + "/" + file.getStagingAreaId().toLowerCase(Locale.ROOT);
+            filesByStagingArea.computeIfAbsent(scope, key -> new ArrayList<>()).add(file);
+        }
+        final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        final FolderStatisticsWriter.Changes statisticsChanges = new FolderStatisticsWriter.Changes();
+        for (List<ArchivedFile> stagingAreaFiles : filesByStagingArea.values()) {
+            write(stagingAreaFiles.get(0).getAccountId(), stagingAreaFiles.get(0).getStagingAreaId(),
+                    stagingAreaFiles, now, statisticsChanges);
+        }
+        if (folderStatisticsWriter != null) {
+            folderStatisticsWriter.write(statisticsChanges);
+        }
+    }
+
+    private void write(String accountId, String stagingAreaId, List<ArchivedFile> files, Timestamp now,
+                       FolderStatisticsWriter.Changes statisticsChanges) {
+        // Ids of the folders and files of the batch by path key, null until they are found or inserted
+        final Map<String, Long> ids = new HashMap<>();
+        final Map<String, Path> folders = new HashMap<>();
+        final List<String> pathsToFind = new ArrayList<>();
+        for (ArchivedFile file : files) {
+            final Path path = Paths.get(file.getPath());
+            final String pathKey = FileHierarchy.toPathKey(path.toString());
+            if (!ids.containsKey(pathKey)) {
+                ids.put(pathKey, null);
+                pathsToFind.add(pathKey);
+            }
+            for (Path folder = path.getParent(); folder != null && folder.getFileName() != null;
+                 folder = folder.getParent()) {
+                final String key = FileHierarchy.toPathKey(folder.toString());
+                if (folders.putIfAbsent(key, folder) != null) {
+                    break;
+                }
+                final Long folderId = folderIdCache.get(accountId, stagingAreaId, folder.toString()).orElse(null);
+                ids.put(key, folderId);
+                if (folderId == null) {
+                    pathsToFind.add(key);
+                }
+            }
+        }
+        ids.putAll(findIds(accountId, stagingAreaId, pathsToFind));
+
+        final List<Path> missingFolders = new ArrayList<>();
+        folders.forEach((key, folder) -> {
+            if (ids.get(key) == null) {
+                missingFolders.add(folder);
+            } else {
+                folderIdCache.put(accountId, stagingAreaId, folder.toString(), ids.get(key));
+            }
+        });
+        insertFolders(accountId, stagingAreaId, missingFolders, ids, now);
+
+        final List<ArchivedFile> newFiles = new ArrayList<>();
+        for (ArchivedFile file : files) {
+            final String key = FileHierarchy.toPathKey(file.getPath());
+            if (ids.get(key) == null) {
+                // Marks the file as inserted, a file repeated in the batch is only inserted once
+                ids.put(key, -1L);
+                newFiles.add(file);
+                statisticsChanges.fileAdded(accountId, stagingAreaId, file.getPath(), file.getPlainSize(),
+                        file.getEncryptedSize(), FileStatus.ARCHIVE_IN_PROGRESS);
+            }
+        }
+        insertFiles(accountId, stagingAreaId, newFiles, ids, now);
+    }
+
+    private Map<String, Long> findIds(String accountId, String stagingAreaId, List<String> pathKeys) {
+        final Map<String, Long> ids = new HashMap<>();
+        for (List<String> chunk : chunks(pathKeys)) {
+            final MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("accountId", accountId)
+                    .addValue("stagingAreaId", stagingAreaId)
+                    .addValue("pathKeys", chunk);
+            jdbcTemplate.query(SELECT_PATHS, parameters, resultSet -> {
+                ids.put(resultSet.getString("PATH_KEY"), resultSet.getLong("ID"));
+            });
+        }
+        return ids;
+    }
+
+    private void insertFolders(String accountId, String stagingAreaId, List<Path> missingFolders,
+                               Map<String, Long> ids, Timestamp now) {
+        // Parents are inserted before their children, each level is inserted in one batch
+        missingFolders.sort(Comparator.comparingInt(Path::getNameCount));
+        int start = 0;
+        while (start < missingFolders.size()) {
+            final int level = missingFolders.get(start).getNameCount();
+            int end = start;
+            while (end < missingFolders.size() && missingFolders.get(end).getNameCount() == level) {
+                end++;
+            }
+            final List<Path> levelFolders = missingFolders.subList(start, end);
+            final List<Object[]> rows = new ArrayList<>(levelFolders.size());
+            for (Path folder : levelFolders) {
+                rows.add(new Object[]{accountId, stagingAreaId, folder.getFileName().toString(), folder.toString(),
+                        FileHierarchy.toPathKey(folder.toString()), FileStructureType.FOLDER.name(),
+                        getParentId(folder, ids), now, now});
+            }
+            final List<Long> folderIds = insert(INSERT_FOLDER, rows);
+            for (int i = 0; i < levelFolders.size(); i++) {
+                final Path folder = levelFolders.get(i);
+                ids.put(FileHierarchy.toPathKey(folder.toString()), folderIds.get(i));
+                folderIdCache.putCreated(accountId, stagingAreaId, folder.toString(), folderIds.get(i));
+            }
+            start = end;
+        }
+    }
+
+    private void insertFiles(String accountId, String stagingAreaId, List<ArchivedFile> files, Map<String, Long> ids,
+                             Timestamp now) {
+        final List<Object[]> detailsRows = new ArrayList<>(files.size());
+        for (ArchivedFile file : files) {
+            detailsRows.add(new Object[]{file.getDosPath(), file.getPlainSize(), file.getPlainMd5(),
+                    file.getPlainSha256(), file.getEncryptedSize(), file.getEncryptedMd5(), new String(file.getKey()),
+                    FileStatus.ARCHIVE_IN_PROGRESS.name(), file.getFireId(), now, now});
+        }
+        final List<Long> detailsIds = insert(INSERT_FILE_DETAILS, detailsRows);
+
+        final List<Object[]> fileRows = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final Path path = Paths.get(files.get(i).getPath());
+            fileRows.add(new Object[]{accountId, stagingAreaId, path.getFileName().toString(), path.toString(),
+                    FileHierarchy.toPathKey(path.toString()), FileStructureType.FILE.name(), getParentId(path, ids),
+                    detailsIds.get(i), now, now});
+        }
+        insert(INSERT_FILE, fileRows);
+    }
+
+    private static Long getParentId(Path path, Map<String, Long> ids) {
+        final Path parent = path.getParent();
+        if (parent == null || parent.getFileName() == null) {
+            return null;
+        }
+        return ids.get(FileHierarchy.toPathKey(parent.toString()));
+    }
+
+    /**
+     * @return generated ids of the rows, in the same order.
+     */
+    private List<Long> insert(String sql, List<Object[]> rows) {
+        final List<Long> ids = new ArrayList<>(rows.size());
+        for (List<Object[]> chunk : chunks(rows)) {
+            ids.addAll(jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<List<Long>>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql,
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    for (Object[] row : chunk) {
+                        for (int i = 0; i < row.length; i++) {
+                            statement.setObject(i + 1, row[i]);
+                        }
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    return getGeneratedIds(statement, chunk.size());
+                }
+            }));
+        }
+        return ids;
+    }
+
+    private static List<Long> getGeneratedIds(Statement statement, int expectedIds) throws SQLException {
+        final List<Long> ids = new ArrayList<>(expectedIds);
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            while (generatedKeys.next()) {
+                ids.add(generatedKeys.getLong(1));
+            }
+        }
+        if (ids.size() != expectedIds) {
+            throw new SQLException("Expected " + expectedIds + " generated ids but got " + ids.size());
+        }
+        return ids;
+    }
+
+    private <T> List<List<T>> chunks(List<T> list) {
+        final List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < list.size(); start += chunkSize) {
+            chunks.add(list.subList(start, Math.min(list.size(), start + chunkSize)));
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the path as it is stored in the file hierarchy, absolute and normalized, or null if it is empty.
+     */
+    public static String normalize(String originalPath) {
+        if (originalPath == null || originalPath.isEmpty()) {
+            return null;
+        }
+        final String path = originalPath.startsWith("/") ? originalPath : "/" + originalPath;
+        return Paths.get(path).normalize().toString();
+    }
+
+}
@@ -24,13 +24,18 @@ import com.querydsl.core.types.dsl.StringExpression;
 import com.querydsl.core.types.dsl.StringPath;
 import io.micrometer.core.instrument.util.StringUtils;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import org.springframework.data.querydsl.binding.QuerydslBinderCustomizer;
 import org.springframework.data.querydsl.binding.QuerydslBindings;
 import org.springframework.data.querydsl.binding.SingleValueBinding;
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.FileHierarchyException;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
@@ -40,13 +45,16 @@ import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
 import javax.persistence.QueryHint;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
-public interface FileHierarchyRepository extends PagingAndSortingRepository<FileHierarchy, Long>,
+public interface FileHierarchyRepository extends JpaRepository<FileHierarchy, Long>,
         QuerydslPredicateExecutor<FileHierarchy>, QuerydslBinderCustomizer<QFileHierarchy> {
 
     String HINT_FETCH_SIZE_VALUE = "50";
@@ -164,10 +172,22 @@ public interface FileHierarchyRepository extends PagingAndSortingRepository<File
         return findAllByAccountIdAndStagingAreaIdAndFileTypeAndParentPathIsNullAllIgnoreCaseOrderByOriginalPath(accountId, stagingAreaId, FileStructureType.FILE);
     }
 
+    /**
+     * Returns the file or folder of the given path. Condition checks for case insensitive equals AccountId,
+     * StagingAreaId & FilePath, the path is compared through its indexed path key.
+     *
+     * @param filePath
+     *         File path
+     * @param accountId
+     *         Account Id
+     * @param stagingAreaId
+     *         Staging Area Id
+     *
+     * @return Optional of FileHierarchy object
+     */
     default Optional<FileHierarchy> findOne(final String filePath, final String accountId, final String stagingAreaId) {
         final Predicate predicate = Expressions.allOf(
-                Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.originalPath,
-                        Expressions.constant(filePath)),
+                QFileHierarchy.fileHierarchy.pathKey.eq(FileHierarchy.toPathKey(filePath)),
                 Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.accountId,
                         Expressions.constant(accountId)),
                 Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.stagingAreaId,
@@ -175,6 +195,165 @@ public interface FileHierarchyRepository extends PagingAndSortingRepository<File
         return findOne(predicate);
     }
 
+    /**
+     * Method is being called internally.
+     *
+     * @See FileHierarchyRepository#findAllFilesOrFoldersInRootPathRecursiveAfter(String, String, FileStructureType, String, Long, int)
+     */
+    @Query("select h from FileHierarchy h where upper(h.accountId) = upper(:accountId) " +
+            "and upper(h.stagingAreaId) = upper(:stagingAreaId) and h.fileType = :fileType " +
+            "and (h.pathKey > :pathKey or (h.pathKey = :pathKey and h.id > :id))")
+    Slice<FileHierarchy> findAllByAccountIdAndStagingAreaIdAndFileTypeAfter(@Param("accountId") String accountId,
+                                                                            @Param("stagingAreaId") String stagingAreaId,
+                                                                            @Param("fileType") FileStructureType fileStructureType,
+                                                                            @Param("pathKey") String pathKey,
+                                                                            @Param("id") Long id,
+                                                                            Pageable pageable);
+
+    /**
+     * Returns Slice of FileHierarchy object. Condition checks for case insensitive equals AccountId and StagingAreaId
+     * & FileStructureType. Result contains the files or folders whose path key and id come after the given ones, the
+     * cost of a slice does not depend on how many came before it.
+     * Slice is ordered by path key and id, the id orders the files or folders whose path keys are equal.
+     * It is a Recursive result.
+     *
+     * @param accountId
+     *         Account Id
+     * @param stagingAreaId
+     *         Staging Area Id
+     * @param fileStructureType
+     *         FileStructureType File type FILE or FOLDER
+     * @param afterPathKey
+     *         Path key of the last file or folder of the previous slice, null for the first slice
+     * @param afterId
+     *         Id of the last file or folder of the previous slice, null for the first slice
+     * @param size
+     *         Maximum number of files or folders of the slice
+     *
+     * @return Slice of FileHierarchy object
+     */
+    default Slice<FileHierarchy> findAllFilesOrFoldersInRootPathRecursiveAfter(final String accountId, final String stagingAreaId,
+                                                                              final FileStructureType fileStructureType,
+                                                                              final String afterPathKey, final Long afterId,
+                                                                              final int size) {
+        return findAllByAccountIdAndStagingAreaIdAndFileTypeAfter(accountId, stagingAreaId, fileStructureType,
+                afterPathKey == null ? "" : afterPathKey, afterId == null ? Long.MIN_VALUE : afterId,
+                PageRequest.of(0, size, Sort.by("pathKey", "id")));
+    }
+
+    /**
+     * Returns true if the file or folder of the given path exists. Condition checks for case insensitive equals
+     * AccountId, StagingAreaId & FilePath.
+     */
+    default boolean exists(final String filePath, final String accountId, final String stagingAreaId) {
+        final Predicate predicate = Expressions.allOf(
+                QFileHierarchy.fileHierarchy.pathKey.eq(FileHierarchy.toPathKey(filePath)),
+                Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.accountId,
+                        Expressions.constant(accountId)),
+                Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.stagingAreaId,
+                        Expressions.constant(stagingAreaId)));
+        return exists(predicate);
+    }
+
+    /**
+     * Method is being called internally.
+     *
+     * @See FileHierarchyRepository#findAllFilesOrFoldersInPathRecursive(String, String, Path, FileStructureType)
+     */
+    @QueryHints(value = @QueryHint(name = HINT_FETCH_SIZE, value = HINT_FETCH_SIZE_VALUE))
+    Stream<FileHierarchy> findAllByAccountIdIgnoreCaseAndStagingAreaIdIgnoreCaseAndFileTypeAndPathKeyStartingWithOrderByPathKey(String accountId, String stagingAreaId,
+                                                                                                                                 FileStructureType fileStructureType, String pathKeyPrefix);
+
+    /**
+     * Returns Stream of FileHierarchy object. Condition checks for case insensitive equals AccountId and StagingAreaId
+     * & FileStructureType. All the files or folders inside the given folder path will be returned recursively, they
+     * are found with a range scan of the path key index.
+     * Stream is ordered by path key.
+     * It is a Recursive result.
+     *
+     * @param accountId
+     *         Account Id
+     * @param stagingAreaId
+     *         Staging Area Id
+     * @param folderPath
+     *         Folder path
+     * @param fileStructureType
+     *         FileStructureType File type FILE or FOLDER
+     *
+     * @return Stream of FileHierarchy object
+     */
+    default Stream<FileHierarchy> findAllFilesOrFoldersInPathRecursive(final String accountId, final String stagingAreaId,
+                                                                       final Path folderPath, final FileStructureType fileStructureType) {
+        return findAllByAccountIdIgnoreCaseAndStagingAreaIdIgnoreCaseAndFileTypeAndPathKeyStartingWithOrderByPathKey(accountId,
+                stagingAreaId, fileStructureType, toPathKeyPrefix(folderPath));
+    }
+
+    /**
+     * Method is being called internally.
+     *
+     * @See FileHierarchyRepository#countFilesOrFoldersInPathRecursive(String, String, Path, FileStructureType)
+     */
+    long countByAccountIdIgnoreCaseAndStagingAreaIdIgnoreCaseAndFileTypeAndPathKeyStartingWith(String accountId, String stagingAreaId,
+                                                                                             FileStructureType fileStructureType, String pathKeyPrefix);
+
+    /**
+     * Returns the number of files or folders inside the given folder path, recursively. Condition checks for case
+     * insensitive equals AccountId and StagingAreaId & FileStructureType.
+     *
+     * @param accountId
+     *         Account Id
+     * @param stagingAreaId
+     *         Staging Area Id
+     * @param folderPath
+     *         Folder path
+     * @param fileStructureType
+     *         FileStructureType File type FILE or FOLDER
+     *
+     * @return number of files or folders
+     */
+    default long countFilesOrFoldersInPathRecursive(final String accountId, final String stagingAreaId,
+                                                    final Path folderPath, final FileStructureType fileStructureType) {
+        return countByAccountIdIgnoreCaseAndStagingAreaIdIgnoreCaseAndFileTypeAndPathKeyStartingWith(accountId, stagingAreaId,
+                fileStructureType, toPathKeyPrefix(folderPath));
+    }
+
+    /**
+     * @return prefix of the path keys of the files and folders inside the folder path, paths are absolute.
+     */
+    static String toPathKeyPrefix(final Path folderPath) {
+        final String folder = Paths.get("/").resolve(folderPath).normalize().toString();
+        return FileHierarchy.toPathKey(folder.endsWith("/") ? folder : folder + "/");
+    }
+
+    /**
+     * Returns the files or folders with any of the given paths in one query. Condition checks for case insensitive
+     * equals AccountId, StagingAreaId & FilePath.
+     *
+     * @param filePaths
+     *         File paths
+     * @param accountId
+     *         Account Id
+     * @param stagingAreaId
+     *         Staging Area Id
+     *
+     * @return Map of FileHierarchy object by path key
+     */
+    default Map<String, FileHierarchy> findAllByPaths(final List<String> filePaths, final String accountId,
+                                                      final String stagingAreaId) {
+        final List<String> pathKeys = new ArrayList<>(filePaths.size());
+        filePaths.forEach(filePath -> pathKeys.add(FileHierarchy.toPathKey(filePath)));
+        final Predicate predicate = Expressions.allOf(
+                QFileHierarchy.fileHierarchy.pathKey.in(pathKeys),
+                Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.accountId,
+                        Expressions.constant(accountId)),
+                Expressions.predicate(Ops.EQ_IGNORE_CASE, QFileHierarchy.fileHierarchy.stagingAreaId,
+                        Expressions.constant(stagingAreaId)));
+        final Map<String, FileHierarchy> fileHierarchies = new HashMap<>();
+        findAll(predicate).forEach(fileHierarchy ->
+                fileHierarchies.put(fileHierarchy.getPathKey(), fileHierarchy));
+        return fileHierarchies;
+    }
+
     /**
      * Returns Page object of FileHierarchy. Condition checks for case insensitive equals AccountId, StagingAreaId
      * and Predicate given. Result contains all Files inside root path & not Folders.
@@ -211,6 +390,87 @@ public interface FileHierarchyRepository extends PagingAndSortingRepository<File
         return save(createHierarchy(accountId, stagingAreaId, path, fileDetails));
     }
 
+    /**
+     * Same as {@link #saveNewFile(String, String, String, FileDetails)}, but the folders of the file are resolved
+     * through the cache, see {@link #createHierarchy(String, String, String, FileDetails, FolderIdCache)}.
+     */
+    default FileHierarchy saveNewFile(String accountId, String stagingAreaId, String path, FileDetails fileDetails,
+                                      FolderIdCache folderIdCache) throws FileHierarchyException {
+        return save(createHierarchy(accountId, stagingAreaId, path, fileDetails, folderIdCache));
+    }
+
+    /**
+     * Same as {@link #createHierarchy(String, String, String, FileDetails)}, but the parent folder is taken from the
+     * cache when present. Otherwise all the folders of the path are found in one query, and only the missing ones
+     * are saved.
+     */
+    default FileHierarchy createHierarchy(final String accountId, final String stagingAreaId, final String originalPath,
+                                          final FileDetails fileDetails, final FolderIdCache folderIdCache)
+            throws FileHierarchyException {
+        if (StringUtils.isEmpty(originalPath)) {
+            throw new FileHierarchyException("Error in FileHierarchyRepository::createHierarchy(String,String,String,FileDetails,FolderIdCache) => file path is invalid");
+        }
+
+        final String path = originalPath.startsWith("/") ? originalPath : "/" + originalPath;
+        final Path resolvedOriginalPath = Paths.get(path).normalize();
+
+        final Optional<FileHierarchy> fileHierarchy = findOne(resolvedOriginalPath.toString(), accountId, stagingAreaId);
+
+        if (!fileHierarchy.isPresent()) {
+            final FileHierarchy parentFileHierarchy = findOrCreateFolder(resolvedOriginalPath.getParent(), accountId,
+                    stagingAreaId, folderIdCache);
+            return FileHierarchy.file(accountId, stagingAreaId, resolvedOriginalPath.getFileName().toString(), resolvedOriginalPath.toString(), parentFileHierarchy,
+                    fileDetails);
+        }
+        return fileHierarchy.get();
+    }
+
+    /**
+     * @param path
+     *         Folder path
+     * @param accountId
+     *         account id
+     * @param stagingAreaId
+     *         staging area id
+     * @param folderIdCache
+     *         cache of the folder ids
+     *
+     * @return FileHierarchy folder, a reference without its state if it was found in the cache
+     */
+    default FileHierarchy findOrCreateFolder(final Path path, final String accountId, final String stagingAreaId,
+                                             final FolderIdCache folderIdCache) {//TODO Need to make as private method. Supported in java 9
+        if (path == null || path.getFileName() == null) {
+            return null;
+        }
+
+        final Optional<Long> folderId = folderIdCache.get(accountId, stagingAreaId, path.toString());
+        if (folderId.isPresent()) {
+            return getOne(folderId.get());
+        }
+
+        final List<Path> folderPaths = new ArrayList<>();
+        for (Path folderPath = path; folderPath != null && folderPath.getFileName() != null; folderPath = folderPath.getParent()) {
+            folderPaths.add(0, folderPath);
+        }
+        final List<String> folderPathNames = new ArrayList<>(folderPaths.size());
+        folderPaths.forEach(folderPath -> folderPathNames.add(folderPath.toString()));
+        final Map<String, FileHierarchy> existingFolders = findAllByPaths(folderPathNames, accountId, stagingAreaId);
+
+        FileHierarchy parentFileHierarchy = null;
+        for (Path folderPath : folderPaths) {
+            FileHierarchy folder = existingFolders.get(FileHierarchy.toPathKey(folderPath.toString()));
+            if (folder != null) {
+                folderIdCache.put(accountId, stagingAreaId, folderPath.toString(), folder.getId());
+            } else {
+                folder = saveNewFolder(accountId, stagingAreaId, folderPath.getFileName().toString(),
+                        folderPath.toString(), parentFileHierarchy);
+                folderIdCache.putCreated(accountId, stagingAreaId, folderPath.toString(), folder.getId());
+            }
+            parentFileHierarchy = folder;
+        }
+        return parentFileHierarchy;
+    }
+
     default FileHierarchy createHierarchy(final String accountId, final String stagingAreaId, final String originalPath,
                                           final FileDetails fileDetails) throws FileHierarchyException {
         /* More checks can be added if file/folder name has some restrictions.
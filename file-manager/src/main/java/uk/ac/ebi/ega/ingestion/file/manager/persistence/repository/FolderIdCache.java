@@ -0,0 +1,181 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.repository;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bounded cache of the ids of the folders of the file hierarchy by account, staging area and path, compared ignoring
+ * case like {@link FileHierarchyRepository#findOne(String, String, String)}. The least recently used folders are
+ * evicted once the cache is full.
+ * <p>
+ * Folders created in a transaction are only cached once it commits. If a transaction that used the cache rolls back,
+ * all the folders of the staging areas it used are evicted, as the ids it found or created may not exist anymore.
+ */
+public class FolderIdCache {
+
+    private final int maxSize;
+
+    private final Map<Key, Long> folderIds;
+
+    /**
+     * @param maxSize maximum number of folders in the cache, 0 disables the cache.
+     */
+    public FolderIdCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.folderIds = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > FolderIdCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized Optional<Long> get(String accountId, String stagingAreaId, String path) {
+        final Key key = new Key(accountId, stagingAreaId, path);
+        registerUse(key);
+        return Optional.ofNullable(folderIds.get(key));
+    }
+
+    /**
+     * Caches a folder that exists in the database.
+     */
+    public synchronized void put(String accountId, String stagingAreaId, String path, long id) {
+        final Key key = new Key(accountId, stagingAreaId, path);
+        registerUse(key);
+        folderIds.put(key, id);
+    }
+
+    /**
+     * Caches a folder created in the current transaction once it commits, or immediately if there is no transaction.
+     */
+    public synchronized void putCreated(String accountId, String stagingAreaId, String path, long id) {
+        final Key key = new Key(accountId, stagingAreaId, path);
+        final TransactionUse transactionUse = registerUse(key);
+        if (transactionUse != null) {
+            transactionUse.created.put(key, id);
+        } else {
+            folderIds.put(key, id);
+        }
+    }
+
+    public synchronized void evict(String accountId, String stagingAreaId) {
+        evict(new Key(accountId, stagingAreaId, ""));
+    }
+
+    public synchronized int size() {
+        return folderIds.size();
+    }
+
+    private void evict(Key scope) {
+        final Iterator<Key> iterator = folderIds.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().sameScope(scope)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized void onCompletion(TransactionUse transactionUse, boolean committed) {
+        if (committed) {
+            folderIds.putAll(transactionUse.created);
+        } else {
+            transactionUse.scopes.forEach(this::evict);
+        }
+    }
+
+    /**
+     * @return the use of the cache by the current transaction, or null if there is no transaction.
+     */
+    private TransactionUse registerUse(Key key) {
+        if (maxSize == 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        TransactionUse transactionUse = (TransactionUse) TransactionSynchronizationManager.getResource(this);
+        if (transactionUse == null) {
+            transactionUse = new TransactionUse();
+            TransactionSynchronizationManager.bindResource(this, transactionUse);
+            TransactionSynchronizationManager.registerSynchronization(transactionUse);
+        }
+        transactionUse.scopes.add(new Key(key.accountId, key.stagingAreaId, ""));
+        return transactionUse;
+    }
+
+    private class TransactionUse extends TransactionSynchronizationAdapter {
+
+        private final Map<Key, Long> created = new HashMap<>();
+
+        private final Set<Key> scopes = new HashSet<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(FolderIdCache.this);
+            onCompletion(this, status == STATUS_COMMITTED);
+        }
+
+    }
+
+    private static class Key {
+
+        private final String accountId;
+
+        private final String stagingAreaId;
+
+        private final String path;
+
+        Key(String accountId, String stagingAreaId, String path) {
+            this.accountId = accountId.toLowerCase(Locale.ROOT);
+            this.stagingAreaId = stagingAreaId.toLowerCase(Locale.ROOT);
+            this.path = path.toLowerCase(Locale.ROOT);
+        }
+
+        boolean sameScope(Key key) {
+            return accountId.equals(key.accountId) && stagingAreaId.equals(key.stagingAreaId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return sameScope(key) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(accountId, stagingAreaId, path);
+        }
+
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FolderStatistics;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the {@link FolderStatistics} of the folders of the file hierarchy up to date. The changes of the files are
+ * added to the statistics of all their folders with one JDBC batch update, so that the statistics of a folder are
+ * read without visiting the files inside it. Folders are updated in the order of their path key, concurrent
+ * transactions lock their rows in the same order and do not deadlock.
+ */
+public class FolderStatisticsWriter {
+
+    private static final FileStatus[] STATUSES = FileStatus.values();
+
+    private static final String INSERT_MISSING = "insert into FOLDER_STATISTICS (FOLDER_ID, FILE_COUNT, PLAIN_SIZE, " +
+            "ENCRYPTED_SIZE" + statusColumns("") + ") select h.ID, 0, 0, 0" + statusColumns("0") +
+            " from FILE_HIERARCHY h " +
+            "where lower(h.ACCOUNT_ID) = lower(:accountId) and lower(h.STAGING_AREA_ID) = lower(:stagingAreaId) " +
+            "and h.PATH_KEY in (:pathKeys) " +
+            "and not exists (select s.FOLDER_ID from FOLDER_STATISTICS s where s.FOLDER_ID = h.ID)";
+
+    /**
+     * Two transactions that add the first files of the same folder both pass the not exists check, PostgreSQL
+     * waits for the first one and skips the row instead of failing the second one.
+     */
+    private static final String ON_CONFLICT_DO_NOTHING = " on conflict (FOLDER_ID) do nothing";
+
+    private static final String UPDATE = "update FOLDER_STATISTICS set FILE_COUNT = FILE_COUNT + ?, " +
+            "PLAIN_SIZE = PLAIN_SIZE + ?, ENCRYPTED_SIZE = ENCRYPTED_SIZE + ?" + statusIncrements() +
+            " where FOLDER_ID = (select ID from FILE_HIERARCHY where lower(ACCOUNT_ID) = lower(?) " +
+            "and lower(STAGING_AREA_ID) = lower(?) and PATH_KEY = ?)";
+
+    private static final String SELECT_FILES = "select FILE_DETAILS_ID, ACCOUNT_ID, STAGING_AREA_ID, ORIGINAL_PATH " +
+            "from FILE_HIERARCHY where FILE_DETAILS_ID in (:fileDetailsIds)";
+
+    private static final int FILE_COUNT = 0;
+    private static final int PLAIN_SIZE = 1;
+    private static final int ENCRYPTED_SIZE = 2;
+    private static final int FIRST_STATUS = 3;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final int chunkSize;
+
+    private final String insertMissing;
+
+    /**
+     * @param chunkSize maximum number of rows of each JDBC batch and of paths of each query.
+     */
+    public FolderStatisticsWriter(NamedParameterJdbcTemplate jdbcTemplate, int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+        this.insertMissing = isPostgreSql(jdbcTemplate) ? INSERT_MISSING + ON_CONFLICT_DO_NOTHING : INSERT_MISSING;
+    }
+
+    /**
+     * Adds a new file to the statistics of its folders. The folders must have been inserted in the current
+     * transaction or before.
+     */
+    @Transactional(transactionManager = "fileManager_transactionManager", rollbackFor = Exception.class)
+    public void fileAdded(String accountId, String stagingAreaId, String path, long plainSize, long encryptedSize,
+                          FileStatus status) {
+        final Changes changes = new Changes();
+        changes.fileAdded(accountId, stagingAreaId, path, plainSize, encryptedSize, status);
+        write(changes);
+    }
+
+    /**
+     * Moves files from their previous status to their current one in the statistics of their folders.
+     *
+     * @param files          files whose status changed.
+     * @param previousStatus status of the files before the change.
+     */
+    @Transactional(transactionManager = "fileManager_transactionManager", rollbackFor = Exception.class)
+    public void statusChanged(List<FileDetails> files, FileStatus previousStatus) {
+        final Map<Long, FileStatus> statuses = new HashMap<>();
+        files.forEach(fileDetails -> statuses.put(fileDetails.getId(), fileDetails.getStatus()));
+        final List<Long> fileDetailsIds = new ArrayList<>(statuses.keySet());
+
+        final Changes changes = new Changes();
+        for (List<Long> chunk : chunks(fileDetailsIds)) {
+            jdbcTemplate.query(SELECT_FILES, new MapSqlParameterSource("fileDetailsIds", chunk), resultSet -> {
+                final FileStatus status = statuses.get(resultSet.getLong("FILE_DETAILS_ID"));
+                changes.statusChanged(resultSet.getString("ACCOUNT_ID"), resultSet.getString("STAGING_AREA_ID"),
+                        resultSet.getString("ORIGINAL_PATH"), previousStatus, status);
+            });
+        }
+        write(changes);
+    }
+
+    /**
+     * Writes the changes, it must be called in a transaction of the file manager database.
+     */
+    void write(Changes changes) {
+        for (StagingAreaChanges stagingAreaChanges : changes.byStagingArea.values()) {
+            final List<String> pathKeys = new ArrayList<>(stagingAreaChanges.deltas.keySet());
+            for (List<String> chunk : chunks(pathKeys)) {
+                jdbcTemplate.update(insertMissing, new MapSqlParameterSource()
+                        .addValue("accountId", stagingAreaChanges.accountId)
+                        .addValue("stagingAreaId", stagingAreaChanges.stagingAreaId)
+                        .addValue("pathKeys", chunk));
+            }
+
+            final List<Object[]> rows = new ArrayList<>(pathKeys.size());
+            stagingAreaChanges.deltas.forEach((pathKey, delta) -> {
+                final Object[] row = new Object[delta.length + 3];
+                for (int i = 0; i < delta.length; i++) {
+                    row[i] = delta[i];
+                }
+                row[delta.length] = stagingAreaChanges.accountId;
+                row[delta.length + 1] = stagingAreaChanges.stagingAreaId;
+                row[delta.length + 2] = pathKey;
+                rows.add(row);
+            });
+            for (List<Object[]> chunk : chunks(rows)) {
+                jdbcTemplate.getJdbcTemplate().batchUpdate(UPDATE, chunk);
+            }
+        }
+    }
+
+    private <T> List<List<T>> chunks(List<T> list) {
+        final List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < list.size(); start += chunkSize) {
+            chunks.add(list.subList(start, Math.min(list.size(), start + chunkSize)));
+        }
+        return chunks;
+    }
+
+    private static boolean isPostgreSql(NamedParameterJdbcTemplate jdbcTemplate) {
+        try {
+            final Object productName = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getJdbcTemplate().getDataSource(),
+                    "getDatabaseProductName");
+            return "PostgreSQL".equals(productName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Database of the folder statistics could not be identified", e);
+        }
+    }
+
+    private static String statusColumns(String value) {
+        final StringBuilder columns = new StringBuilder();
+        for (FileStatus status : STATUSES) {
+            columns.append(", ").append(value.isEmpty() ? statusColumn(status) : value);
+        }
+        return columns.toString();
+    }
+
+    private static String statusIncrements() {
+        final StringBuilder increments = new StringBuilder();
+        for (FileStatus status : STATUSES) {
+            increments.append(", ").append(statusColumn(status)).append(" = ").append(statusColumn(status))
+                    .append(" + ?");
+        }
+        return increments.toString();
+    }
+
+    private static String statusColumn(FileStatus status) {
+        return status.name() + "_COUNT";
+    }
+
+    /**
+     * Changes to the statistics of the folders, by staging area and by folder path key.
+     */
+    static class Changes {
+
+        private final Map<String, StagingAreaChanges> byStagingArea = new TreeMap<>();
+
+        void fileAdded(String accountId, String stagingAreaId, String path, long plainSize, long encryptedSize,
+                       FileStatus status) {
+            for (long[] delta : getDeltas(accountId, stagingAreaId, path)) {
+                delta[FILE_COUNT]++;
+                delta[PLAIN_SIZE] += plainSize;
+                delta[ENCRYPTED_SIZE] += encryptedSize;
+                delta[FIRST_STATUS + status.ordinal()]++;
+            }
+        }
+
+        void statusChanged(String accountId, String stagingAreaId, String path, FileStatus previousStatus,
+                           FileStatus status) {
+            if (previousStatus == status) {
+                return;
+            }
+            for (long[] delta : getDeltas(accountId, stagingAreaId, path)) {
+                delta[FIRST_STATUS + previousStatus.ordinal()]--;
+                delta[FIRST_STATUS + status.ordinal()]++;
+            }
+        }
+
+        /**
+         * @return deltas of all the folders of the file, files in the root folder have none.
+         */
+        private List<long[]> getDeltas(String accountId, String stagingAreaId, String path) {
+            final StagingAreaChanges stagingAreaChanges = byStagingArea.computeIfAbsent(
+                    accountId.toLowerCase(Locale.ROOT) + "/" + stagingAreaId.toLowerCase(Locale.ROOT),
+                    key -> new StagingAreaChanges(accountId, stagingAreaId));
+            final List<long[]> deltas = new ArrayList<>();
+            for (Path folder = Paths.get(path).getParent(); folder != null && folder.getFileName() != null;
+                 folder = folder.getParent()) {
+                deltas.add(stagingAreaChanges.deltas.computeIfAbsent(FileHierarchy.toPathKey(folder.toString()),
+                        key -> new long[FIRST_STATUS + STATUSES.length]));
+            }
+            return deltas;
+        }
+
+    }
+
+    private static class StagingAreaChanges {
+
+        private final String accountId;
+
+        private final String stagingAreaId;
+
+        private final Map<String, long[]> deltas = new TreeMap<>();
+
+        private StagingAreaChanges(String accountId, String stagingAreaId) {
+            this.accountId = accountId;
+            this.stagingAreaId = stagingAreaId;
+        }
+
+    }
+
+}
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
 import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
 import uk.ac.ebi.ega.fire.ingestion.service.IFireService;
@@ -37,17 +38,27 @@ import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.QFileHierarchy;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileHierarchyBatchWriter;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileHierarchyRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FolderStatistics;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderIdCache;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsWriter;
 import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
 
 import javax.persistence.EntityManager;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -55,56 +66,150 @@ import java.util.stream.Stream;
 
 public class FileManagerService implements IFileManagerService {
 
+    private static final int DEFAULT_FOLDER_ID_CACHE_SIZE = 10000;
+
     private final Logger LOGGER = LoggerFactory.getLogger(FileManagerService.class);
 
     private final IFireService fireService;
     private final Path fireBoxRelativePath;
     private final FileHierarchyRepository fileHierarchyRepository;
     private final EntityManager entityManager;
+    private final FolderIdCache folderIdCache;
+    private final FileHierarchyBatchWriter batchWriter;
+    private final FolderStatisticsWriter folderStatisticsWriter;
+    private final FolderStatisticsRepository folderStatisticsRepository;
 
     public FileManagerService(final IFireService fireService,
                               final Path fireBoxRelativePath,
                               final FileHierarchyRepository fileHierarchyRepository,
                               final EntityManager entityManager) {
+        this(fireService, fireBoxRelativePath, fileHierarchyRepository, entityManager,
+                new FolderIdCache(DEFAULT_FOLDER_ID_CACHE_SIZE));
+    }
+
+    /**
+     * @param folderIdCache cache of the ids of the folders where files are archived, shared by all the archive
+     *                      operations.
+     */
+    public FileManagerService(final IFireService fireService,
+                              final Path fireBoxRelativePath,
+                              final FileHierarchyRepository fileHierarchyRepository,
+                              final EntityManager entityManager,
+                              final FolderIdCache folderIdCache) {
+        this(fireService, fireBoxRelativePath, fileHierarchyRepository, entityManager, folderIdCache, null);
+    }
+
+    /**
+     * @param batchWriter writes the files of each batch archived to the file hierarchy.
+     */
+    public FileManagerService(final IFireService fireService,
+                              final Path fireBoxRelativePath,
+                              final FileHierarchyRepository fileHierarchyRepository,
+                              final EntityManager entityManager,
+                              final FolderIdCache folderIdCache,
+                              final FileHierarchyBatchWriter batchWriter) {
+        this(fireService, fireBoxRelativePath, fileHierarchyRepository, entityManager, folderIdCache, batchWriter,
+                null, null);
+    }
+
+    /**
+     * @param folderStatisticsWriter     adds the archived files to the statistics of their folders, the batch
+     *                                   writer must have been created with the same writer.
+     * @param folderStatisticsRepository reads the statistics of the folders listed.
+     */
+    public FileManagerService(final IFireService fireService,
+                              final Path fireBoxRelativePath,
+                              final FileHierarchyRepository fileHierarchyRepository,
+                              final EntityManager entityManager,
+                              final FolderIdCache folderIdCache,
+                              final FileHierarchyBatchWriter batchWriter,
+                              final FolderStatisticsWriter folderStatisticsWriter,
+                              final FolderStatisticsRepository folderStatisticsRepository) {
         this.fireService = fireService;
         this.fireBoxRelativePath = fireBoxRelativePath;
         this.fileHierarchyRepository = fileHierarchyRepository;
         this.entityManager = entityManager;
+        this.folderIdCache = folderIdCache;
+        this.batchWriter = batchWriter;
+        this.folderStatisticsWriter = folderStatisticsWriter;
+        this.folderStatisticsRepository = folderStatisticsRepository;
     }
 
     @Override
     @Transactional(transactionManager = "fileManagerFireChainedTransactionManager", rollbackFor = Exception.class)
     public void archive(final ArchiveEvent archiveEvent) throws IOException, FileHierarchyException {
-        final char[] password = FileUtils.readPasswordFile(Paths.get(archiveEvent.getKeyPath()));
+        addFile(archiveInFire(archiveEvent, archiveEvent.getOriginalPath()));
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(transactionManager = "fileManagerFireChainedTransactionManager", rollbackFor = Exception.class)
+    public Map<ArchiveEvent, Exception> archive(final List<ArchiveEvent> archiveEvents) throws IOException {
+        if (batchWriter == null) {
+            throw new IllegalStateException("Archive of batches of files is not configured");
+        }
+        final Map<ArchiveEvent, Exception> failures = new LinkedHashMap<>();
+
+        // The files are archived in FIRE one at a time in the transaction of the batch, they are rolled back with the
+        // hierarchy
+        final List<ArchivedFile> archivedFiles = new ArrayList<>(archiveEvents.size());
+        for (ArchiveEvent archiveEvent : archiveEvents) {
+            final String path = FileHierarchyBatchWriter.normalize(archiveEvent.getOriginalPath());
+            if (path == null || Paths.get(path).getFileName() == null) {
+                failures.put(archiveEvent, new FileHierarchyException("Error in FileManagerService::archive(List) => " +
+                        "file path is invalid '" + archiveEvent.getOriginalPath() + "'"));
+                continue;
+            }
+            final char[] password;
+            try {
+                password = FileUtils.readPasswordFile(Paths.get(archiveEvent.getKeyPath()));
+            } catch (IOException | InvalidPathException e) {
+                failures.put(archiveEvent, e);
+                continue;
+            }
+            archivedFiles.add(archiveInFire(archiveEvent, path, password));
+        }
+
+        if (!archivedFiles.isEmpty()) {
+            batchWriter.write(archivedFiles);
+        }
+        return failures;
+    }
+
+    private ArchivedFile archiveInFire(final ArchiveEvent archiveEvent, final String path) throws IOException {
+        return archiveInFire(archiveEvent, path, FileUtils.readPasswordFile(Paths.get(archiveEvent.getKeyPath())));
+    }
+
+    private ArchivedFile archiveInFire(final ArchiveEvent archiveEvent, final String path, final char[] password)
+            throws IOException {
         Path relativePathInFire = fireBoxRelativePath.resolve(archiveEvent.getStagingAreaId());
         final Optional<Long> fireId = fireService.archiveFile(null, new File(archiveEvent.getStagingPath()),
                 archiveEvent.getEncryptedMd5(), relativePathInFire.toString());
         Path completePathInFire = relativePathInFire.resolve(new File(archiveEvent.getStagingPath()).getName());
 
-        ArchivedFile fileToBeArchived = new ArchivedFile(
+        return new ArchivedFile(
                 archiveEvent.getAccountId(),
                 archiveEvent.getStagingAreaId(),
                 fireId.get(),
                 completePathInFire.toString(),
-                archiveEvent.getOriginalPath(),
+                path,
                 archiveEvent.getPlainSize(),
                 archiveEvent.getPlainMd5(),
+                archiveEvent.getPlainSha256(),
                 archiveEvent.getEncryptedSize(),
                 archiveEvent.getEncryptedMd5(),
                 password
         );
-
-        addFile(fileToBeArchived);
     }
 
     @Override
     public List<FileHierarchyModel> findAllFilesAndFoldersInPathNonRecursive(final String accountId, final String stagingAreaId,
                                                                              final Path filePath) throws FileNotFoundException {
         if (StringUtils.isEmpty(filePath.toString())) {
-            return fileHierarchyRepository.findAllFilesAndFoldersInPathNonRecursive(accountId, stagingAreaId).stream().
-                    map(fileHierarchyFileAndFolderTypeMapEntityToModel()).
-                    collect(Collectors.toList());
+            return toFileAndFolderModels(fileHierarchyRepository.findAllFilesAndFoldersInPathNonRecursive(accountId,
+                    stagingAreaId));
         }
 
         final Optional<FileHierarchy> optionalFileHierarchy = fileHierarchyRepository.findOne(filePath.normalize().toString(),
@@ -114,7 +219,25 @@ public class FileManagerService implements IFileManagerService {
         if (FileStructureType.FILE.equals(fileHierarchy.getFileType())) {
             return Collections.singletonList(fileHierarchy.toFile());
         }
-        return fileHierarchy.getChildPaths().stream().map(fileHierarchyFileAndFolderTypeMapEntityToModel()).
+        return toFileAndFolderModels(fileHierarchy.getChildPaths());
+    }
+
+    /**
+     * The statistics of all the folders are read with one query.
+     */
+    private List<FileHierarchyModel> toFileAndFolderModels(final List<FileHierarchy> fileHierarchies) {
+        final Map<Long, FolderStatistics> folderStatistics = new HashMap<>();
+        if (folderStatisticsRepository != null) {
+            final List<Long> folderIds = fileHierarchies.stream().
+                    filter(fileHierarchy -> FileStructureType.FOLDER.equals(fileHierarchy.getFileType())).
+                    map(FileHierarchy::getId).
+                    collect(Collectors.toList());
+            if (!folderIds.isEmpty()) {
+                folderStatisticsRepository.findAllById(folderIds).forEach(statistics ->
+                        folderStatistics.put(statistics.getFolderId(), statistics));
+            }
+        }
+        return fileHierarchies.stream().map(fileHierarchyFileAndFolderTypeMapEntityToModel(folderStatistics)).
                 collect(Collectors.toList());
     }
 
@@ -135,6 +258,17 @@ public class FileManagerService implements IFileManagerService {
         return new PageImpl<>(fileHierarchyPage.stream().map(FileHierarchy::toFile).collect(Collectors.toList()));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<FileHierarchyModel> findAllFilesInRootPathRecursiveAfter(final String accountId, final String stagingAreaId,
+                                                                          final String afterPathKey, final Long afterId,
+                                                                          final int size) {
+        return fileHierarchyRepository.findAllFilesOrFoldersInRootPathRecursiveAfter(accountId, stagingAreaId,
+                FileStructureType.FILE, afterPathKey, afterId, size).map(fileHierarchyFileTypeMapEntityToModel());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -178,25 +312,33 @@ public class FileManagerService implements IFileManagerService {
         };
     }
 
-    private Function<FileHierarchy, FileHierarchyModel> fileHierarchyFileAndFolderTypeMapEntityToModel() {
+    private Function<FileHierarchy, FileHierarchyModel> fileHierarchyFileAndFolderTypeMapEntityToModel(
+            final Map<Long, FolderStatistics> folderStatistics) {
         return fileHierarchyLocal -> {
             if (FileStructureType.FILE.equals(fileHierarchyLocal.getFileType())) {
                 return fileHierarchyLocal.toFile();
             }
-            return fileHierarchyLocal.toFolder();
+            final FolderStatistics statistics = folderStatistics.get(fileHierarchyLocal.getId());
+            return fileHierarchyLocal.toFolder(statistics == null ? null : statistics.toModel());
         };
     }
 
     private void addFile(ArchivedFile fileToBeArchived) throws FileHierarchyException {
         try {
             final FileDetails fileDetails = new FileDetails(fileToBeArchived.getDosPath(),
-                    fileToBeArchived.getPlainSize(), fileToBeArchived.getPlainMd5(),
+                    fileToBeArchived.getPlainSize(), fileToBeArchived.getPlainMd5(), fileToBeArchived.getPlainSha256(),
                     fileToBeArchived.getEncryptedSize(), fileToBeArchived.getEncryptedMd5(),
                     new String(fileToBeArchived.getKey()),
                     FileStatus.ARCHIVE_IN_PROGRESS,
                     fileToBeArchived.getFireId());
-            fileHierarchyRepository.saveNewFile(fileToBeArchived.getAccountId(), fileToBeArchived.getStagingAreaId(),
-                    fileToBeArchived.getPath(), fileDetails);
+            final FileHierarchy fileHierarchy = fileHierarchyRepository.saveNewFile(fileToBeArchived.getAccountId(),
+                    fileToBeArchived.getStagingAreaId(), fileToBeArchived.getPath(), fileDetails, folderIdCache);
+            // A file that already existed keeps its details and is already in the statistics
+            if (folderStatisticsWriter != null && fileHierarchy.getFileDetails() == fileDetails) {
+                folderStatisticsWriter.fileAdded(fileHierarchy.getAccountId(), fileHierarchy.getStagingAreaId(),
+                        fileHierarchy.getOriginalPath(), fileDetails.getPlainSize(), fileDetails.getEncryptedSize(),
+                        fileDetails.getStatus());
+            }
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
             throw new FileHierarchyException("Exception while creating file structure => " +
@@ -20,12 +20,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uk.ac.ebi.ega.fire.ingestion.service.IFireService;
 import uk.ac.ebi.ega.fire.models.OldFireFile;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileDetailsRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderStatisticsWriter;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,13 +42,35 @@ public class FileStatusUpdaterService implements IFileStatusUpdaterService {
     private final FileDetailsRepository fileDetailsRepository;
     private final IFireService fireService;
     private final int batchSize;
+    private final FolderStatisticsWriter folderStatisticsWriter;
+    private final TransactionTemplate transactionTemplate;
 
     public FileStatusUpdaterService(final FileDetailsRepository fileDetailsRepository,
                                     final IFireService fireService,
                                     final int batchSize) {
+        this(fileDetailsRepository, fireService, batchSize, null, null);
+    }
+
+    /**
+     * @param folderStatisticsWriter moves the files whose status is updated to their new status in the statistics
+     *                               of their folders, null if folder statistics are not maintained.
+     * @param transactionManager     transaction manager of the file manager database, the statuses of the files of a
+     *                               page and the statistics of their folders are committed together so that the
+     *                               statistics never drift from the statuses.
+     */
+    public FileStatusUpdaterService(final FileDetailsRepository fileDetailsRepository,
+                                    final IFireService fireService,
+                                    final int batchSize,
+                                    final FolderStatisticsWriter folderStatisticsWriter,
+                                    final PlatformTransactionManager transactionManager) {
+        if (folderStatisticsWriter != null && transactionManager == null) {
+            throw new IllegalArgumentException("Folder statistics can only be maintained in a transaction");
+        }
         this.fileDetailsRepository = fileDetailsRepository;
         this.fireService = fireService;
         this.batchSize = batchSize;
+        this.folderStatisticsWriter = folderStatisticsWriter;
+        this.transactionTemplate = transactionManager == null ? null : new TransactionTemplate(transactionManager);
     }
 
     @Override
@@ -82,7 +108,14 @@ public class FileStatusUpdaterService implements IFileStatusUpdaterService {
         final List<OldFireFile> filesInFire = getFilesInFireCorrespondingTo(localFilesBeingArchived);
         LOGGER.trace("The files in Fire, whose status will be used to update the local files which are being archived: {}",
                 filesInFire);
-        updateStatusesBasedOn(filesInFire, localFilesBeingArchived);
+        if (transactionTemplate == null) {
+            updateStatusesBasedOn(filesInFire, localFilesBeingArchived);
+        } else {
+            transactionTemplate.execute(transactionStatus -> {
+                updateStatusesBasedOn(filesInFire, localFilesBeingArchived);
+                return null;
+            });
+        }
     }
 
     private List<OldFireFile> getFilesInFireCorrespondingTo(final List<FileDetails> localFilesBeingArchived) {
@@ -100,6 +133,8 @@ public class FileStatusUpdaterService implements IFileStatusUpdaterService {
         final Map<Long, Optional<FileStatus>> fireIdsToFileStatuses = getFireIdsAndFileStatusesOf(filesInFire);
         LOGGER.trace("Map<\"FireId in Fire\", \"current FileStatus in Fire\">: {}", fireIdsToFileStatuses);
 
+        final List<FileDetails> updatedFiles = new ArrayList<>();
+
         for (final FileDetails localFileBeingArchived : localFilesBeingArchived) {
             final Long fireIdOfLocalFileBeingArchived = localFileBeingArchived.getFireId();
             final Long fireId = fireIdOfLocalFileBeingArchived;
@@ -115,12 +150,17 @@ public class FileStatusUpdaterService implements IFileStatusUpdaterService {
                 LOGGER.trace("Local file {} will be updated with status {}", localFileBeingArchived, optionalFileStatus);
                 localFileBeingArchived.setStatus(fileStatusOfFileInFire);
                 fileDetailsRepository.save(localFileBeingArchived);
+                updatedFiles.add(localFileBeingArchived);
             } else {
                 final String message = String.format("The status of %s was not updated because " +
                                 "the new status could not be determined.", localFileBeingArchived);
                 LOGGER.error(message);
             }
         }
+
+        if (folderStatisticsWriter != null && !updatedFiles.isEmpty()) {
+            folderStatisticsWriter.statusChanged(updatedFiles, FileStatus.ARCHIVE_IN_PROGRESS);
+        }
     }
 
     /**
@@ -20,6 +20,7 @@ package uk.ac.ebi.ega.ingestion.file.manager.services;
 import com.querydsl.core.types.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import uk.ac.ebi.ega.ingestion.commons.messages.ArchiveEvent;
 import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.FileHierarchyException;
 import uk.ac.ebi.ega.ingestion.file.manager.models.FileHierarchyModel;
@@ -28,12 +29,27 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 public interface IFileManagerService {
 
     void archive(ArchiveEvent archiveEvent) throws IOException, FileHierarchyException;
 
+    /**
+     * Archives a batch of files. The files are archived in FIRE and written to the file hierarchy in one transaction
+     * of both databases. A file whose path or password file is not valid is left out of the batch and reported, any
+     * other failure rolls back the whole batch, callers can then archive its files one at a time with
+     * {@link #archive(ArchiveEvent)}.
+     *
+     * @param archiveEvents
+     *         Files to archive
+     *
+     * @return Exception of each file left out of the batch, by its event.
+     * @throws IOException if the batch could not be archived, nothing was archived.
+     */
+    Map<ArchiveEvent, Exception> archive(List<ArchiveEvent> archiveEvents) throws IOException;
+
     /**
      * Returns List of FileHierarchyModel. Condition checks for case insensitive equals AccountId, StagingAreaId
      * & FilePath; Result contains both Files & Folders inside given filePath but no Children.
@@ -73,6 +89,30 @@ public interface IFileManagerService {
      */
     Page<FileHierarchyModel> findAllFilesInRootPathRecursive(String accountId, String stagingAreaId, Predicate predicate, Pageable pageable) throws FileNotFoundException;
 
+    /**
+     * Returns Slice of FileHierarchyModel. Condition checks for case insensitive equals AccountId & StagingAreaId.
+     * Result contains the Files inside root path & not Folders whose path key and id come after the given ones, so
+     * that every slice costs the same however deep it is.
+     * Slice will have no records if no data found.
+     * Slice is ordered by path key and id.
+     * It is a Recursive result.
+     *
+     * @param accountId
+     *         Account Id
+     * @param stagingAreaId
+     *         Staging Area Id
+     * @param afterPathKey
+     *         Path key of the last file of the previous slice, null for the first slice
+     * @param afterId
+     *         Id of the last file of the previous slice, null for the first slice
+     * @param size
+     *         Maximum number of files of the slice
+     *
+     * @return Slice of FileHierarchyModel.
+     */
+    Slice<FileHierarchyModel> findAllFilesInRootPathRecursiveAfter(String accountId, String stagingAreaId, String afterPathKey,
+                                                                   Long afterId, int size);
+
     /**
      * Returns Stream of FileHierarchyModel for given filePath. If filePath is a file, then file will be returned.
      * If filePath is a Folder path then all files under this folder will be returned. In case if Path is null then files at
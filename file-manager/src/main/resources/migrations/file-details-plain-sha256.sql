@@ -0,0 +1,3 @@
+-- Adds the sha256 of the plain file computed by the encryption processor, used to check the integrity of the
+-- archived files. Run once on databases created before PLAIN_SHA256, the files already archived keep a null sha256.
+alter table FILE_DETAILS add column PLAIN_SHA256 varchar(255);
@@ -0,0 +1,9 @@
+-- Adds the lower case materialised path of FILE_HIERARCHY used to find files and folders by path and to list or
+-- count the contents of a folder with a range scan of PATH_KEY_INDEX. Run once on databases created before PATH_KEY.
+begin transaction;
+alter table FILE_HIERARCHY add column PATH_KEY varchar(4096);
+update FILE_HIERARCHY set PATH_KEY = lower(ORIGINAL_PATH);
+alter table FILE_HIERARCHY alter column PATH_KEY set not null;
+create index PATH_KEY_INDEX on FILE_HIERARCHY (PATH_KEY varchar_pattern_ops);
+create index PARENT_ID_INDEX on FILE_HIERARCHY (PARENT_ID);
+commit;
@@ -0,0 +1,3 @@
+-- Index of the listings of the files of a staging area paginated with cursors, each page is a range scan that starts
+-- after the path key and id of the cursor. Run once on databases created before FILE_LISTING_INDEX.
+create index FILE_LISTING_INDEX on FILE_HIERARCHY (upper(ACCOUNT_ID), upper(STAGING_AREA_ID), FILE_TYPE, PATH_KEY, ID);
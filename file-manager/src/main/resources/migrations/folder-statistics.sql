@@ -0,0 +1,34 @@
+-- Creates the statistics of the folders of FILE_HIERARCHY from the files already archived, they are maintained
+-- incrementally afterwards. Run once on databases created before FOLDER_STATISTICS, after file-hierarchy-path-key.sql
+-- and while no file is being archived.
+begin transaction;
+create table FOLDER_STATISTICS
+(
+    FOLDER_ID                   bigint primary key,
+    FILE_COUNT                  bigint not null,
+    PLAIN_SIZE                  bigint not null,
+    ENCRYPTED_SIZE              bigint not null,
+    ARCHIVE_IN_PROGRESS_COUNT   bigint not null,
+    ARCHIVED_SUCCESSFULLY_COUNT bigint not null,
+    ERROR_COUNT                 bigint not null,
+    CONSTRAINT FK_FOLDER_ID FOREIGN KEY (FOLDER_ID) REFERENCES FILE_HIERARCHY (ID) ON DELETE CASCADE
+);
+insert into FOLDER_STATISTICS (FOLDER_ID, FILE_COUNT, PLAIN_SIZE, ENCRYPTED_SIZE, ARCHIVE_IN_PROGRESS_COUNT,
+                               ARCHIVED_SUCCESSFULLY_COUNT, ERROR_COUNT)
+select FOLDERS.ID,
+       count(DETAILS.ID),
+       coalesce(sum(DETAILS.PLAIN_SIZE), 0),
+       coalesce(sum(DETAILS.ENCRYPTED_SIZE), 0),
+       count(case when DETAILS.STATUS = 'ARCHIVE_IN_PROGRESS' then 1 end),
+       count(case when DETAILS.STATUS = 'ARCHIVED_SUCCESSFULLY' then 1 end),
+       count(case when DETAILS.STATUS = 'ERROR' then 1 end)
+from FILE_HIERARCHY FOLDERS
+         left join FILE_HIERARCHY FILES
+                   on FILES.FILE_TYPE = 'FILE'
+                       and lower(FILES.ACCOUNT_ID) = lower(FOLDERS.ACCOUNT_ID)
+                       and lower(FILES.STAGING_AREA_ID) = lower(FOLDERS.STAGING_AREA_ID)
+                       and left(FILES.PATH_KEY, length(FOLDERS.PATH_KEY) + 1) = FOLDERS.PATH_KEY || '/'
+         left join FILE_DETAILS DETAILS on DETAILS.ID = FILES.FILE_DETAILS_ID
+where FOLDERS.FILE_TYPE = 'FOLDER'
+group by FOLDERS.ID;
+commit;
@@ -8,6 +8,7 @@ drop table if exists DOWNLOAD_BOX_JOB cascade;
 drop table if exists HISTORIC_DOWNLOAD_BOX_ASSIGNATION cascade;
 drop table if exists DOWNLOAD_BOX_ASSIGNATION cascade;
 drop table if exists DOWNLOAD_BOX cascade;
+drop table if exists FOLDER_STATISTICS cascade;
 drop table if exists FILE_HIERARCHY cascade;
 drop table if exists FILE_DETAILS cascade;
 
@@ -134,6 +135,7 @@ create table FILE_DETAILS
     ENCRYPTED_SIZE  bigint       not null,
     KEY		        varchar(255) not null,
     PLAIN_MD5       varchar(255) not null,
+    PLAIN_SHA256    varchar(255),
     PLAIN_SIZE      bigint       not null,
     DOS_PATH        varchar(255) not null,
     STATUS          varchar(255) not null,
@@ -150,6 +152,7 @@ create table FILE_HIERARCHY
     FILE_TYPE       varchar(255)  not null,
     NAME            varchar(255)  not null,
     ORIGINAL_PATH   varchar(4096) not null,
+    PATH_KEY        varchar(4096) not null,
     STAGING_AREA_ID varchar(255)  not null,
     UPDATED_DATE    timestamp     not null,
     FILE_DETAILS_ID bigint,
@@ -159,4 +162,19 @@ create table FILE_HIERARCHY
     CONSTRAINT FK_PARENT_ID FOREIGN KEY (PARENT_ID) REFERENCES FILE_HIERARCHY (ID)
 );
 
-create index FILEPATH_INDEX on FILE_HIERARCHY (ORIGINAL_PATH);
\ No newline at end of file
+create index FILEPATH_INDEX on FILE_HIERARCHY (ORIGINAL_PATH);
+create index PATH_KEY_INDEX on FILE_HIERARCHY (PATH_KEY varchar_pattern_ops);
+create index PARENT_ID_INDEX on FILE_HIERARCHY (PARENT_ID);
+create index FILE_LISTING_INDEX on FILE_HIERARCHY (upper(ACCOUNT_ID), upper(STAGING_AREA_ID), FILE_TYPE, PATH_KEY, ID);
+
+create table FOLDER_STATISTICS
+(
+    FOLDER_ID                   bigint primary key,
+    FILE_COUNT                  bigint not null,
+    PLAIN_SIZE                  bigint not null,
+    ENCRYPTED_SIZE              bigint not null,
+    ARCHIVE_IN_PROGRESS_COUNT   bigint not null,
+    ARCHIVED_SUCCESSFULLY_COUNT bigint not null,
+    ERROR_COUNT                 bigint not null,
+    CONSTRAINT FK_FOLDER_ID FOREIGN KEY (FOLDER_ID) REFERENCES FILE_HIERARCHY (ID) ON DELETE CASCADE
+);
\ No newline at end of file
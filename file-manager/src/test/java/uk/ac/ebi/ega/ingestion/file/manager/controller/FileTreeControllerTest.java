@@ -0,0 +1,152 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import uk.ac.ebi.ega.ingestion.file.manager.models.FileDetailsModel;
+import uk.ac.ebi.ega.ingestion.file.manager.models.FileHierarchyModel;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.services.IFileManagerService;
+import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class FileTreeControllerTest {
+
+    private IFileManagerService fileManagerService;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        fileManagerService = Mockito.mock(IFileManagerService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileTreeController(fileManagerService))
+                .setControllerAdvice(new RestControllerAdvice(new StaticMessageSource()))
+                .build();
+    }
+
+    @Test
+    public void getAllFilesAfterCursor_WhenCursorOfPreviousPageIsPassed_ThenReturnsNextPage() throws Exception {
+        when(fileManagerService.findAllFilesInRootPathRecursiveAfter("ega-account-01", "ega-staging-01", null, null, 2))
+                .thenReturn(new SliceImpl<>(Arrays.asList(createFile(7L, "/test/a.bam"), createFile(3L, "/Test/B.bam")),
+                        PageRequest.of(0, 2), true));
+        when(fileManagerService.findAllFilesInRootPathRecursiveAfter("ega-account-01", "ega-staging-01", "/test/b.bam", 3L, 2))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(createFile(5L, "/test/c.bam")),
+                        PageRequest.of(0, 2), false));
+
+        final MvcResult first = mockMvc.perform(get("/file/tree/cursor/ega-account-01/ega-staging-01").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.files.length()").value(2))
+                .andExpect(jsonPath("$.links[0].rel").value("next"))
+                .andReturn();
+        final String nextCursor = new ObjectMapper().readTree(first.getResponse().getContentAsString())
+                .get("nextCursor").asText();
+
+        mockMvc.perform(get("/file/tree/cursor/ega-account-01/ega-staging-01").param("size", "2")
+                .param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.files.length()").value(1))
+                .andExpect(jsonPath("$.files[0].name").value("c.bam"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(fileManagerService).findAllFilesInRootPathRecursiveAfter("ega-account-01", "ega-staging-01",
+                "/test/b.bam", 3L, 2);
+    }
+
+    @Test
+    public void cursor_WhenEncodedAndDecoded_ThenKeepsPathKeyAndId() throws Exception {
+        final ControllerUtils.Cursor cursor = ControllerUtils.decodeCursor(
+                ControllerUtils.encodeCursor("/test/folder:with:colons/a.bam", 42L));
+
+        assertEquals("/test/folder:with:colons/a.bam", cursor.getPathKey());
+        assertEquals(42L, cursor.getId());
+    }
+
+    @Test
+    public void getAllFilesAfterCursor_WhenPageSizeIsTooLarge_ThenCapsIt() throws Exception {
+        when(fileManagerService.findAllFilesInRootPathRecursiveAfter("ega-account-01", "ega-staging-01", null, null, 10000))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 10000), false));
+
+        mockMvc.perform(get("/file/tree/cursor/ega-account-01/ega-staging-01").param("size", "1000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.files.length()").value(0));
+
+        verify(fileManagerService).findAllFilesInRootPathRecursiveAfter(anyString(), anyString(), isNull(), isNull(),
+                eq(10000));
+    }
+
+    @Test
+    public void getAllFilesAfterCursor_WhenCursorIsNotBase64_ThenReturnsBadRequest() throws Exception {
+        assertBadRequest("not a cursor!");
+    }
+
+    @Test
+    public void getAllFilesAfterCursor_WhenCursorHasNoId_ThenReturnsBadRequest() throws Exception {
+        assertBadRequest(encode("/test/a.bam"));
+    }
+
+    @Test
+    public void getAllFilesAfterCursor_WhenCursorIdIsNotANumber_ThenReturnsBadRequest() throws Exception {
+        assertBadRequest(encode("id:/test/a.bam"));
+    }
+
+    private void assertBadRequest(final String cursor) throws Exception {
+        mockMvc.perform(get("/file/tree/cursor/ega-account-01/ega-staging-01").param("cursor", cursor))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason("Cursor is not valid"));
+
+        verifyZeroInteractions(fileManagerService);
+    }
+
+    private static String encode(final String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FileHierarchyModel createFile(final Long id, final String path) {
+        final LocalDateTime now = LocalDateTime.now();
+        final FileDetailsModel fileDetails = new FileDetailsModel(id, "/fire/" + id, 100L, "plain-md5", 200L,
+                "encrypted-md5", "key", FileStatus.ARCHIVED_SUCCESSFULLY, now, now);
+        return FileHierarchyModel.file(id, "ega-account-01", "ega-staging-01", path.substring(path.lastIndexOf('/') + 1),
+                path, FileStructureType.FILE, now, now, fileDetails);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.FileHierarchyException;
+import uk.ac.ebi.ega.ingestion.file.manager.models.ArchivedFile;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@AutoConfigureDataJpa
+@AutoConfigureTestDatabase
+@AutoConfigureTestEntityManager
+@TestPropertySource(locations = "classpath:test.properties")
+public class FileHierarchyBatchWriterTest {
+
+    @Autowired
+    private FileHierarchyRepository fileHierarchyRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private FolderIdCache folderIdCache;
+
+    private FileHierarchyBatchWriter batchWriter;
+
+    @TestConfiguration
+    @EnableJpaRepositories(basePackages = {"uk.ac.ebi.ega.ingestion.file.manager.persistence.repository"})
+    @EntityScan(basePackages = {"uk.ac.ebi.ega.ingestion.file.manager.persistence.entities"})
+    @EnableJpaAuditing
+    static class Configuration {
+
+    }
+
+    @Before
+    public void init() {
+        folderIdCache = new FolderIdCache(10);
+        batchWriter = new FileHierarchyBatchWriter(new NamedParameterJdbcTemplate(dataSource), folderIdCache, 2);
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void write_CreatesFoldersOnceAndFiles() {
+        batchWriter.write(Arrays.asList(
+                createArchivedFile("/test/folder/test1.bam"),
+                createArchivedFile("/test/folder/test2.bam"),
+                createArchivedFile("/test/other/test3.bam"),
+                createArchivedFile("/test4.bam")));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        final Optional<FileHierarchy> test = fileHierarchyRepository.findOne("/test", "ega-account-01", "ega-staging-01");
+        assertTrue(test.isPresent());
+        assertEquals(2, test.get().getChildPaths().size());
+        final Optional<FileHierarchy> folder = fileHierarchyRepository.findOne("/test/folder", "ega-account-01", "ega-staging-01");
+        assertTrue(folder.isPresent());
+        assertEquals(FileStructureType.FOLDER, folder.get().getFileType());
+        assertEquals(2, folder.get().getChildPaths().size());
+        final Optional<FileHierarchy> file = fileHierarchyRepository.findOne("/test4.bam", "ega-account-01", "ega-staging-01");
+        assertTrue(file.isPresent());
+        assertNull(file.get().getParentPath());
+        assertEquals(FileStatus.ARCHIVE_IN_PROGRESS, file.get().getFileDetails().getStatus());
+        assertEquals("45C5A3A2B1A7A0E1B8B3C0A6D13A0D8E67A5B6E4B3BB3E2F5C7E1D9A3F8E6B21",
+                file.get().getFileDetails().getPlainSha256());
+        assertTrue(folderIdCache.get("ega-account-01", "ega-staging-01", "/test/folder").isPresent());
+        TestTransaction.end();
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void write_SkipsExistingAndRepeatedFiles() throws FileHierarchyException {
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/test1.bam", createFileDetails());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        batchWriter.write(Arrays.asList(
+                createArchivedFile("/test/test1.bam"),
+                createArchivedFile("/test/test2.bam"),
+                createArchivedFile("/test/test2.bam")));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        final Optional<FileHierarchy> test = fileHierarchyRepository.findOne("/test", "ega-account-01", "ega-staging-01");
+        assertTrue(test.isPresent());
+        assertEquals(2, test.get().getChildPaths().size());
+        TestTransaction.end();
+    }
+
+    private ArchivedFile createArchivedFile(String path) {
+        return new ArchivedFile("ega-account-01", "ega-staging-01", 12L,
+                "/box/ega-box-01/ega-box-01-012345677890.cip", path, 26L, "3C130EA5D8D2D3DACA7F6808CDF0F148",
+                "45C5A3A2B1A7A0E1B8B3C0A6D13A0D8E67A5B6E4B3BB3E2F5C7E1D9A3F8E6B21", 42L,
+                "3C130EA5D8D2D3DACA7F6808CDF0F149", "password".toCharArray());
+    }
+
+    private FileDetails createFileDetails() {
+        return new FileDetails(
+                "/box/ega-box-01/ega-box-01-012345677890.cip",
+                26L,
+                "3C130EA5D8D2D3DACA7F6808CDF0F148",
+                42L,
+                "3C130EA5D8D2D3DACA7F6808CDF0F149",
+                "password",
+                FileStatus.ARCHIVE_IN_PROGRESS,
+                12L
+        );
+    }
+
+}
@@ -25,6 +25,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.test.context.TestPropertySource;
@@ -38,10 +39,12 @@ import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
 import uk.ac.ebi.ega.ingestion.file.manager.utils.FileStructureType;
 import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
 
+import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -131,6 +134,84 @@ public class FileHierarchyRepositoryTest {
         TestTransaction.end();
     }
 
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void saveFilesInDirectoryWithFolderIdCache() throws FileHierarchyException {
+        final FolderIdCache folderIdCache = new FolderIdCache(10);
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/folder/test1.bam", createFileDetails());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/folder/test2.bam", createFileDetails(),
+                folderIdCache);
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/TEST/folder/other/test3.bam", createFileDetails(),
+                folderIdCache);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        assertTrue(folderIdCache.get("ega-account-01", "ega-staging-01", "/test/folder").isPresent());
+        assertTrue(folderIdCache.get("ega-account-01", "ega-staging-01", "/test/folder/other").isPresent());
+        final Optional<FileHierarchy> byOriginalPath = fileHierarchyRepository.findOne("/test/folder", "ega-account-01", "ega-staging-01");
+        assertTrue(byOriginalPath.isPresent());
+        assertEquals(3, byOriginalPath.get().getChildPaths().size());
+        TestTransaction.end();
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void findAndCountFilesInPathRecursive() throws FileHierarchyException {
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/folder/test1.bam", createFileDetails());
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/folder/other/test2.bam", createFileDetails());
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/folder2/test3.bam", createFileDetails());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        final Object[] files = fileHierarchyRepository.findAllFilesOrFoldersInPathRecursive("ega-account-01",
+                "ega-staging-01", Paths.get("/TEST/Folder"), FileStructureType.FILE).toArray();
+        assertEquals(2, files.length);
+        assertEquals("/test/folder/other/test2.bam", ((FileHierarchy) files[0]).getOriginalPath());
+        assertEquals("/test/folder/test1.bam", ((FileHierarchy) files[1]).getOriginalPath());
+        assertEquals(2, fileHierarchyRepository.countFilesOrFoldersInPathRecursive("ega-account-01",
+                "ega-staging-01", Paths.get("/test/folder"), FileStructureType.FILE));
+        assertEquals(3, fileHierarchyRepository.countFilesOrFoldersInPathRecursive("ega-account-01",
+                "ega-staging-01", Paths.get("/test"), FileStructureType.FILE));
+        assertEquals(3, fileHierarchyRepository.countFilesOrFoldersInPathRecursive("ega-account-01",
+                "ega-staging-01", Paths.get("/test"), FileStructureType.FOLDER));
+        assertTrue(fileHierarchyRepository.exists("/Test/Folder2/test3.bam", "ega-account-01", "ega-staging-01"));
+        TestTransaction.end();
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void findAllFilesInRootPathRecursiveAfter_ReturnsSlicesInPathOrder() throws FileHierarchyException {
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/test2.bam", createFileDetails());
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test/folder/test3.bam", createFileDetails());
+        fileHierarchyRepository.saveNewFile("ega-account-01", "ega-staging-01", "/test1.bam", createFileDetails());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        final Slice<FileHierarchy> first = fileHierarchyRepository.findAllFilesOrFoldersInRootPathRecursiveAfter("EGA-ACCOUNT-01",
+                "ega-staging-01", FileStructureType.FILE, null, null, 2);
+        assertEquals(2, first.getNumberOfElements());
+        assertTrue(first.hasNext());
+        assertEquals("/test/folder/test3.bam", first.getContent().get(0).getOriginalPath());
+        assertEquals("/test/test2.bam", first.getContent().get(1).getOriginalPath());
+
+        final Slice<FileHierarchy> second = fileHierarchyRepository.findAllFilesOrFoldersInRootPathRecursiveAfter("ega-account-01",
+                "ega-staging-01", FileStructureType.FILE, first.getContent().get(1).getPathKey(),
+                first.getContent().get(1).getId(), 2);
+        assertEquals(1, second.getNumberOfElements());
+        assertFalse(second.hasNext());
+        assertEquals("/test1.bam", second.getContent().get(0).getOriginalPath());
+        TestTransaction.end();
+    }
 
     /**
      * When pass valid AccountId, StagingAreaId & File as FileStructureType
@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.repository;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FolderIdCacheTest {
+
+    @After
+    public void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void findsFoldersIgnoringCase() {
+        final FolderIdCache cache = new FolderIdCache(10);
+        cache.put("ega-account-01", "ega-staging-01", "/test/folder", 1L);
+
+        assertEquals(Optional.of(1L), cache.get("EGA-ACCOUNT-01", "ega-staging-01", "/TEST/Folder"));
+        assertFalse(cache.get("ega-account-01", "ega-staging-02", "/test/folder").isPresent());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFolders() {
+        final FolderIdCache cache = new FolderIdCache(2);
+        cache.put("ega-account-01", "ega-staging-01", "/a", 1L);
+        cache.put("ega-account-01", "ega-staging-01", "/b", 2L);
+        cache.get("ega-account-01", "ega-staging-01", "/a");
+        cache.put("ega-account-01", "ega-staging-01", "/c", 3L);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("ega-account-01", "ega-staging-01", "/a").isPresent());
+        assertFalse(cache.get("ega-account-01", "ega-staging-01", "/b").isPresent());
+    }
+
+    @Test
+    public void cachesCreatedFoldersOnCommit() {
+        final FolderIdCache cache = new FolderIdCache(10);
+        TransactionSynchronizationManager.initSynchronization();
+        cache.putCreated("ega-account-01", "ega-staging-01", "/a", 1L);
+
+        assertFalse(cache.get("ega-account-01", "ega-staging-01", "/a").isPresent());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertTrue(cache.get("ega-account-01", "ega-staging-01", "/a").isPresent());
+    }
+
+    @Test
+    public void evictsStagingAreaOnRollback() {
+        final FolderIdCache cache = new FolderIdCache(10);
+        cache.put("ega-account-01", "ega-staging-01", "/a", 1L);
+        cache.put("ega-account-01", "ega-staging-02", "/a", 2L);
+        TransactionSynchronizationManager.initSynchronization();
+        cache.get("ega-account-01", "ega-staging-01", "/a");
+        cache.putCreated("ega-account-01", "ega-staging-01", "/b", 3L);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertFalse(cache.get("ega-account-01", "ega-staging-01", "/a").isPresent());
+        assertFalse(cache.get("ega-account-01", "ega-staging-01", "/b").isPresent());
+        assertTrue(cache.get("ega-account-01", "ega-staging-02", "/a").isPresent());
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+}
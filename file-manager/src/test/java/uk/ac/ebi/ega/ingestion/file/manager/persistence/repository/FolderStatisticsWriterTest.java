@@ -0,0 +1,154 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.file.manager.persistence.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.annotation.Transactional;
+import uk.ac.ebi.ega.ingestion.file.manager.models.ArchivedFile;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FolderStatistics;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@AutoConfigureDataJpa
+@AutoConfigureTestDatabase
+@AutoConfigureTestEntityManager
+@TestPropertySource(locations = "classpath:test.properties")
+public class FolderStatisticsWriterTest {
+
+    @Autowired
+    private FileHierarchyRepository fileHierarchyRepository;
+
+    @Autowired
+    private FolderStatisticsRepository folderStatisticsRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private FolderStatisticsWriter folderStatisticsWriter;
+
+    private FileHierarchyBatchWriter batchWriter;
+
+    @TestConfiguration
+    @EnableJpaRepositories(basePackages = {"uk.ac.ebi.ega.ingestion.file.manager.persistence.repository"})
+    @EntityScan(basePackages = {"uk.ac.ebi.ega.ingestion.file.manager.persistence.entities"})
+    @EnableJpaAuditing
+    static class Configuration {
+
+    }
+
+    @Before
+    public void init() {
+        folderStatisticsWriter = new FolderStatisticsWriter(new NamedParameterJdbcTemplate(dataSource), 2);
+        batchWriter = new FileHierarchyBatchWriter(new NamedParameterJdbcTemplate(dataSource), new FolderIdCache(10),
+                2, folderStatisticsWriter);
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void write_AddsFilesToAllTheirFolders() {
+        batchWriter.write(Arrays.asList(
+                createArchivedFile("/test/folder/test1.bam"),
+                createArchivedFile("/test/folder/test2.bam"),
+                createArchivedFile("/test/other/test3.bam"),
+                createArchivedFile("/test4.bam")));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        batchWriter.write(Arrays.asList(
+                createArchivedFile("/test/folder/test1.bam"),
+                createArchivedFile("/test/folder/test5.bam")));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        final FolderStatistics test = getFolderStatistics("/test");
+        assertEquals(4, test.getFileCount());
+        assertEquals(4 * 26L, test.getPlainSize());
+        assertEquals(4 * 42L, test.getEncryptedSize());
+        assertEquals(Long.valueOf(4), test.getStatusCounts().get(FileStatus.ARCHIVE_IN_PROGRESS));
+        assertEquals(3, getFolderStatistics("/test/folder").getFileCount());
+        assertEquals(1, getFolderStatistics("/test/other").getFileCount());
+        TestTransaction.end();
+    }
+
+    @Test
+    @Transactional
+    @Sql(scripts = "classpath:cleanDatabase.sql")
+    public void statusChanged_MovesFilesToTheirNewStatus() {
+        batchWriter.write(Arrays.asList(
+                createArchivedFile("/test/folder/test1.bam"),
+                createArchivedFile("/test/folder/test2.bam")));
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        final FileDetails fileDetails = fileHierarchyRepository.findOne("/test/folder/test1.bam", "ega-account-01",
+                "ega-staging-01").get().getFileDetails();
+        fileDetails.setStatus(FileStatus.ARCHIVED_SUCCESSFULLY);
+        folderStatisticsWriter.statusChanged(Collections.singletonList(fileDetails), FileStatus.ARCHIVE_IN_PROGRESS);
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        for (String folder : Arrays.asList("/test", "/test/folder")) {
+            final FolderStatistics statistics = getFolderStatistics(folder);
+            assertEquals(2, statistics.getFileCount());
+            assertEquals(Long.valueOf(1), statistics.getStatusCounts().get(FileStatus.ARCHIVE_IN_PROGRESS));
+            assertEquals(Long.valueOf(1), statistics.getStatusCounts().get(FileStatus.ARCHIVED_SUCCESSFULLY));
+            assertEquals(Long.valueOf(0), statistics.getStatusCounts().get(FileStatus.ERROR));
+        }
+        TestTransaction.end();
+    }
+
+    private FolderStatistics getFolderStatistics(String path) {
+        final FileHierarchy folder = fileHierarchyRepository.findOne(path, "ega-account-01", "ega-staging-01").get();
+        return folderStatisticsRepository.findById(folder.getId()).get();
+    }
+
+    private ArchivedFile createArchivedFile(String path) {
+        return new ArchivedFile("ega-account-01", "ega-staging-01", 12L,
+                "/box/ega-box-01/ega-box-01-012345677890.cip", path, 26L, "3C130EA5D8D2D3DACA7F6808CDF0F148", 42L,
+                "3C130EA5D8D2D3DACA7F6808CDF0F149", "password".toCharArray());
+    }
+
+}
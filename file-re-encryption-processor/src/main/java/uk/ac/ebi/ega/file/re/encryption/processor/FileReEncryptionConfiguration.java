@@ -42,6 +42,7 @@ import uk.ac.ebi.ega.file.re.encryption.processor.services.MailingService;
 import uk.ac.ebi.ega.file.re.encryption.processor.services.ReEncryptPersistenceService;
 import uk.ac.ebi.ega.file.re.encryption.processor.services.ReEncryptService;
 import uk.ac.ebi.ega.fire.IFireService;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
 
 import java.io.IOException;
 import java.nio.file.Paths;
@@ -89,6 +90,26 @@ public class FileReEncryptionConfiguration {
     @Value("${file.re.encryption.job.execution.retry.max.delay:30}")
     private long jobExecutionRetryMaxDelay;
 
+    /**
+     * Specifies how the re-encrypted files are written.
+     * See {@link FileStreamFactory.Type}.
+     */
+    @Value("${file.re.encryption.io.type:DEFAULT}")
+    private FileStreamFactory.Type ioType;
+
+    /**
+     * Specifies the size in bytes of each write request when the io type is {@link FileStreamFactory.Type#CHANNEL}.
+     */
+    @Value("${file.re.encryption.io.block.size:4194304}")
+    private int ioBlockSize;
+
+    /**
+     * Specifies the alignment in bytes of the write requests when the io type is
+     * {@link FileStreamFactory.Type#CHANNEL}, 0 disables the alignment.
+     */
+    @Value("${file.re.encryption.io.alignment:0}")
+    private int ioAlignment;
+
     @Bean
     public IMailingService mailingService(JavaMailSender javaMailSender) {
         return new MailingService(javaMailSender, applicationName, instanceId);
@@ -115,7 +136,8 @@ public class FileReEncryptionConfiguration {
 
     @Bean
     public Job<ReEncryptJobParameters> reEncryptJob(IFireService fireService) throws IOException {
-        return new ReEncryptJob(fireService, FileUtils.readPasswordFile(Paths.get(passwordFile)));
+        return new ReEncryptJob(fireService, FileUtils.readPasswordFile(Paths.get(passwordFile)),
+                FileStreamFactory.create(ioType, ioBlockSize, ioAlignment));
     }
 
     @Bean
@@ -32,10 +32,10 @@ import uk.ac.ebi.ega.fire.IFireFile;
 import uk.ac.ebi.ega.fire.IFireService;
 import uk.ac.ebi.ega.fire.exceptions.FireConfigurationException;
 import uk.ac.ebi.ega.fire.exceptions.MaxRetryOnConnectionReached;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.file.FileAlreadyExistsException;
@@ -54,9 +54,16 @@ public class ReEncryptJob implements Job<ReEncryptJobParameters> {
 
     private char[] password;
 
+    private FileStreamFactory streamFactory;
+
     public ReEncryptJob(IFireService fireService, char[] password) {
+        this(fireService, password, FileStreamFactory.createDefault());
+    }
+
+    public ReEncryptJob(IFireService fireService, char[] password, FileStreamFactory streamFactory) {
         this.fireService = fireService;
         this.password = password;
+        this.streamFactory = streamFactory;
     }
 
     @Override
@@ -75,11 +82,11 @@ public class ReEncryptJob implements Job<ReEncryptJobParameters> {
 
             try (DecryptInputStream decryptStream = new DecryptInputStream(inputFile.getStream(), new AesCtr256Ega(),
                     password);
-                 EncryptOutputStream encryptOutputStream = new EncryptOutputStream(new FileOutputStream(outputFile),
-                         new AesCtr256Ega(), newPassword)
+                 EncryptOutputStream encryptOutputStream = new EncryptOutputStream(
+                         streamFactory.openOutputStream(outputFile.toPath()), new AesCtr256Ega(), newPassword)
             ) {
                 logger.info("File size {}", FileUtils.normalizeSize(inputFile.getSize()));
-                byte[] buffer = new byte[8192];
+                byte[] buffer = new byte[streamFactory.getBlockSize()];
                 int bytesRead = decryptStream.read(buffer);
                 while (bytesRead != -1) {
                     encryptOutputStream.write(buffer, 0, bytesRead);
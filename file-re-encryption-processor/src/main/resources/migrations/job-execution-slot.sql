@@ -0,0 +1,8 @@
+-- Adds the slot occupied by each execution of JOB_EXECUTION so that an instance can run several executions at once.
+-- Run once on databases created before SLOT_ID. The executions already assigned keep running in slot 0. The unique
+-- constraint moves from INSTANCE_ID to (INSTANCE_ID, SLOT_ID).
+begin transaction;
+alter table JOB_EXECUTION drop constraint if exists JOB_EXECUTION_INSTANCE_ID_KEY;
+alter table JOB_EXECUTION add column SLOT_ID integer not null default 0;
+alter table JOB_EXECUTION add constraint JOB_EXECUTION_INSTANCE_SLOT unique (INSTANCE_ID, SLOT_ID);
+commit;
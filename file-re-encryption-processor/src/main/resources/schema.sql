@@ -5,9 +5,11 @@ drop table if exists RE_ENCRYPT_PARAMETERS;
 create table JOB_EXECUTION
 (
     JOB_ID      varchar(255) primary key,
-    JOB_NAME    varchar(255)        not null,
-    INSTANCE_ID varchar(255) unique not null,
-    START_TIME  timestamp           not null
+    JOB_NAME    varchar(255) not null,
+    INSTANCE_ID varchar(255) not null,
+    SLOT_ID     integer      not null default 0,
+    START_TIME  timestamp    not null,
+    unique (INSTANCE_ID, SLOT_ID)
 );
 
 create table JOB_RUN
@@ -49,6 +49,7 @@ import uk.ac.ebi.ega.file.re.encryption.processor.persistence.service.ReEncryptJ
 import uk.ac.ebi.ega.fire.LocalStorageFile;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
@@ -134,7 +135,7 @@ public class ReEncryptServiceTest {
 
         final ReEncryptParametersEntity reEncryptParametersEntity = new ReEncryptParametersEntity(EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING);
 
-        when(jobExecutionRepository.findByInstanceId(anyString())).thenReturn(Optional.of(new JobExecutionEntity(EMPTY_STRING, EMPTY_STRING, EMPTY_STRING)));
+        when(jobExecutionRepository.findAllByInstanceIdOrderBySlotId(anyString())).thenReturn(Collections.singletonList(new JobExecutionEntity(EMPTY_STRING, EMPTY_STRING, EMPTY_STRING)));
         when(reEncryptParametersRepository.findById(anyString())).thenReturn(Optional.of(reEncryptParametersEntity));
 
         final Optional<JobExecution<ReEncryptJobParameters>> jobExecutionOptional = reEncryptService.getUnfinishedJob();
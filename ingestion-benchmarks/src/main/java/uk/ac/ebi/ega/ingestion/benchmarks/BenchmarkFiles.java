@@ -0,0 +1,217 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.bouncycastle.bcpg.CompressionAlgorithmTags;
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.openpgp.PGPCompressedDataGenerator;
+import org.bouncycastle.openpgp.PGPEncryptedDataGenerator;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPLiteralData;
+import org.bouncycastle.openpgp.PGPLiteralDataGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
+import org.bouncycastle.openpgp.PGPUtil;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDataEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPublicKeyKeyEncryptionMethodGenerator;
+import uk.ac.ebi.ega.encryption.core.EncryptOutputStream;
+import uk.ac.ebi.ega.encryption.core.encryption.AesCtr256Ega;
+import uk.ac.ebi.ega.encryption.core.encryption.exceptions.AlgorithmInitializationException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Generation of the synthetic inputs used by the benchmarks.
+ */
+public final class BenchmarkFiles {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Resources can be packaged in the benchmarks jar, they are copied to the file system before being used.
+     */
+    public static Path copyResource(String resource, Path directory) throws IOException {
+        final Path target = directory.resolve(Paths.get(resource).getFileName().toString());
+        try (InputStream inputStream = BenchmarkFiles.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("Resource " + resource + " could not be found");
+            }
+            Files.copy(inputStream, target);
+        }
+        return target;
+    }
+
+    public static void writeRandomData(OutputStream outputStream, long size) throws IOException {
+        final Random random = new Random(size);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            random.nextBytes(buffer);
+            final int length = (int) Math.min(buffer.length, remaining);
+            outputStream.write(buffer, 0, length);
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Writes a file of random data encrypted for the given public key, compressed as gpg does by default.
+     */
+    public static void writePgpEncrypted(Path publicKey, Path output, long size) throws IOException, PGPException {
+        final PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(
+                new BcPGPDataEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256)
+                        .setWithIntegrityPacket(true)
+                        .setSecureRandom(new SecureRandom()));
+        encryptedDataGenerator.addMethod(new BcPublicKeyKeyEncryptionMethodGenerator(readEncryptionKey(publicKey)));
+        final PGPCompressedDataGenerator compressedDataGenerator =
+                new PGPCompressedDataGenerator(CompressionAlgorithmTags.ZIP);
+        final PGPLiteralDataGenerator literalDataGenerator = new PGPLiteralDataGenerator();
+        try (
+                final OutputStream fileOutput = new BufferedOutputStream(Files.newOutputStream(output));
+                final OutputStream encryptedOutput = encryptedDataGenerator.open(fileOutput, new byte[BUFFER_SIZE]);
+                final OutputStream compressedOutput = compressedDataGenerator.open(encryptedOutput);
+                final OutputStream literalOutput = literalDataGenerator.open(compressedOutput,
+                        PGPLiteralData.BINARY, output.getFileName().toString(), new Date(), new byte[BUFFER_SIZE])
+        ) {
+            writeRandomData(literalOutput, size);
+        }
+    }
+
+    private static PGPPublicKey readEncryptionKey(Path publicKey) throws IOException, PGPException {
+        try (InputStream inputStream = PGPUtil.getDecoderStream(Files.newInputStream(publicKey))) {
+            final PGPPublicKeyRingCollection keyRings = new PGPPublicKeyRingCollection(inputStream,
+                    new BcKeyFingerprintCalculator());
+            final Iterator<?> keyRingIterator = keyRings.getKeyRings();
+            while (keyRingIterator.hasNext()) {
+                final Iterator<?> keyIterator = ((PGPPublicKeyRing) keyRingIterator.next()).getPublicKeys();
+                while (keyIterator.hasNext()) {
+                    final PGPPublicKey key = (PGPPublicKey) keyIterator.next();
+                    if (key.isEncryptionKey()) {
+                        return key;
+                    }
+                }
+            }
+        }
+        throw new PGPException("No encryption key found in " + publicKey);
+    }
+
+    /**
+     * Writes a file of random data encrypted with the EGA AES format and the given password.
+     *
+     * @return md5 of the encrypted file.
+     */
+    public static String writeAesEncrypted(Path output, long size, char[] password) throws IOException,
+            AlgorithmInitializationException {
+        try (EncryptOutputStream encryptOutputStream = new EncryptOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(output)), new AesCtr256Ega(), password)) {
+            writeRandomData(encryptOutputStream, size);
+        }
+        return md5(output);
+    }
+
+    public static String md5(Path path) throws IOException {
+        final MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), messageDigest)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (inputStream.read(buffer) != -1) {
+                // Digest is updated while reading
+            }
+        }
+        return String.format("%032x", new BigInteger(1, messageDigest.digest()));
+    }
+
+    /**
+     * Creates a tree of empty files with {@code filesPerDirectory} files per directory. Trees are expensive
+     * to create, a complete tree is kept in the temporary directory and reused by later runs.
+     */
+    public static Path getOrCreateFileTree(int fileCount, int filesPerDirectory) throws IOException {
+        final Path root = Paths.get(System.getProperty("java.io.tmpdir"), "ega-benchmarks",
+                "tree-" + fileCount + "-" + filesPerDirectory);
+        if (Files.exists(root.resolve(COMPLETE_MARKER))) {
+            return root;
+        }
+        deleteRecursively(root);
+        for (int i = 0; i < fileCount; i++) {
+            final Path directory = root.resolve(getDirectory(i, filesPerDirectory));
+            if (i % filesPerDirectory == 0) {
+                Files.createDirectories(directory);
+            }
+            Files.createFile(directory.resolve("file-" + i + ".gpg"));
+        }
+        Files.createFile(root.resolve(COMPLETE_MARKER));
+        return root;
+    }
+
+    /**
+     * Files are spread in two levels of directories, {@code d<a>/d<b>/file-<i>.gpg}.
+     */
+    private static Path getDirectory(int fileIndex, int filesPerDirectory) {
+        final int directoryIndex = fileIndex / filesPerDirectory;
+        return Paths.get("d" + directoryIndex / filesPerDirectory, "d" + directoryIndex % filesPerDirectory);
+    }
+
+    public static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+}
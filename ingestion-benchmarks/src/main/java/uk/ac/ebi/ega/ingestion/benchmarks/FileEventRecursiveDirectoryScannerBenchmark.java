@@ -0,0 +1,94 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.ega.ingestion.commons.messages.FileEvent;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.file.event.FileEventRecursiveDirectoryScanner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan of a staging area by {@link FileEventRecursiveDirectoryScanner#listFileEvents(String, Path)}, both the first
+ * scan, where every file is reported as created, and a rescan of a tree that has not changed. Synthetic trees are
+ * kept in the temporary directory between runs, the largest ones take a long time to be created the first time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FileEventRecursiveDirectoryScannerBenchmark {
+
+    private static final String LOCATION_ID = "benchmark-location";
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int fileCount;
+
+    @Param({"100"})
+    private int filesPerDirectory;
+
+    /**
+     * Number of threads that walk the tree, 1 walks it with {@link java.nio.file.Files#walkFileTree}.
+     */
+    @Param({"1", "4", "16"})
+    private int parallelism;
+
+    private Path root;
+
+    private FileEventRecursiveDirectoryScanner scanner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = BenchmarkFiles.getOrCreateFileTree(fileCount, filesPerDirectory);
+        scanner = createScanner();
+        scanner.listFileEvents(LOCATION_ID, root);
+    }
+
+    private FileEventRecursiveDirectoryScanner createScanner() {
+        final FileEventRecursiveDirectoryScanner scanner = new FileEventRecursiveDirectoryScanner();
+        scanner.setParallelism(parallelism);
+        return scanner;
+    }
+
+    @Benchmark
+    public List<FileEvent> firstScan() {
+        return createScanner().listFileEvents(LOCATION_ID, root);
+    }
+
+    @Benchmark
+    public List<FileEvent> rescanUnchanged() {
+        return scanner.listFileEvents(LOCATION_ID, root);
+    }
+
+}
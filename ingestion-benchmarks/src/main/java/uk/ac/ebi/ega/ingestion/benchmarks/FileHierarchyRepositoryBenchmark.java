@@ -0,0 +1,143 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import uk.ac.ebi.ega.ingestion.file.manager.controller.exceptions.FileHierarchyException;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileDetails;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileHierarchy;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.entities.FileStatus;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FileHierarchyRepository;
+import uk.ac.ebi.ega.ingestion.file.manager.persistence.repository.FolderIdCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registration of archived files in the hierarchy of a staging area by {@link FileHierarchyRepository}, against an
+ * in-memory database, for different depths of the folder that contains the files. The folders are created by the
+ * first operation, the following ones resolve them again for every file, or take the parent folder from a
+ * {@link FolderIdCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileHierarchyRepositoryBenchmark {
+
+    private static final String ACCOUNT_ID = "benchmark-account";
+
+    private static final String STAGING_AREA_ID = "benchmark-staging";
+
+    @Param({"1", "4", "16"})
+    private int depth;
+
+    private ConfigurableApplicationContext context;
+
+    private FileHierarchyRepository repository;
+
+    private String folder;
+
+    private long fileIndex;
+
+    private FolderIdCache folderIdCache;
+
+    @Configuration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class})
+    @EnableJpaRepositories(basePackageClasses = FileHierarchyRepository.class)
+    @EntityScan(basePackageClasses = FileHierarchy.class)
+    @EnableJpaAuditing
+    static class RepositoryConfiguration {
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(RepositoryConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.config.name=ingestion-benchmarks",
+                        "spring.datasource.url=jdbc:hsqldb:mem:file-hierarchy-benchmark",
+                        "spring.datasource.initialization-mode=never",
+                        "spring.jpa.hibernate.ddl-auto=create")
+                .run();
+        repository = context.getBean(FileHierarchyRepository.class);
+        final StringBuilder folderBuilder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            folderBuilder.append("/folder-").append(i);
+        }
+        folder = folderBuilder.toString();
+        fileIndex = 0;
+        folderIdCache = new FolderIdCache(1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public FileHierarchy createHierarchy() throws FileHierarchyException {
+        return repository.createHierarchy(ACCOUNT_ID, STAGING_AREA_ID, nextFilePath(), createFileDetails());
+    }
+
+    @Benchmark
+    public FileHierarchy saveNewFile() throws FileHierarchyException {
+        return repository.saveNewFile(ACCOUNT_ID, STAGING_AREA_ID, nextFilePath(), createFileDetails());
+    }
+
+    @Benchmark
+    public FileHierarchy saveNewFileWithFolderIdCache() throws FileHierarchyException {
+        return repository.saveNewFile(ACCOUNT_ID, STAGING_AREA_ID, nextFilePath(), createFileDetails(), folderIdCache);
+    }
+
+    private String nextFilePath() {
+        return folder + "/file-" + fileIndex++ + ".bam";
+    }
+
+    private FileDetails createFileDetails() {
+        return new FileDetails("/fire/path", 100L, "plain-md5", 200L, "encrypted-md5", "key",
+                FileStatus.ARCHIVED_SUCCESSFULLY, 1L);
+    }
+
+}
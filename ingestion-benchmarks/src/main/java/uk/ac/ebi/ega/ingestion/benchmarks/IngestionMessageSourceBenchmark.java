@@ -0,0 +1,135 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import uk.ac.ebi.ega.ingestion.commons.messages.IngestionEvent;
+import uk.ac.ebi.ega.ingestion.commons.models.FileStatic;
+import uk.ac.ebi.ega.ingestion.commons.models.StagingFile;
+import uk.ac.ebi.ega.ingestion.file.discovery.message.sources.ingestion.IngestionMessageSource;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairing of the gpg files of a staging area with their md5 files by {@link IngestionMessageSource}. Each operation
+ * receives the first message of a new source, which scans every staging file of the location.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestionMessageSourceBenchmark {
+
+    private static final String LOCATION_ID = "benchmark-location";
+
+    /**
+     * Number of gpg files in the staging area, one out of {@code incompleteRatio} of them is missing its md5 files.
+     */
+    @Param({"10000", "100000", "1000000"})
+    private int gpgFileCount;
+
+    @Param({"10"})
+    private int incompleteRatio;
+
+    private List<StagingFile> stagingFiles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stagingFiles = new ArrayList<>();
+        final LocalDateTime updateDate = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < gpgFileCount; i++) {
+            final String path = "d" + i / 1000 + "/file-" + i;
+            stagingFiles.add(new BenchmarkStagingFile(path + ".gpg", updateDate));
+            if (i % incompleteRatio != 0) {
+                stagingFiles.add(new BenchmarkStagingFile(path + ".gpg.md5", updateDate));
+                stagingFiles.add(new BenchmarkStagingFile(path + ".md5", updateDate));
+            }
+        }
+    }
+
+    @Benchmark
+    public Message<IngestionEvent> scanForEvents() {
+        final IngestionMessageSource source = new IngestionMessageSource((locationId, cutOff) -> stagingFiles);
+        source.setLocationId(LOCATION_ID);
+        source.setAccountId("benchmark-account");
+        source.setDirectory(Paths.get("/staging"));
+        return source.receive();
+    }
+
+    private static class BenchmarkStagingFile implements StagingFile {
+
+        private final String relativePath;
+
+        private final LocalDateTime updateDate;
+
+        BenchmarkStagingFile(String relativePath, LocalDateTime updateDate) {
+            this.relativePath = relativePath;
+            this.updateDate = updateDate;
+        }
+
+        @Override
+        public String getId() {
+            return relativePath;
+        }
+
+        @Override
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        @Override
+        public String getStagingAreaId() {
+            return LOCATION_ID;
+        }
+
+        @Override
+        public Long getFileSize() {
+            return 0L;
+        }
+
+        @Override
+        public LocalDateTime getUpdateDate() {
+            return updateDate;
+        }
+
+        @Override
+        public FileStatic toFileStatic() {
+            return new FileStatic("/staging/" + relativePath, 0, 0);
+        }
+
+    }
+
+}
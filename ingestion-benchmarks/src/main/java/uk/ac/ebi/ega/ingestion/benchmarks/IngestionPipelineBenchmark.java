@@ -0,0 +1,114 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionPipelineResult;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.PipelineConfiguration;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.PipelineConfiguration.PipelineType;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decryption of a gpg file from staging and encryption into the archive format, as done by
+ * {@link uk.ac.ebi.ega.file.encryption.processor.pipelines.DefaultIngestionPipeline#process()} and its pipelined
+ * variant, for different file sizes and buffer sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestionPipelineBenchmark {
+
+    @Param({"1048576", "67108864", "268435456"})
+    private long fileSize;
+
+    @Param({"DEFAULT", "PIPELINED"})
+    private PipelineType pipelineType;
+
+    @Param({"DEFAULT", "CHANNEL"})
+    private FileStreamFactory.Type ioType;
+
+    /**
+     * Size of the buffers exchanged between stages and of the read and write requests of the channel streams.
+     */
+    @Param({"65536", "4194304"})
+    private int bufferSize;
+
+    private Path workingDirectory;
+
+    private File origin;
+
+    private File secretRing;
+
+    private File secretRingKey;
+
+    private File output;
+
+    private char[] password;
+
+    private PipelineConfiguration pipelineConfiguration;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workingDirectory = Files.createTempDirectory("ingestion-pipeline-benchmark");
+        secretRing = BenchmarkFiles.copyResource("/keyPairTest/secring.gpg", workingDirectory).toFile();
+        secretRingKey = BenchmarkFiles.copyResource("/keyPairTest/password.txt", workingDirectory).toFile();
+        password = FileUtils.readPasswordFile(
+                BenchmarkFiles.copyResource("/keyPairTest/encrypt_key.txt", workingDirectory));
+        final Path publicKey = BenchmarkFiles.copyResource("/keyPairTest/test_public_key.asc", workingDirectory);
+        origin = workingDirectory.resolve("origin.gpg").toFile();
+        BenchmarkFiles.writePgpEncrypted(publicKey, origin.toPath(), fileSize);
+        output = workingDirectory.resolve("output.cip").toFile();
+        pipelineConfiguration = new PipelineConfiguration(pipelineType, bufferSize, 4,
+                FileStreamFactory.create(ioType, bufferSize, 0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public IngestionPipelineResult process() throws IOException, SystemErrorException, UserErrorException {
+        return pipelineConfiguration.create(origin, secretRing, secretRingKey, output, password).process();
+    }
+
+}
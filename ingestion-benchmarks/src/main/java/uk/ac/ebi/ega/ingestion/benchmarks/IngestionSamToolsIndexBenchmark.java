@@ -0,0 +1,118 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.ega.encryption.core.utils.io.FileUtils;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionBamIndex;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionPipelineResult;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.IngestionSamToolsIndex;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.bam.BamIndexBuilder;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.SystemErrorException;
+import uk.ac.ebi.ega.file.encryption.processor.pipelines.exceptions.UserErrorException;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion of a bam file generating its index with samtools, see {@link IngestionSamToolsIndex}, or in process, see
+ * {@link IngestionBamIndex}. A valid bam file can not be synthesised, the benchmark uses the bam file of the test
+ * resources. The samtools indexer requires samtools in the path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestionSamToolsIndexBenchmark {
+
+    public enum Indexer {
+        SAMTOOLS, NATIVE
+    }
+
+    @Param({"SAMTOOLS", "NATIVE"})
+    private Indexer indexer;
+
+    @Param({"DEFAULT", "CHANNEL"})
+    private FileStreamFactory.Type ioType;
+
+    @Param({"65536", "4194304"})
+    private int bufferSize;
+
+    private Path workingDirectory;
+
+    private File origin;
+
+    private File secretRing;
+
+    private File secretRingKey;
+
+    private File output;
+
+    private File index;
+
+    private char[] password;
+
+    private FileStreamFactory streamFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workingDirectory = Files.createTempDirectory("samtools-index-benchmark");
+        origin = BenchmarkFiles.copyResource("/keyPairTest/test.bam.gpg", workingDirectory).toFile();
+        secretRing = BenchmarkFiles.copyResource("/keyPairTest/secring.gpg", workingDirectory).toFile();
+        secretRingKey = BenchmarkFiles.copyResource("/keyPairTest/password.txt", workingDirectory).toFile();
+        password = FileUtils.readPasswordFile(
+                BenchmarkFiles.copyResource("/keyPairTest/encrypt_key.txt", workingDirectory));
+        output = workingDirectory.resolve("test.bam.cip").toFile();
+        index = workingDirectory.resolve("test.bam.bai.cip").toFile();
+        streamFactory = FileStreamFactory.create(ioType, bufferSize, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public IngestionPipelineResult process() throws IOException, SystemErrorException, UserErrorException {
+        if (indexer == Indexer.NATIVE) {
+            return new IngestionBamIndex(origin, secretRing, secretRingKey, output, index, password,
+                    BamIndexBuilder.IndexFormat.BAI, streamFactory).process();
+        }
+        return new IngestionSamToolsIndex(origin, secretRing, secretRingKey, output, index, password,
+                streamFactory).process();
+    }
+
+}
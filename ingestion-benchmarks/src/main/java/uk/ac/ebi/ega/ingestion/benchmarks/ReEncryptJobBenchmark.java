@@ -0,0 +1,118 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.ega.encryption.core.services.IPasswordEncryptionService;
+import uk.ac.ebi.ega.encryption.core.services.PasswordEncryptionService;
+import uk.ac.ebi.ega.file.re.encryption.processor.jobs.ReEncryptJob;
+import uk.ac.ebi.ega.file.re.encryption.processor.models.ReEncryptJobParameters;
+import uk.ac.ebi.ega.fire.LocalStorageFile;
+import uk.ac.ebi.ega.ingestion.commons.io.FileStreamFactory;
+import uk.ac.ebi.ega.jobs.core.Result;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-encryption of an archived file with a new password, see {@link ReEncryptJob#execute(ReEncryptJobParameters)}.
+ * The archive is replaced by a local file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReEncryptJobBenchmark {
+
+    private static final char[] ARCHIVE_PASSWORD = "archive-password".toCharArray();
+
+    private static final char[] PASSWORD_ENCRYPTION_KEY = "benchmark-key".toCharArray();
+
+    private static final char[] NEW_PASSWORD = "new-password".toCharArray();
+
+    @Param({"1048576", "67108864", "268435456"})
+    private long fileSize;
+
+    @Param({"DEFAULT", "CHANNEL"})
+    private FileStreamFactory.Type ioType;
+
+    @Param({"8192", "65536", "4194304"})
+    private int bufferSize;
+
+    private Path workingDirectory;
+
+    private Path output;
+
+    private ReEncryptJob job;
+
+    private ReEncryptJobParameters parameters;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workingDirectory = Files.createTempDirectory("re-encrypt-job-benchmark");
+        final Path input = workingDirectory.resolve("input.cip");
+        final String md5 = BenchmarkFiles.writeAesEncrypted(input, fileSize, ARCHIVE_PASSWORD);
+        output = workingDirectory.resolve("output").resolve("output.cip");
+
+        final IPasswordEncryptionService passwordService = new PasswordEncryptionService(PASSWORD_ENCRYPTION_KEY);
+        job = new ReEncryptJob(dosId -> new LocalStorageFile(md5, input.toString()), ARCHIVE_PASSWORD,
+                FileStreamFactory.create(ioType, bufferSize, 0));
+        parameters = new ReEncryptJobParameters(passwordService, "dos-id", output.toString(),
+                passwordService.encrypt(NEW_PASSWORD));
+
+        final Result result = job.execute(parameters);
+        if (result.getStatus() != Result.Status.SUCCESS) {
+            throw new IllegalStateException("Re-encryption job does not succeed, status " + result.getStatus());
+        }
+    }
+
+    /**
+     * Existing output files are overwritten with a warning, it is deleted so only the re-encryption is measured.
+     */
+    @Setup(Level.Invocation)
+    public void deleteOutput() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(workingDirectory);
+    }
+
+    @Benchmark
+    public Result execute() {
+        return job.execute(parameters);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.digest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per thread pool of {@link MessageDigest} instances. Looking up an algorithm in the security providers is much more
+ * expensive than hashing a short value, each thread creates one instance per algorithm and reuses it.
+ */
+public final class MessageDigests {
+
+    public static final String MD5 = "MD5";
+
+    public static final String SHA_256 = "SHA-256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<Map<String, MessageDigest>> digests = ThreadLocal.withInitial(HashMap::new);
+
+    private MessageDigests() {
+    }
+
+    /**
+     * Every call on the same thread returns the same instance for an algorithm, and resets it. A caller must finish
+     * with the instance before any code that may call this method again runs, otherwise a nested caller silently
+     * discards the data digested so far. Callers that keep a digest across calls to other code, or hand it out,
+     * must use {@link MessageDigest#getInstance(String)} instead.
+     *
+     * @return a reset instance owned by the calling thread, it must not be shared with other threads.
+     */
+    public static MessageDigest get(String algorithm) {
+        final MessageDigest messageDigest = digests.get().computeIfAbsent(algorithm, MessageDigests::newInstance);
+        messageDigest.reset();
+        return messageDigest;
+    }
+
+    public static String toHex(byte[] digest) {
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static MessageDigest newInstance(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported digest algorithm " + algorithm, e);
+        }
+    }
+
+}
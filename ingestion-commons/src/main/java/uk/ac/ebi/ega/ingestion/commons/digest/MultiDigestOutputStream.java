@@ -0,0 +1,208 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.digest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output stream that computes several digests of the data written into it in a single pass on a helper thread. The
+ * data is copied into a bounded set of buffers and every digest is updated with a buffer before the next one is read,
+ * so adding an algorithm does not read the data again. The writer only waits when all the buffers are pending.
+ *
+ * The digests are available once the stream has been closed.
+ */
+public class MultiDigestOutputStream extends OutputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private static final long BUFFER_POLL_TIMEOUT_MS = 500;
+
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ExecutorService DIGEST_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "digest-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String[] algorithms;
+
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+
+    private final BlockingQueue<ByteBuffer> filledBuffers;
+
+    private final Future<Map<String, String>> digestTask;
+
+    private ByteBuffer current;
+
+    private Map<String, String> digests;
+
+    private boolean closed;
+
+    public MultiDigestOutputStream(String... algorithms) {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT, algorithms);
+    }
+
+    public MultiDigestOutputStream(int bufferSize, int bufferCount, String... algorithms) {
+        if (algorithms.length == 0) {
+            throw new IllegalArgumentException("At least one digest algorithm is needed");
+        }
+        // Fails before the task starts if an algorithm is not supported
+        for (String algorithm : algorithms) {
+            MessageDigests.get(algorithm);
+        }
+        final Set<String> uniqueAlgorithms = new LinkedHashSet<>(Arrays.asList(algorithms));
+        this.algorithms = uniqueAlgorithms.toArray(new String[0]);
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(ByteBuffer.allocate(bufferSize));
+        }
+        // Every buffer plus the end of stream marker fit in the queue, adding to it never blocks
+        this.filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        this.digestTask = DIGEST_EXECUTOR.submit(this::digestBuffers);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        int position = offset;
+        final int end = offset + length;
+        while (position < end) {
+            if (current == null) {
+                current = acquireBuffer();
+            }
+            final int chunk = Math.min(current.remaining(), end - position);
+            current.put(bytes, position, chunk);
+            position += chunk;
+            if (!current.hasRemaining()) {
+                enqueueCurrent();
+            }
+        }
+    }
+
+    /**
+     * Waits until every digest has been computed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enqueueCurrent();
+        filledBuffers.add(END_OF_STREAM);
+        try {
+            digests = digestTask.get();
+        } catch (InterruptedException e) {
+            digestTask.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return lowercase hexadecimal digest of the data.
+     */
+    public String getDigest(String algorithm) {
+        if (digests == null) {
+            throw new IllegalStateException("Digests are only available once the stream has been closed");
+        }
+        final String digest = digests.get(algorithm);
+        if (digest == null) {
+            throw new IllegalArgumentException("Digest " + algorithm + " was not computed, available digests are: " +
+                    Arrays.toString(algorithms));
+        }
+        return digest;
+    }
+
+    private void enqueueCurrent() {
+        if (current != null && current.position() > 0) {
+            current.flip();
+            filledBuffers.add(current);
+            current = null;
+        }
+    }
+
+    private ByteBuffer acquireBuffer() throws IOException {
+        try {
+            ByteBuffer buffer = freeBuffers.poll(BUFFER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            while (buffer == null) {
+                if (digestTask.isDone()) {
+                    throw new IOException("Digest task finished before the end of the stream");
+                }
+                buffer = freeBuffers.poll(BUFFER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            buffer.clear();
+            return buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private Map<String, String> digestBuffers() throws InterruptedException {
+        // The instances belong to the helper thread, which only runs one task at a time
+        final MessageDigest[] messageDigests = new MessageDigest[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            messageDigests[i] = MessageDigests.get(algorithms[i]);
+        }
+        ByteBuffer buffer = filledBuffers.take();
+        while (buffer != END_OF_STREAM) {
+            for (MessageDigest messageDigest : messageDigests) {
+                messageDigest.update(buffer.array(), 0, buffer.limit());
+            }
+            freeBuffers.add(buffer);
+            buffer = filledBuffers.take();
+        }
+        final Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < algorithms.length; i++) {
+            result.put(algorithms[i], MessageDigests.toHex(messageDigests[i].digest()));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ChannelFileStreamFactory extends FileStreamFactory {
+
+    private final int blockSize;
+
+    private final int alignment;
+
+    /**
+     * @param blockSize Size of the requests issued to the file system. When the alignment is enabled it is rounded
+     *                  up to a multiple of the alignment.
+     * @param alignment If greater than 0, every write but the last one starts at an offset multiple of the
+     *                  alignment and has a length multiple of the alignment.
+     */
+    public ChannelFileStreamFactory(final int blockSize, final int alignment) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        if (alignment < 0) {
+            throw new IllegalArgumentException("Alignment cannot be negative");
+        }
+        this.alignment = alignment;
+        this.blockSize = alignment > 0 ? roundUp(blockSize, alignment) : blockSize;
+    }
+
+    @Override
+    public InputStream openInputStream(Path path) throws IOException {
+        return new ChannelInputStream(path, FileChannel.open(path, StandardOpenOption.READ), blockSize);
+    }
+
+    @Override
+    public OutputStream openOutputStream(Path path) throws IOException {
+        return new ChannelOutputStream(path, FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), blockSize, alignment);
+    }
+
+    @Override
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getAlignment() {
+        return alignment;
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return ((value + multiple - 1) / multiple) * multiple;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Input stream that reads a file sequentially in blocks of a fixed size through a {@link FileChannel}, so that the
+ * file system receives a few large requests regardless of how small the reads of the caller are.
+ */
+public class ChannelInputStream extends InputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelInputStream.class);
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final StreamStatistics statistics;
+
+    private boolean endOfFile;
+
+    public ChannelInputStream(Path path, FileChannel channel, int blockSize) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(blockSize);
+        this.buffer.flip();
+        this.statistics = new StreamStatistics();
+        this.endOfFile = false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillIfEmpty()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fillIfEmpty()) {
+            return -1;
+        }
+        final int bytesRead = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, bytesRead);
+        return bytesRead;
+    }
+
+    /**
+     * Same semantics as {@link java.io.FileInputStream#available()}, number of bytes left until the end of the file.
+     */
+    @Override
+    public int available() throws IOException {
+        final long remaining = buffer.remaining() + Math.max(0, channel.size() - channel.position());
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    private boolean fillIfEmpty() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        if (endOfFile) {
+            return false;
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            final long start = System.nanoTime();
+            final int bytesRead = channel.read(buffer);
+            if (bytesRead == -1) {
+                endOfFile = true;
+                break;
+            }
+            statistics.record(bytesRead, System.nanoTime() - start);
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    public StreamStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.close();
+            logger.debug("Read of {} finished {}", path, statistics);
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Output stream that accumulates the data written by the caller and writes it to a {@link FileChannel} in blocks of
+ * a fixed size. When an alignment is configured every block but the last one ends at an offset multiple of the
+ * alignment, including the first one when the channel is not positioned at an aligned offset.
+ */
+public class ChannelOutputStream extends OutputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelOutputStream.class);
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final StreamStatistics statistics;
+
+    public ChannelOutputStream(Path path, FileChannel channel, int blockSize, int alignment) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(blockSize);
+        this.statistics = new StreamStatistics();
+        if (alignment > 0) {
+            final int misalignment = (int) (channel.position() % alignment);
+            if (misalignment != 0) {
+                buffer.limit(alignment - misalignment);
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer.put((byte) b);
+        if (!buffer.hasRemaining()) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            final int bytesToCopy = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, bytesToCopy);
+            offset += bytesToCopy;
+            length -= bytesToCopy;
+            if (!buffer.hasRemaining()) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the data accumulated so far. Flushing before the block is full produces an unaligned write, callers
+     * should only flush when they are done writing.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (buffer.position() > 0) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            final long start = System.nanoTime();
+            final int bytesWritten = channel.write(buffer);
+            statistics.record(bytesWritten, System.nanoTime() - start);
+        }
+        buffer.clear();
+    }
+
+    public StreamStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+                logger.debug("Write of {} finished {}", path, statistics);
+            }
+        }
+    }
+
+}
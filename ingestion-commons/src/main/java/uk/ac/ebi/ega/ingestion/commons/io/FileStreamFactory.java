@@ -0,0 +1,70 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Factory class to open the streams used to read and write files in the ingestion pipelines.
+ * See {@link Type}.
+ */
+public abstract class FileStreamFactory {
+
+    /**
+     * A default factory opens {@link java.io.FileInputStream} and {@link java.io.FileOutputStream}.
+     * A channel factory opens streams backed by a {@link java.nio.channels.FileChannel} that read and write in
+     * large blocks and keep throughput statistics.
+     */
+    public enum Type {
+        DEFAULT, CHANNEL
+    }
+
+    public static FileStreamFactory create(final Type type, final int blockSize, final int alignment) {
+        switch (type) {
+            case DEFAULT:
+                return new DefaultFileStreamFactory();
+            case CHANNEL:
+                return new ChannelFileStreamFactory(blockSize, alignment);
+            default:
+                final String message = String.format("Unsupported FileStreamFactory type: %s. " +
+                        "Possible types are: %s", type, Arrays.toString(Type.values()));
+                throw new IllegalArgumentException(message);
+        }
+    }
+
+    public static FileStreamFactory createDefault() {
+        return new DefaultFileStreamFactory();
+    }
+
+    public abstract InputStream openInputStream(Path path) throws IOException;
+
+    /**
+     * Opens a stream that writes the file from the beginning, creating it if needed.
+     */
+    public abstract OutputStream openOutputStream(Path path) throws IOException;
+
+    /**
+     * @return preferred size of the buffers used to copy data to and from the streams of this factory.
+     */
+    public abstract int getBlockSize();
+
+}
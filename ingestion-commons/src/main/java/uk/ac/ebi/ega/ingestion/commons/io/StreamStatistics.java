@@ -0,0 +1,74 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput counters of a single stream: bytes transferred, number of requests issued to the file system and time
+ * spent waiting for them.
+ */
+public class StreamStatistics {
+
+    private long bytes;
+
+    private long requests;
+
+    private long nanos;
+
+    void record(long bytes, long nanos) {
+        this.bytes += bytes;
+        this.requests++;
+        this.nanos += nanos;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getTime(TimeUnit timeUnit) {
+        return timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getAverageRequestSize() {
+        return requests == 0 ? 0 : (double) bytes / requests;
+    }
+
+    /**
+     * @return bytes per second while waiting on the file system, 0 if no time was recorded.
+     */
+    public double getThroughput() {
+        return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamStatistics{" +
+                "bytes=" + bytes +
+                ", requests=" + requests +
+                ", timeMs=" + getTime(TimeUnit.MILLISECONDS) +
+                ", averageRequestSize=" + String.format("%.0f", getAverageRequestSize()) +
+                ", throughputMBs=" + String.format("%.2f", getThroughput() / (1024 * 1024)) +
+                '}';
+    }
+
+}
@@ -37,6 +37,8 @@ public class ArchiveEvent {
 
     private String plainMd5;
 
+    private String plainSha256;
+
     @JsonProperty
     private long encryptedSize;
 
@@ -55,12 +57,24 @@ public class ArchiveEvent {
                         final String stagingPath, final long plainSize, final String plainMd5,
                         final long encryptedSize, final String encryptedMd5, String keyPath,
                         final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
+        this(accountId, stagingAreaId, originalPath, stagingPath, plainSize, plainMd5, null, encryptedSize,
+                encryptedMd5, keyPath, startDateTime, endDateTime);
+    }
+
+    /**
+     * @param plainSha256 sha256 of the plain file, null if it was not computed.
+     */
+    public ArchiveEvent(final String accountId, final String stagingAreaId, final String originalPath,
+                        final String stagingPath, final long plainSize, final String plainMd5,
+                        final String plainSha256, final long encryptedSize, final String encryptedMd5,
+                        String keyPath, final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
         this.accountId = Objects.requireNonNull(accountId);
         this.stagingAreaId = Objects.requireNonNull(stagingAreaId);
         this.originalPath = Objects.requireNonNull(originalPath);
         this.stagingPath = Objects.requireNonNull(stagingPath);
         this.plainSize = Objects.requireNonNull(plainSize);
         this.plainMd5 = Objects.requireNonNull(plainMd5);
+        this.plainSha256 = plainSha256;
         this.encryptedSize = Objects.requireNonNull(encryptedSize);
         this.encryptedMd5 = Objects.requireNonNull(encryptedMd5);
         this.keyPath = Objects.requireNonNull(keyPath);
@@ -92,6 +106,10 @@ public class ArchiveEvent {
         return plainMd5;
     }
 
+    public String getPlainSha256() {
+        return plainSha256;
+    }
+
     public long getEncryptedSize() {
         return encryptedSize;
     }
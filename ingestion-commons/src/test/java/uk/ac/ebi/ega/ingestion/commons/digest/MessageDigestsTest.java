@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.ega.ingestion.commons.digest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MessageDigestsTest {
+
+    private static final byte[] DATA = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void sameDigestsAsMessageDigest() throws NoSuchAlgorithmException {
+        Assert.assertEquals(hex(MessageDigest.getInstance("MD5").digest(DATA)),
+                MessageDigests.toHex(MessageDigests.get(MessageDigests.MD5).digest(DATA)));
+        Assert.assertEquals(hex(MessageDigest.getInstance("SHA-256").digest(DATA)),
+                MessageDigests.toHex(MessageDigests.get(MessageDigests.SHA_256).digest(DATA)));
+        Assert.assertEquals("9e107d9d372bb6826bd81d3542a419d6",
+                MessageDigests.toHex(MessageDigests.get(MessageDigests.MD5).digest(DATA)));
+    }
+
+    @Test
+    public void instanceIsResetOnEveryCall() {
+        final MessageDigest first = MessageDigests.get(MessageDigests.MD5);
+        first.update(DATA);
+
+        final MessageDigest second = MessageDigests.get(MessageDigests.MD5);
+
+        // The same instance is reused and the data of the previous caller is discarded
+        Assert.assertSame(first, second);
+        Assert.assertEquals("d41d8cd98f00b204e9800998ecf8427e", MessageDigests.toHex(second.digest()));
+    }
+
+    @Test
+    public void threadsGetTheirOwnInstance() throws InterruptedException, ExecutionException {
+        final MessageDigest instance = MessageDigests.get(MessageDigests.MD5);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<MessageDigest> other = executor.submit(() -> MessageDigests.get(MessageDigests.MD5));
+            Assert.assertNotSame(instance, other.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedAlgorithm() {
+        MessageDigests.get("NOT-AN-ALGORITHM");
+    }
+
+    @Test
+    public void toHex() {
+        Assert.assertEquals("", MessageDigests.toHex(new byte[0]));
+        Assert.assertEquals("00017f80ff", MessageDigests.toHex(new byte[]{0, 1, 0x7F, (byte) 0x80, (byte) 0xFF}));
+    }
+
+    static String hex(byte[] bytes) {
+        final StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.ega.ingestion.commons.digest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static uk.ac.ebi.ega.ingestion.commons.digest.MessageDigestsTest.hex;
+
+public class MultiDigestOutputStreamTest {
+
+    @Test
+    public void sameDigestsAsMessageDigest() throws IOException, NoSuchAlgorithmException {
+        final byte[] data = createData(1024 * 1024 + 13);
+
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5,
+                MessageDigests.SHA_256);
+        outputStream.write(data);
+        outputStream.close();
+
+        Assert.assertEquals(digest("MD5", data), outputStream.getDigest(MessageDigests.MD5));
+        Assert.assertEquals(digest("SHA-256", data), outputStream.getDigest(MessageDigests.SHA_256));
+    }
+
+    @Test
+    public void writesSmallerAndLargerThanTheBuffers() throws IOException, NoSuchAlgorithmException {
+        final byte[] data = createData(10000);
+
+        // Few small buffers, so the writer has to wait for the digest thread
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(64, 2, MessageDigests.MD5);
+        int offset = 0;
+        int length = 1;
+        while (offset < data.length) {
+            final int chunk = Math.min(length, data.length - offset);
+            outputStream.write(data, offset, chunk);
+            offset += chunk;
+            length = length * 3 % 200 + 1;
+        }
+        outputStream.write(0x42);
+        outputStream.close();
+
+        final byte[] expected = new byte[data.length + 1];
+        System.arraycopy(data, 0, expected, 0, data.length);
+        expected[data.length] = 0x42;
+        Assert.assertEquals(digest("MD5", expected), outputStream.getDigest(MessageDigests.MD5));
+    }
+
+    @Test
+    public void emptyStream() throws IOException, NoSuchAlgorithmException {
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5);
+        outputStream.close();
+
+        Assert.assertEquals(digest("MD5", new byte[0]), outputStream.getDigest(MessageDigests.MD5));
+    }
+
+    @Test
+    public void repeatedAlgorithmIsComputedOnce() throws IOException, NoSuchAlgorithmException {
+        final byte[] data = createData(1000);
+
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5,
+                MessageDigests.MD5);
+        outputStream.write(data);
+        outputStream.close();
+
+        Assert.assertEquals(digest("MD5", data), outputStream.getDigest(MessageDigests.MD5));
+    }
+
+    @Test
+    public void closeTwiceKeepsTheDigests() throws IOException, NoSuchAlgorithmException {
+        final byte[] data = createData(1000);
+
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5);
+        outputStream.write(data);
+        outputStream.close();
+        outputStream.close();
+
+        Assert.assertEquals(digest("MD5", data), outputStream.getDigest(MessageDigests.MD5));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void digestsUnavailableBeforeClose() throws IOException {
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5);
+        outputStream.write(createData(10));
+        try {
+            outputStream.getDigest(MessageDigests.MD5);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void algorithmNotComputed() throws IOException {
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5);
+        outputStream.close();
+        outputStream.getDigest(MessageDigests.SHA_256);
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterCloseFails() throws IOException {
+        final MultiDigestOutputStream outputStream = new MultiDigestOutputStream(MessageDigests.MD5);
+        outputStream.close();
+        outputStream.write(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedAlgorithm() {
+        new MultiDigestOutputStream(MessageDigests.MD5, "NOT-AN-ALGORITHM");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void atLeastOneAlgorithm() {
+        new MultiDigestOutputStream();
+    }
+
+    private static String digest(String algorithm, byte[] data) throws NoSuchAlgorithmException {
+        return hex(MessageDigest.getInstance(algorithm).digest(data));
+    }
+
+    private static byte[] createData(int size) {
+        final byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static uk.ac.ebi.ega.ingestion.commons.io.ChannelInputStreamTest.createData;
+import static uk.ac.ebi.ega.ingestion.commons.io.ChannelInputStreamTest.readAll;
+
+public class ChannelFileStreamFactoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void blockSizeIsRoundedUpToTheAlignment() {
+        Assert.assertEquals(1000, new ChannelFileStreamFactory(1000, 0).getBlockSize());
+        Assert.assertEquals(4096, new ChannelFileStreamFactory(1000, 4096).getBlockSize());
+        Assert.assertEquals(8192, new ChannelFileStreamFactory(4097, 4096).getBlockSize());
+        Assert.assertEquals(4096, new ChannelFileStreamFactory(4096, 4096).getBlockSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blockSizeMustBePositive() {
+        new ChannelFileStreamFactory(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void alignmentCannotBeNegative() {
+        new ChannelFileStreamFactory(1024, -1);
+    }
+
+    @Test
+    public void writeThenRead() throws IOException {
+        final FileStreamFactory factory = FileStreamFactory.create(FileStreamFactory.Type.CHANNEL, 100, 64);
+        final byte[] data = createData(1000);
+        final Path path = temporaryFolder.getRoot().toPath().resolve("new-file");
+
+        try (OutputStream outputStream = factory.openOutputStream(path)) {
+            outputStream.write(data);
+        }
+        try (InputStream inputStream = factory.openInputStream(path)) {
+            Assert.assertArrayEquals(data, readAll(inputStream, 33));
+        }
+    }
+
+    @Test
+    public void existingFileIsTruncated() throws IOException {
+        final FileStreamFactory factory = new ChannelFileStreamFactory(16, 0);
+        final Path path = Files.write(temporaryFolder.newFile().toPath(), createData(100));
+
+        try (OutputStream outputStream = factory.openOutputStream(path)) {
+            outputStream.write(createData(10));
+        }
+
+        Assert.assertArrayEquals(createData(10), Files.readAllBytes(path));
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void closingTheInputStreamClosesTheFile() throws IOException {
+        final FileStreamFactory factory = new ChannelFileStreamFactory(16, 0);
+        final Path path = Files.write(temporaryFolder.newFile().toPath(), createData(100));
+
+        final InputStream inputStream = factory.openInputStream(path);
+        inputStream.close();
+        inputStream.read();
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void closingTheOutputStreamClosesTheFile() throws IOException {
+        final FileStreamFactory factory = new ChannelFileStreamFactory(16, 0);
+        final Path path = temporaryFolder.newFile().toPath();
+
+        final OutputStream outputStream = factory.openOutputStream(path);
+        outputStream.close();
+        outputStream.write(createData(16));
+    }
+
+}
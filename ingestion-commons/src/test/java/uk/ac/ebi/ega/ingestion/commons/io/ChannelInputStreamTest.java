@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ChannelInputStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsTheWholeFileInBlocks() throws IOException {
+        final byte[] data = createData(1000);
+        final Path path = createFile(data);
+
+        try (ChannelInputStream inputStream = new ChannelInputStream(path, open(path), 64)) {
+            Assert.assertArrayEquals(data, readAll(inputStream, 10));
+            Assert.assertEquals(1000, inputStream.getStatistics().getBytes());
+            // 15 full blocks and a last one of 40 bytes
+            Assert.assertEquals(16, inputStream.getStatistics().getRequests());
+        }
+    }
+
+    @Test
+    public void shortChannelReadsStillFillTheBlock() throws IOException {
+        final byte[] data = createData(1000);
+        final Path path = createFile(data);
+        final ThrottledFileChannel channel = new ThrottledFileChannel(open(path), 7);
+
+        try (ChannelInputStream inputStream = new ChannelInputStream(path, channel, 64)) {
+            final byte[] bytes = new byte[100];
+            // A block is filled before returning, a read larger than the block gets the whole block
+            Assert.assertEquals(64, inputStream.read(bytes, 0, bytes.length));
+            Assert.assertEquals(36, inputStream.read(bytes, 64, 36));
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(bytes, 0, 100);
+            output.write(readAll(inputStream, 100));
+            Assert.assertArrayEquals(data, output.toByteArray());
+        }
+    }
+
+    @Test
+    public void singleByteReadsAreUnsigned() throws IOException {
+        final byte[] data = new byte[]{0, 1, (byte) 0x7F, (byte) 0x80, (byte) 0xFF};
+        final Path path = createFile(data);
+
+        try (ChannelInputStream inputStream = new ChannelInputStream(path, open(path), 2)) {
+            Assert.assertEquals(0, inputStream.read());
+            Assert.assertEquals(1, inputStream.read());
+            Assert.assertEquals(0x7F, inputStream.read());
+            Assert.assertEquals(0x80, inputStream.read());
+            Assert.assertEquals(0xFF, inputStream.read());
+            Assert.assertEquals(-1, inputStream.read());
+        }
+    }
+
+    @Test
+    public void endOfFileIsReportedOnEveryRead() throws IOException {
+        final Path path = createFile(createData(10));
+
+        try (ChannelInputStream inputStream = new ChannelInputStream(path, open(path), 16)) {
+            Assert.assertEquals(10, inputStream.read(new byte[16], 0, 16));
+            Assert.assertEquals(-1, inputStream.read(new byte[16], 0, 16));
+            Assert.assertEquals(-1, inputStream.read());
+            Assert.assertEquals(-1, inputStream.read(new byte[16], 0, 16));
+            Assert.assertEquals(0, inputStream.read(new byte[16], 0, 0));
+        }
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        final Path path = createFile(new byte[0]);
+
+        try (ChannelInputStream inputStream = new ChannelInputStream(path, open(path), 16)) {
+            Assert.assertEquals(0, inputStream.available());
+            Assert.assertEquals(-1, inputStream.read());
+            Assert.assertEquals(-1, inputStream.read(new byte[16], 0, 16));
+        }
+    }
+
+    @Test
+    public void availableCountsBufferedAndUnreadBytes() throws IOException {
+        final Path path = createFile(createData(100));
+
+        try (ChannelInputStream inputStream = new ChannelInputStream(path, open(path), 16)) {
+            Assert.assertEquals(100, inputStream.available());
+            inputStream.read();
+            Assert.assertEquals(99, inputStream.available());
+            Assert.assertEquals(15, inputStream.read(new byte[100], 0, 100));
+            Assert.assertEquals(84, inputStream.available());
+        }
+    }
+
+    @Test
+    public void closeClosesTheChannel() throws IOException {
+        final Path path = createFile(createData(10));
+        final FileChannel channel = open(path);
+
+        final ChannelInputStream inputStream = new ChannelInputStream(path, channel, 16);
+        inputStream.close();
+
+        Assert.assertFalse(channel.isOpen());
+        // Closing twice is allowed
+        inputStream.close();
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void readAfterCloseFails() throws IOException {
+        final Path path = createFile(createData(10));
+
+        final ChannelInputStream inputStream = new ChannelInputStream(path, open(path), 16);
+        inputStream.close();
+        inputStream.read();
+    }
+
+    private Path createFile(byte[] data) throws IOException {
+        return Files.write(temporaryFolder.newFile().toPath(), data);
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    static byte[] createData(int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    static byte[] readAll(InputStream inputStream, int readSize) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] bytes = new byte[readSize];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(bytes, 0, readSize)) != -1) {
+            output.write(bytes, 0, bytesRead);
+        }
+        return output.toByteArray();
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static uk.ac.ebi.ega.ingestion.commons.io.ChannelInputStreamTest.createData;
+
+public class ChannelOutputStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesInBlocksOfTheConfiguredSize() throws IOException {
+        final byte[] data = createData(1000);
+        final Path path = temporaryFolder.newFile().toPath();
+        final ThrottledFileChannel channel = new ThrottledFileChannel(open(path), Integer.MAX_VALUE);
+
+        try (ChannelOutputStream outputStream = new ChannelOutputStream(path, channel, 64, 0)) {
+            for (int offset = 0; offset < data.length; offset += 10) {
+                outputStream.write(data, offset, 10);
+            }
+            // Nothing is written until a block is full
+            Assert.assertEquals(15, channel.getWrites().size());
+        }
+
+        Assert.assertArrayEquals(data, Files.readAllBytes(path));
+        assertWrites(channel.getWrites(), 64, 15, 40);
+    }
+
+    @Test
+    public void shortChannelWritesAreRetried() throws IOException {
+        final byte[] data = createData(1000);
+        final Path path = temporaryFolder.newFile().toPath();
+        final ThrottledFileChannel channel = new ThrottledFileChannel(open(path), 5);
+
+        final ChannelOutputStream outputStream = new ChannelOutputStream(path, channel, 64, 0);
+        outputStream.write(data, 0, data.length);
+        outputStream.close();
+
+        Assert.assertArrayEquals(data, Files.readAllBytes(path));
+        Assert.assertEquals(1000, outputStream.getStatistics().getBytes());
+        // 13 requests for each of the 15 full blocks and 8 for the last one of 40 bytes
+        Assert.assertEquals(203, outputStream.getStatistics().getRequests());
+    }
+
+    @Test
+    public void singleByteWrites() throws IOException {
+        final byte[] data = createData(100);
+        final Path path = temporaryFolder.newFile().toPath();
+
+        try (ChannelOutputStream outputStream = new ChannelOutputStream(path, open(path), 16, 0)) {
+            for (byte b : data) {
+                outputStream.write(b);
+            }
+        }
+
+        Assert.assertArrayEquals(data, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void firstBlockEndsAtAnAlignedOffset() throws IOException {
+        final byte[] data = createData(100);
+        final Path path = temporaryFolder.newFile().toPath();
+        final FileChannel fileChannel = open(path);
+        fileChannel.write(ByteBuffer.wrap(createData(3)));
+        final ThrottledFileChannel channel = new ThrottledFileChannel(fileChannel, Integer.MAX_VALUE);
+
+        try (ChannelOutputStream outputStream = new ChannelOutputStream(path, channel, 16, 8)) {
+            outputStream.write(data, 0, data.length);
+        }
+
+        final List<long[]> writes = channel.getWrites();
+        Assert.assertEquals(3, writes.get(0)[0]);
+        Assert.assertEquals(5, writes.get(0)[1]);
+        for (int i = 1; i < writes.size(); i++) {
+            Assert.assertEquals(0, writes.get(i)[0] % 8);
+        }
+        assertWrites(writes.subList(1, writes.size()), 16, 5, 15);
+        Assert.assertEquals(103, Files.size(path));
+    }
+
+    @Test
+    public void flushWritesThePendingData() throws IOException {
+        final Path path = temporaryFolder.newFile().toPath();
+
+        try (ChannelOutputStream outputStream = new ChannelOutputStream(path, open(path), 16, 0)) {
+            outputStream.write(createData(10), 0, 10);
+            Assert.assertEquals(0, Files.size(path));
+            outputStream.flush();
+            Assert.assertEquals(10, Files.size(path));
+            // Nothing pending, nothing written
+            outputStream.flush();
+            Assert.assertEquals(1, outputStream.getStatistics().getRequests());
+        }
+    }
+
+    @Test
+    public void closeFlushesAndClosesTheChannel() throws IOException {
+        final Path path = temporaryFolder.newFile().toPath();
+        final FileChannel channel = open(path);
+
+        final ChannelOutputStream outputStream = new ChannelOutputStream(path, channel, 16, 0);
+        outputStream.write(createData(10), 0, 10);
+        outputStream.close();
+
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertEquals(10, Files.size(path));
+        // Closing twice is allowed
+        outputStream.close();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Asserts that every write is of the block size but the last one.
+     */
+    private static void assertWrites(List<long[]> writes, int blockSize, int fullBlocks, int lastBlock) {
+        Assert.assertEquals(fullBlocks + 1, writes.size());
+        for (int i = 0; i < fullBlocks; i++) {
+            Assert.assertEquals(blockSize, writes.get(i)[1]);
+        }
+        Assert.assertEquals(lastBlock, writes.get(fullBlocks)[1]);
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.ega.ingestion.commons.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File channel that transfers at most a given number of bytes per request, like a network file system returning
+ * short reads and writes, and records the offset and length of every write.
+ */
+class ThrottledFileChannel extends FileChannel {
+
+    private final FileChannel delegate;
+
+    private final int maxBytesPerRequest;
+
+    private final List<long[]> writes = new ArrayList<>();
+
+    ThrottledFileChannel(FileChannel delegate, int maxBytesPerRequest) {
+        this.delegate = delegate;
+        this.maxBytesPerRequest = maxBytesPerRequest;
+    }
+
+    /**
+     * @return offset and length of every write issued to the channel.
+     */
+    List<long[]> getWrites() {
+        return writes;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        final ByteBuffer slice = throttle(dst);
+        final int bytesRead = delegate.read(slice);
+        if (bytesRead > 0) {
+            dst.position(dst.position() + bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final long position = delegate.position();
+        final ByteBuffer slice = throttle(src);
+        final int bytesWritten = delegate.write(slice);
+        src.position(src.position() + bytesWritten);
+        writes.add(new long[]{position, bytesWritten});
+        return bytesWritten;
+    }
+
+    private ByteBuffer throttle(ByteBuffer buffer) {
+        final ByteBuffer slice = buffer.slice();
+        slice.limit(Math.min(slice.limit(), maxBytesPerRequest));
+        return slice;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return delegate.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        delegate.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegate.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+        delegate.truncate(size);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        delegate.force(metaData);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        delegate.close();
+    }
+
+}
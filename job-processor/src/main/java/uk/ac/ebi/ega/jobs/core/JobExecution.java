@@ -27,10 +27,17 @@ public class JobExecution<T> {
 
     private final T jobParameters;
 
+    private final int slotId;
+
     public JobExecution(String jobId, String jobName, T jobParameters) {
+        this(jobId, jobName, jobParameters, 0);
+    }
+
+    public JobExecution(String jobId, String jobName, T jobParameters, int slotId) {
         this.jobId = Objects.requireNonNull(jobId);
         this.jobName = Objects.requireNonNull(jobName);
         this.jobParameters = Objects.requireNonNull(jobParameters);
+        this.slotId = slotId;
     }
 
     public String getJobId() {
@@ -45,4 +52,8 @@ public class JobExecution<T> {
         return jobParameters;
     }
 
+    public int getSlotId() {
+        return slotId;
+    }
+
 }
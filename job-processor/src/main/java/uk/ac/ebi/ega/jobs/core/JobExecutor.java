@@ -28,9 +28,15 @@ import uk.ac.ebi.ega.jobs.core.utils.DelayConfiguration;
 import uk.ac.ebi.ega.jobs.core.utils.Delayer;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
 
 public class JobExecutor {
 
@@ -42,10 +48,28 @@ public class JobExecutor {
 
     private DelayConfiguration delayConfiguration;
 
+    /**
+     * Number of executions that this instance can hold assigned at the same time. Each assigned execution
+     * is persisted with the slot id it occupies, from 0 to executionSlots - 1.
+     */
+    private final int executionSlots;
+
+    private final Object slotLock = new Object();
+
     public JobExecutor(ExecutorPersistenceService persistenceService,
                        final DelayConfiguration delayConfiguration) {
+        this(persistenceService, delayConfiguration, 1);
+    }
+
+    public JobExecutor(ExecutorPersistenceService persistenceService,
+                       final DelayConfiguration delayConfiguration,
+                       final int executionSlots) {
+        if (executionSlots < 1) {
+            throw new IllegalArgumentException("Number of execution slots must be at least 1");
+        }
         this.persistenceService = persistenceService;
         this.delayConfiguration = delayConfiguration;
+        this.executionSlots = executionSlots;
         this.jobMap = new ConcurrentHashMap<>();
     }
 
@@ -63,25 +87,110 @@ public class JobExecutor {
             throw new JobNotRegistered(jobId);
         }
 
-        if (isExecutionAlreadyAssigned(jobName, jobParameters)) {
-            logger.debug("JobExecution with name {} and parameterClass {} is already assigned, " +
-                    "skipping execution assignment.", jobName, parameterClass);
-            return Optional.empty();
+        // Slot selection and persistence must not interleave between the threads of this instance, otherwise two
+        // of them could pick the same free slot.
+        synchronized (slotLock) {
+            final Optional<Integer> freeSlot = findFreeSlot();
+            if (!freeSlot.isPresent()) {
+                logger.debug("All {} execution slots are assigned, skipping execution assignment of job {} with " +
+                        "name {} and parameterClass {}.", executionSlots, jobId, jobName, parameterClass);
+                return Optional.empty();
+            }
+
+            final int slotId = freeSlot.get();
+            try {
+                persistenceService.assignExecution(jobId, jobName, slotId, jobParameters);
+                logger.info("Job {} assigned to slot {}", jobId, slotId);
+                return Optional.of(new JobExecution<>(jobId, jobName, jobParameters, slotId));
+            } catch (DataIntegrityViolationException e) {
+                logger.error(e.getMessage(), e);
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Assigns a work unit of several executions of the same job to a single free slot. All the executions are
+     * persisted in one transaction and run one after the other, the slot remains assigned until the last of them
+     * has finished.
+     *
+     * @param jobParameters parameters of each execution by job id, in the order in which they have to be executed.
+     * @return executions assigned to the slot, skipping the job ids that were already assigned, or an empty list if
+     * no slot is free.
+     */
+    public <T> List<JobExecution<T>> assignExecutions(String jobName, Map<String, T> jobParameters)
+            throws JobNotRegistered {
+        final List<JobExecution<T>> executions = new ArrayList<>();
+        if (jobParameters.isEmpty()) {
+            return executions;
         }
 
-        try {
-            persistenceService.assignExecution(jobId, jobName, jobParameters);
-            return Optional.of(new JobExecution<>(jobId, jobName, jobParameters));
-        } catch (DataIntegrityViolationException e) {
-            logger.error(e.getMessage(), e);
-            return Optional.empty();
+        for (Map.Entry<String, T> entry : jobParameters.entrySet()) {
+            final Class<?> parameterClass = entry.getValue().getClass();
+            if (isJobNotYetRegistered(jobName, parameterClass)) {
+                logger.error("Fatal error: Job with name {} and parameterClass {} is not yet registered.",
+                        jobName, parameterClass);
+                throw new JobNotRegistered(entry.getKey());
+            }
         }
+
+        synchronized (slotLock) {
+            final Optional<Integer> freeSlot = findFreeSlot();
+            if (!freeSlot.isPresent()) {
+                logger.debug("All {} execution slots are assigned, skipping execution assignment of {} jobs with " +
+                        "name {}.", executionSlots, jobParameters.size(), jobName);
+                return executions;
+            }
+
+            final int slotId = freeSlot.get();
+            try {
+                final List<String> assignedJobIds = persistenceService.assignExecutions(jobName, slotId,
+                        jobParameters);
+                for (String jobId : assignedJobIds) {
+                    executions.add(new JobExecution<>(jobId, jobName, jobParameters.get(jobId), slotId));
+                }
+                logger.info("{} of {} jobs assigned to slot {}", executions.size(), jobParameters.size(), slotId);
+            } catch (DataIntegrityViolationException e) {
+                logger.error(e.getMessage(), e);
+            }
+            return executions;
+        }
+    }
+
+    /**
+     * Assigns a work unit like {@link #assignExecutions(String, Map)}, splitting its jobs by size before the slot is
+     * assigned so that the small jobs run first and are not held back by a large job of the same work unit.
+     *
+     * @param jobSize size of the job, jobs of the same size keep the order in which they were given.
+     */
+    public <T> List<JobExecution<T>> assignExecutions(String jobName, Map<String, T> jobParameters,
+                                                      ToLongFunction<T> jobSize) throws JobNotRegistered {
+        return assignExecutions(jobName, sortBySize(jobParameters, jobSize));
+    }
+
+    /**
+     * @return job parameters in ascending order of size, jobs of the same size keep their order.
+     */
+    private static <T> Map<String, T> sortBySize(Map<String, T> jobParameters, ToLongFunction<T> jobSize) {
+        final List<Map.Entry<String, T>> entries = new ArrayList<>(jobParameters.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> jobSize.applyAsLong(entry.getValue())));
+        final Map<String, T> sortedJobParameters = new LinkedHashMap<>();
+        entries.forEach(entry -> sortedJobParameters.put(entry.getKey(), entry.getValue()));
+        return sortedJobParameters;
     }
 
     public <T> Optional<JobExecution<T>> getAssignedExecution(String jobName, Class<T> parameterClass) {
         return persistenceService.getAssignedExecution(jobName, parameterClass);
     }
 
+    public <T> List<JobExecution<T>> getAssignedExecutions(String jobName, Class<T> parameterClass) {
+        return persistenceService.getAssignedExecutions(jobName, parameterClass);
+    }
+
+    public int getExecutionSlots() {
+        return executionSlots;
+    }
+
     public <T> Result execute(JobExecution<T> jobExecution) throws JobNotRegistered {
         final Job<T> job = getJob(jobExecution.getJobName(), (Class<T>) jobExecution.getJobParameters().getClass());
 
@@ -89,7 +198,7 @@ public class JobExecutor {
             throw new JobNotRegistered(jobExecution.getJobId());
         }
 
-        logger.info("Executing job {}", jobExecution.getJobId());
+        logger.info("Executing job {} on slot {}", jobExecution.getJobId(), jobExecution.getSlotId());
         Result result = null;
         final Delayer delayer = Delayer.create(delayConfiguration);
 
@@ -120,8 +229,14 @@ public class JobExecutor {
         return job == null;
     }
 
-    private <T> boolean isExecutionAlreadyAssigned(final String jobName, final T jobParameters) {
-        return getAssignedExecution(jobName, jobParameters.getClass()).isPresent();
+    private Optional<Integer> findFreeSlot() {
+        final Set<Integer> assignedSlots = persistenceService.getAssignedSlots();
+        for (int slotId = 0; slotId < executionSlots; slotId++) {
+            if (!assignedSlots.contains(slotId)) {
+                return Optional.of(slotId);
+            }
+        }
+        return Optional.empty();
     }
 
     public void cancelJobExecution(String jobId, Exception e) {
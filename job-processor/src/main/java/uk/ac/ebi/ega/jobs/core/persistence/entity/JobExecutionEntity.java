@@ -27,11 +27,16 @@ import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 
+/**
+ * Execution assigned to a slot of an instance. The executions of a work unit share their slot, so the slot is indexed
+ * and not unique, executors that assign a single execution per slot can keep a unique constraint in their schema.
+ */
 @Entity
-@Table(name = "JOB_EXECUTION")
+@Table(name = "JOB_EXECUTION", indexes = @Index(columnList = "INSTANCE_ID, SLOT_ID"))
 @EntityListeners(AuditingEntityListener.class)
 public class JobExecutionEntity implements Persistable<String> {
 
@@ -43,9 +48,12 @@ public class JobExecutionEntity implements Persistable<String> {
     @Column(nullable = false)
     private String jobName;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String instanceId;
 
+    @Column(nullable = false)
+    private int slotId;
+
     @CreatedDate
     public LocalDateTime startTime;
 
@@ -53,9 +61,14 @@ public class JobExecutionEntity implements Persistable<String> {
     }
 
     public JobExecutionEntity(String jobId, String jobName, String instanceId) {
+        this(jobId, jobName, instanceId, 0);
+    }
+
+    public JobExecutionEntity(String jobId, String jobName, String instanceId, int slotId) {
         this.jobId = jobId;
         this.jobName = jobName;
         this.instanceId = instanceId;
+        this.slotId = slotId;
     }
 
     @Override
@@ -68,6 +81,14 @@ public class JobExecutionEntity implements Persistable<String> {
         return persist;
     }
 
+    public String getJobName() {
+        return jobName;
+    }
+
+    public int getSlotId() {
+        return slotId;
+    }
+
     public void setPersist(boolean persist) {
         this.persist = persist;
     }
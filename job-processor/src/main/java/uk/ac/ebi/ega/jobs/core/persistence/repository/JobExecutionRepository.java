@@ -20,10 +20,10 @@ package uk.ac.ebi.ega.jobs.core.persistence.repository;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.ebi.ega.jobs.core.persistence.entity.JobExecutionEntity;
 
-import java.util.Optional;
+import java.util.List;
 
 public interface JobExecutionRepository extends CrudRepository<JobExecutionEntity, String> {
 
-    Optional<JobExecutionEntity> findByInstanceId(String instanceId);
+    List<JobExecutionEntity> findAllByInstanceIdOrderBySlotId(String instanceId);
 
 }
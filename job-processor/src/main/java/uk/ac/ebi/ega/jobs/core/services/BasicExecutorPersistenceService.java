@@ -26,9 +26,14 @@ import uk.ac.ebi.ega.jobs.core.persistence.entity.JobRun;
 import uk.ac.ebi.ega.jobs.core.persistence.repository.JobExecutionRepository;
 import uk.ac.ebi.ega.jobs.core.persistence.repository.JobRunRepository;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class BasicExecutorPersistenceService implements ExecutorPersistenceService {
 
@@ -57,10 +62,39 @@ public class BasicExecutorPersistenceService implements ExecutorPersistenceServi
     @Override
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public <T> void assignExecution(String jobId, String jobName, T jobParameters) {
-        jobExecutionRepository.save(new JobExecutionEntity(jobId, jobName, instanceId));
+        assignExecution(jobId, jobName, 0, jobParameters);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public <T> void assignExecution(String jobId, String jobName, int slotId, T jobParameters) {
+        jobExecutionRepository.save(new JobExecutionEntity(jobId, jobName, instanceId, slotId));
         getJobParameterService(jobName, (Class<T>) jobParameters.getClass()).persist(jobId, jobParameters);
     }
 
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public <T> List<String> assignExecutions(String jobName, int slotId, Map<String, T> jobParameters) {
+        final Set<String> assignedJobIds = new HashSet<>();
+        jobExecutionRepository.findAllById(jobParameters.keySet())
+                .forEach(jobExecutionEntity -> assignedJobIds.add(jobExecutionEntity.getId()));
+
+        final List<String> jobIds = new ArrayList<>();
+        final List<JobExecutionEntity> jobExecutionEntities = new ArrayList<>();
+        for (String jobId : jobParameters.keySet()) {
+            if (!assignedJobIds.contains(jobId)) {
+                jobIds.add(jobId);
+                jobExecutionEntities.add(new JobExecutionEntity(jobId, jobName, instanceId, slotId));
+            }
+        }
+        jobExecutionRepository.saveAll(jobExecutionEntities);
+        for (String jobId : jobIds) {
+            final T parameters = jobParameters.get(jobId);
+            getJobParameterService(jobName, (Class<T>) parameters.getClass()).persist(jobId, parameters);
+        }
+        return jobIds;
+    }
+
     private <T> JobParameterService<T> getJobParameterService(String jobName,
                                                               Class<T> parameterClass) {
         return (JobParameterService<T>) parameterServices.get(new JobDefinition(jobName, parameterClass));
@@ -76,12 +110,16 @@ public class BasicExecutorPersistenceService implements ExecutorPersistenceServi
         }
     }
 
+    /**
+     * Returns the execution assigned to the lowest slot of the instance, for executors that use a single slot.
+     */
     @Override
     public <T> Optional<JobExecution<T>> getAssignedExecution(String jobName,
                                                               Class<T> parameterClass) {
-        final Optional<JobExecutionEntity> optional = jobExecutionRepository.findByInstanceId(instanceId);
-        if (optional.isPresent()) {
-            final JobExecutionEntity jobExecutionEntity = optional.get();
+        final List<JobExecutionEntity> jobExecutionEntities =
+                jobExecutionRepository.findAllByInstanceIdOrderBySlotId(instanceId);
+        if (!jobExecutionEntities.isEmpty()) {
+            final JobExecutionEntity jobExecutionEntity = jobExecutionEntities.get(0);
             final JobParameterService<T> jobParameterService = getJobParameterService(jobName, parameterClass);
             Optional<T> optionalJobParameters = jobParameterService.getParameters(jobExecutionEntity.getId());
             if (optionalJobParameters.isPresent()) {
@@ -92,4 +130,26 @@ public class BasicExecutorPersistenceService implements ExecutorPersistenceServi
         return Optional.empty();
     }
 
+    @Override
+    public <T> List<JobExecution<T>> getAssignedExecutions(String jobName, Class<T> parameterClass) {
+        final JobParameterService<T> jobParameterService = getJobParameterService(jobName, parameterClass);
+        final List<JobExecution<T>> jobExecutions = new ArrayList<>();
+        for (JobExecutionEntity jobExecutionEntity : jobExecutionRepository.findAllByInstanceIdOrderBySlotId(instanceId)) {
+            if (!jobName.equals(jobExecutionEntity.getJobName())) {
+                continue;
+            }
+            jobParameterService.getParameters(jobExecutionEntity.getId()).ifPresent(jobParameters ->
+                    jobExecutions.add(new JobExecution<>(jobExecutionEntity.getId(), jobName, jobParameters,
+                            jobExecutionEntity.getSlotId())));
+        }
+        return jobExecutions;
+    }
+
+    @Override
+    public Set<Integer> getAssignedSlots() {
+        return jobExecutionRepository.findAllByInstanceIdOrderBySlotId(instanceId).stream()
+                .map(JobExecutionEntity::getSlotId)
+                .collect(Collectors.toSet());
+    }
+
 }
@@ -20,13 +20,29 @@ package uk.ac.ebi.ega.jobs.core.services;
 import uk.ac.ebi.ega.jobs.core.JobExecution;
 import uk.ac.ebi.ega.jobs.core.Result;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface ExecutorPersistenceService {
 
     <T> void assignExecution(String jobId, String jobName, T jobParameters);
 
+    <T> void assignExecution(String jobId, String jobName, int slotId, T jobParameters);
+
+    /**
+     * Persists the executions of a work unit on the same slot in a single transaction.
+     *
+     * @return ids of the jobs assigned, in iteration order, jobs that were already assigned are skipped.
+     */
+    <T> List<String> assignExecutions(String jobName, int slotId, Map<String, T> jobParameters);
+
     void saveResult(String jobId, Result execute);
 
     <T> Optional<JobExecution<T>> getAssignedExecution(String jobName, Class<T> parameterClass);
+
+    <T> List<JobExecution<T>> getAssignedExecutions(String jobName, Class<T> parameterClass);
+
+    Set<Integer> getAssignedSlots();
 }
@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright 2019 EMBL - European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package uk.ac.ebi.ega.jobs.core;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.ega.jobs.core.exceptions.JobNotRegistered;
+import uk.ac.ebi.ega.jobs.core.services.ExecutorPersistenceService;
+import uk.ac.ebi.ega.jobs.core.utils.DelayConfiguration;
+import uk.ac.ebi.ega.jobs.core.utils.DelayConfiguration.DelayType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobExecutorTest {
+
+    private static final String JOB_NAME = "test-job";
+
+    private ExecutorPersistenceService persistenceService;
+
+    private JobExecutor jobExecutor;
+
+    @Before
+    public void init() {
+        persistenceService = mock(ExecutorPersistenceService.class);
+        jobExecutor = new JobExecutor(persistenceService, new DelayConfiguration(DelayType.LINEAR, 0, 0), 3);
+        jobExecutor.registerJob(JOB_NAME, String.class, parameters -> Result.success(LocalDateTime.now(),
+                LocalDateTime.now()));
+    }
+
+    @Test
+    public void assignExecution_NoSlotsAssigned_UsesFirstSlot() throws JobNotRegistered {
+        when(persistenceService.getAssignedSlots()).thenReturn(Collections.emptySet());
+
+        final Optional<JobExecution<String>> execution = jobExecutor.assignExecution("job-1", JOB_NAME, "file");
+
+        assertTrue(execution.isPresent());
+        assertEquals(0, execution.get().getSlotId());
+        verify(persistenceService).assignExecution("job-1", JOB_NAME, 0, "file");
+    }
+
+    @Test
+    public void assignExecution_SomeSlotsAssigned_UsesFirstFreeSlot() throws JobNotRegistered {
+        when(persistenceService.getAssignedSlots()).thenReturn(new HashSet<>(Arrays.asList(0, 2)));
+
+        final Optional<JobExecution<String>> execution = jobExecutor.assignExecution("job-2", JOB_NAME, "file");
+
+        assertTrue(execution.isPresent());
+        assertEquals(1, execution.get().getSlotId());
+        verify(persistenceService).assignExecution("job-2", JOB_NAME, 1, "file");
+    }
+
+    @Test
+    public void assignExecution_AllSlotsAssigned_SkipsExecution() throws JobNotRegistered {
+        when(persistenceService.getAssignedSlots()).thenReturn(new HashSet<>(Arrays.asList(0, 1, 2)));
+
+        final Optional<JobExecution<String>> execution = jobExecutor.assignExecution("job-3", JOB_NAME, "file");
+
+        assertFalse(execution.isPresent());
+        verify(persistenceService, never()).assignExecution(anyString(), eq(JOB_NAME), anyInt(), any());
+    }
+
+    @Test(expected = JobNotRegistered.class)
+    public void assignExecution_JobNotRegistered_ThrowsException() throws JobNotRegistered {
+        jobExecutor.assignExecution("job-4", "unknown-job", "file");
+    }
+
+    @Test
+    public void assignExecutions_FreeSlot_AssignsAllJobsToSameSlot() throws JobNotRegistered {
+        final Map<String, String> jobs = new LinkedHashMap<>();
+        jobs.put("job-5", "file-5");
+        jobs.put("job-6", "file-6");
+        when(persistenceService.getAssignedSlots()).thenReturn(Collections.singleton(0));
+        when(persistenceService.assignExecutions(JOB_NAME, 1, jobs)).thenReturn(Arrays.asList("job-5", "job-6"));
+
+        final List<JobExecution<String>> executions = jobExecutor.assignExecutions(JOB_NAME, jobs);
+
+        assertEquals(2, executions.size());
+        assertEquals("job-5", executions.get(0).getJobId());
+        assertEquals("file-6", executions.get(1).getJobParameters());
+        assertTrue(executions.stream().allMatch(execution -> execution.getSlotId() == 1));
+    }
+
+    @Test
+    public void assignExecutions_SomeJobsAlreadyAssigned_ReturnsOnlyNewJobs() throws JobNotRegistered {
+        final Map<String, String> jobs = new LinkedHashMap<>();
+        jobs.put("job-7", "file-7");
+        jobs.put("job-8", "file-8");
+        when(persistenceService.getAssignedSlots()).thenReturn(Collections.emptySet());
+        when(persistenceService.assignExecutions(JOB_NAME, 0, jobs)).thenReturn(Collections.singletonList("job-8"));
+
+        final List<JobExecution<String>> executions = jobExecutor.assignExecutions(JOB_NAME, jobs);
+
+        assertEquals(1, executions.size());
+        assertEquals("job-8", executions.get(0).getJobId());
+    }
+
+    @Test
+    public void assignExecutions_AllSlotsAssigned_SkipsExecutions() throws JobNotRegistered {
+        when(persistenceService.getAssignedSlots()).thenReturn(new HashSet<>(Arrays.asList(0, 1, 2)));
+
+        final List<JobExecution<String>> executions = jobExecutor.assignExecutions(JOB_NAME,
+                Collections.singletonMap("job-9", "file-9"));
+
+        assertTrue(executions.isEmpty());
+        verify(persistenceService, never()).assignExecutions(eq(JOB_NAME), anyInt(), any());
+    }
+
+    @Test
+    public void assignExecutions_JobSize_AssignsSmallJobsFirst() throws JobNotRegistered {
+        final Map<String, String> jobs = new LinkedHashMap<>();
+        jobs.put("job-10", "large-file");
+        jobs.put("job-11", "file-a");
+        jobs.put("job-12", "file-b");
+        final Map<String, String> sortedJobs = new LinkedHashMap<>();
+        sortedJobs.put("job-11", "file-a");
+        sortedJobs.put("job-12", "file-b");
+        sortedJobs.put("job-10", "large-file");
+        when(persistenceService.getAssignedSlots()).thenReturn(Collections.emptySet());
+        when(persistenceService.assignExecutions(eq(JOB_NAME), eq(0), any()))
+                .thenAnswer(invocation -> new ArrayList<>(invocation.<Map<String, String>>getArgument(2).keySet()));
+
+        final List<JobExecution<String>> executions = jobExecutor.assignExecutions(JOB_NAME, jobs, String::length);
+
+        assertEquals(Arrays.asList("job-11", "job-12", "job-10"),
+                executions.stream().map(JobExecution::getJobId).collect(Collectors.toList()));
+        verify(persistenceService).assignExecutions(JOB_NAME, 0, sortedJobs);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_ZeroSlots_ThrowsException() {
+        new JobExecutor(persistenceService, new DelayConfiguration(DelayType.LINEAR, 0, 0), 0);
+    }
+
+}